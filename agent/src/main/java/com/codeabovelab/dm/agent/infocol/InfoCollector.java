@@ -24,19 +24,31 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 
 /**
- * Collect info. Must be thread safe.
+ * Collect info. Must be thread safe. <p/>
+ * Collectors keep underlying files open, so instance must be closed after use.
  */
 @Slf4j
-public class InfoCollector {
+public class InfoCollector implements AutoCloseable {
+    /**
+     * Enough for one minute heartbeat interval with one second sampling.
+     */
+    private static final int SAMPLES = 128;
     private final String rootPath;
+    private final ProcStatCollector procStat;
+    private final ProcMeminfoCollector meminfo;
     private final List<Collector> collectors;
+    private final SampleRing cpuLoadSamples = new SampleRing(SAMPLES);
+    private final SampleRing memoryUsedSamples = new SampleRing(SAMPLES);
+
     /**
      * Create new instance of info collector.
      * @param rootPath path to mounter root, if not specified use '/'
      */
     public InfoCollector(String rootPath) {
         this.rootPath = MoreObjects.firstNonNull(rootPath, "/");
-        this.collectors = ImmutableList.of(new ProcStatCollector(this), new ProcMeminfoCollector(this), new NetCollector(this));
+        this.procStat = new ProcStatCollector(this);
+        this.meminfo = new ProcMeminfoCollector(this);
+        this.collectors = ImmutableList.of(procStat, meminfo, new NetCollector(this));
     }
 
     public String getRootPath() {
@@ -44,19 +56,23 @@ public class InfoCollector {
     }
 
     /**
-     * Get current info. Some Collectors may periodically gather info, therefore you must manually cal {@link #refresh()}
+     * Get current info. Some Collectors may periodically gather info, therefore you must manually cal {@link #refresh()}.
+     * Also it aggregate samples which was gathered by {@link #refresh()} after previous call of this method.
      * @see #refresh()
      * @return info
      */
     public SysInfo getInfo() {
         SysInfo info = new SysInfo();
         collectors.forEach(c -> safe(() -> c.fill(info)));
+        info.setCpuLoadStats(cpuLoadSamples.drain());
+        info.setMemoryUsedStats(memoryUsedSamples.drain());
         return info;
     }
 
     /**
      * For proper work you need at least two invocation of this method, between {@link #getInfo()}.
-     * Not that small (less than one second) timeout between invocation may cause incorrect results.
+     * Not that small (less than one second) timeout between invocation may cause incorrect results. <p/>
+     * Each invocation add sample of cpu load and used memory.
      */
     public void refresh() {
         collectors.forEach(c -> {
@@ -65,6 +81,14 @@ public class InfoCollector {
             }
             safe(((Refreshable) c)::refresh);
         });
+        Float cpuLoad = procStat.getCpuLoad();
+        if(cpuLoad != null) {
+            cpuLoadSamples.add(cpuLoad);
+        }
+        long used = meminfo.getUsed();
+        if(used >= 0) {
+            memoryUsedSamples.add(used);
+        }
     }
 
     private void safe(UnsafeRunnable runnable) {
@@ -74,4 +98,13 @@ public class InfoCollector {
             log.error("Can not execute {}", runnable, e);
         }
     }
+
+    @Override
+    public void close() {
+        collectors.forEach(c -> {
+            if(c instanceof AutoCloseable) {
+                safe(((AutoCloseable) c)::close);
+            }
+        });
+    }
 }
@@ -19,41 +19,77 @@ package com.codeabovelab.dm.agent.infocol;
 import com.codeabovelab.dm.agent.notifier.SysInfo;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
  */
-public class NetCollector implements Collector {
+public class NetCollector implements Collector, AutoCloseable {
+
+    private static final class Dev implements AutoCloseable {
+        private final ProcFile rx;
+        private final ProcFile tx;
+
+        Dev(Path dev) {
+            // /sys/class/net/eth0/statistics/rx_bytes
+            // /sys/class/net/eth0/statistics/tx_bytes
+            this.rx = new ProcFile(dev.resolve("statistics/rx_bytes"), 32);
+            this.tx = new ProcFile(dev.resolve("statistics/tx_bytes"), 32);
+        }
+
+        @Override
+        public void close() {
+            rx.close();
+            tx.close();
+        }
+    }
+
     private final Path path;
+    private final Map<String, Dev> devs = new HashMap<>();
 
     public NetCollector(InfoCollector ic) {
         this.path = Paths.get(ic.getRootPath(), "sys/class/net/");
     }
 
     @Override
-    public void fill(SysInfo info) throws Exception {
-        // /sys/class/net/eth0/statistics/rx_bytes
-        // /sys/class/net/eth0/statistics/tx_bytes
+    public synchronized void fill(SysInfo info) throws Exception {
         Map<String, SysInfo.Net> nets = info.getNet();
-        for(Path devPath: (Iterable<Path>)(Files.list(path)::iterator)) {
-            String dev = devPath.getFileName().toString();
-            SysInfo.Net net = new SysInfo.Net();
-            readNet(devPath, net);
-            nets.put(dev, net);
+        Set<String> actual = new HashSet<>();
+        try(DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
+            for(Path devPath: ds) {
+                String name = devPath.getFileName().toString();
+                actual.add(name);
+                Dev dev = devs.computeIfAbsent(name, n -> new Dev(devPath));
+                SysInfo.Net net = new SysInfo.Net();
+                readNet(dev, net);
+                nets.put(name, net);
+            }
+        }
+        // close files of removed devices
+        for(Iterator<Map.Entry<String, Dev>> i = devs.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<String, Dev> e = i.next();
+            if(!actual.contains(e.getKey())) {
+                e.getValue().close();
+                i.remove();
+            }
         }
     }
 
-    private void readNet(Path dev, SysInfo.Net net) throws IOException {
-        long rx = readLong(dev.resolve("statistics/rx_bytes"));
-        long tx = readLong(dev.resolve("statistics/tx_bytes"));
-        net.setBytesIn(rx);
-        net.setBytesOut(tx);
+    private void readNet(Dev dev, SysInfo.Net net) throws IOException {
+        net.setBytesIn(dev.rx.read().nextLong());
+        net.setBytesOut(dev.tx.read().nextLong());
     }
 
-    private long readLong(Path path) throws IOException {
-        return Long.parseLong(Files.readAllLines(path).get(0));
+    @Override
+    public synchronized void close() {
+        devs.values().forEach(Dev::close);
+        devs.clear();
     }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.agent.infocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Keep '/proc' or '/sys' file open and parse its content from reusable buffer without creating strings. <p/>
+ * Kernel regenerates content of these files on each read from zero offset, so we do not need to reopen it. When
+ * read fail (for example network device is removed) channel is closed and will be reopened at next read. <p/>
+ * Not thread safe.
+ */
+final class ProcFile implements Closeable {
+    private static final int MAX_SIZE = 1024 * 1024;
+    private final Path path;
+    private FileChannel channel;
+    private byte[] data;
+    private int pos;
+    private int limit;
+
+    ProcFile(Path path, int initialSize) {
+        this.path = path;
+        this.data = new byte[initialSize];
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Read whole file content into buffer and reset position to its start.
+     * @return this
+     * @throws IOException on read error, channel will be closed
+     */
+    ProcFile read() throws IOException {
+        try {
+            if(channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            int len = 0;
+            while(true) {
+                if(len == data.length) {
+                    if(data.length >= MAX_SIZE) {
+                        throw new IOException("Too big file: " + path);
+                    }
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                int read = channel.read(ByteBuffer.wrap(data, len, data.length - len), len);
+                if(read < 0) {
+                    break;
+                }
+                len += read;
+            }
+            this.pos = 0;
+            this.limit = len;
+            return this;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Move position after first line which starts with specified key.
+     * @param key line prefix in ASCII
+     * @return false when line is not found, position is not changed then
+     */
+    boolean seekLine(byte[] key) {
+        int i = pos;
+        while(i < limit) {
+            if(startsWith(i, key)) {
+                pos = i + key.length;
+                return true;
+            }
+            while(i < limit && data[i++] != '\n') {
+                // skip to next line
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip spaces and token if it equal to specified.
+     * @param token token in ASCII
+     * @return true when token was skipped
+     */
+    boolean skipToken(byte[] token) {
+        skipSpaces();
+        if(!startsWith(pos, token)) {
+            return false;
+        }
+        int end = pos + token.length;
+        if(end < limit && !isSpace(data[end])) {
+            return false;
+        }
+        pos = end;
+        return true;
+    }
+
+    /**
+     * Skip spaces and parse unsigned decimal number.
+     * @return number
+     * @throws IllegalStateException when no number at current position
+     */
+    long nextLong() {
+        skipSpaces();
+        int start = pos;
+        long res = 0;
+        while(pos < limit) {
+            byte b = data[pos];
+            if(b < '0' || b > '9') {
+                break;
+            }
+            res = res * 10 + (b - '0');
+            pos++;
+        }
+        if(start == pos) {
+            throw new IllegalStateException("Expect number at " + pos + " in " + path);
+        }
+        return res;
+    }
+
+    private void skipSpaces() {
+        while(pos < limit && isSpace(data[pos])) {
+            pos++;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n';
+    }
+
+    private boolean startsWith(int from, byte[] prefix) {
+        if(from + prefix.length > limit) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length; ++i) {
+            if(data[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        FileChannel ch = this.channel;
+        this.channel = null;
+        if(ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                // nothing
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProcFile{" + path + '}';
+    }
+}
@@ -17,53 +17,83 @@
 package com.codeabovelab.dm.agent.infocol;
 
 import com.codeabovelab.dm.agent.notifier.SysInfo;
-import com.codeabovelab.dm.common.utils.DataSize;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 
 /**
  */
-public class ProcMeminfoCollector implements Collector {
-    private final Pattern pattern = Pattern.compile("\\w+:\\s+(\\d+)\\s+(\\w+)");
-    private final File meminfo;
+public class ProcMeminfoCollector implements Collector, Refreshable, AutoCloseable {
+    private static final byte[] TOTAL = bytes("MemTotal:");
+    private static final byte[] FREE = bytes("MemFree:");
+    private static final byte[] AVAIL = bytes("MemAvailable:");
+    private static final byte[] KB = bytes("kB");
+    private final ProcFile meminfo;
+    private long total;
+    private long free;
+    private long avail;
+    private boolean loaded;
 
     public ProcMeminfoCollector(InfoCollector ic) {
-        this.meminfo = new File(ic.getRootPath(), "proc/meminfo");
+        this.meminfo = new ProcFile(Paths.get(ic.getRootPath(), "proc/meminfo"), 4096);
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.US_ASCII);
     }
 
     @Override
-    public void fill(SysInfo info) throws Exception {
-        try(BufferedReader br = InfoUtils.readFile(meminfo)) {
-            /*
-            * cat /proc/meminfo
-                MemTotal:        8177820 kB
-                MemFree:         2715188 kB
-                MemAvailable:    4913576 kB
-            */
-            long total = parse(br.readLine());
-            long free = parse(br.readLine());
-            // avail - is free + file cache  & etc
-            long avail = parse(br.readLine());
-            SysInfo.Memory mem = new SysInfo.Memory();
-            mem.setTotal(total);
-            mem.setAvailable(free);
-            // used is total - avail (which include free, unloadable file cache)
-            mem.setUsed(total - avail);
-            info.setMemory(mem);
+    public synchronized void refresh() throws Exception {
+        /*
+        * cat /proc/meminfo
+            MemTotal:        8177820 kB
+            MemFree:         2715188 kB
+            MemAvailable:    4913576 kB
+        */
+        meminfo.read();
+        total = parse(TOTAL);
+        free = parse(FREE);
+        // avail - is free + file cache  & etc
+        avail = parse(AVAIL);
+        loaded = true;
+    }
+
+    /**
+     * Used memory from last refresh.
+     * @return used memory in bytes or -1 when it is not loaded yet
+     */
+    synchronized long getUsed() {
+        return loaded ? total - avail : -1;
+    }
+
+    @Override
+    public synchronized void fill(SysInfo info) throws Exception {
+        if(!loaded) {
+            refresh();
         }
+        SysInfo.Memory mem = new SysInfo.Memory();
+        mem.setTotal(total);
+        mem.setAvailable(free);
+        // used is total - avail (which include free, unloadable file cache)
+        mem.setUsed(total - avail);
+        info.setMemory(mem);
     }
 
-    private long parse(String line) {
-        Matcher matcher = pattern.matcher(line);
-        if(!matcher.matches()) {
-            throw new IllegalArgumentException("Can not match: '" + line + "' with " + pattern);
+    private long parse(byte[] key) {
+        // lines are ordered, so we continue search from previous position
+        if(!meminfo.seekLine(key)) {
+            throw new IllegalArgumentException("Can not find '" + new String(key, StandardCharsets.US_ASCII) +
+              "' in " + meminfo.getPath());
+        }
+        long val = meminfo.nextLong();
+        if(meminfo.skipToken(KB)) {
+            val *= 1024L;
         }
-        long val = Long.parseLong(matcher.group(1));
-        String multStr = matcher.group(2);
-        long mult = DataSize.parseMultiplier(multStr);
-        return val + mult;
+        return val;
+    }
+
+    @Override
+    public synchronized void close() {
+        meminfo.close();
     }
 }
@@ -18,78 +18,78 @@ package com.codeabovelab.dm.agent.infocol;
 
 import com.codeabovelab.dm.agent.notifier.SysInfo;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.util.Iterator;
-import static com.codeabovelab.dm.agent.infocol.InfoUtils.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 
 /**
  */
-class ProcStatCollector implements Collector, Refreshable {
-    private static class Data {
-        final long user;
-        final long nice;
-        final long system;
-        final long ilde;
-        final long iowait;
-
-        Data(String line) {
-            Iterator<String> iter = SPLITTER_ON_SPACE.split(line).iterator();
-            /*
-            line:
-               cpu  2255 34 2290 22625563 6290 127 456
-            descr:
-                user: normal processes executing in user mode
-                nice: niced processes executing in user mode
-                system: processes executing in kernel mode
-                idle: twiddling thumbs
-                iowait: waiting for I/O to complete
-                irq: servicing interrupts
-                softirq: servicing softirqs
-            */
-            iter.next();//skip 'cpu'
-            user = nextLong(iter);
-            nice = nextLong(iter);
-            system = nextLong(iter);
-            ilde = nextLong(iter);
-            iowait = nextLong(iter);
-        }
-    }
-
-    private final File procStat;
-    private volatile Data prev;
-    private volatile Data curr;
+class ProcStatCollector implements Collector, Refreshable, AutoCloseable {
+    private static final byte[] CPU = "cpu ".getBytes(StandardCharsets.US_ASCII);
+    private final ProcFile procStat;
+    /*
+    line:
+       cpu  2255 34 2290 22625563 6290 127 456
+    descr:
+        user: normal processes executing in user mode
+        nice: niced processes executing in user mode
+        system: processes executing in kernel mode
+        idle: twiddling thumbs
+        iowait: waiting for I/O to complete
+        irq: servicing interrupts
+        softirq: servicing softirqs
+    */
+    private long usage;
+    private long idle;
+    private boolean hasPrev;
+    private volatile Float cpuLoad;
 
     ProcStatCollector(InfoCollector ic) {
-        this.procStat = new File(ic.getRootPath(), "proc/stat");
+        this.procStat = new ProcFile(Paths.get(ic.getRootPath(), "proc/stat"), 4096);
     }
 
     @Override
-    public void refresh() throws Exception {
-        try(BufferedReader r = readFile(procStat)) {
-            String line = r.readLine();
-            Data data = new Data(line);
-            synchronized (this) {
-                this.prev = this.curr;
-                this.curr = data;
+    public synchronized void refresh() throws Exception {
+        procStat.read();
+        if(!procStat.seekLine(CPU)) {
+            throw new IllegalStateException("Can not find cpu line in " + procStat.getPath());
+        }
+        long user = procStat.nextLong();
+        long nice = procStat.nextLong();
+        long system = procStat.nextLong();
+        long idle = procStat.nextLong();
+        long iowait = procStat.nextLong();
+        long usage = user + nice + system;
+        idle += iowait;
+        if(hasPrev) {
+            long dusage = usage - this.usage;
+            long didle = idle - this.idle;
+            if(dusage + didle > 0) {
+                this.cpuLoad = 100f * dusage / (dusage + didle);
             }
         }
+        this.usage = usage;
+        this.idle = idle;
+        this.hasPrev = true;
+    }
+
+    /**
+     * Cpu load between two last refreshes.
+     * @return load in percents or null when it has not enough data
+     */
+    Float getCpuLoad() {
+        return cpuLoad;
     }
 
     @Override
     public void fill(SysInfo info) {
-        Data c;
-        Data p;
-        synchronized (this) {
-            c = this.curr;
-            p = this.prev;
-        }
-        if(p == null || c == null) {
-            return;
+        Float cpuLoad = this.cpuLoad;
+        if(cpuLoad != null) {
+            info.setCpuLoad(cpuLoad);
         }
-        float dusage = (c.user - p.user) + (c.nice - p.nice) + (c.system - p.system);
-        float dilde = (c.ilde - p.ilde) + (c.iowait - p.iowait);
-        float cpuLoad = 100f * dusage/(dusage + dilde);
-        info.setCpuLoad(cpuLoad);
+    }
+
+    @Override
+    public synchronized void close() {
+        procStat.close();
     }
 }
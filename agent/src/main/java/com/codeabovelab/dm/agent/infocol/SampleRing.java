@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.agent.infocol;
+
+import com.codeabovelab.dm.agent.notifier.SysInfo;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size ring of samples, which is drained into aggregated {@link SysInfo.Stats} on each heartbeat.
+ * When more than capacity samples is added between drains, then oldest samples is overwritten. <p/>
+ * Thread safe.
+ */
+final class SampleRing {
+    private final double[] ring;
+    private final double[] sorted;
+    private int next;
+    private int size;
+
+    SampleRing(int capacity) {
+        this.ring = new double[capacity];
+        this.sorted = new double[capacity];
+    }
+
+    synchronized void add(double value) {
+        ring[next] = value;
+        next = (next + 1) % ring.length;
+        if(size < ring.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Aggregate samples which was added after previous drain and clear ring.
+     * @return stats or null when no samples
+     */
+    synchronized SysInfo.Stats drain() {
+        if(size == 0) {
+            return null;
+        }
+        double sum = 0;
+        for(int i = 0; i < size; ++i) {
+            double v = ring[(next - size + i + ring.length) % ring.length];
+            sorted[i] = v;
+            sum += v;
+        }
+        Arrays.sort(sorted, 0, size);
+        SysInfo.Stats stats = new SysInfo.Stats();
+        stats.setCount(size);
+        stats.setMin(sorted[0]);
+        stats.setMax(sorted[size - 1]);
+        stats.setAvg(sum / size);
+        // nearest-rank percentile
+        stats.setP95(sorted[(int) Math.ceil(0.95 * size) - 1]);
+        size = 0;
+        return stats;
+    }
+}
@@ -18,8 +18,10 @@ package com.codeabovelab.dm.agent.notifier;
 
 import com.codeabovelab.dm.agent.infocol.InfoCollector;
 import com.codeabovelab.dm.common.utils.AddressUtils;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import com.codeabovelab.dm.common.utils.OSUtils;
 import com.google.common.base.MoreObjects;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.embedded.AbstractConfigurableEmbeddedServletContainer;
 import org.springframework.stereotype.Component;
@@ -29,19 +31,25 @@ import org.springframework.web.util.UriComponentsBuilder;
 import java.net.InetAddress;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  */
 @Component
-public class DataProvider {
+public class DataProvider implements DisposableBean {
 
     private final InfoCollector collector;
+    private final ScheduledExecutorService sampler;
     private final String hostName;
     private final String address;
 
     @Autowired
     public DataProvider(NotifierProps config, AbstractConfigurableEmbeddedServletContainer container) {
         this.collector = new InfoCollector(config.getRootPath());
+        int interval = Math.max(1, Math.min(5, config.getSampleInterval()));
+        this.sampler = ExecutorUtils.singleThreadScheduledExecutor(this.getClass());
+        this.sampler.scheduleAtFixedRate(collector::refresh, 0, interval, TimeUnit.SECONDS);
         this.address = getAddress(config.getAddress(), container);
         this.hostName = OSUtils.getHostName();
     }
@@ -59,6 +67,12 @@ public class DataProvider {
         return data;
     }
 
+    @Override
+    public void destroy() throws Exception {
+        sampler.shutdownNow();
+        collector.close();
+    }
+
     private String getAddress(String predefinedAddress, AbstractConfigurableEmbeddedServletContainer container) {
         String proto = (container.getSsl() == null)? "http://" : "https://";
         if(StringUtils.hasText(predefinedAddress)) {
@@ -24,10 +24,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
@@ -38,7 +40,9 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Notify cluman server about current node.
+ * Notify cluman server about current node. <p/>
+ * After first acknowledged heartbeat it send only changed data (see {@link NotifierDataUtils}), when server
+ * lost our sequence it respond with {@link HttpStatus#CONFLICT} and we send full snapshot.
  */
 @Slf4j
 @EnableConfigurationProperties(NotifierProps.class)
@@ -50,6 +54,14 @@ public class Notifier extends AbstractAutostartup {
     private final ObjectMapper objectMapper;
     private final String secret;
     private final DataProvider dataProvider;
+    /**
+     * Fields below is accessed only from executor thread.
+     */
+    private long seq;
+    /**
+     * Last full data which is acknowledged by server.
+     */
+    private NotifierData acked;
 
     @Autowired
     public Notifier(NotifierProps config, RestTemplate restTemplate, ObjectMapper objectMapper, DataProvider dataProvider) {
@@ -82,15 +94,19 @@ public class Notifier extends AbstractAutostartup {
     private void send() {
         try {
             NotifierData data = dataProvider.getData();
-            HttpHeaders headers = new HttpHeaders();
-            if(secret != null) {
-                headers.set(NotifierData.HEADER, secret);
-            }
-            RequestEntity<NotifierData> req = new RequestEntity<>(data, headers, HttpMethod.POST, url);
-            ResponseEntity<String> resp = restTemplate.exchange(req, String.class);
-            if(log.isDebugEnabled()) {
-                log.debug("Send data {} to {}, with result: {}", objectMapper.writeValueAsString(data), url, resp.getStatusCode());
+            data.setSeq(++seq);
+            NotifierData delta = acked == null ? null : NotifierDataUtils.diff(acked, data);
+            try {
+                send(delta == null ? data : delta);
+            } catch (HttpClientErrorException e) {
+                if(delta == null || e.getStatusCode() != HttpStatus.CONFLICT) {
+                    throw e;
+                }
+                log.info("Server require full snapshot: {}", e.getResponseBodyAsString());
+                acked = null;
+                send(data);
             }
+            acked = data;
         } catch (Exception e) {
             if(e instanceof ResourceAccessException) {
                 // we reduce stack trace of some errors
@@ -101,6 +117,18 @@ public class Notifier extends AbstractAutostartup {
         }
     }
 
+    private void send(NotifierData data) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        if(secret != null) {
+            headers.set(NotifierData.HEADER, secret);
+        }
+        RequestEntity<NotifierData> req = new RequestEntity<>(data, headers, HttpMethod.POST, url);
+        ResponseEntity<String> resp = restTemplate.exchange(req, String.class);
+        if(log.isDebugEnabled()) {
+            log.debug("Send data {} to {}, with result: {}", objectMapper.writeValueAsString(data), url, resp.getStatusCode());
+        }
+    }
+
     @PreDestroy
     public void cleanUp() throws Exception {
         executor.shutdownNow();
@@ -28,4 +28,8 @@ public class NotifierProps {
     private String rootPath;
     private String server;
     private String address;
+    /**
+     * Interval between samples of system info in seconds, must be in 1 - 5 range. Samples are aggregated into heartbeat.
+     */
+    private int sampleInterval = 2;
 }
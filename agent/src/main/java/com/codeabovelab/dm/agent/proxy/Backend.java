@@ -17,27 +17,65 @@
 package com.codeabovelab.dm.agent.proxy;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.epoll.EpollDomainSocketChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.channel.unix.DomainSocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
+ * Connections to docker socket. Plain http requests use pool of keep-alive connections,
+ * web sockets use dedicated connections. Streaming requests (events, logs with follow and etc.) may hold
+ * pooled connection infinitely, so when all pooled connections are leased we do not wait, but use dedicated
+ * connection, which is closed after request.
  */
 @Component
 class Backend implements InitializingBean, DisposableBean {
 
+    /**
+     * Size of buffers which used for copy of request and response bodies.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final AttributeKey<Boolean> DEDICATED = AttributeKey.valueOf(Backend.class, "dedicated");
+    private final String socketPath;
+    private final int maxConnections;
     private Bootstrap bootstrap;
     private EpollEventLoopGroup group;
+    private FixedChannelPool pool;
+    /**
+     * Count of leased and acquiring pooled connections.
+     */
+    private final AtomicInteger leased = new AtomicInteger();
+
+    @Autowired
+    Backend(@Value("${dm.agent.proxy.socket:/var/run/docker.sock}") String socketPath,
+            @Value("${dm.agent.proxy.maxConnections:64}") int maxConnections) {
+        this.socketPath = socketPath;
+        this.maxConnections = maxConnections;
+    }
 
     @Override
     public void destroy() throws Exception {
+        if(pool != null) {
+            pool.close();
+        }
         group.shutdownGracefully();
     }
 
@@ -47,16 +85,77 @@ class Backend implements InitializingBean, DisposableBean {
         this.group = new EpollEventLoopGroup();
         bootstrap.group(group)
           .channel(EpollDomainSocketChannel.class)
+          .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(BUFFER_SIZE, BUFFER_SIZE * 4))
+          .remoteAddress(new DomainSocketAddress(socketPath))
           .handler(new ChannelInitializer<DomainSocketChannel>() {
                        @Override
                        protected void initChannel(DomainSocketChannel channel) throws Exception {
+                           channel.attr(DEDICATED).set(true);
                            channel.pipeline().addLast(new HttpClientCodec());
                        }
                    }
           );
+        // pool replace handler of bootstrap, therefore we init channel in channelCreated()
+        this.pool = new FixedChannelPool(bootstrap.clone(), new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel ch) throws Exception {
+                ch.pipeline().addLast(new HttpClientCodec());
+            }
+        }, maxConnections);
     }
 
+    /**
+     * Open dedicated connection, caller must close it.
+     * @return future of connection
+     */
     ChannelFuture connect() {
-        return bootstrap.connect(new DomainSocketAddress("/var/run/docker.sock"));
+        return bootstrap.connect();
+    }
+
+    /**
+     * Acquire keep-alive connection from pool, or dedicated connection when pool is exhausted. In any case
+     * connection must be returned through {@link #release(Channel, boolean)}.
+     * @return future of connection
+     */
+    Future<Channel> acquire() {
+        if(leased.incrementAndGet() > maxConnections) {
+            leased.decrementAndGet();
+            Promise<Channel> promise = group.next().newPromise();
+            ChannelFuture cf = bootstrap.connect();
+            cf.addListener(f -> {
+                if(f.isSuccess()) {
+                    promise.setSuccess(cf.channel());
+                } else {
+                    promise.setFailure(f.cause());
+                }
+            });
+            return promise;
+        }
+        Future<Channel> future = pool.acquire();
+        future.addListener(f -> {
+            if(!f.isSuccess()) {
+                leased.decrementAndGet();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Return connection to pool.
+     * @param channel connection
+     * @param reusable false when connection is in inconsistent state (for example response was not read fully),
+     *                 then it will be closed
+     * @return future which is completed when connection is returned
+     */
+    Future<Void> release(Channel channel, boolean reusable) {
+        if(Boolean.TRUE.equals(channel.attr(DEDICATED).get())) {
+            return channel.close();
+        }
+        leased.decrementAndGet();
+        if(!reusable) {
+            channel.close();
+        }
+        // pool check health of channel, so closed channel will be discarded
+        return pool.release(channel);
     }
 }
@@ -16,83 +16,220 @@
 
 package com.codeabovelab.dm.agent.proxy;
 
-import com.codeabovelab.dm.common.utils.Closeables;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.*;
+import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.servlet.ServletOutputStream;
-import javax.servlet.http.HttpServletRequest;
+import javax.servlet.*;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 /**
+ * Handler of single proxied request. It streams front request body to backend and backend response to front
+ * in both directions simultaneously, without blocking of threads. <p/>
+ * Backend channel is leased from pool, when front is slower than backend, then we stop reading
+ * from backend and resume it in {@link #onWritePossible()}; when backend is slower, then we stop reading
+ * from front and resume it in {@link #channelWritabilityChanged(ChannelHandlerContext)}.
  */
-// TODO implement web socket & chunked front request streaming
 @Slf4j
-class NettyHandler extends ChannelInboundHandlerAdapter implements AutoCloseable {
-    private final HttpServletResponse frontResp;
-    private final HttpServletRequest frontReq;
-    private volatile ServletOutputStream stream;
-    private volatile boolean hasError;
+class NettyHandler extends ChannelInboundHandlerAdapter implements ReadListener, WriteListener, AsyncListener {
     private final String id;
+    private final Backend backend;
+    private final AsyncContext asyncContext;
+    private final HttpServletResponse frontResp;
+    private final ServletInputStream input;
+    private final ServletOutputStream output;
+    private final HttpRequest backendReq;
+    private final Object lock = new Object();
+    /**
+     * Content of backend response which is not yet written to front.
+     */
+    private final Deque<ByteBuf> pending = new ArrayDeque<>();
+    private volatile Channel channel;
+    private boolean reading;
+    /**
+     * Front became readable while other thread is in {@link #readFront()}, it must read again.
+     */
+    private boolean readAgain;
+    /**
+     * Front response must not be committed before status and headers of backend response are set.
+     */
+    private boolean headersReceived;
+    private boolean frontEnd;
+    private boolean requestSent;
+    private boolean responseEnd;
+    private boolean keepAlive;
+    private boolean closed;
 
-    NettyHandler(String id, HttpServletRequest frontReq, HttpServletResponse frontResp) {
-        this.frontReq = frontReq;
-        this.frontResp = frontResp;
+    NettyHandler(String id, Backend backend, AsyncContext asyncContext, HttpRequest backendReq, boolean hasBody) throws IOException {
         this.id = id;
+        this.backend = backend;
+        this.asyncContext = asyncContext;
+        this.frontResp = (HttpServletResponse) asyncContext.getResponse();
+        this.backendReq = backendReq;
+        this.input = asyncContext.getRequest().getInputStream();
+        this.output = frontResp.getOutputStream();
+        this.frontEnd = !hasBody;
+        asyncContext.addListener(this);
+        if(hasBody) {
+            input.setReadListener(this);
+        }
+        output.setWriteListener(this);
     }
 
-    @Override
-    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
-        if (msg instanceof HttpResponse) {
-            handleHeader((HttpResponse) msg);
-        } else if (msg instanceof HttpContent) {
-            handleContent(ctx, (HttpContent) msg);
-        } else {
-            log.debug("{}: receive unknown msg: {}", id, msg);
+    void start() {
+        backend.acquire().addListener((Future<Channel> f) -> {
+            if(f.isSuccess()) {
+                onConnected(f.getNow());
+            } else {
+                fail(f.cause());
+            }
+        });
+    }
+
+    private void onConnected(Channel ch) {
+        synchronized (lock) {
+            if(closed) {
+                backend.release(ch, true);
+                return;
+            }
+            this.channel = ch;
+        }
+        log.debug("{}: connected to backend", id);
+        ch.pipeline().addLast(this);
+        ch.write(backendReq);
+        if(!sendEndIfNeed()) {
+            ch.flush();
+            readFront();
         }
     }
 
-    private void handleContent(ChannelHandlerContext ctx, HttpContent backendResp) throws IOException {
-        if (backendResp != LastHttpContent.EMPTY_LAST_CONTENT) {
+    /**
+     * Send end of request to backend when front request is read fully.
+     * @return true when end is sent
+     */
+    private boolean sendEndIfNeed() {
+        Channel ch = this.channel;
+        synchronized (lock) {
+            if(!frontEnd || requestSent || ch == null) {
+                return false;
+            }
+            requestSent = true;
+        }
+        ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        return true;
+    }
+
+    /**
+     * Read available front content while backend is writable, content is accumulated in large buffers
+     * and flushed once per call.
+     */
+    private void readFront() {
+        Channel ch = this.channel;
+        synchronized (lock) {
+            if(reading) {
+                // container does not repeat onDataAvailable(), so current reader must not miss it
+                readAgain = true;
+                return;
+            }
+            if(frontEnd || closed || ch == null) {
+                return;
+            }
+            reading = true;
+        }
+        boolean again = true;
+        while(again) {
             try {
-                synchronized (frontResp) {
-                    ServletOutputStream sos = getStream();
-                    if (sos == null) {
-                        log.warn("{}: Stream null on non closed handler.", id);
-                        return;
+                readFrontContent(ch);
+            } catch (Exception e) {
+                fail(e);
+            }
+            synchronized (lock) {
+                again = readAgain && !frontEnd && !closed;
+                readAgain = false;
+                if(!again) {
+                    reading = false;
+                }
+            }
+        }
+    }
+
+    private void readFrontContent(Channel ch) throws IOException {
+        boolean written = false;
+        while(ch.isWritable() && input.isReady()) {
+            ByteBuf buf = ch.alloc().heapBuffer(Backend.BUFFER_SIZE);
+            boolean eof = false;
+            try {
+                while(buf.isWritable() && input.isReady()) {
+                    if(buf.writeBytes(input, buf.writableBytes()) < 0) {
+                        eof = true;
+                        break;
                     }
-                    ByteBuf buf = backendResp.content();
-                    copy(buf, sos);
-                    sos.flush();
                 }
-            } finally {
-                backendResp.release();
+            } catch (IOException | RuntimeException e) {
+                buf.release();
+                throw e;
+            }
+            if(buf.isReadable()) {
+                ch.write(new DefaultHttpContent(buf));
+                written = true;
+            } else {
+                buf.release();
             }
+            if(eof || input.isFinished()) {
+                break;
+            }
+        }
+        if(written) {
+            ch.flush();
+        }
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        readFront();
+    }
+
+    @Override
+    public void onAllDataRead() throws IOException {
+        synchronized (lock) {
+            frontEnd = true;
         }
-        if (backendResp instanceof LastHttpContent) {
-            log.debug("{}: receive last", id);
-            ctx.close();
+        sendEndIfNeed();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if(ctx.channel().isWritable()) {
+            readFront();
         }
+        super.channelWritabilityChanged(ctx);
     }
 
-    private void copy(ByteBuf buf, ServletOutputStream sos) throws IOException {
-        byte arr[] = new byte[1024];
-        int end;
-        while ((end = buf.readableBytes()) > 0) {
-            int len = Math.min(end, arr.length);
-            buf.readBytes(arr, 0, len);
-            sos.write(arr, 0, len);
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        if (msg instanceof HttpResponse) {
+            handleHeader((HttpResponse) msg);
+        }
+        if (msg instanceof HttpContent) {
+            handleContent((HttpContent) msg);
+        } else if(!(msg instanceof HttpResponse)) {
+            log.debug("{}: receive unknown msg: {}", id, msg);
         }
     }
 
     private void handleHeader(HttpResponse backendResp) {
         HttpResponseStatus status = backendResp.status();
-        synchronized (frontResp) {
+        synchronized (lock) {
+            headersReceived = true;
+            keepAlive = HttpUtil.isKeepAlive(backendResp);
             frontResp.setStatus(status.code());
             HttpHeaders headers = backendResp.headers();
             for (String name : headers.names()) {
@@ -104,51 +241,180 @@ class NettyHandler extends ChannelInboundHandlerAdapter implements AutoCloseable
         }
     }
 
-    private synchronized ServletOutputStream getStream() throws IOException {
-        synchronized (frontResp) {
-            if (stream == null && !hasError) {
-                stream = frontResp.getOutputStream();
+    private void handleContent(HttpContent backendResp) {
+        ByteBuf buf = backendResp.content();
+        synchronized (lock) {
+            if(closed) {
+                buf.release();
+                return;
+            }
+            if(buf.isReadable()) {
+                pending.add(buf);
+            } else {
+                buf.release();
+            }
+            if (backendResp instanceof LastHttpContent) {
+                log.debug("{}: receive last", id);
+                responseEnd = true;
             }
-            return stream;
         }
+        writeFront();
     }
 
-    public void close() throws Exception {
-        log.debug("{}: close handler", id);
-        ServletOutputStream stream = this.stream;
-        if (stream != null) {
-            synchronized (frontResp) {
-                try {
-                    stream.flush();
-                } catch (java.nio.channels.ClosedChannelException e) {
-                    //nothing
-                } catch (Exception e) {
-                    log.error("{}: can not flush front stream: ", id, e);
+    /**
+     * Write pending content to front while it is ready, and flush it when all pending content is written.
+     */
+    private void writeFront() {
+        boolean end = false;
+        try {
+            synchronized (lock) {
+                if(closed || !headersReceived) {
+                    // container calls onWritePossible() just after registration, but flush at this moment
+                    // will commit response without status and headers
+                    return;
                 }
-                try {
-                    stream.close();
-                } catch (IOException e) {
-                    // stream.close() often throw exception when client close connection
-                    // we do not logging this for reduce noise
+                Channel ch = this.channel;
+                boolean written = false;
+                while(!pending.isEmpty()) {
+                    if(!output.isReady()) {
+                        // front is slow, stop reading of backend until onWritePossible()
+                        ch.config().setAutoRead(false);
+                        return;
+                    }
+                    ByteBuf buf = pending.poll();
+                    try {
+                        buf.readBytes(output, buf.readableBytes());
+                        written = true;
+                    } finally {
+                        buf.release();
+                    }
+                }
+                if(responseEnd) {
+                    end = true;
+                } else {
+                    if(written && output.isReady()) {
+                        output.flush();
+                    }
+                    if(ch != null && !ch.config().isAutoRead()) {
+                        ch.config().setAutoRead(true);
+                    }
                 }
             }
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        if(end) {
+            complete();
         }
     }
 
     @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        try {
-            this.hasError = true;
-            log.error("{}: Error in pipeline: ", id, cause);
-            ctx.close();
-            synchronized (frontResp) {
+    public void onWritePossible() throws IOException {
+        writeFront();
+    }
+
+    private void complete() {
+        boolean reusable;
+        synchronized (lock) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            // backend may respond before it read whole request, then connection state is unknown
+            reusable = keepAlive && requestSent;
+        }
+        log.debug("{}: complete", id);
+        asyncContext.complete();
+        releaseChannel(reusable);
+    }
+
+    private void fail(Throwable cause) {
+        synchronized (lock) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            ByteBuf buf;
+            while((buf = pending.poll()) != null) {
+                buf.release();
+            }
+            try {
                 if (!frontResp.isCommitted()) {
                     frontResp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, cause.toString());
                 }
+            } catch (Exception e) {
+                log.error("{}: Error at sending error to front: ", id, e);
             }
-        } catch (Exception e) {
-            log.error("{}: Error at exception caught: ", e);
         }
+        if(cause instanceof IOException) {
+            // usually it mean that client close connection
+            log.debug("{}: Error in proxy: {}", id, cause.toString());
+        } else {
+            log.error("{}: Error in proxy: ", id, cause);
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // context is already completed by container
+        }
+        releaseChannel(false);
+    }
+
+    private void releaseChannel(boolean reusable) {
+        Channel ch = this.channel;
+        if(ch == null) {
+            return;
+        }
+        if(ch.pipeline().context(this) != null) {
+            ch.pipeline().remove(this);
+        }
+        ch.config().setAutoRead(true);
+        backend.release(ch, reusable);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        boolean end;
+        synchronized (lock) {
+            end = responseEnd;
+        }
+        if(!end) {
+            fail(new IOException("Backend close connection before end of response."));
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        fail(cause);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // front read or write error
+        fail(t);
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+        // nothing
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+        fail(new IOException("Timeout"));
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+        Throwable throwable = event.getThrowable();
+        fail(throwable == null ? new IOException("Front error") : throwable);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) throws IOException {
+        // nothing
     }
 
     public String getId() {
@@ -17,9 +17,7 @@
 package com.codeabovelab.dm.agent.proxy;
 
 
-import com.codeabovelab.dm.common.utils.Closeables;
 import com.codeabovelab.dm.common.utils.Uuids;
-import io.netty.channel.*;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.HttpHeaders;
 import lombok.extern.slf4j.Slf4j;
@@ -34,16 +32,11 @@ import java.io.IOException;
 import static org.springframework.http.HttpHeaders.TRANSFER_ENCODING;
 
 /**
- * Rest controller which serves proxy requests
+ * Rest controller which serves proxy requests. Requests are handled asynchronously by {@link NettyHandler}.
  */
 @Slf4j
 class ProxyServlet extends GenericServlet {
 
-    /**
-     * Max len of frontend request content
-     */
-    private static final int MAX_FRONT_REQ_LEN = 1024 * 1024;
-
     @Autowired
     private Backend backend;
 
@@ -52,7 +45,6 @@ class ProxyServlet extends GenericServlet {
         final HttpServletRequest request = (HttpServletRequest) req;
         final HttpServletResponse response = (HttpServletResponse) res;
         String id = Uuids.longUid();
-        NettyHandler handler = null;
         try {
             String uri = Utils.reconstructUri(request);
             log.debug("{}: start {} {}", id, request.getMethod(), uri);
@@ -61,18 +53,14 @@ class ProxyServlet extends GenericServlet {
                 doUpgrade(id, request,  response);
                 return;
             }
-            ChannelFuture cf = backend.connect().sync();
-            Channel channel = cf.channel();
-            DefaultFullHttpRequest backendReq = buildRequest(id, request, uri);
-            handler = new NettyHandler(id, request, response);
-            channel.pipeline().addLast(handler);
-            channel.writeAndFlush(backendReq).sync();
-            channel.closeFuture().sync();
+            HttpRequest backendReq = buildRequest(request, uri);
+            AsyncContext asyncContext = request.startAsync();
+            // streams like logs or events have unlimited duration
+            asyncContext.setTimeout(0);
+            NettyHandler handler = new NettyHandler(id, backend, asyncContext, backendReq, hasBody(request));
+            handler.start();
         } catch (Exception e) {
             log.error("{}: error in service(): ", id, e);
-        } finally {
-            Closeables.close(handler);
-            log.debug("{}: end", id);
         }
     }
 
@@ -84,24 +72,16 @@ class ProxyServlet extends GenericServlet {
         log.debug("{}: close upgraded connection", id);
     }
 
-    private DefaultFullHttpRequest buildRequest(String id, HttpServletRequest request, String uri) throws IOException {
+    private static boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || "chunked".equalsIgnoreCase(request.getHeader(TRANSFER_ENCODING));
+    }
+
+    private HttpRequest buildRequest(HttpServletRequest request, String uri) {
         HttpMethod method = HttpMethod.valueOf(request.getMethod());
-        DefaultFullHttpRequest br = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+        // body is streamed by handler, chunked body will be encoded again by codec, due to copied header
+        DefaultHttpRequest br = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
         HttpHeaders bh = br.headers();
         Utils.copyHeaders(request, bh);
-        String transferEncoding = request.getHeader(TRANSFER_ENCODING);
-        if("chunked".equals(transferEncoding)) {
-            throw new IOException("Unsupported request transfer-encoding: " + transferEncoding);
-        }
-        int len = request.getContentLength();
-        if(len > 0) {
-            if(len > MAX_FRONT_REQ_LEN) {
-                throw new IOException("Request content too long: " + len + " max allowed: " + MAX_FRONT_REQ_LEN);
-            }
-            try(ServletInputStream is = request.getInputStream()) {
-                br.content().writeBytes(is, len);
-            }
-        }
         return br;
     }
 }
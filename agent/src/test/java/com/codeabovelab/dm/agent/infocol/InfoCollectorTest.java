@@ -17,8 +17,14 @@
 package com.codeabovelab.dm.agent.infocol;
 
 import com.codeabovelab.dm.agent.notifier.SysInfo;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -28,6 +34,9 @@ import static org.junit.Assert.*;
  */
 public class InfoCollectorTest {
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void test() throws InterruptedException {
         InfoCollector ic = new InfoCollector(null);
@@ -48,4 +57,63 @@ public class InfoCollectorTest {
         // we can not check networks because sometime it may produce 0 bytes as correct value
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFixture() throws Exception {
+        Path root = copyFixture();
+        Path stat = root.resolve("proc/stat");
+        try(InfoCollector ic = new InfoCollector(root.toString())) {
+            ic.refresh();
+            // collector keeps file open, so we rewrite it in place
+            writeCpu(stat, "cpu  2355 34 2390 22625763 6290 127 456 0 0 0");
+            ic.refresh();
+            writeCpu(stat, "cpu  2555 34 2490 22625863 6290 127 456 0 0 0");
+            ic.refresh();
+            SysInfo info = ic.getInfo();
+            assertEquals(75f, info.getCpuLoad(), 0.001f);
+            SysInfo.Stats cpu = info.getCpuLoadStats();
+            assertEquals(2, cpu.getCount());
+            assertEquals(50d, cpu.getMin(), 0.001d);
+            assertEquals(62.5d, cpu.getAvg(), 0.001d);
+            assertEquals(75d, cpu.getMax(), 0.001d);
+            assertEquals(75d, cpu.getP95(), 0.001d);
+
+            SysInfo.Memory memory = info.getMemory();
+            assertEquals(8177820L * 1024L, memory.getTotal());
+            assertEquals(2715188L * 1024L, memory.getAvailable());
+            assertEquals((8177820L - 4913576L) * 1024L, memory.getUsed());
+            SysInfo.Stats mem = info.getMemoryUsedStats();
+            assertEquals(3, mem.getCount());
+            assertEquals((8177820L - 4913576L) * 1024d, mem.getMax(), 0.001d);
+
+            Map<String, SysInfo.Net> nets = info.getNet();
+            assertEquals(2, nets.size());
+            assertEquals(123456L, nets.get("eth0").getBytesIn());
+            assertEquals(654321L, nets.get("eth0").getBytesOut());
+
+            // samples are drained by previous call
+            info = ic.getInfo();
+            assertNull(info.getCpuLoadStats());
+            assertNull(info.getMemoryUsedStats());
+        }
+    }
+
+    private Path copyFixture() throws Exception {
+        Path src = Paths.get(getClass().getResource("/infocol-root").toURI());
+        Path dest = tmp.getRoot().toPath();
+        for(Path path: (Iterable<Path>)Files.walk(src)::iterator) {
+            Path target = dest.resolve(src.relativize(path).toString());
+            if(Files.isDirectory(path)) {
+                Files.createDirectories(target);
+            } else {
+                Files.copy(path, target);
+            }
+        }
+        return dest;
+    }
+
+    private void writeCpu(Path stat, String cpuLine) throws Exception {
+        List<String> lines = Files.readAllLines(stat);
+        lines.set(0, cpuLine);
+        Files.write(stat, lines);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.agent.proxy;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.DomainSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test pool of backend connections with fake docker server on unix socket.
+ */
+@Slf4j
+public class BackendTest {
+
+    private static final int MAX_CONNECTIONS = 4;
+    private static final String STREAM_URI = "/events";
+    private final AtomicInteger connections = new AtomicInteger();
+    private File dir;
+    private EpollEventLoopGroup serverGroup;
+    private Backend backend;
+
+    @Before
+    public void before() throws Exception {
+        assumeTrue("Epoll is not available", Epoll.isAvailable());
+        dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        String socket = new File(dir, "docker.sock").getAbsolutePath();
+        serverGroup = new EpollEventLoopGroup(1);
+        new ServerBootstrap()
+          .group(serverGroup)
+          .channel(EpollServerDomainSocketChannel.class)
+          .childHandler(new ChannelInitializer<DomainSocketChannel>() {
+              @Override
+              protected void initChannel(DomainSocketChannel ch) throws Exception {
+                  connections.incrementAndGet();
+                  ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024 * 1024), new EchoHandler());
+              }
+          })
+          .bind(new DomainSocketAddress(socket)).sync();
+        backend = new Backend(socket, MAX_CONNECTIONS);
+        backend.afterPropertiesSet();
+    }
+
+    @After
+    public void after() throws Exception {
+        if(backend != null) {
+            backend.destroy();
+        }
+        if(serverGroup != null) {
+            serverGroup.shutdownGracefully().sync();
+        }
+        if(dir != null) {
+            new File(dir, "docker.sock").delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        final int count = 2000;
+        long begin = System.nanoTime();
+        for(int i = 0; i < count; ++i) {
+            assertEquals("GET /info", request("/info", null).get(5, TimeUnit.SECONDS));
+        }
+        long time = System.nanoTime() - begin;
+        log.info("{} sequential requests: {} req/s", count, Math.round(count / (time / 1e9)));
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final int count = 500;
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        long begin = System.nanoTime();
+        for(int i = 0; i < count; ++i) {
+            futures.add(request("/containers/" + i, "body" + i));
+        }
+        for(int i = 0; i < count; ++i) {
+            assertEquals("POST /containers/" + i + " body" + i, futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        long time = System.nanoTime() - begin;
+        log.info("{} concurrent requests: {} req/s", count, Math.round(count / (time / 1e9)));
+        assertTrue(connections.get() <= MAX_CONNECTIONS);
+    }
+
+    @Test
+    public void testExhaustedByStreams() throws Exception {
+        List<Channel> streams = new ArrayList<>();
+        for(int i = 0; i < MAX_CONNECTIONS; ++i) {
+            streams.add(openStream().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(MAX_CONNECTIONS, connections.get());
+        // pool is exhausted, but request must not wait end of streams
+        assertEquals("GET /info", request("/info", null).get(5, TimeUnit.SECONDS));
+        assertEquals(MAX_CONNECTIONS + 1, connections.get());
+        for(Channel ch: streams) {
+            backend.release(ch, false).sync();
+        }
+        assertEquals("GET /info", request("/info", null).get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Open never ending response, like 'GET /events'.
+     * @return future of connection which is completed when response headers are received
+     */
+    private CompletableFuture<Channel> openStream() {
+        CompletableFuture<Channel> result = new CompletableFuture<>();
+        backend.acquire().addListener((io.netty.util.concurrent.Future<Channel> f) -> {
+            if(!f.isSuccess()) {
+                result.completeExceptionally(f.cause());
+                return;
+            }
+            Channel ch = f.getNow();
+            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                    try {
+                        if(msg instanceof HttpResponse) {
+                            result.complete(ch);
+                        }
+                    } finally {
+                        ReferenceCountUtil.release(msg);
+                    }
+                }
+            });
+            ch.write(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, STREAM_URI));
+            ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        });
+        return result;
+    }
+
+    private CompletableFuture<String> request(String uri, String body) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        backend.acquire().addListener((io.netty.util.concurrent.Future<Channel> f) -> {
+            if(!f.isSuccess()) {
+                result.completeExceptionally(f.cause());
+                return;
+            }
+            Channel ch = f.getNow();
+            StringBuilder sb = new StringBuilder();
+            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                    try {
+                        if(msg instanceof HttpContent) {
+                            sb.append(((HttpContent) msg).content().toString(StandardCharsets.UTF_8));
+                        }
+                        if(msg instanceof LastHttpContent) {
+                            ctx.pipeline().remove(this);
+                            backend.release(ch, true).addListener(r -> result.complete(sb.toString()));
+                        }
+                    } finally {
+                        ReferenceCountUtil.release(msg);
+                    }
+                }
+            });
+            HttpMethod method = body == null ? HttpMethod.GET : HttpMethod.POST;
+            HttpRequest req = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+            if(body == null) {
+                ch.write(req);
+                ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            } else {
+                // stream body as chunks, like the proxy does for chunked uploads
+                HttpUtil.setTransferEncodingChunked(req, true);
+                ch.write(req);
+                ch.write(new DefaultHttpContent(Unpooled.copiedBuffer(" ", StandardCharsets.UTF_8)));
+                ch.write(new DefaultHttpContent(Unpooled.copiedBuffer(body, StandardCharsets.UTF_8)));
+                ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+        });
+        return result;
+    }
+
+    private static class EchoHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) throws Exception {
+            if(STREAM_URI.equals(req.uri())) {
+                // send only headers, response is never ended
+                HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                HttpUtil.setTransferEncodingChunked(resp, true);
+                ctx.writeAndFlush(resp);
+                return;
+            }
+            String text = req.method() + " " + req.uri() + req.content().toString(StandardCharsets.UTF_8);
+            ByteBuf content = Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+            FullHttpResponse resp = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+            HttpUtil.setContentLength(resp, content.readableBytes());
+            ctx.writeAndFlush(resp);
+        }
+    }
+}
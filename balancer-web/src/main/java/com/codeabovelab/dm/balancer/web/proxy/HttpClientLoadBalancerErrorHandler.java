@@ -16,6 +16,7 @@
 
 package com.codeabovelab.dm.balancer.web.proxy;
 
+import com.codeabovelab.dm.gateway.proxy.common.ResponseCommittedException;
 import com.google.common.collect.Lists;
 import com.netflix.client.ClientException;
 import com.netflix.client.DefaultLoadBalancerRetryHandler;
@@ -93,6 +94,9 @@ public class HttpClientLoadBalancerErrorHandler  extends DefaultLoadBalancerRetr
      */
     @Override
     public boolean isRetriableException(Throwable e, boolean sameServer) {
+        if (e instanceof ResponseCommittedException) {
+            return false;
+        }
         if (e instanceof ClientException) {
             ClientException ce = (ClientException) e;
             if (ce.getErrorType() == ClientException.ErrorType.SERVER_THROTTLED) {
@@ -28,6 +28,7 @@ import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerContext;
 import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
 import rx.Observable;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.GenericServlet;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
@@ -37,6 +38,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static com.codeabovelab.dm.balancer.web.proxy.RibbonConfiguration.SERVICEID;
 
@@ -53,7 +56,7 @@ public class ProxyController extends GenericServlet {
     /**
      * Ribbon requires not empty result from loadBalancerClient.execute for gathering correct statistics
      */
-    private static final Observable STUB = Observable.just(new Object());
+    private static final Object STUB_VALUE = new Object();
 
 
     @Autowired
@@ -78,6 +81,10 @@ public class ProxyController extends GenericServlet {
 
         final HttpServletRequest request = (HttpServletRequest) req;
         final HttpServletResponse response = (HttpServletResponse) res;
+        // we do not hold container thread while upstream respond, request is completed by proxy
+        final AsyncContext asyncContext = request.startAsync();
+        // timeouts are controlled by proxy client
+        asyncContext.setTimeout(0);
         /**
          * A command that is used to produce the Observable from the load balancer execution. The load balancer is responsible for
          * the following:
@@ -97,12 +104,37 @@ public class ProxyController extends GenericServlet {
                         response,
                         uri,
                         Long.toUnsignedString(random.nextLong(), 16) /*TODO Vitaly see history and remove this comment*/);
-                httpProxy.service(proxyContext);
-                return STUB;
+                return toObservable(httpProxy.serviceAsync(proxyContext));
             } catch (Exception e) {
                 return Observable.error(e);
             }
-        }).toBlocking().single();
+        }).subscribe(o -> {}, e -> {
+            LOG.error("Can not proxy {}", request.getRequestURI(), e);
+            try {
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+                }
+            } catch (Exception ex) {
+                LOG.error("Can not send error", ex);
+            } finally {
+                asyncContext.complete();
+            }
+        }, asyncContext::complete);
+    }
+
+    private static Observable<Object> toObservable(CompletableFuture<Void> future) {
+        return Observable.create(subscriber -> future.whenComplete((r, e) -> {
+            if (e == null) {
+                subscriber.onNext(STUB_VALUE);
+                subscriber.onCompleted();
+                return;
+            }
+            if (e instanceof CompletionException && e.getCause() != null) {
+                e = e.getCause();
+            }
+            // proxy reports ResponseCommittedException when response of upstream is already passed to servlet
+            subscriber.onError(e);
+        }));
     }
 
     public HttpClientLoadBalancerErrorHandler getRequestSpecificRetryHandler(
@@ -70,7 +70,7 @@ public class DockerServiceEvent implements WithCluster, EventWithTime, WithSever
 
     @Override
     public long getTimeInMilliseconds() {
-        return time.toEpochSecond(ZoneOffset.UTC);
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
     public String getService() {
@@ -31,10 +31,13 @@ import com.codeabovelab.dm.common.utils.Consumers;
 import com.codeabovelab.dm.common.utils.SingleValueCache;
 import com.codeabovelab.dm.common.utils.StringUtils;
 import com.codeabovelab.dm.common.utils.Throwables;
+import com.codeabovelab.dm.platform.http.async.StreamingResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.buffer.ByteBuf;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -45,9 +48,11 @@ import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.SocketException;
 import java.net.URI;
@@ -57,6 +62,7 @@ import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -82,12 +88,22 @@ public class DockerServiceImpl implements DockerService {
         private String node;
         private ObjectMapper objectMapper;
         private AsyncRestTemplate restTemplate;
+        /**
+         * Template for endless streams (events, logs and etc.), it must not share pool of connections with
+         * {@link #restTemplate}, otherwise opened streams can starve usual requests. When null then
+         * {@link #restTemplate} is used.
+         */
+        private AsyncRestTemplate streamRestTemplate;
         private NodeInfoProvider nodeInfoProvider;
         private Consumer<DockerServiceEvent> eventConsumer;
         /**
          * At this interceptor you may modify building of {@link DockerServiceInfo}
          */
         private Consumer<DockerServiceInfo.Builder> infoInterceptor;
+        /**
+         * Executor for background reload of cached info, when null info is loaded in caller thread.
+         */
+        private Executor refreshExecutor;
 
         public Builder node(String node) {
             setNode(node);
@@ -109,6 +125,11 @@ public class DockerServiceImpl implements DockerService {
             return this;
         }
 
+        public Builder streamRestTemplate(AsyncRestTemplate streamRestTemplate) {
+            setStreamRestTemplate(streamRestTemplate);
+            return this;
+        }
+
         public Builder nodeInfoProvider(NodeInfoProvider nodeInfoProvider) {
             setNodeInfoProvider(nodeInfoProvider);
             return this;
@@ -129,6 +150,11 @@ public class DockerServiceImpl implements DockerService {
             return this;
         }
 
+        public Builder refreshExecutor(Executor refreshExecutor) {
+            setRefreshExecutor(refreshExecutor);
+            return this;
+        }
+
         public DockerServiceImpl build() {
             return new DockerServiceImpl(this);
         }
@@ -137,6 +163,7 @@ public class DockerServiceImpl implements DockerService {
     private static final String SUFF_JSON = "/json";
     private static final long FAST_TIMEOUT = 10_000;
     private final AsyncRestTemplate restTemplate;
+    private final AsyncRestTemplate streamRestTemplate;
     private final ClusterConfig clusterConfig;
     //do not use this value, it need only for event generation
     private volatile DockerServiceInfo oldInfo;
@@ -166,6 +193,7 @@ public class DockerServiceImpl implements DockerService {
         this.clusterConfig = ClusterConfigImpl.of(b.config).validate();
         this.restTemplate = b.restTemplate;
         Assert.notNull(this.restTemplate, "restTemplate is null");
+        this.streamRestTemplate = b.streamRestTemplate == null ? this.restTemplate : b.streamRestTemplate;
         this.nodeInfoProvider = b.nodeInfoProvider;
         Assert.notNull(this.nodeInfoProvider, "nodeInfoProvider is null");
         this.eventConsumer = b.eventConsumer;
@@ -179,6 +207,8 @@ public class DockerServiceImpl implements DockerService {
         this.maxTimeout = Math.max(TimeUnit.SECONDS.toMillis(clusterConfig.getDockerTimeout()), FAST_TIMEOUT * 10);
         this.infoCache = SingleValueCache.builder(this::getInfoForCache)
                 .timeAfterWrite(TimeUnit.SECONDS, this.clusterConfig.getCacheTimeAfterWrite())
+                .refreshExecutor(b.refreshExecutor)
+                .maxStaleness(TimeUnit.MILLISECONDS, this.maxTimeout)
                 .build();
     }
 
@@ -457,29 +487,87 @@ public class DockerServiceImpl implements DockerService {
     public ServiceCallResult getStatistics(GetStatisticsArg arg) {
         Assert.notNull(arg.getId(), "id is null");
         URI url = getUrlContainer(arg.getId(), "stats").queryParam("stream", arg.isStream()).build().toUri();
+        return executeStream(url, arg, () -> new JsonStreamDecoder<>(Statistics.class, arg.getWatcher()), response -> {
+            StreamContext<Statistics> context = new StreamContext<>(response.getBody(), arg.getWatcher());
+            context.getInterrupter().setFuture(arg.getInterrupter());
+            statisticsProcessor.processResponseStream(context);
+            return null;
+        });
+    }
+
+    /**
+     * Execute request with endless response. When {@link WithInterrupter#getOnComplete()} is specified and
+     * response support push mode, then body is decoded on IO thread by decoder and this method return
+     * immediately after receiving of headers, otherwise it block until end of stream.
+     * @param url url
+     * @param arg argument
+     * @param decoder factory of non blocking decoder, null when stream can be processed in blocking mode only
+     * @param extractor blocking processor of stream
+     * @return result
+     */
+    private ServiceCallResult executeStream(URI url, WithInterrupter arg,
+                                            Supplier<Consumer<ByteBuf>> decoder,
+                                            ResponseExtractor<Object> extractor) {
+        Consumer<ServiceCallResult> onComplete = arg.getOnComplete();
         ServiceCallResult callResult = new ServiceCallResult();
+        boolean detached = false;
         try {
-            ListenableFuture<Object> future = restTemplate.execute(url, HttpMethod.GET, null, response -> {
-                StreamContext<Statistics> context = new StreamContext<>(response.getBody(), arg.getWatcher());
-                context.getInterrupter().setFuture(arg.getInterrupter());
-                statisticsProcessor.processResponseStream(context);
-                return null;
+            ListenableFuture<Object> future = streamRestTemplate.execute(url, HttpMethod.GET, null, response -> {
+                if(onComplete == null || decoder == null || !(response instanceof StreamingResponse)) {
+                    return extractor.extractData(response);
+                }
+                StreamingResponse sr = (StreamingResponse) response;
+                sr.subscribe(new StreamConsumer(decoder.get(), onComplete));
+                arg.getInterrupter().addListener(sr::abort, MoreExecutors.directExecutor());
+                return Boolean.TRUE;
             });
-            waitFuture(callResult, future);
+            detached = Boolean.TRUE.equals(waitFuture(callResult, future));
         } catch (HttpStatusCodeException e) {
             processStatusCodeException(e, callResult, url);
+        } finally {
+            if(onComplete != null && !detached) {
+                onComplete.accept(callResult);
+            }
         }
         return callResult;
     }
 
-    private void waitFuture(ServiceCallResult callResult, ListenableFuture<Object> future) {
+    private final class StreamConsumer implements StreamingResponse.BodyConsumer {
+        private final Consumer<ByteBuf> decoder;
+        private final Consumer<ServiceCallResult> onComplete;
+
+        StreamConsumer(Consumer<ByteBuf> decoder, Consumer<ServiceCallResult> onComplete) {
+            this.decoder = decoder;
+            this.onComplete = onComplete;
+        }
+
+        @Override
+        public void onContent(ByteBuf content) {
+            decoder.accept(content);
+        }
+
+        @Override
+        public void onEnd(Throwable error) {
+            ServiceCallResult result = new ServiceCallResult();
+            if(error == null) {
+                result.code(ResultCode.OK);
+            } else {
+                checkOffline(error);
+                result.code(ResultCode.ERROR).message(error.toString());
+            }
+            onComplete.accept(result);
+        }
+    }
+
+    private Object waitFuture(ServiceCallResult callResult, ListenableFuture<Object> future) {
         //wait response
         try {
             // we need call get in any way, else response extractor will newer called
             // also, we can not use timeout here, because it must wait until client disconnect or interruption.
-            future.get();
+            Object res = future.get();
             online();
             callResult.setCode(ResultCode.OK);
+            return res;
         } catch (InterruptedException e) {
             callResult.setCode(ResultCode.ERROR);
             callResult.setMessage("Interrupted");
@@ -492,6 +580,7 @@ public class DockerServiceImpl implements DockerService {
                 throw Throwables.asRuntime(cause);
             }
         }
+        return null;
     }
 
     @Override
@@ -671,9 +760,6 @@ public class DockerServiceImpl implements DockerService {
     //containers/4fa6e0f0c678/logs?stderr=1&stdout=1&timestamps=1&follow=1&tail=10&since=1428990821
     @Override
     public ServiceCallResult getContainerLog(GetLogContainerArg arg) {
-
-        ServiceCallResult callResult = new ServiceCallResult();
-
         final Consumer<ProcessEvent> watcher = firstNonNull(arg.getWatcher(), Consumers.<ProcessEvent>nop());
         boolean stderr = arg.isStderr();
         boolean stdout = arg.isStdout();
@@ -688,18 +774,19 @@ public class DockerServiceImpl implements DockerService {
                 .queryParam("since", arg.getSince())
                 .queryParam("tail", arg.getTail())
                 .queryParam("timestamps", arg.isTimestamps()).build().toUri();
-        try {
-            ListenableFuture<Object> future = restTemplate.execute(url, HttpMethod.GET, null, response -> {
-                StreamContext<ProcessEvent> context = new StreamContext<>(response.getBody(), watcher);
-                context.getInterrupter().setFuture(arg.getInterrupter());
+        OutputStream output = arg.getOutput();
+        // output is blocking, so we can not write it from IO thread
+        Supplier<Consumer<ByteBuf>> decoder = output == null ? () -> new FrameStreamDecoder(watcher) : null;
+        return executeStream(url, arg, decoder, response -> {
+            StreamContext<ProcessEvent> context = new StreamContext<>(response.getBody(), watcher);
+            context.getInterrupter().setFuture(arg.getInterrupter());
+            if(output != null) {
+                frameStreamProcessor.copyResponseStream(context, output);
+            } else {
                 frameStreamProcessor.processResponseStream(context);
-                return null;
-            });
-            waitFuture(callResult, future);
-        } catch (HttpStatusCodeException e) {
-            processStatusCodeException(e, callResult, url);
-        }
-        return callResult;
+            }
+            return null;
+        });
     }
 
     @Override
@@ -709,7 +796,6 @@ public class DockerServiceImpl implements DockerService {
 
     @Override
     public ServiceCallResult subscribeToEvents(GetEventsArg arg) {
-        ServiceCallResult callResult = new ServiceCallResult();
         UriComponentsBuilder ucb = makeUrl("events");
         if(arg.getSince() != null) {
             ucb.queryParam("since", arg.getSince());
@@ -718,19 +804,13 @@ public class DockerServiceImpl implements DockerService {
             ucb.queryParam("until", arg.getUntil());
         }
         URI uri = ucb.build().toUri();
-        try {
-            ListenableFuture<Object> future = restTemplate.execute(uri, HttpMethod.GET, null, response -> {
-                online();// may be we need schedule it into another thread
-                StreamContext<DockerEvent> context = new StreamContext<>(response.getBody(), arg.getWatcher());
-                context.getInterrupter().setFuture(arg.getInterrupter());
-                eventStreamProcessor.processResponseStream(context);
-                return null;
-            });
-            waitFuture(callResult, future);
-        } catch (HttpStatusCodeException e) {
-            processStatusCodeException(e, callResult, uri);
-        }
-        return callResult;
+        return executeStream(uri, arg, () -> new JsonStreamDecoder<>(DockerEvent.class, arg.getWatcher()), response -> {
+            online();// may be we need schedule it into another thread
+            StreamContext<DockerEvent> context = new StreamContext<>(response.getBody(), arg.getWatcher());
+            context.getInterrupter().setFuture(arg.getInterrupter());
+            eventStreamProcessor.processResponseStream(context);
+            return null;
+        });
     }
 
     private void processStatusCodeException(HttpStatusCodeException e, ServiceCallResult res, URI uri) {
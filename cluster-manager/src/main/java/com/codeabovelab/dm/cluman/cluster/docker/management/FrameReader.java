@@ -22,22 +22,31 @@ import com.codeabovelab.dm.cluman.cluster.docker.model.StreamType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
  * Breaks the input into frame. Similar to how a buffered reader would readLies.
  * <p/>
+ * Reader reuse its buffers, so {@link #next()} with accessors of current frame does not allocate memory for
+ * each frame, payload of current frame is valid until next invocation of {@link #next()}.
+ * <p/>
  * See: {@link }http://docs.docker.com/v1.6/reference/api/docker_remote_api_v1.13/#attach-to-a-container}
  */
 public class FrameReader implements AutoCloseable {
 
     private static final int HEADER_SIZE = 8;
+    private static final int RAW_BUFFER_SIZE = 1024;
 
     private final InputStream inputStream;
 
     private boolean rawStreamDetected = false;
 
-    private final byte[] rawBuffer = new byte[1000];
+    private final byte[] header = new byte[HEADER_SIZE];
+    private byte[] buffer = new byte[RAW_BUFFER_SIZE];
+    private int length;
+    private StreamType streamType;
 
     public FrameReader(InputStream inputStream) {
         this.inputStream = inputStream;
@@ -60,61 +69,117 @@ public class FrameReader implements AutoCloseable {
      * @return A frame, or null if no more frames.
      */
     public Frame readFrame() throws IOException {
+        if(!next()) {
+            return null;
+        }
+        return new Frame(streamType, Arrays.copyOf(buffer, length));
+    }
 
+    /**
+     * Read next frame into internal buffer.
+     * @return false if no more frames
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
         if (rawStreamDetected) {
-
-            int read = inputStream.read(rawBuffer);
+            int read = inputStream.read(buffer, 0, RAW_BUFFER_SIZE);
             if (read == -1) {
-                return null;
+                return false;
             }
+            length = read;
+            return true;
+        }
+        if(!readFully(header, HEADER_SIZE, false)) {
+            return false;
+        }
+        streamType = streamType(header[0]);
+        if (streamType == StreamType.RAW) {
+            rawStreamDetected = true;
+            System.arraycopy(header, 0, buffer, 0, HEADER_SIZE);
+            length = HEADER_SIZE;
+            return true;
+        }
 
-            return new Frame(StreamType.RAW, Arrays.copyOf(rawBuffer, read));
-
-        } else {
-
-            byte[] header = new byte[HEADER_SIZE];
-
-            int actualHeaderSize = 0;
-
-            do {
-                int headerCount = inputStream.read(header, actualHeaderSize, HEADER_SIZE - actualHeaderSize);
+        int payloadSize = ((header[4] & 0xff) << 24) + ((header[5] & 0xff) << 16) + ((header[6] & 0xff) << 8)
+                + (header[7] & 0xff);
+        if (payloadSize < 0) {
+            throw new IOException("Invalid payload size: " + payloadSize);
+        }
+        if (buffer.length < payloadSize) {
+            buffer = new byte[Math.max(payloadSize, buffer.length * 2)];
+        }
+        readFully(buffer, payloadSize, true);
+        length = payloadSize;
+        return true;
+    }
 
-                if (headerCount == -1) {
-                    return null;
+    private boolean readFully(byte[] arr, int size, boolean required) throws IOException {
+        int actual = 0;
+        while (actual < size) {
+            int count = inputStream.read(arr, actual, size - actual);
+            if (count == -1) {
+                if (!required) {
+                    return false;
                 }
-                actualHeaderSize += headerCount;
-            } while (actualHeaderSize < HEADER_SIZE);
-
-            // HexDump.dump(header, 0, System.err, 0);
-
-            StreamType streamType = streamType(header[0]);
-
-            if (streamType.equals(StreamType.RAW)) {
-                rawStreamDetected = true;
-                return new Frame(StreamType.RAW, Arrays.copyOf(header, HEADER_SIZE));
+                throw new IOException(String.format("frame part must be %d bytes long, but was %d", size, actual));
             }
+            actual += count;
+        }
+        return true;
+    }
 
-            int payloadSize = ((header[4] & 0xff) << 24) + ((header[5] & 0xff) << 16) + ((header[6] & 0xff) << 8)
-                    + (header[7] & 0xff);
+    /**
+     * @return type of current frame
+     */
+    public StreamType getStreamType() {
+        return streamType;
+    }
 
-            byte[] payload = new byte[payloadSize];
-            int actualPayloadSize = 0;
+    /**
+     * Internal buffer which contains payload of current frame from zero to {@link #getLength()} offset.
+     * Buffer must not be modified.
+     * @return buffer
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
 
-            do {
-                int count = inputStream.read(payload, actualPayloadSize, payloadSize - actualPayloadSize);
+    /**
+     * @return length of current frame payload
+     */
+    public int getLength() {
+        return length;
+    }
 
-                if (count == -1) {
-                    if (actualPayloadSize != payloadSize) {
-                        throw new IOException(String.format("payload must be %d bytes long, but was %d", payloadSize,
-                                actualPayloadSize));
-                    }
-                    break;
-                }
-                actualPayloadSize += count;
-            } while (actualPayloadSize < payloadSize);
+    /**
+     * Message of current frame without leading and trailing whitespaces, like {@link Frame#getMessage()}.
+     * @return message
+     */
+    public String getMessage() {
+        int start = 0;
+        int end = length;
+        while (start < end && (buffer[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (buffer[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
 
-            return new Frame(streamType, payload);
+    /**
+     * Write payload of current frame without trailing whitespaces and followed by '\n', it allow to copy log without
+     * intermediate strings.
+     * @param out output
+     * @throws IOException
+     */
+    public void writeLine(OutputStream out) throws IOException {
+        int end = length;
+        while (end > 0 && (buffer[end - 1] & 0xff) <= ' ') {
+            end--;
         }
+        out.write(buffer, 0, end);
+        out.write('\n');
     }
 
     @Override
@@ -122,4 +187,4 @@ public class FrameReader implements AutoCloseable {
         inputStream.close();
     }
 
-}
\ No newline at end of file
+}
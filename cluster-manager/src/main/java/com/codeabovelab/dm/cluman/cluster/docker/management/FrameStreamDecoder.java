@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.cluster.docker.management;
+
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ProcessEvent;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Incremental decoder of multiplexed docker stream, it is non blocking analog of {@link FrameReader}.
+ * Each frame is passed to watcher as {@link ProcessEvent}. When stream is not multiplexed (container with tty)
+ * each received chunk is passed as is. Not thread safe, chunks must be passed sequentially.
+ */
+@Slf4j
+public class FrameStreamDecoder implements Consumer<ByteBuf> {
+
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Max size of single frame, it protect us from broken streams.
+     */
+    static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+
+    private final Consumer<ProcessEvent> watcher;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private int headerLength;
+    private byte[] payload = new byte[1024];
+    private int payloadSize;
+    private int payloadLength;
+    private boolean raw;
+
+    public FrameStreamDecoder(Consumer<ProcessEvent> watcher) {
+        this.watcher = watcher;
+    }
+
+    @Override
+    public void accept(ByteBuf buf) {
+        if(raw) {
+            readRaw(buf);
+            return;
+        }
+        while(buf.isReadable()) {
+            if(headerLength < HEADER_SIZE) {
+                if(headerLength == 0 && buf.getByte(buf.readerIndex()) > 2) {
+                    // stream type byte must be one of stdin, stdout or stderr, otherwise it is a raw stream
+                    raw = true;
+                    readRaw(buf);
+                    return;
+                }
+                int len = Math.min(HEADER_SIZE - headerLength, buf.readableBytes());
+                buf.readBytes(header, headerLength, len);
+                headerLength += len;
+                if(headerLength < HEADER_SIZE) {
+                    return;
+                }
+                payloadSize = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8)
+                  | (header[7] & 0xff);
+                if(payloadSize < 0 || payloadSize > MAX_FRAME_SIZE) {
+                    throw new IllegalStateException("Invalid frame size: " + payloadSize);
+                }
+                if(payload.length < payloadSize) {
+                    payload = Arrays.copyOf(payload, Math.max(payloadSize, payload.length * 2));
+                }
+                payloadLength = 0;
+            }
+            int len = Math.min(payloadSize - payloadLength, buf.readableBytes());
+            buf.readBytes(payload, payloadLength, len);
+            payloadLength += len;
+            if(payloadLength == payloadSize) {
+                headerLength = 0;
+                send(new String(payload, 0, payloadSize, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void readRaw(ByteBuf buf) {
+        int len = buf.readableBytes();
+        if(len == 0) {
+            return;
+        }
+        send(buf.readCharSequence(len, StandardCharsets.UTF_8).toString());
+    }
+
+    private void send(String msg) {
+        try {
+            ProcessEvent.watchRaw(watcher, msg.trim(), false);
+        } catch (Exception e) {
+            log.error("Cannot process frame", e);
+        }
+    }
+}
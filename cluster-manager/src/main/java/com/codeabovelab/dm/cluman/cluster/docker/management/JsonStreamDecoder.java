@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.cluster.docker.management;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.buffer.ByteBuf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Incremental decoder of stream of json objects. Unlike {@link JsonStreamProcessor} it does not block on
+ * reading, it receive chunks of stream and pass each completed object to watcher. Not thread safe, chunks must be
+ * passed sequentially.
+ */
+@Slf4j
+public class JsonStreamDecoder<T> implements Consumer<ByteBuf> {
+
+    /**
+     * Max size of single object, it protect us from broken streams.
+     */
+    static final int MAX_OBJECT_SIZE = 4 * 1024 * 1024;
+
+    private final ObjectReader reader;
+    private final Consumer<T> watcher;
+    private byte[] buffer = new byte[1024];
+    private int length;
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+
+    public JsonStreamDecoder(Class<T> clazz, Consumer<T> watcher) {
+        this.reader = JsonStreamProcessor.readerFor(clazz);
+        this.watcher = watcher;
+    }
+
+    @Override
+    public void accept(ByteBuf buf) {
+        final int end = buf.writerIndex();
+        for(int i = buf.readerIndex(); i < end; ++i) {
+            byte b = buf.getByte(i);
+            if(depth == 0 && b != '{') {
+                // skip separators between objects
+                continue;
+            }
+            append(b);
+            if(inString) {
+                if(escape) {
+                    escape = false;
+                } else if(b == '\\') {
+                    escape = true;
+                } else if(b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if(b == '"') {
+                inString = true;
+            } else if(b == '{' || b == '[') {
+                depth++;
+            } else if((b == '}' || b == ']') && --depth == 0) {
+                flush();
+            }
+        }
+        buf.readerIndex(end);
+    }
+
+    private void append(byte b) {
+        if(length == buffer.length) {
+            if(length >= MAX_OBJECT_SIZE) {
+                throw new IllegalStateException("Json object exceed max size " + MAX_OBJECT_SIZE);
+            }
+            buffer = Arrays.copyOf(buffer, length * 2);
+        }
+        buffer[length++] = b;
+    }
+
+    private boolean isEmpty() {
+        // buffer contains object from '{' to '}'
+        for(int i = 1; i < length - 1; ++i) {
+            if((buffer[i] & 0xff) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void flush() {
+        try {
+            // exclude empty item serialization into class #461
+            if(!isEmpty()) {
+                T next = reader.readValue(buffer, 0, length);
+                log.trace("Monitor value: {}", next);
+                watcher.accept(next);
+            }
+        } catch (Exception e) {
+            log.error("Error on process json item.", e);
+        } finally {
+            length = 0;
+        }
+    }
+}
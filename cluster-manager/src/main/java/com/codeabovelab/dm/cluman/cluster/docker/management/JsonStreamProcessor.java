@@ -17,37 +17,46 @@
 package com.codeabovelab.dm.cluman.cluster.docker.management;
 
 import com.codeabovelab.dm.common.utils.Throwables;
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.function.Consumer;
 
+/**
+ * Blocking processor of stream of json objects. Each object is bound directly from parser by cached reader,
+ * without intermediate tree, unknown fields are skipped by parser. Parser buffers are recycled by jackson.
+ */
 @Slf4j
 public class JsonStreamProcessor<T> implements ResponseStreamProcessor<T> {
 
-    private static final Logger LOG = LoggerFactory.getLogger(JsonStreamProcessor.class);
-
-    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     static {
         OBJECT_MAPPER.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, true);
+        OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
-    private final Class<T> clazz;
+    private final ObjectReader reader;
 
     public JsonStreamProcessor(Class<T> clazz) {
-        this.clazz = clazz;
+        this.reader = readerFor(clazz);
+    }
+
+    /**
+     * Reader which is used for binding of stream items.
+     * @param clazz type of items
+     * @return reader
+     */
+    static ObjectReader readerFor(Class<?> clazz) {
+        return OBJECT_MAPPER.readerFor(clazz);
     }
 
     @Override
@@ -57,25 +66,30 @@ public class JsonStreamProcessor<T> implements ResponseStreamProcessor<T> {
         final Thread thread = Thread.currentThread();
         SettableFuture<Boolean> interrupter = context.getInterrupter();
         interrupter.addListener(thread::interrupt, MoreExecutors.directExecutor());
-        try {
-            JsonParser jp = JSON_FACTORY.createParser(response);
-            Boolean closed = jp.isClosed();
-            JsonToken nextToken = jp.nextToken();
-            while (!closed && nextToken != null && nextToken != JsonToken.END_OBJECT && !interrupter.isDone()) {
+        try (JsonParser jp = OBJECT_MAPPER.getFactory().createParser(response)) {
+            JsonToken token;
+            while (!interrupter.isDone() && (token = jp.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    // skip unexpected top level values
+                    jp.skipChildren();
+                    continue;
+                }
+                // exclude empty item serialization into class #461
+                if (jp.nextToken() == JsonToken.END_OBJECT) {
+                    continue;
+                }
                 try {
-                    ObjectNode objectNode = OBJECT_MAPPER.readTree(jp);
-                    // exclude empty item serialization into class #461
-                    if (!objectNode.isEmpty(null)) {
-                        T next = OBJECT_MAPPER.treeToValue(objectNode, clazz);
-                        LOG.trace("Monitor value: {}", next);
-                        watcher.accept(next);
-                    }
+                    // bean and map deserializers can start from first field of object
+                    T next = reader.readValue(jp);
+                    log.trace("Monitor value: {}", next);
+                    watcher.accept(next);
                 } catch (Exception e) {
                     log.error("Error on process json item.", e);
+                    // skip rest of broken item
+                    while (!jp.getParsingContext().inRoot() && jp.nextToken() != null) {
+                        // nothing
+                    }
                 }
-
-                closed = jp.isClosed();
-                nextToken = jp.nextToken();
             }
         } catch (Throwable t) {
             throw Throwables.asRuntime(t);
@@ -83,11 +97,9 @@ public class JsonStreamProcessor<T> implements ResponseStreamProcessor<T> {
             try {
                 response.close();
             } catch (IOException e) {
-                LOG.error("Can't close stream", e);
-
+                log.error("Can't close stream", e);
             }
         }
-
     }
 
 }
@@ -17,13 +17,13 @@
 package com.codeabovelab.dm.cluman.cluster.docker.management;
 
 import com.codeabovelab.dm.cluman.cluster.docker.management.result.ProcessEvent;
-import com.codeabovelab.dm.cluman.cluster.docker.model.Frame;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.function.Consumer;
 
 public class ProcessEventProcessor implements ResponseStreamProcessor<ProcessEvent> {
@@ -37,15 +37,11 @@ public class ProcessEventProcessor implements ResponseStreamProcessor<ProcessEve
         SettableFuture<Boolean> interrupter = context.getInterrupter();
         interrupter.addListener(() -> Thread.currentThread().interrupt(), MoreExecutors.directExecutor());
         try (FrameReader frameReader = new FrameReader(response)) {
-
-            Frame frame = frameReader.readFrame();
-            while (frame != null && !interrupter.isDone()) {
+            while (!interrupter.isDone() && frameReader.next()) {
                 try {
-                    ProcessEvent.watchRaw(watcher, frame.getMessage(), false);
+                    ProcessEvent.watchRaw(watcher, frameReader.getMessage(), false);
                 } catch (Exception e) {
                     LOG.error("Cannot read body", e);
-                } finally {
-                    frame = frameReader.readFrame();
                 }
             }
         } catch (Exception t) {
@@ -53,4 +49,23 @@ public class ProcessEventProcessor implements ResponseStreamProcessor<ProcessEve
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Copy payload of each frame into output as line, without creation of intermediate events.
+     * @param context context, its watcher is not used
+     * @param out output
+     */
+    public void copyResponseStream(StreamContext<?> context, OutputStream out) {
+        InputStream response = context.getStream();
+        SettableFuture<Boolean> interrupter = context.getInterrupter();
+        interrupter.addListener(() -> Thread.currentThread().interrupt(), MoreExecutors.directExecutor());
+        try (FrameReader frameReader = new FrameReader(response)) {
+            while (!interrupter.isDone() && frameReader.next()) {
+                frameReader.writeLine(out);
+                out.flush();
+            }
+        } catch (Exception t) {
+            LOG.error("Cannot copy stream", t);
+        }
+    }
+}
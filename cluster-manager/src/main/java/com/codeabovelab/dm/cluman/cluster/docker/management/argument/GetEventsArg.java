@@ -17,6 +17,7 @@
 package com.codeabovelab.dm.cluman.cluster.docker.management.argument;
 
 import com.codeabovelab.dm.cluman.cluster.docker.model.DockerEvent;
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ServiceCallResult;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.Builder;
 import lombok.Data;
@@ -38,4 +39,9 @@ public class GetEventsArg implements WithInterrupter {
     private final Long until;
 
     private final SettableFuture<Boolean> interrupter = SettableFuture.create();
+
+    /**
+     * @see WithInterrupter#getOnComplete()
+     */
+    private final Consumer<ServiceCallResult> onComplete;
 }
@@ -17,11 +17,13 @@
 package com.codeabovelab.dm.cluman.cluster.docker.management.argument;
 
 import com.codeabovelab.dm.cluman.cluster.docker.management.result.ProcessEvent;
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ServiceCallResult;
 import com.google.common.base.MoreObjects;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.Builder;
 import lombok.Data;
 
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.function.Consumer;
 
@@ -36,6 +38,12 @@ public class GetLogContainerArg implements WithInterrupter {
 
     private final Consumer<ProcessEvent> watcher;
 
+    /**
+     * Optional output, when it is specified log is copied into it line by line without creation
+     * of {@link ProcessEvent} and watcher is not used. Note that it is written in blocking mode only.
+     */
+    private final OutputStream output;
+
     /**
      * show stdout log. Default true
      */
@@ -64,11 +72,17 @@ public class GetLogContainerArg implements WithInterrupter {
 
     private final SettableFuture<Boolean> interrupter = SettableFuture.create();
 
+    /**
+     * @see WithInterrupter#getOnComplete()
+     */
+    private final Consumer<ServiceCallResult> onComplete;
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
                 .add("id", id)
                 .add("watcher", watcher)
+                .add("output", output)
                 .add("stdout", stdout)
                 .add("stderr", stderr)
                 .add("follow", follow)
@@ -17,6 +17,7 @@
 package com.codeabovelab.dm.cluman.cluster.docker.management.argument;
 
 import com.codeabovelab.dm.cluman.cluster.docker.model.Statistics;
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ServiceCallResult;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.Builder;
 import lombok.Data;
@@ -32,4 +33,9 @@ public class GetStatisticsArg implements WithInterrupter {
     private final boolean stream;
     private final SettableFuture<Boolean> interrupter = SettableFuture.create();
     private final Consumer<Statistics> watcher;
+
+    /**
+     * @see WithInterrupter#getOnComplete()
+     */
+    private final Consumer<ServiceCallResult> onComplete;
 }
@@ -16,8 +16,11 @@
 
 package com.codeabovelab.dm.cluman.cluster.docker.management.argument;
 
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ServiceCallResult;
 import com.google.common.util.concurrent.SettableFuture;
 
+import java.util.function.Consumer;
+
 /**
  */
 public interface WithInterrupter {
@@ -26,4 +29,12 @@ public interface WithInterrupter {
      * @return
      */
     SettableFuture<Boolean> getInterrupter();
+
+    /**
+     * Optional handler of stream end. When it is specified, service may not block caller until end of stream,
+     * but return after receiving of response headers and decode stream on IO thread. Handler is invoked once,
+     * when stream is ended, but it may be not invoked when service return result with error.
+     * @return handler or null
+     */
+    Consumer<ServiceCallResult> getOnComplete();
 }
@@ -16,16 +16,12 @@
 
 package com.codeabovelab.dm.cluman.cluster.registry;
 
-import com.codeabovelab.dm.cluman.cluster.docker.model.ContainerConfig;
 import com.codeabovelab.dm.cluman.cluster.registry.data.*;
 import com.codeabovelab.dm.cluman.cluster.registry.model.RegistryAdapter;
 import com.codeabovelab.dm.cluman.cluster.registry.model.RegistryConfig;
 import com.codeabovelab.dm.cluman.cluster.registry.model.RegistryCredentials;
 import com.codeabovelab.dm.cluman.model.*;
 import com.codeabovelab.dm.common.utils.Throwables;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
@@ -42,7 +38,6 @@ import java.text.MessageFormat;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 import static org.springframework.web.util.UriComponentsBuilder.newInstance;
@@ -51,21 +46,19 @@ import static org.springframework.web.util.UriComponentsBuilder.newInstance;
  */
 abstract class AbstractV2RegistryService implements RegistryService {
     protected static final Logger log = LoggerFactory.getLogger(AbstractV2RegistryService.class);
+    private static final String HEADER_DIGEST = "Docker-Content-Digest";
     private final RegistryAdapter adapter;
-    private final LoadingCache<String[], ImageDescriptor> descriptorCache;
+    private final ImageDescriptorCache descriptorCache;
     private Consumer<RegistryEvent> eventConsumer;
 
-    AbstractV2RegistryService(RegistryAdapter adapter) {
+    /**
+     * @param adapter adapter
+     * @param descriptorCache shared cache of descriptors, when null service use own in-memory cache
+     */
+    AbstractV2RegistryService(RegistryAdapter adapter, ImageDescriptorCache descriptorCache) {
         this.adapter = adapter;
-        // we use non expired cache, because imageId is descriptor hash, and it cannot be modified
-        this.descriptorCache = CacheBuilder.<String[], ImageDescriptor>newBuilder()
-                .build(new CacheLoader<String[], ImageDescriptor>() {
-                    @Override
-                    public ImageDescriptor load(String[] key) throws Exception {
-                        Assert.isTrue(key.length == 2, "key array must have tho items");
-                        return getDescriptor(key[0], key[1]);
-                    }
-                });
+        this.descriptorCache = descriptorCache != null ? descriptorCache :
+          new ImageDescriptorCache(null, null, ImageDescriptorCache.DEFAULT_MAX_WEIGHT);
     }
 
     public Consumer<RegistryEvent> getEventConsumer() {
@@ -216,6 +209,30 @@ abstract class AbstractV2RegistryService implements RegistryService {
         }
     }
 
+    /**
+     * Give digest of manifest through HEAD request, it much cheaper than loading of manifest.
+     * @param name name of image
+     * @param reference tag or digest
+     * @return digest or null when manifest is not found
+     */
+    String getManifestDigest(String name, String reference) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(new MediaType("application", "vnd.docker.distribution.manifest.v2+json")));
+        HttpEntity entity = new HttpEntity<>(headers);
+        URI uri = forName(name).path("/manifests/").path(reference).build().toUri();
+        try {
+            ResponseEntity<Void> exchange = getRestTemplate().exchange(uri, HttpMethod.HEAD, entity, Void.class);
+            return exchange.getHeaders().getFirst(HEADER_DIGEST);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            // caller decide what to do, usually it load manifest instead
+            log.debug("can't fetch digest of manifest from {} by {}", uri, e.getMessage());
+            throw e;
+        }
+    }
+
     //{protocol}://{host}:{port}/v2/{name}/blobs/{digest}
     private <T> T getBlob(String name, String digest, Class<T> type) {
         return getRestTemplate().getForObject(forName(name).path("/blobs/").path(digest).build().toUri(), type);
@@ -231,22 +248,9 @@ abstract class AbstractV2RegistryService implements RegistryService {
         if (imageId == null) {
             return null;
         }
-        try {
-            return this.descriptorCache.get(new String[]{name, imageId});
-        } catch (ExecutionException e) {
-            throw Throwables.asRuntime(e.getCause());
-        }
-    }
-
-    private ImageDescriptor getDescriptor(String name, String imageId) {
-        ImageData imageData = getBlob(name, imageId, ImageData.class);
-        ContainerConfig cc = imageData.getContainerConfig();
-        return ImageDescriptorImpl.builder()
-                .id(imageId)
-                .containerConfig(cc)
-                .created(imageData.getCreated())
-                .labels(cc.getLabels())
-                .build();
+        // imageId is digest of config, so it cannot be modified
+        ImageDescriptorCache.Key key = new ImageDescriptorCache.Key(getConfig().getName(), toRelative(name), imageId);
+        return this.descriptorCache.get(key, () -> getBlob(name, imageId, ImageData.class));
     }
 
     /**
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.cluster.registry;
+
+import com.codeabovelab.dm.cluman.cluster.docker.model.ContainerConfig;
+import com.codeabovelab.dm.cluman.cluster.registry.data.ImageData;
+import com.codeabovelab.dm.cluman.model.ImageDescriptor;
+import com.codeabovelab.dm.cluman.model.ImageDescriptorImpl;
+import com.codeabovelab.dm.common.fc.FbStorage;
+import com.codeabovelab.dm.common.utils.Throwables;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of image descriptors, which is shared between all registries. <p/>
+ * Descriptor is identified by digest of image config, therefore it never expires, but cache is bounded by
+ * approximate size of descriptors. Optionally (see 'dm.registry.descriptorCache.persistent', disabled by default)
+ * descriptors are stored on disk, so they survive restart, disk storage is bounded too: least recently used files
+ * are removed when its total size exceed limit. <p/>
+ * Note that stored files contain image config with 'Env' values, which often hold credentials, so the directory
+ * must be protected like other data of application.
+ */
+@Slf4j
+@Component
+public class ImageDescriptorCache implements PublicMetrics {
+
+    /**
+     * Key of descriptor.
+     */
+    @Data
+    public static final class Key {
+        private final String registry;
+        private final String repository;
+        /**
+         * Digest of image config blob.
+         */
+        private final String digest;
+    }
+
+    /**
+     * Default max weight, 32MiB.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 32L * 1024L * 1024L;
+    /**
+     * Default max size of on disk data, 256MiB.
+     */
+    public static final long DEFAULT_MAX_DISK_SIZE = 256L * 1024L * 1024L;
+    private static final String SUFFIX = ".json";
+    private static final String PREFIX = "registry.descriptors.cache.";
+    private final Cache<Key, ImageDescriptor> cache;
+    private final ObjectMapper objectMapper;
+    private final File dir;
+    private final long maxDiskSize;
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong diskSize = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final Object pruneLock = new Object();
+
+    @Autowired
+    public ImageDescriptorCache(ObjectMapper objectMapper,
+                                FbStorage fbStorage,
+                                @Value("${dm.registry.descriptorCache.maxWeight:33554432}") long maxWeight,
+                                @Value("${dm.registry.descriptorCache.persistent:false}") boolean persistent,
+                                @Value("${dm.registry.descriptorCache.maxDiskSize:268435456}") long maxDiskSize) {
+        this(objectMapper, persistent ? new File(fbStorage.getStorageDir(), "registry-descriptors") : null, maxWeight, maxDiskSize);
+    }
+
+    /**
+     * Create cache with default limit of on disk data.
+     * @see #ImageDescriptorCache(ObjectMapper, File, long, long)
+     */
+    public ImageDescriptorCache(ObjectMapper objectMapper, File dir, long maxWeight) {
+        this(objectMapper, dir, maxWeight, DEFAULT_MAX_DISK_SIZE);
+    }
+
+    /**
+     * Create cache.
+     * @param objectMapper mapper for on disk data, may be null when dir is null
+     * @param dir directory for on disk data, null disable storing on disk
+     * @param maxWeight approximate max size of in-memory cache in bytes
+     * @param maxDiskSize max size of on disk data in bytes
+     */
+    public ImageDescriptorCache(ObjectMapper objectMapper, File dir, long maxWeight, long maxDiskSize) {
+        this.objectMapper = objectMapper;
+        this.dir = dir;
+        this.maxDiskSize = maxDiskSize;
+        if(this.dir != null) {
+            this.dir.mkdirs();
+            Assert.isTrue(this.dir.isDirectory(), this.dir.getAbsolutePath() + " is not a directory.");
+            initDisk();
+        }
+        this.cache = CacheBuilder.newBuilder()
+          .maximumWeight(maxWeight)
+          .weigher(ImageDescriptorCache::weigh)
+          .recordStats()
+          .build();
+    }
+
+    /**
+     * Get descriptor from cache, disk or load it through loader.
+     * @param key key
+     * @param loader loader of image config blob
+     * @return descriptor, never null
+     */
+    public ImageDescriptor get(Key key, Supplier<ImageData> loader) {
+        try {
+            return cache.get(key, () -> load(key, loader));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.asRuntime(e.getCause());
+        }
+    }
+
+    private ImageDescriptor load(Key key, Supplier<ImageData> loader) {
+        File file = getFile(key);
+        ImageData data = read(file);
+        if(data != null) {
+            diskHits.incrementAndGet();
+        } else {
+            data = loader.get();
+            Assert.notNull(data, "Loader return null for " + key);
+            write(file, data);
+        }
+        return toDescriptor(key.getDigest(), data);
+    }
+
+    private void initDisk() {
+        File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        long size = 0;
+        for(File file: files) {
+            if(file.getName().endsWith(SUFFIX)) {
+                size += file.length();
+            } else if(file.getName().endsWith(".tmp")) {
+                // remains of interrupted write
+                file.delete();
+            }
+        }
+        diskSize.set(size);
+        prune(null);
+    }
+
+    private File getFile(Key key) {
+        if(dir == null) {
+            return null;
+        }
+        String str = key.getRegistry() + "\n" + key.getRepository() + "\n" + key.getDigest();
+        return new File(dir, Hashing.sha256().hashString(str, StandardCharsets.UTF_8).toString() + SUFFIX);
+    }
+
+    private ImageData read(File file) {
+        if(file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            ImageData data = objectMapper.readValue(file, ImageData.class);
+            // it used for eviction of least recently used files
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (Exception e) {
+            log.warn("Can not read cached descriptor from {}, it will be removed: {}", file, e.toString());
+            long length = file.length();
+            if(file.delete()) {
+                diskSize.addAndGet(-length);
+            }
+            return null;
+        }
+    }
+
+    private void write(File file, ImageData data) {
+        if(file == null) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            objectMapper.writeValue(tmp, data);
+            long length = tmp.length() - file.length();
+            // rename prevent reading of partially written file
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if(diskSize.addAndGet(length) > maxDiskSize) {
+                prune(file);
+            }
+        } catch (Exception e) {
+            log.warn("Can not write cached descriptor to {}: {}", file, e.toString());
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Remove least recently used files until total size is less than 3/4 of limit, so we do not scan directory
+     * on each write.
+     * @param keep just written file, it is never removed
+     */
+    private void prune(File keep) {
+        synchronized (pruneLock) {
+            if(diskSize.get() <= maxDiskSize) {
+                return;
+            }
+            File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+            if(files == null) {
+                return;
+            }
+            // modification time may be changed during sort, so we read it once
+            Map<File, Long> times = new HashMap<>();
+            long size = 0;
+            for(File file: files) {
+                times.put(file, file.lastModified());
+                size += file.length();
+            }
+            List<File> list = new ArrayList<>(times.keySet());
+            list.sort(Comparator.comparing(times::get));
+            long target = maxDiskSize / 4 * 3;
+            for(File file: list) {
+                if(size <= target) {
+                    break;
+                }
+                if(file.equals(keep)) {
+                    continue;
+                }
+                long length = file.length();
+                if(file.delete()) {
+                    size -= length;
+                    diskEvictions.incrementAndGet();
+                }
+            }
+            // also it fix counter when files were changed outside
+            diskSize.set(size);
+        }
+    }
+
+    static ImageDescriptor toDescriptor(String imageId, ImageData imageData) {
+        ContainerConfig cc = imageData.getContainerConfig();
+        return ImageDescriptorImpl.builder()
+          .id(imageId)
+          .containerConfig(cc)
+          .created(imageData.getCreated())
+          .labels(cc.getLabels())
+          .build();
+    }
+
+    /**
+     * Approximate size of descriptor in bytes, we count only fields which can be large.
+     */
+    private static int weigh(Key key, ImageDescriptor descriptor) {
+        int weight = 512;
+        Map<String, String> labels = descriptor.getLabels();
+        if(labels != null) {
+            for(Map.Entry<String, String> e: labels.entrySet()) {
+                weight += 2 * (e.getKey().length() + (e.getValue() == null ? 0 : e.getValue().length()));
+            }
+        }
+        ContainerConfig cc = descriptor.getContainerConfig();
+        if(cc != null) {
+            weight += weigh(cc.getEnv()) + weigh(cc.getCmd()) + weigh(cc.getEntrypoint());
+        }
+        return weight;
+    }
+
+    private static int weigh(List<String> list) {
+        if(list == null) {
+            return 0;
+        }
+        int weight = 0;
+        for(String str: list) {
+            weight += str == null ? 0 : 2 * str.length();
+        }
+        return weight;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Count of descriptors which is loaded from disk instead of registry.
+     * @return count of loads from disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Count of files which is removed from disk due to size limit.
+     * @return count of removed files
+     */
+    public long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+
+    /**
+     * Approximate size of on disk data.
+     * @return size in bytes
+     */
+    public long getDiskSize() {
+        return diskSize.get();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> list = new ArrayList<>();
+        list.add(new Metric<>(PREFIX + "size", cache.size()));
+        list.add(new Metric<>(PREFIX + "hits", stats.hitCount()));
+        list.add(new Metric<>(PREFIX + "misses", stats.missCount()));
+        list.add(new Metric<>(PREFIX + "evictions", stats.evictionCount()));
+        list.add(new Metric<>(PREFIX + "diskHits", diskHits.get()));
+        list.add(new Metric<>(PREFIX + "diskSize", diskSize.get()));
+        list.add(new Metric<>(PREFIX + "diskEvictions", diskEvictions.get()));
+        return list;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.cluster.registry;
+
+import com.codeabovelab.dm.cluman.cluster.registry.data.SearchResult;
+import com.codeabovelab.dm.cluman.model.ImageDescriptor;
+
+import java.util.*;
+
+/**
+ * Immutable inverted index of image names and descriptions, it built from snapshot of registry catalog. <p/>
+ * Each document is indexed by trigrams of its name and description, so we find candidates by intersection of
+ * posting lists and then check and rank only them.
+ */
+final class ImageNameIndex {
+
+    private static final int GRAM = 3;
+    private static final int SCORE_EQUALS = 100;
+    private static final int SCORE_TOKEN = 50;
+    private static final int SCORE_PREFIX = 30;
+    private static final int SCORE_NAME = 20;
+    private static final int SCORE_DESCRIPTION = 5;
+    static final ImageNameIndex EMPTY = new ImageNameIndex(Collections.emptyMap());
+
+    private final Map<String, SearchIndex.ImageInfo> images;
+    /**
+     * Names of documents, in order of {@link ImageNameComparator#STRING}, so index of document is also its order
+     * in results with equal score.
+     */
+    private final String[] names;
+    private final String[] lowerNames;
+    private final String[] descriptions;
+    private final String[] lowerDescriptions;
+    private final Map<String, int[]> postings;
+
+    ImageNameIndex(Map<String, SearchIndex.ImageInfo> images) {
+        this.images = images;
+        List<String> sorted = new ArrayList<>(images.keySet());
+        sorted.sort(ImageNameComparator.STRING);
+        int size = sorted.size();
+        this.names = sorted.toArray(new String[size]);
+        this.lowerNames = new String[size];
+        this.descriptions = new String[size];
+        this.lowerDescriptions = new String[size];
+        Map<String, List<Integer>> tmp = new HashMap<>();
+        for(int i = 0; i < size; i++) {
+            String name = names[i];
+            lowerNames[i] = name.toLowerCase(Locale.ROOT);
+            descriptions[i] = getDescription(images.get(name));
+            lowerDescriptions[i] = descriptions[i].toLowerCase(Locale.ROOT);
+            Set<String> grams = new HashSet<>();
+            addGrams(grams, lowerNames[i]);
+            addGrams(grams, lowerDescriptions[i]);
+            for(String gram: grams) {
+                tmp.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+        }
+        this.postings = new HashMap<>(tmp.size());
+        // ids are added in ascending order, so posting lists are sorted
+        tmp.forEach((gram, ids) -> postings.put(gram, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    private static void addGrams(Collection<String> grams, String str) {
+        for(int i = 0; i + GRAM <= str.length(); i++) {
+            grams.add(str.substring(i, i + GRAM));
+        }
+    }
+
+    static String getDescription(SearchIndex.ImageInfo ii) {
+        String description = null;
+        ImageDescriptor descriptor = ii == null ? null : ii.getDescriptor();
+        if(descriptor != null) {
+            Map<String, String> labels = descriptor.getLabels();
+            description = labels == null? null :  labels.get(SearchIndex.LABEL_DESCRIPTION);
+        }
+        if(description == null) {
+            description = "";
+        }
+        return description;
+    }
+
+    Map<String, SearchIndex.ImageInfo> getImages() {
+        return images;
+    }
+
+    /**
+     * Find images by substring of name or description.
+     * @param query query
+     * @param page number of page, from zero
+     * @param count size of page, non positive value mean all results on one page
+     * @param registryName name of registry, it added to results
+     * @return result, never null
+     */
+    SearchResult search(String query, int page, int count, String registryName) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        List<int[]> hits = new ArrayList<>();
+        int[] candidates = findCandidates(lowerQuery);
+        for(int i = 0; i < (candidates == null ? names.length : candidates.length); i++) {
+            int doc = candidates == null ? i : candidates[i];
+            int score = score(doc, lowerQuery);
+            if(score > 0) {
+                hits.add(new int[]{doc, score});
+            }
+        }
+        hits.sort((l, r) -> {
+            int res = Integer.compare(r[1], l[1]);
+            return res != 0 ? res : Integer.compare(l[0], r[0]);
+        });
+        int total = hits.size();
+        int pageSize = count > 0 ? count : Math.max(total, 1);
+        int numPages = Math.max(1, (total + pageSize - 1) / pageSize);
+        int from = Math.min(Math.max(page, 0) * pageSize, total);
+        int to = Math.min(from + pageSize, total);
+        List<SearchResult.Result> results = new ArrayList<>(to - from);
+        for(int[] hit: hits.subList(from, to)) {
+            SearchResult.Result res = new SearchResult.Result();
+            res.setName(names[hit[0]]);
+            res.setDescription(descriptions[hit[0]]);
+            res.getRegistries().add(registryName);
+            results.add(res);
+        }
+        SearchResult result = new SearchResult();
+        result.setQuery(query);
+        result.setPage(page);
+        result.setPageSize(pageSize);
+        result.setNumPages(numPages);
+        result.setNumResults(total);
+        result.setResults(results);
+        return result;
+    }
+
+    /**
+     * Intersect posting lists of query grams.
+     * @return sorted ids of candidates or null when query is too short and we must check all documents
+     */
+    private int[] findCandidates(String lowerQuery) {
+        if(lowerQuery.length() < GRAM) {
+            return null;
+        }
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, lowerQuery);
+        List<int[]> lists = new ArrayList<>(grams.size());
+        for(String gram: grams) {
+            int[] list = postings.get(gram);
+            if(list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        // begin from shortest list for reduce work
+        lists.sort(Comparator.comparingInt(l -> l.length));
+        int[] res = lists.get(0);
+        for(int i = 1; i < lists.size() && res.length > 0; i++) {
+            res = intersect(res, lists.get(i));
+        }
+        return res;
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] res = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        int l = 0;
+        int r = 0;
+        while(l < left.length && r < right.length) {
+            int cmp = Integer.compare(left[l], right[r]);
+            if(cmp == 0) {
+                res[size++] = left[l];
+                l++;
+                r++;
+            } else if(cmp < 0) {
+                l++;
+            } else {
+                r++;
+            }
+        }
+        return Arrays.copyOf(res, size);
+    }
+
+    /**
+     * Relevance of document, grams match does not mean that document contains query, therefore we check it here.
+     * @return score or zero when document does not match
+     */
+    private int score(int doc, String lowerQuery) {
+        String name = lowerNames[doc];
+        int pos = name.indexOf(lowerQuery);
+        if(pos >= 0) {
+            int end = pos + lowerQuery.length();
+            // query begins at start of path segment, for example after registry or namespace
+            boolean segment = pos == 0 || name.charAt(pos - 1) == '/';
+            boolean tokenStart = segment || isDelimiter(name.charAt(pos - 1));
+            boolean tokenEnd = end == name.length() || isDelimiter(name.charAt(end));
+            if(segment && end == name.length()) {
+                return SCORE_EQUALS;
+            }
+            if(tokenStart && tokenEnd) {
+                return SCORE_TOKEN;
+            }
+            return tokenStart ? SCORE_PREFIX : SCORE_NAME;
+        }
+        return lowerDescriptions[doc].contains(lowerQuery) ? SCORE_DESCRIPTION : 0;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == '/' || c == '-' || c == '_' || c == '.' || c == ':';
+    }
+}
@@ -24,6 +24,7 @@ import com.google.common.base.CharMatcher;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -37,12 +38,19 @@ import static org.springframework.web.util.UriComponentsBuilder.newInstance;
 public class PublicDockerHubRegistryImpl extends AbstractV2RegistryService implements DockerHubRegistry {
 
     private final String dockerHubSearchRegistryUrl;
+    /**
+     * Template with timeouts limited by search timeout, other requests use template of adapter.
+     */
+    private final RestTemplate searchRestTemplate;
 
     @Builder
     public PublicDockerHubRegistryImpl(RegistryAdapter adapter,
-                                       String dockerHubSearchRegistryUrl) {
-        super(adapter);
+                                       ImageDescriptorCache descriptorCache,
+                                       String dockerHubSearchRegistryUrl,
+                                       RestTemplate searchRestTemplate) {
+        super(adapter, descriptorCache);
         this.dockerHubSearchRegistryUrl = dockerHubSearchRegistryUrl;
+        this.searchRestTemplate = searchRestTemplate == null ? adapter.getRestTemplate() : searchRestTemplate;
     }
 
     @Override
@@ -54,7 +62,7 @@ public class PublicDockerHubRegistryImpl extends AbstractV2RegistryService imple
               .queryParam("page", page + 1 /* hub numbers pages from 1 instead of 0*/)
               .queryParam("n", count)
               .build().encode("utf-8");
-            SearchResult res = getRestTemplate().getForObject(build.toUri(), SearchResult.class);
+            SearchResult res = searchRestTemplate.getForObject(build.toUri(), SearchResult.class);
             //first page in hub will start from '1', it may confuse our api users
             res.setPage(res.getPage() - 1);
             res.getResults().forEach(r -> r.getRegistries().add(getConfig().getName()));
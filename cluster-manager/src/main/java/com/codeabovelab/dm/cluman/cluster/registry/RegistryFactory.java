@@ -18,6 +18,7 @@ package com.codeabovelab.dm.cluman.cluster.registry;
 
 import com.codeabovelab.dm.cluman.cluster.registry.aws.*;
 import com.codeabovelab.dm.cluman.cluster.registry.model.*;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -37,6 +38,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -62,10 +64,29 @@ public class RegistryFactory implements DisposableBean {
     @Value("${dm.registry.search.cacheMinutes:10}")
     private long searchCacheMinutes;
 
+    @Value("${dm.registry.search.concurrency:4}")
+    private int searchConcurrency;
+
+    @Value("${dm.registry.search.timeout:10000}")
+    private long searchTimeout;
+
     @Autowired
     private AwsService awsService;
 
+    @Autowired
+    private ImageDescriptorCache descriptorCache;
+
     private final ScheduledExecutorService scheduledExecutorService;
+    /**
+     * Executor for loading of search indexes, it shared between registries. Each registry runs own
+     * {@link SearchIndex.Config#getConcurrency()} workers, so threads are handed off directly instead of queueing
+     * workers of one registry behind workers of another.
+     */
+    private final ExecutorService searchExecutorService;
+    /**
+     * Executor for parallel search queries to registries.
+     */
+    private final ExecutorService queryExecutorService;
     private final Map<Class<?>, RegistryFactoryAdapter> adapters;
 
     @Autowired
@@ -91,6 +112,7 @@ public class RegistryFactory implements DisposableBean {
               public RegistryService create(RegistryFactory factory, PrivateRegistryConfig config) {
                   return RegistryServiceImpl.builder()
                     .adapter(new PrivateRegistryAdapter(config, RegistryFactory.this::restTemplate))
+                    .descriptorCache(descriptorCache)
                     .searchConfig(getSearchIndexDefaultConfig())
                     .build();
               }
@@ -109,9 +131,38 @@ public class RegistryFactory implements DisposableBean {
                 .setDaemon(true)
                 .setNameFormat(getClass().getSimpleName() + "-scheduled-%d")
                 .build());
+        this.searchExecutorService = ExecutorUtils.executorBuilder()
+          .name(getClass().getSimpleName() + "-search")
+          .coreSize(4)
+          .maxSize(64)
+          .queueSize(0)
+          .build();
+        // each query must be started immediately, otherwise it will wait in queue for timeouts of previous queries,
+        // so we use direct hand-off, on overload query is executed in caller thread
+        this.queryExecutorService = ExecutorUtils.executorBuilder()
+          .name(getClass().getSimpleName() + "-query")
+          .coreSize(2)
+          .maxSize(32)
+          .queueSize(0)
+          .build();
     }
 
     public RestTemplate restTemplate(RegistryAuthAdapter registryAuthAdapter) {
+        return restTemplate(registryAuthAdapter, readTimeOut, connectTimeOut);
+    }
+
+    /**
+     * Rest template for search queries which are sent to registry. Thread which is blocked in socket can not be
+     * interrupted, so we do not allow it to wait longer than search.
+     * @param registryAuthAdapter auth adapter
+     * @return rest template with timeouts limited by search timeout
+     */
+    RestTemplate searchRestTemplate(RegistryAuthAdapter registryAuthAdapter) {
+        int searchTo = searchTimeout > 0 ? (int) Math.min(searchTimeout, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+        return restTemplate(registryAuthAdapter, Math.min(readTimeOut, searchTo), Math.min(connectTimeOut, searchTo));
+    }
+
+    private RestTemplate restTemplate(RegistryAuthAdapter registryAuthAdapter, int readTimeOut, int connectTimeOut) {
         RestTemplate restTemplate = new RestTemplate();
         List<HttpMessageConverter<?>> converters = restTemplate.getMessageConverters();
         SimpleClientHttpRequestFactory rf =
@@ -141,6 +192,7 @@ public class RegistryFactory implements DisposableBean {
     DockerHubRegistry createHubRegistryService(HubRegistryConfig config) {
         DockerHubRegistryImpl registryService = DockerHubRegistryImpl.builder()
                 .adapter(new HubRegistryAdapter(config, this::restTemplate, dockerHubUrl))
+                .descriptorCache(descriptorCache)
                 .build();
         return new DockerHubRegistryServiceWrapper(registryService, config.getUsername());
 
@@ -149,7 +201,9 @@ public class RegistryFactory implements DisposableBean {
     DockerHubRegistry createPublicHubRegistryService(HubRegistryConfig config) {
         PublicDockerHubRegistryImpl registryService = PublicDockerHubRegistryImpl.builder()
                 .adapter(new HubRegistryAdapter(config, this::restTemplate, dockerHubUrl))
+                .descriptorCache(descriptorCache)
                 .dockerHubSearchRegistryUrl(dockerSearchHubUrl)
+                .searchRestTemplate(searchRestTemplate(new DockerRegistryAuthAdapter(() -> config)))
                 .build();
         return registryService;
 
@@ -158,6 +212,8 @@ public class RegistryFactory implements DisposableBean {
     @Override
     public void destroy() throws Exception {
         this.scheduledExecutorService.shutdownNow();
+        this.searchExecutorService.shutdownNow();
+        this.queryExecutorService.shutdownNow();
     }
 
     public <T extends RegistryConfig> RegistryService createRegistryService(T config) {
@@ -179,9 +235,35 @@ public class RegistryFactory implements DisposableBean {
         return (RegistryFactoryAdapter<T>) adapter;
     }
 
+    /**
+     * Cache of image descriptors which is shared between all registries.
+     * @return cache
+     */
+    public ImageDescriptorCache getDescriptorCache() {
+        return descriptorCache;
+    }
+
+    /**
+     * Executor for parallel search queries to registries.
+     * @return executor
+     */
+    public ExecutorService getQueryExecutor() {
+        return queryExecutorService;
+    }
+
+    /**
+     * Timeout of search in multiple registries.
+     * @return timeout in milliseconds
+     */
+    public long getSearchTimeout() {
+        return searchTimeout;
+    }
+
     public SearchIndex.Config getSearchIndexDefaultConfig() {
         SearchIndex.Config config = new SearchIndex.Config();
         config.setScheduledExecutorService(scheduledExecutorService);
+        config.setExecutorService(searchExecutorService);
+        config.setConcurrency(searchConcurrency);
         config.setCacheMinutes(this.searchCacheMinutes);
         return config;
     }
@@ -40,6 +40,7 @@ import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -298,11 +299,22 @@ public class RegistryRepository implements SupportSearch {
 
     @Override
     public SearchResult search(String query, final int page, final int size) {
+        List<RegistryService> services = new ArrayList<>(map.values());
+        services.add(defaultRegistry);
+        return search(services, query, page, size);
+    }
+
+    /**
+     * Search in specified registries in parallel, registry which does not respond in time is skipped.
+     * @param services registries, results are merged in its order
+     * @param query query
+     * @param page number of page, from zero
+     * @param size size of page
+     * @return merged result
+     */
+    public SearchResult search(List<RegistryService> services, String query, final int page, final int size) {
         RegistrySearchHelper rsh = new RegistrySearchHelper(query, page, size);
-        for (RegistryService service : map.values()) {
-            rsh.search(service);
-        }
-        rsh.search(defaultRegistry);
+        rsh.search(services, factory.getQueryExecutor(), factory.getSearchTimeout());
         return rsh.collect();
     }
 
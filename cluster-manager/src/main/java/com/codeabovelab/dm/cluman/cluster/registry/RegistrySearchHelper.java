@@ -19,10 +19,8 @@ package com.codeabovelab.dm.cluman.cluster.registry;
 import com.codeabovelab.dm.cluman.cluster.registry.data.SearchResult;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Helper utility for search in multiple registry. May be reused.
@@ -31,9 +29,9 @@ import java.util.Map;
 public class RegistrySearchHelper {
 
     /**
-     * Max count of pages. But now we show only first page.
+     * Max count of pages which is requested from one registry.
      */
-    private static final int MAX_PAGES = 1;
+    private static final int MAX_PAGES = 10;
     /**
      *  Max count of results on one page.
      */
@@ -42,53 +40,115 @@ public class RegistrySearchHelper {
 
     private final Map<String, SearchResult.Result> results = new LinkedHashMap<>();
     private final String query;
-    private final SearchResult res;
+    private final int page;
+    private final int pageSize;
 
+    /**
+     * @param query query
+     * @param page number of page, from zero
+     * @param pageSize size of page, non positive value mean all results on one page
+     */
     public RegistrySearchHelper(String query, int page, int pageSize) {
         this.query = query;
-        this.res = new SearchResult();
-        res.setNumPages(1);
-        res.setPage(0);
-        res.setQuery(query);
+        this.page = Math.max(page, 0);
+        this.pageSize = pageSize;
     }
 
     public void search(RegistryService service) {
+        merge(searchIn(service));
+    }
+
+    /**
+     * Search in registries in parallel. Results are merged in order of registries, registry which does not respond
+     * in specified time is skipped.
+     * @param services registries
+     * @param executor executor
+     * @param timeout timeout in milliseconds for all registries
+     */
+    public void search(List<RegistryService> services, ExecutorService executor, long timeout) {
+        List<Future<List<SearchResult.Result>>> futures = new ArrayList<>(services.size());
+        for(RegistryService service: services) {
+            Future<List<SearchResult.Result>> future;
+            try {
+                future = executor.submit(() -> searchIn(service));
+            } catch (RejectedExecutionException e) {
+                // executor is overloaded, so we do it in current thread
+                future = CompletableFuture.completedFuture(searchIn(service));
+            }
+            futures.add(future);
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        for(int i = 0; i < futures.size(); i++) {
+            Future<List<SearchResult.Result>> future = futures.get(i);
+            String name = services.get(i).getConfig().getName();
+            try {
+                merge(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Search \"{}\" on {} is timed out, it skipped.", query, name);
+            } catch (ExecutionException e) {
+                log.error("Search \"{}\" on {} is failed.", query, name, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                return;
+            }
+        }
+    }
+
+    private List<SearchResult.Result> searchIn(RegistryService service) {
         //service may return small peace of result instead of all
         // but we do not want to make too many requests
+        int need = pageSize > 0 ? (page + 1) * pageSize : Integer.MAX_VALUE;
         int count = MAX_PAGES;
         int page  = 0;
         int pageSize  = MAX_PAGE_SIZE;
-        while(count > 0) {
+        List<SearchResult.Result> list = new ArrayList<>();
+        while(count > 0 && list.size() < need) {
             count--;
             SearchResult tmp = service.search(query, page, pageSize);
             if(tmp == null) {
                 log.warn("Search \"{}\" on {} will ended with error, see log", query, service.getConfig().getName());
-                return;
+                break;
             }
             List<SearchResult.Result> localResults = tmp.getResults();
             if(localResults != null) {
-                for(SearchResult.Result result: localResults) {
-                    SearchResult.Result exists = results.putIfAbsent(result.getName(), result);
-                    if(exists != null) {
-                        exists.getRegistries().addAll(result.getRegistries());
-                    }
-                }
+                list.addAll(localResults);
             }
             page = tmp.getPage() + 1;
             if(page >= tmp.getNumPages()) {
-                return;
+                break;
             }
             pageSize = tmp.getPageSize();
             if(pageSize <= 0) {
                 pageSize = MAX_PAGE_SIZE;
             }
         }
+        return list;
+    }
+
+    private void merge(List<SearchResult.Result> localResults) {
+        for(SearchResult.Result result: localResults) {
+            SearchResult.Result exists = results.putIfAbsent(result.getName(), result);
+            if(exists != null) {
+                exists.getRegistries().addAll(result.getRegistries());
+            }
+        }
     }
 
     public SearchResult collect() {
-        res.setNumResults(results.size());
-        res.setPageSize(res.getNumResults());
-        res.setResults(new ArrayList<>(results.values()));
+        SearchResult res = new SearchResult();
+        res.setQuery(query);
+        res.setPage(page);
+        int total = results.size();
+        int size = pageSize > 0 ? pageSize : Math.max(total, 1);
+        List<SearchResult.Result> list = new ArrayList<>(results.values());
+        int from = Math.min(page * size, total);
+        int to = Math.min(from + size, total);
+        res.setResults(new ArrayList<>(list.subList(from, to)));
+        res.setNumResults(total);
+        res.setPageSize(size);
+        res.setNumPages(Math.max(1, (total + size - 1) / size));
         // clear for reuse
         results.clear();
         return res;
@@ -32,8 +32,9 @@ public class RegistryServiceImpl extends AbstractV2RegistryService implements Au
 
     @Builder
     public RegistryServiceImpl(RegistryAdapter adapter,
+                               ImageDescriptorCache descriptorCache,
                                SearchIndex.Config searchConfig) {
-        super(adapter);
+        super(adapter, descriptorCache);
         this.searchIndex = new SearchIndex(this, searchConfig);
     }
 
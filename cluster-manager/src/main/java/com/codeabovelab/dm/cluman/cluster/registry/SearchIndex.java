@@ -23,16 +23,17 @@ import com.codeabovelab.dm.cluman.cluster.registry.data.Tags;
 import com.codeabovelab.dm.cluman.model.ImageDescriptor;
 import com.codeabovelab.dm.cluman.model.StandardActions;
 import com.codeabovelab.dm.common.utils.SingleValueCache;
+import com.codeabovelab.dm.common.utils.Throwables;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.HttpStatusCodeException;
 
 import java.util.*;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  */
@@ -44,134 +45,222 @@ class SearchIndex implements SupportSearch, AutoCloseable {
     public static class Config {
         private long cacheMinutes = 2L;
         private ScheduledExecutorService scheduledExecutorService;
+        /**
+         * Executor for loading of image descriptors, when null descriptors is loaded sequentially.
+         */
+        private ExecutorService executorService;
+        /**
+         * Max count of concurrent requests to one registry.
+         */
+        private int concurrency = 4;
+    }
+
+    /**
+     * Statistics of last rebuild of index.
+     */
+    @Data
+    public static class RebuildStats {
+        private final long duration;
+        private final int images;
+        private final int refreshed;
+        private final int requests;
     }
 
     public static final String LABEL_DESCRIPTION = "description";
+    private static final String TAG_LATEST = "latest";
     private final long timeout;
-    private final RegistryService service;
-    private final SingleValueCache<Map<String, ImageInfo>> cache;
+    private final AbstractV2RegistryService service;
+    private final SingleValueCache<ImageNameIndex> cache;
     private final String registryName;
     private final ScheduledExecutorService ses;
+    private final ExecutorService executor;
+    private final int concurrency;
     private ScheduledFuture<?> future;
+    private volatile RebuildStats lastRebuild;
 
-    public SearchIndex(RegistryService service, Config config) {
+    public SearchIndex(AbstractV2RegistryService service, Config config) {
         this.service = service;
         this.registryName = this.service.getConfig().getName();
         this.ses = config.getScheduledExecutorService();
+        this.executor = config.getExecutorService();
+        this.concurrency = Math.max(1, config.getConcurrency());
         this.timeout = TimeUnit.MINUTES.toMillis(config.cacheMinutes);
-        this.cache = SingleValueCache.builder(this::load).timeAfterWrite(TimeUnit.MILLISECONDS, getTimeout()).build();
+        // when executor is present, we return old index while new index is loaded
+        this.cache = SingleValueCache.builder(this::load)
+          .timeAfterWrite(TimeUnit.MILLISECONDS, getTimeout())
+          .refreshExecutor(this.ses)
+          .build();
     }
 
-    private Map<String, ImageInfo> load() {
+    private ImageNameIndex load() {
         long begin = System.currentTimeMillis();
         //sometime we may found duplicates
         String regId = registryName + "@" + Objects.hashCode(service);
         log.info("Begin load index of {} ", regId);
-        Map<String, ImageInfo> old = this.cache.getOldValue();
-        Map<String, ImageInfo> images = new HashMap<>();
+        ImageNameIndex oldIndex = this.cache.getOldValue();
+        Map<String, ImageInfo> old = oldIndex == null ? Collections.emptyMap() : oldIndex.getImages();
         ImageCatalog catalog = this.service.getCatalog();
         if(catalog == null) {
+            // we keep old index because registry may be temporary unavailable
             log.info("Catalog of {} is null, see above log for details.", regId);
-        } else {
-            for(String image: catalog.getImages()) {
-                String fullName = ContainerUtils.buildImageName(registryName, image, null);
-                ImageDescriptor descriptor = loadDescriptor(regId, image);
-                ImageInfo ii = new ImageInfo(fullName, descriptor);
-                images.put(fullName, ii);
-            }
+            return oldIndex == null ? ImageNameIndex.EMPTY : oldIndex;
         }
-        float seconds = (System.currentTimeMillis() - begin)/1000f;
-        log.info("End load index of {} in {} seconds, loaded {} records", regId, seconds, images.size());
-        if(service instanceof AbstractV2RegistryService && !Objects.equals(old, images)) {
+        Rebuild rebuild = new Rebuild(regId, old, catalog.getImages());
+        Map<String, ImageInfo> images = rebuild.run();
+        ImageNameIndex index = new ImageNameIndex(images);
+        long duration = System.currentTimeMillis() - begin;
+        RebuildStats stats = new RebuildStats(duration, images.size(), rebuild.refreshed.get(), rebuild.requests.get());
+        this.lastRebuild = stats;
+        log.info("End load index of {} in {} seconds, loaded {} records, refreshed {} records with {} requests",
+          regId, duration / 1000f, stats.getImages(), stats.getRefreshed(), stats.getRequests());
+        if(!Objects.equals(old, images)) {
             // we detect difference in image catalogs and send update event
-            ((AbstractV2RegistryService)service).fireEvent(RegistryEvent.builder().action(StandardActions.UPDATE));
+            service.fireEvent(RegistryEvent.builder().action(StandardActions.UPDATE));
         }
-        return images;
+        return index;
     }
 
-    private ImageDescriptor loadDescriptor(String regId, String image) {
-        // we use descriptor of latest image
-        ImageDescriptor descriptor = null;
-        String latestTag = "latest";
-        try {
-            descriptor = this.service.getImage(image, latestTag);
-            if(descriptor == null) {
-                //not any image has 'latest' tag and we may try load tags
-                Tags tags = this.service.getTags(image);
-                if(tags == null) {
-                    log.info("Tags of image {} from registry {} is null, see above log for details.", image, regId);
-                } else {
-                    List<String> list = tags.getTags();
-                    if(!CollectionUtils.isEmpty(list)) {
-                        //order of tags is sometime random and we need to sort them
-                        list.sort(ImageNameComparator.getTagsComparator());
-                        latestTag = list.get(list.size() - 1);
-                        descriptor = this.service.getImage(image, latestTag);
-                    }
+    /**
+     * State of single rebuild. It compare catalog with previous index and resolve only new images or images with
+     * changed manifest.
+     */
+    private final class Rebuild {
+        private final String regId;
+        private final Map<String, ImageInfo> old;
+        private final Queue<String> queue;
+        private final Map<String, ImageInfo> images = new ConcurrentHashMap<>();
+        private final AtomicInteger refreshed = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        Rebuild(String regId, Map<String, ImageInfo> old, List<String> catalog) {
+            this.regId = regId;
+            this.old = old;
+            this.queue = new ConcurrentLinkedQueue<>(catalog == null ? Collections.emptyList() : catalog);
+        }
+
+        Map<String, ImageInfo> run() {
+            if(executor == null) {
+                drain();
+                return new HashMap<>(images);
+            }
+            // each worker process images from common queue, so count of workers limit count of concurrent requests
+            // to this registry, current thread is also a worker
+            List<Future<?>> futures = new ArrayList<>(concurrency);
+            for(int i = 1; i < concurrency; i++) {
+                try {
+                    futures.add(executor.submit(this::drain));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Can not schedule more than {} workers for loading of index of {}", i, regId);
+                    break;
+                }
+            }
+            drain();
+            try {
+                for(Future<?> future: futures) {
+                    future.get();
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                // we must not cache partially loaded index
+                throw new IllegalStateException("Loading of index of " + regId + " is interrupted", e);
+            } catch (ExecutionException e) {
+                throw Throwables.asRuntime(e.getCause());
             }
-        } catch (Exception e) {
-            // for prevent noise in log (it may happen when registry is down) we do not print stack trace
-            log.info("Can not load latest image {} from registry {} with error: {}", image, regId, e.toString());
+            return new HashMap<>(images);
         }
-        return descriptor;
-    }
 
-    @Override
-    public SearchResult search(String query, int page, int count) {
-        Assert.hasText(query, "query is null");
-        SearchResult result = new SearchResult();
-        result.setPage(0);
-        result.setNumPages(1);
-        result.setQuery(query);
-        List<SearchResult.Result> results = new ArrayList<>();
-        result.setResults(results);
-        Map<String, ImageInfo> images = getImages();
-        for(String fullImageName: images.keySet()) {
-            boolean match = fullImageName == null ? query == null : query != null && fullImageName.contains(query);
-            if(match) {
-                SearchResult.Result res = new SearchResult.Result();
-                res.setName(fullImageName);
-                ImageInfo ii = images.get(fullImageName);
-                String description = getDescription(ii);
-                res.setDescription(description);
-                res.getRegistries().add(registryName);
-                results.add(res);
+        private void drain() {
+            String image;
+            while((image = queue.poll()) != null && !Thread.currentThread().isInterrupted()) {
+                String fullName = ContainerUtils.buildImageName(registryName, image, null);
+                images.put(fullName, resolve(fullName, image));
             }
         }
-        results.sort(null);
-        result.setNumResults(results.size());
-        result.setPageSize(result.getNumResults());
-        return result;
-    }
 
-    private Map<String, ImageInfo> getImages() {
-        Map<String, ImageInfo> images = cache.getOrNull();
-        if(images == null) {
-            images = cache.getOldValue();
+        private ImageInfo resolve(String fullName, String image) {
+            ImageInfo prev = old.get(fullName);
+            // we use descriptor of latest image
+            String tag = TAG_LATEST;
+            String digest = null;
+            ImageDescriptor descriptor = null;
+            try {
+                try {
+                    requests.incrementAndGet();
+                    digest = service.getManifestDigest(image, tag);
+                    if(digest == null) {
+                        //not any image has 'latest' tag and we may try load tags
+                        tag = findLatestTag(image);
+                        if(tag != null) {
+                            requests.incrementAndGet();
+                            digest = service.getManifestDigest(image, tag);
+                        }
+                    }
+                } catch (HttpStatusCodeException e) {
+                    // registry may deny or not support HEAD of manifest (401, 405, 5xx), then we can not
+                    // detect changes and load image as is
+                    log.info("Can not get digest of image {}:{} from registry {} with error: {}, load image.",
+                      image, tag, regId, e.toString());
+                    digest = null;
+                    prev = null;
+                }
+                if(prev != null && digest != null && digest.equals(prev.getManifestDigest())) {
+                    // image is not changed
+                    return prev;
+                }
+                if(tag != null) {
+                    refreshed.incrementAndGet();
+                    // manifest and blob, but blob is usually cached by digest
+                    requests.addAndGet(2);
+                    descriptor = service.getImage(image, tag);
+                }
+            } catch (Exception e) {
+                // for prevent noise in log (it may happen when registry is down) we do not print stack trace
+                log.info("Can not load latest image {} from registry {} with error: {}", image, regId, e.toString());
+            }
+            return new ImageInfo(fullName, descriptor, tag, digest);
         }
-        if(images == null) {
-            images = cache.get();
+
+        private String findLatestTag(String image) {
+            requests.incrementAndGet();
+            Tags tags = service.getTags(image);
+            if(tags == null) {
+                log.info("Tags of image {} from registry {} is null, see above log for details.", image, regId);
+                return null;
+            }
+            List<String> list = tags.getTags();
+            if(CollectionUtils.isEmpty(list)) {
+                return null;
+            }
+            //order of tags is sometime random and we need to sort them
+            list.sort(ImageNameComparator.getTagsComparator());
+            return list.get(list.size() - 1);
         }
-        return images;
     }
 
-    private String getDescription(ImageInfo ii) {
-        String description = null;
-        ImageDescriptor descriptor = ii.getDescriptor();
-        if(descriptor != null) {
-            Map<String, String> labels = descriptor.getLabels();
-            description = labels == null? null :  labels.get(LABEL_DESCRIPTION);
-        }
-        if(description == null) {
-            description = "";
-        }
-        return description;
+    /**
+     * Statistics of last rebuild of index.
+     * @return stats or null when index is not loaded yet
+     */
+    public RebuildStats getLastRebuild() {
+        return lastRebuild;
+    }
+
+    /**
+     * Search images by substring of name or description. Results is ordered by relevance.
+     * @param query query
+     * @param page number of page, from zero
+     * @param count size of page, non positive value mean all results on one page
+     * @return result
+     */
+    @Override
+    public SearchResult search(String query, int page, int count) {
+        Assert.hasText(query, "query is null");
+        return cache.get().search(query, page, count, registryName);
     }
 
     public void init() {
         if(ses != null) {
-            //TODO we must return old cache when update in progress
             this.future = ses.scheduleWithFixedDelay(cache::get, 1000L, getTimeout(), TimeUnit.MILLISECONDS);
         }
     }
@@ -192,10 +281,14 @@ class SearchIndex implements SupportSearch, AutoCloseable {
     public static class ImageInfo {
         private final String name;
         private final ImageDescriptor descriptor;
+        private final String tag;
+        private final String manifestDigest;
 
-        public ImageInfo(String name, ImageDescriptor descriptor) {
+        public ImageInfo(String name, ImageDescriptor descriptor, String tag, String manifestDigest) {
             this.name = name;
             this.descriptor = descriptor;
+            this.tag = tag;
+            this.manifestDigest = manifestDigest;
         }
 
         public String getName() {
@@ -209,5 +302,21 @@ class SearchIndex implements SupportSearch, AutoCloseable {
         public ImageDescriptor getDescriptor() {
             return descriptor;
         }
+
+        /**
+         * Tag of latest image.
+         * @return tag or null
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * Digest of manifest of latest image, it used for detect changes.
+         * @return digest or null
+         */
+        public String getManifestDigest() {
+            return manifestDigest;
+        }
     }
 }
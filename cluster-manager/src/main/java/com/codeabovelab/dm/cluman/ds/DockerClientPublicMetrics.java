@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds;
+
+import com.codeabovelab.dm.platform.http.async.NettyPoolMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publish metrics of docker clients connection pool to '/metrics' endpoint.
+ */
+@Component
+public class DockerClientPublicMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "docker.client.pool.";
+    private final DockerServiceFactory dockerServiceFactory;
+
+    @Autowired
+    public DockerClientPublicMetrics(DockerServiceFactory dockerServiceFactory) {
+        this.dockerServiceFactory = dockerServiceFactory;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        NettyPoolMetrics pm = dockerServiceFactory.getPoolMetrics();
+        List<Metric<?>> list = new ArrayList<>();
+        list.add(new Metric<>(PREFIX + "open", pm.getOpen()));
+        list.add(new Metric<>(PREFIX + "leased", pm.getLeased()));
+        list.add(new Metric<>(PREFIX + "idle", pm.getIdle()));
+        list.add(new Metric<>(PREFIX + "handshakes", pm.getHandshakes()));
+        list.add(new Metric<>(PREFIX + "handshakeTime.avg", pm.getHandshakeAvgTime()));
+        list.add(new Metric<>(PREFIX + "handshakeTime.max", pm.getHandshakeMaxTime()));
+        return list;
+    }
+}
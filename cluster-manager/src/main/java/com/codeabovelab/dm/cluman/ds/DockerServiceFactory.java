@@ -27,13 +27,17 @@ import com.codeabovelab.dm.cluman.security.AccessContextFactory;
 import com.codeabovelab.dm.cluman.security.DockerServiceSecurityWrapper;
 import com.codeabovelab.dm.cluman.security.TempAuth;
 import com.codeabovelab.dm.common.utils.AddressUtils;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import com.codeabovelab.dm.cluman.utils.BasicAuthAsyncInterceptor;
 import com.codeabovelab.dm.common.mb.MessageBus;
 import com.codeabovelab.dm.common.utils.SSLUtil;
 import com.codeabovelab.dm.common.utils.Throwables;
+import com.codeabovelab.dm.platform.http.async.NettyPoolMetrics;
 import com.codeabovelab.dm.platform.http.async.NettyRequestFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.ssl.ClientAuth;
 import io.netty.handler.ssl.JdkSslContext;
 import lombok.extern.slf4j.Slf4j;
@@ -55,6 +59,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -70,6 +75,15 @@ public class DockerServiceFactory {
     private final AccessContextFactory aclContextFactory;
     private final ObjectMapper objectMapper;
     private final ResourceLoader resourceLoader;
+    /**
+     * Event loop group which is shared between all docker clients.
+     */
+    private final EventLoopGroup eventLoopGroup;
+    private final NettyPoolMetrics poolMetrics = new NettyPoolMetrics();
+    /**
+     * Executor for background reload of caches of docker clients.
+     */
+    private final ExecutorService refreshExecutor;
 
     @Value("${dm.ssl.check:true}")
     private boolean checkSsl;
@@ -81,6 +95,13 @@ public class DockerServiceFactory {
     @Value("${dm.agent.client.password:password}")
     private String agentPassword;
 
+    @Value("${dm.docker.client.maxConnections:32}")
+    private int maxConnections;
+    @Value("${dm.docker.client.maxIdleTime:60000}")
+    private int maxIdleTime;
+    @Value("${dm.docker.client.acquireTimeout:30000}")
+    private int acquireTimeout;
+
 
     @Autowired
     public DockerServiceFactory(ObjectMapper objectMapper,
@@ -88,18 +109,32 @@ public class DockerServiceFactory {
                                 NodeStorage nodeStorage,
                                 @Qualifier(DockerServiceEvent.BUS) MessageBus<DockerServiceEvent> dockerServiceEventMessageBus,
                                 RegistryRepository registryRepository,
-                                ResourceLoader resourceLoader) {
+                                ResourceLoader resourceLoader,
+                                @Value("${dm.docker.client.ioThreads:0}") int ioThreads) {
         this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
           .setDaemon(true)
           .setNameFormat(getClass().getSimpleName() + "-executor-%d")
           .setUncaughtExceptionHandler(Throwables.uncaughtHandler(log))
           .build());
+        this.refreshExecutor = ExecutorUtils.executorBuilder()
+          .name(getClass().getSimpleName() + "-refresh")
+          .exceptionHandler(Throwables.uncaughtHandler(log))
+          .coreSize(2)
+          .maxSize(8)
+          .queueSize(64)
+          .build();
         this.objectMapper = objectMapper;
         this.aclContextFactory = aclContextFactory;
         this.nodeStorage = nodeStorage;
         this.dockerServiceEventMessageBus = dockerServiceEventMessageBus;
         this.registryRepository = registryRepository;
         this.resourceLoader = resourceLoader;
+        // zero mean default count of threads
+        this.eventLoopGroup = new NioEventLoopGroup(ioThreads, new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat(getClass().getSimpleName() + "-io-%d")
+          .setUncaughtExceptionHandler(Throwables.uncaughtHandler(log))
+          .build());
     }
 
     public DockerService createDockerService(ClusterConfig clusterConfig, Consumer<DockerServiceImpl.Builder> dockerConsumer) {
@@ -110,9 +145,12 @@ public class DockerServiceFactory {
             b.setCluster(cluster);
         }
         String address = clusterConfig.getHost();
-        b.setRestTemplate(createNewRestTemplate(address));
+        b.setRestTemplate(createNewRestTemplate(address, maxConnections));
+        // endless streams hold connection while they opened, so they use own connections out of pool
+        b.setStreamRestTemplate(createNewRestTemplate(address, 0));
         b.setEventConsumer(this::dockerEventConsumer);
         b.setNodeInfoProvider(nodeStorage);
+        b.setRefreshExecutor(refreshExecutor);
         if (dockerConsumer != null) {
             dockerConsumer.accept(b);
         }
@@ -130,9 +168,13 @@ public class DockerServiceFactory {
         });
     }
 
-    private AsyncRestTemplate createNewRestTemplate(String addr) {
+    private AsyncRestTemplate createNewRestTemplate(String addr, int poolSize) {
         // we use async client because usual client does not allow to interruption in some cases
-        NettyRequestFactory factory = new NettyRequestFactory();
+        NettyRequestFactory factory = new NettyRequestFactory(eventLoopGroup);
+        factory.setMaxConnections(poolSize);
+        factory.setMaxIdleTime(maxIdleTime);
+        factory.setAcquireTimeout(acquireTimeout);
+        factory.setMetrics(poolMetrics);
         if(AddressUtils.isHttps(addr)) {
             try {
                 initSsl(addr, factory);
@@ -177,6 +219,14 @@ public class DockerServiceFactory {
         factory.setSslContext(new JdkSslContext(sslc, true, ClientAuth.OPTIONAL));
     }
 
+    /**
+     * Summary metrics of connections of all docker clients.
+     * @return metrics
+     */
+    public NettyPoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
     public DockerService securityWrapper(DockerService dockerService) {
         return new DockerServiceSecurityWrapper(aclContextFactory, dockerService);
     }
@@ -184,6 +234,8 @@ public class DockerServiceFactory {
     @PreDestroy
     private void preDestroy() {
         this.executor.shutdownNow();
+        this.refreshExecutor.shutdownNow();
+        this.eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
     }
 
 }
@@ -101,6 +101,10 @@ public class DiscoveryStorageImpl implements DiscoveryStorage {
           .adapter(new KvMapAdapterImpl())
           .listener(e -> {
               String key = e.getKey();
+              if(key != null) {
+                  // acl of cluster is stored with it, also it is source for acl of its nodes and containers
+                  aclContextFactory.getDecisionCache().invalidate(SecuredType.CLUSTER.id(key));
+              }
               switch (e.getAction()) {
                   case DELETE:
                       fireGroupEvent(key, StandardActions.DELETE);
@@ -81,14 +81,16 @@ public class DockerCluster extends AbstractNodesGroup<DockerClusterConfig> {
     DockerCluster(DiscoveryStorageImpl storage, DockerClusterConfig config) {
         super(config, storage, Collections.singleton(Feature.SWARM_MODE));
         long cacheTimeAfterWrite = config.getConfig().getCacheTimeAfterWrite();
-        nodesMap = SingleValueCache.builder(this::loadNodesMap)
-          .timeAfterWrite(cacheTimeAfterWrite)
-          .nullStrategy(SingleValueCache.NullStrategy.DIRTY)
-          .build();
         this.scheduledExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
           .setDaemon(true)
           .setNameFormat(getClass().getSimpleName() + "-" + getName() + "-%d")
           .build());
+        // expired nodes is returned while new list is loaded in background, see rereadNodes() for forced load
+        nodesMap = SingleValueCache.builder(this::loadNodesMap)
+          .timeAfterWrite(cacheTimeAfterWrite)
+          .nullStrategy(SingleValueCache.NullStrategy.DIRTY)
+          .refreshExecutor(this.scheduledExecutor)
+          .build();
         this.rereadNodesTask = RescheduledTask.builder()
           .runnable(this::rereadNodes)
           .service(this.scheduledExecutor)
@@ -20,6 +20,7 @@ import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
 import com.codeabovelab.dm.cluman.cluster.docker.management.DockerServiceEvent;
 import com.codeabovelab.dm.cluman.cluster.docker.management.argument.GetContainersArg;
 import com.codeabovelab.dm.cluman.cluster.docker.model.EventType;
+import com.codeabovelab.dm.cluman.ds.nodes.NodeRegistration;
 import com.codeabovelab.dm.cluman.ds.nodes.NodeStorage;
 import com.codeabovelab.dm.cluman.model.*;
 import com.codeabovelab.dm.common.mb.Subscriptions;
@@ -31,33 +32,67 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 
 /**
  * Utility which subscribe to different events and refresh container list. Also it refresh list o timeout. <p/>
+ * In incremental mode container events are applied directly to registrations, and periodical refresh only
+ * reconcile nodes which events stream has gaps. <p/>
  * NOTE: we do _not_ check node services to 'online' state in this class.
  */
 @Slf4j
 @Component
 class ContainerInfoUpdater implements SmartLifecycle {
+
+    /**
+     * State of node at last successful update of its containers.
+     */
+    private static final class SyncState {
+        private final long eventsGaps;
+        private final long time;
+
+        SyncState(long eventsGaps, long time) {
+            this.eventsGaps = eventsGaps;
+            this.time = time;
+        }
+    }
+
     private final ContainerStorageImpl containerStorage;
     private final ConcurrentMap<String, RescheduledTask> scheduledNodes;
+    private final ConcurrentMap<String, SyncState> syncStates = new ConcurrentHashMap<>();
     private final ScheduledExecutorService scheduledService;
+    private final ExecutorService updateService;
     private final NodeStorage nodeStorage;
     private boolean started;
 
+    /**
+     * Apply container events to registrations instead of scheduling of full update.
+     */
+    @Value("${dm.containers.update.incremental:true}")
+    private boolean incremental;
+
+    /**
+     * Max time in milliseconds while node can be skipped by periodical update, even if its events stream has no gaps.
+     */
+    @Value("${dm.containers.update.maxAge:3600000}")
+    private long maxAge;
+
     @Autowired
     public ContainerInfoUpdater(NodeStorage nodeStorage,
                                 ContainerStorageImpl containerStorage,
                                 @Qualifier(NodeEvent.BUS) Subscriptions<NodeEvent> nodeSubs,
                                 @Qualifier(DockerServiceEvent.BUS) Subscriptions<DockerServiceEvent> dockerSubs,
-                                @Qualifier(DockerLogEvent.BUS) Subscriptions<DockerLogEvent> dockerLogSubs) {
+                                @Qualifier(DockerLogEvent.BUS) Subscriptions<DockerLogEvent> dockerLogSubs,
+                                @Value("${dm.containers.update.parallelism:8}") int parallelism) {
         this.nodeStorage = nodeStorage;
         this.containerStorage = containerStorage;
         nodeSubs.subscribe(this::onNodeEvent);
@@ -67,6 +102,10 @@ class ContainerInfoUpdater implements SmartLifecycle {
           .setDaemon(true)
           .setNameFormat(getClass().getSimpleName() + "-%d")
           .build());
+        this.updateService = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat(getClass().getSimpleName() + "-update-%d")
+          .build());
         this.scheduledNodes = new ConcurrentHashMap<>();
     }
 
@@ -94,6 +133,12 @@ class ContainerInfoUpdater implements SmartLifecycle {
         this.started = false;
     }
 
+    @PreDestroy
+    private void preDestroy() {
+        this.updateService.shutdownNow();
+        this.scheduledService.shutdownNow();
+    }
+
     @Override
     public boolean isRunning() {
         return started;
@@ -113,7 +158,9 @@ class ContainerInfoUpdater implements SmartLifecycle {
             return;
         }
         final String id = container.getId();
+        final String node = dle.getNode();
         ContainerRegistration cr = null;
+        boolean created = false;
         String action = dle.getAction();
         switch(action) {
             case StandardActions.DELETE: {
@@ -122,9 +169,16 @@ class ContainerInfoUpdater implements SmartLifecycle {
             }
             default: {
                 cr = containerStorage.getContainer(id);
+                if(cr == null && incremental && node != null &&
+                  (StandardActions.CREATE.equals(action) || StandardActions.START.equals(action))) {
+                    // image id is absent in event, it will be filled at next update of node
+                    cr = containerStorage.updateAndGetContainer(container, node);
+                    created = true;
+                }
             }
         }
         if(cr != null) {
+            final boolean fillLabels = created;
             cr.modify(cb -> {
                 DockerContainer.State state = container.getState();
                 if(state != null) {
@@ -133,9 +187,15 @@ class ContainerInfoUpdater implements SmartLifecycle {
                     // but old status may confuse user
                     cb.setStatus(null);
                 }
+                if(fillLabels) {
+                    cb.setLabels(container.getLabels());
+                }
             });
         }
-        String node = dle.getNode();
+        if(incremental) {
+            log.debug("Container '{}' on node '{}' changed to: {}", id, node, action);
+            return;
+        }
         log.info("Schedule node '{}' update due to container '{}' changed to: {}", node, id, action);
         scheduleNodeUpdate(node);
     }
@@ -192,6 +252,7 @@ class ContainerInfoUpdater implements SmartLifecycle {
             log.info("Node '{}' is '{}' remove containers.", name, action);
             containerStorage.removeNodeContainers(name);
             scheduledNodes.remove(name);
+            syncStates.remove(name);
             return;
         }
         // at first event 'ONLINE', node does not have a service, but we ignore second event
@@ -212,25 +273,66 @@ class ContainerInfoUpdater implements SmartLifecycle {
         }
     }
 
-    @Scheduled(fixedDelay = 5L * 60_000L /* 5 min */)
+    @Scheduled(fixedDelayString = "${dm.containers.update.period:300000}" /* 5 min */)
     public void update() {
         try(TempAuth ta = TempAuth.asSystem()) {
             log.info("Begin update containers list");
+            List<Future<?>> futures = new ArrayList<>();
+            int skipped = 0;
             for(String node: nodeStorage.getNodeNames()) {
                 DockerService nodeService = nodeStorage.getNodeService(node);
                 // we do _not_ check service to 'online' here
                 if(nodeService == null) {
                     continue;
                 }
-                updateForNode(nodeService);
+                if(incremental && isSynced(node)) {
+                    skipped++;
+                    continue;
+                }
+                futures.add(updateService.submit(() -> {
+                    try(TempAuth nta = TempAuth.asSystem()) {
+                        updateForNode(nodeService);
+                    }
+                }));
+            }
+            for(Future<?> future: futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Updating of containers failed.", e.getCause());
+                }
             }
-            log.info("End update containers list");
+            log.info("End update containers list, updated nodes: {}, skipped nodes: {}", futures.size(), skipped);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Check that containers of node are loaded and all events are applied after it.
+     * @param node name of node
+     * @return true when update of node can be skipped
+     */
+    private boolean isSynced(String node) {
+        SyncState state = syncStates.get(node);
+        if(state == null || System.currentTimeMillis() - state.time > maxAge) {
+            return false;
+        }
+        return state.eventsGaps == getEventsGaps(node);
+    }
+
+    private long getEventsGaps(String node) {
+        NodeRegistration nr = nodeStorage.getNodeRegistration(node);
+        // negative value is never equal to count of gaps
+        return nr == null ? -1 : nr.getEventsGaps();
+    }
+
     private void updateForNode(DockerService nodeService) {
         String node = nodeService.getNode();
         log.info("Update containers list of node '{}'", node);
+        // we must obtain it before listing, otherwise we can miss gap which happened while listing
+        final long eventsGaps = getEventsGaps(node);
+        syncStates.remove(node);
         try {
             List<DockerContainer> containers = nodeService.getContainers(new GetContainersArg(true));
             Set<String> old = this.containerStorage.getContainersIdsByNode(node);
@@ -239,6 +341,7 @@ class ContainerInfoUpdater implements SmartLifecycle {
                 this.containerStorage.updateAndGetContainer(dc, node);
             }
             this.containerStorage.remove(old);
+            syncStates.put(node, new SyncState(eventsGaps, System.currentTimeMillis()));
             log.info("Containers of node '{}', current:{}, removed:{}", node, containers.size(), old.size());
         } catch (Exception e) {
             Throwable root = Throwables.getRootCause(e);
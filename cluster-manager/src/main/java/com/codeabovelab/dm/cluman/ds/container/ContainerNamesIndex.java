@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.container;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Index of container names by node. Names are looked up by requested prefix: name which is equal to prefix
+ * is counted as number zero, and name in form '[prefix]-[number]' as its number. Any other names, like
+ * '[prefix]-[word]-[number]', is not matched, so prefix which already ends with number is handled correctly. <p/>
+ * It is thread safe.
+ */
+final class ContainerNamesIndex {
+
+    // node -> (name -> count of containers with it)
+    private final Map<String, NavigableMap<String, Integer>> nodes = new HashMap<>();
+
+    /**
+     * Remove swarm node prefix like '/node/' from name of container.
+     * @param name name of container
+     * @return name or null
+     */
+    static String stripNode(String name) {
+        if(name == null) {
+            return null;
+        }
+        name = name.substring(name.lastIndexOf('/') + 1);
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * Number of name with specified prefix.
+     * @param name name without node prefix
+     * @param prefix prefix
+     * @return zero when name is equal to prefix, number when name is '[prefix]-[number]', otherwise -1
+     */
+    static int getNumber(String name, String prefix) {
+        if(!name.startsWith(prefix)) {
+            return -1;
+        }
+        int len = prefix.length();
+        if(name.length() == len) {
+            return 0;
+        }
+        if(name.length() < len + 2 || name.charAt(len) != '-') {
+            return -1;
+        }
+        return parseNumber(name, len + 1);
+    }
+
+    private static int parseNumber(String str, int from) {
+        // we do not use Integer.parseInt because it allow sign, and throw exception on wrong strings
+        if(str.length() - from > 9) {
+            return -1;
+        }
+        int res = 0;
+        for(int i = from; i < str.length(); ++i) {
+            char c = str.charAt(i);
+            if(c < '0' || c > '9') {
+                return -1;
+            }
+            res = res * 10 + (c - '0');
+        }
+        return res;
+    }
+
+    private static String nodeKey(String node) {
+        return node == null ? "" : node;
+    }
+
+    synchronized void add(String node, String name) {
+        name = stripNode(name);
+        if(name == null) {
+            return;
+        }
+        nodes.computeIfAbsent(nodeKey(node), p -> new TreeMap<>()).merge(name, 1, Integer::sum);
+    }
+
+    synchronized void remove(String node, String name) {
+        name = stripNode(name);
+        if(name == null) {
+            return;
+        }
+        String key = nodeKey(node);
+        NavigableMap<String, Integer> names = nodes.get(key);
+        if(names == null) {
+            return;
+        }
+        names.computeIfPresent(name, (k, v) -> v > 1 ? v - 1 : null);
+        if(names.isEmpty()) {
+            nodes.remove(key);
+        }
+    }
+
+    /**
+     * Max number of names with specified prefix.
+     * @param prefix prefix
+     * @param nodeFilter filter of nodes which names are counted
+     * @return max number or -1 when no one name with this prefix
+     */
+    synchronized int getMax(String prefix, Predicate<String> nodeFilter) {
+        int max = -1;
+        for(Map.Entry<String, NavigableMap<String, Integer>> e: nodes.entrySet()) {
+            if(!nodeFilter.test(e.getKey())) {
+                continue;
+            }
+            // all matched names start with prefix
+            for(String name: e.getValue().subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet()) {
+                max = Math.max(max, getNumber(name, prefix));
+            }
+        }
+        return max;
+    }
+}
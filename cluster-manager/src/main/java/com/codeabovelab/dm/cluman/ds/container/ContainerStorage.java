@@ -33,6 +33,13 @@ public interface ContainerStorage {
     ContainerRegistration findContainer(String name);
     List<ContainerRegistration> getContainersByNode(String nodeName);
 
+    /**
+     * Containers which is created from specified image.
+     * @param imageId id of image
+     * @return list of registrations, never null
+     */
+    List<ContainerRegistration> getContainersByImage(String imageId);
+
     /**
      * It also create container if it unexists.
      * @param container container
@@ -18,7 +18,10 @@ package com.codeabovelab.dm.cluman.ds.container;
 
 import com.codeabovelab.dm.cluman.model.ContainerBaseIface;
 import com.codeabovelab.dm.cluman.model.DockerContainer;
+import com.codeabovelab.dm.common.kv.KvStorageEvent;
 import com.codeabovelab.dm.common.kv.mapping.KvMap;
+import com.codeabovelab.dm.common.kv.mapping.KvMapEvent;
+import com.codeabovelab.dm.common.kv.mapping.KvMapLocalEvent;
 import com.codeabovelab.dm.common.kv.mapping.KvMapperFactory;
 import com.codeabovelab.dm.common.utils.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -29,13 +32,15 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Component
 @Slf4j
@@ -43,6 +48,7 @@ public class ContainerStorageImpl implements ContainerStorage {
 
     final KvMap<ContainerRegistration> map;
     final ScheduledExecutorService executorService;
+    private final ContainersIndex index = new ContainersIndex();
 
     @Autowired
     public ContainerStorageImpl(KvMapperFactory kvmf) {
@@ -51,6 +57,8 @@ public class ContainerStorageImpl implements ContainerStorage {
           .mapper(kvmf)
           .path(prefix)
           .factory((key, type) -> new ContainerRegistration(this, key))
+          .localListener(this::onLocalEvent)
+          .listener(this::onKvEvent)
           .build();
         this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
           .setDaemon(true)
@@ -62,6 +70,8 @@ public class ContainerStorageImpl implements ContainerStorage {
     @PostConstruct
     public void postConstruct() {
         this.map.load();
+        // load values for fill indexes
+        this.map.values();
     }
 
     @PreDestroy
@@ -69,6 +79,35 @@ public class ContainerStorageImpl implements ContainerStorage {
         this.executorService.shutdown();
     }
 
+    private void onLocalEvent(KvMapLocalEvent<ContainerRegistration> e) {
+        String key = e.getKey();
+        ContainerRegistration cr = e.getNewValue();
+        if(e.getAction() == KvMapLocalEvent.Action.DELETE || cr == null) {
+            index.remove(key);
+        } else {
+            index(cr);
+        }
+    }
+
+    private void onKvEvent(KvMapEvent<ContainerRegistration> e) {
+        KvStorageEvent.Crud action = e.getAction();
+        if(action != KvStorageEvent.Crud.CREATE && action != KvStorageEvent.Crud.UPDATE) {
+            return;
+        }
+        // map is lazy, so we need to load changed value for update indexes,
+        // it will be indexed by local 'LOAD' event
+        String key = e.getKey();
+        executorService.execute(() -> map.get(key));
+    }
+
+    /**
+     * Update indexes of specified container, must be invoked after any change of container.
+     * @param cr container registration
+     */
+    void index(ContainerRegistration cr) {
+        index.update(cr.getId(), cr.getContainer());
+    }
+
     @Override
     public void deleteContainer(String id) {
         ContainerRegistration cr = map.remove(id);
@@ -92,30 +131,77 @@ public class ContainerStorageImpl implements ContainerStorage {
     public ContainerRegistration findContainer(String name) {
         ContainerRegistration cr = map.get(name);
         if(cr == null) {
-            cr = map.values().stream().filter((item) -> {
-                DockerContainer container = item.getContainer();
-                return container != null && (item.getId().startsWith(name) || Objects.equals(container.getName(), name));
-            }).findAny().orElse(null);
+            cr = findIndexed(index.getByName(name), matches(DockerContainer::getName, name));
+        }
+        if(cr == null) {
+            String id = index.findByIdPrefix(name);
+            if(id != null) {
+                cr = map.get(id);
+            }
         }
         return cr;
     }
 
+    private ContainerRegistration findIndexed(Set<String> ids, Predicate<ContainerRegistration> filter) {
+        for(String id: ids) {
+            ContainerRegistration cr = map.get(id);
+            if(cr != null && filter.test(cr)) {
+                return cr;
+            }
+        }
+        return null;
+    }
+
+    private static Predicate<ContainerRegistration> matches(Function<DockerContainer, String> getter, String expected) {
+        return cr -> {
+            DockerContainer container = cr.getContainer();
+            return container != null && Objects.equals(getter.apply(container), expected);
+        };
+    }
+
+    private List<ContainerRegistration> getIndexed(Set<String> ids, Predicate<ContainerRegistration> filter) {
+        return ids.stream()
+          .map(map::get)
+          // index may be a bit outdated, therefore we check values
+          .filter(cr -> cr != null && filter.test(cr))
+          .collect(Collectors.toList());
+    }
+
     @Override
     public List<ContainerRegistration> getContainersByNode(String nodeName) {
-        return containersByNode(nodeName)
-          .collect(Collectors.toList());
+        return getIndexed(index.getByNode(nodeName), c -> Objects.equals(c.getNode(), nodeName));
+    }
+
+    @Override
+    public List<ContainerRegistration> getContainersByImage(String imageId) {
+        return getIndexed(index.getByImage(imageId), matches(DockerContainer::getImageId, imageId));
     }
 
-    private Stream<ContainerRegistration> containersByNode(String nodeName) {
-        return map.values()
-          .stream()
-          .filter(c -> Objects.equals(c.getNode(), nodeName));
+    /**
+     * Max number of known container names in form '[prefix]-[number]' in all nodes.
+     * @param prefix prefix of name
+     * @return number, zero when only name without number is exists, or -1 when no one name is found
+     */
+    int getMaxNameNumber(String prefix) {
+        return index.getMaxNameNumber(prefix, node -> true);
+    }
+
+    /**
+     * Max number of known container names in form '[prefix]-[number]' on specified nodes.
+     * @param prefix prefix of name
+     * @param nodeFilter filter of nodes, names are unique only in scope of node or cluster
+     * @return number, zero when only name without number is exists, or -1 when no one name is found
+     */
+    int getMaxNameNumber(String prefix, Predicate<String> nodeFilter) {
+        return index.getMaxNameNumber(prefix, nodeFilter);
     }
 
+    /**
+     * @param nodeName name of node
+     * @return mutable copy of ids set
+     */
     Set<String> getContainersIdsByNode(String nodeName) {
-        return containersByNode(nodeName)
-          .map(ContainerRegistration::getId)
-          .collect(Collectors.toSet());
+        return new HashSet<>(index.getByNode(nodeName));
     }
 
     /**
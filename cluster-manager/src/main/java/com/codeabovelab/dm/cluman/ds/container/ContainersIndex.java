@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.container;
+
+import com.codeabovelab.dm.cluman.model.DockerContainer;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * In-memory secondary indexes of container registrations: by node, image id, name, id prefix and
+ * number of name. <p/>
+ * Reads are lock-free, modifications are serialized.
+ */
+final class ContainersIndex {
+
+    private static final class Entry {
+        private final String node;
+        private final String name;
+        private final String imageId;
+
+        Entry(DockerContainer dc) {
+            this.node = dc.getNode();
+            this.name = dc.getName();
+            this.imageId = dc.getImageId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return Objects.equals(node, entry.node) &&
+              Objects.equals(name, entry.name) &&
+              Objects.equals(imageId, entry.imageId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(node, name, imageId);
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> byNode = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> byImage = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> byName = new ConcurrentHashMap<>();
+    private final NavigableSet<String> ids = new ConcurrentSkipListSet<>();
+    private final ContainerNamesIndex names = new ContainerNamesIndex();
+
+    /**
+     * Update index for specified container.
+     * @param id id of container
+     * @param dc container, when null then container will be removed from index
+     */
+    synchronized void update(String id, DockerContainer dc) {
+        if(dc == null) {
+            remove(id);
+            return;
+        }
+        Entry entry = new Entry(dc);
+        Entry old = entries.put(id, entry);
+        ids.add(id);
+        if(entry.equals(old)) {
+            return;
+        }
+        if(old != null) {
+            unlink(byNode, old.node, id);
+            unlink(byImage, old.imageId, id);
+            unlink(byName, old.name, id);
+            names.remove(old.node, old.name);
+        }
+        link(byNode, entry.node, id);
+        link(byImage, entry.imageId, id);
+        link(byName, entry.name, id);
+        names.add(entry.node, entry.name);
+    }
+
+    synchronized void remove(String id) {
+        Entry old = entries.remove(id);
+        ids.remove(id);
+        if(old == null) {
+            return;
+        }
+        unlink(byNode, old.node, id);
+        unlink(byImage, old.imageId, id);
+        unlink(byName, old.name, id);
+        names.remove(old.node, old.name);
+    }
+
+    private static void link(Map<String, Set<String>> map, String key, String id) {
+        if(key == null) {
+            return;
+        }
+        map.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    private static void unlink(Map<String, Set<String>> map, String key, String id) {
+        if(key == null) {
+            return;
+        }
+        Set<String> set = map.get(key);
+        if(set == null) {
+            return;
+        }
+        set.remove(id);
+        if(set.isEmpty()) {
+            map.remove(key, set);
+        }
+    }
+
+    private static Set<String> get(Map<String, Set<String>> map, String key) {
+        if(key == null) {
+            return Collections.emptySet();
+        }
+        Set<String> set = map.get(key);
+        if(set == null) {
+            return Collections.emptySet();
+        }
+        return ImmutableSet.copyOf(set);
+    }
+
+    /**
+     * @param node name of node
+     * @return immutable set of container ids, never null
+     */
+    Set<String> getByNode(String node) {
+        return get(byNode, node);
+    }
+
+    /**
+     * @param imageId id of image
+     * @return immutable set of container ids, never null
+     */
+    Set<String> getByImage(String imageId) {
+        return get(byImage, imageId);
+    }
+
+    /**
+     * Note that names is unique only in scope of node (or swarm cluster).
+     * @param name name of container
+     * @return immutable set of container ids, never null
+     */
+    Set<String> getByName(String name) {
+        return get(byName, name);
+    }
+
+    /**
+     * Max number of container names in form '[prefix]-[number]'.
+     * @param prefix prefix of name
+     * @param nodeFilter filter of nodes which names are counted
+     * @return number, zero when only name without number is exists, or -1 when no one name is found
+     */
+    int getMaxNameNumber(String prefix, Predicate<String> nodeFilter) {
+        return names.getMax(prefix, nodeFilter);
+    }
+
+    /**
+     * Find first id which start with specified prefix, usual prefix is a short id of container.
+     * @param prefix prefix of id
+     * @return id or null
+     */
+    String findByIdPrefix(String prefix) {
+        if(prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        String id = ids.ceiling(prefix);
+        if(id != null && id.startsWith(prefix)) {
+            return id;
+        }
+        return null;
+    }
+}
@@ -16,38 +16,90 @@
 
 package com.codeabovelab.dm.cluman.ds.container;
 
+import com.codeabovelab.dm.cluman.model.NodeInfoProvider;
 import com.codeabovelab.dm.cluman.utils.ContainerUtils;
 import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
 import com.codeabovelab.dm.cluman.cluster.docker.management.argument.CalcNameArg;
-import com.codeabovelab.dm.common.utils.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
- * Service which do calculation of new container name
+ * Service which do calculation of new container name. <p/>
+ * It use index of names from {@link ContainerStorageImpl} and reservations of recently allocated names, remote
+ * list of containers is requested only when index of service is not verified recently. Names are unique only in
+ * scope of docker service (node or cluster), so all state is kept per service.
  */
 @Component
 public class ContainersNameService {
 
     private static final long TIMEOUT_NAMES = TimeUnit.MINUTES.toMillis(1L);
+    /**
+     * Time after which we do not trust index and check names on docker service.
+     */
+    private static final long TIMEOUT_VERIFY = TimeUnit.MINUTES.toMillis(1L);
     private static final Logger LOG = LoggerFactory.getLogger(ContainersNameService.class);
 
+    /**
+     * State of names with same prefix on one docker service, all access must be synchronized on it.
+     */
+    private static final class Prefix {
+        // number -> expiration time of reservation
+        private final NavigableMap<Integer, Long> reserved = new TreeMap<>();
+        // max number of names on docker service and time of check
+        private Verified verified;
+        // listing of names on docker service which is in progress
+        private CompletableFuture<Integer> verifying;
+
+        int getMaxReserved(long now) {
+            reserved.values().removeIf(time -> time < now);
+            return reserved.isEmpty() ? -1 : reserved.lastKey();
+        }
+    }
+
+    private static final class Verified {
+        private final int max;
+        private final long time;
+
+        Verified(int max, long time) {
+            this.max = max;
+            this.time = time;
+        }
+    }
+
     private final Function<DockerService, Collection<String>> containerNames;
-    //we store names instead last name, it allow us to use middle index instead of last
-    private final ConcurrentMap<String, Long> recentNames = new ConcurrentHashMap<>();
+    private final ContainerStorageImpl containerStorage;
+    private final NodeInfoProvider nodeInfoProvider;
+    // key of docker service and prefix -> state
+    private final ConcurrentMap<String, Prefix> prefixes = new ConcurrentHashMap<>();
 
+    public ContainersNameService(Function<DockerService, Collection<String>> containerNames) {
+        this(containerNames, null, null);
+    }
 
+    /**
+     * Create service.
+     * @param containerNames function which list names on docker service
+     * @param containerStorage storage, which index is used for avoid listing of names on service, can be null
+     * @param nodeInfoProvider provider of node clusters, it used for select names of cluster from index, can be null
+     */
     @Autowired
-    public ContainersNameService(Function<DockerService, Collection<String>> containerNames) {
+    public ContainersNameService(Function<DockerService, Collection<String>> containerNames,
+                                 ContainerStorageImpl containerStorage,
+                                 NodeInfoProvider nodeInfoProvider) {
         this.containerNames = containerNames;
+        this.containerStorage = containerStorage;
+        this.nodeInfoProvider = nodeInfoProvider;
     }
 
     /**
@@ -55,68 +107,165 @@ public class ContainersNameService {
      * @param calcNameArg - all needed data
      */
     public String calculateName(CalcNameArg calcNameArg) {
-
         String name = internalProcess(calcNameArg);
-        if (calcNameArg.isAllocate()) { storeRecentName(name); }
         LOG.info("name of container: {}", name);
         return name;
     }
 
     private String internalProcess(CalcNameArg calcNameArg) {
-        if (org.springframework.util.StringUtils.hasText(calcNameArg.getContainerName())) {
-            return calcNameArg.getContainerName();
+        String containerName = calcNameArg.getContainerName();
+        DockerService dockerService = calcNameArg.getDockerService();
+        if (org.springframework.util.StringUtils.hasText(containerName)) {
+            if(calcNameArg.isAllocate() && dockerService != null) {
+                reserveName(getServiceKey(dockerService), ContainerNamesIndex.stripNode(containerName));
+            }
+            return containerName;
         }
         String applicationName = ContainerUtils.getApplicationName(calcNameArg.getImageName()).toLowerCase();
 
         LOG.info("applicationName {}", applicationName);
 
-        int last = getMaxNumber(applicationName, calcNameArg.getDockerService());
-        if (last == -1) {
-            return applicationName;
+        String serviceKey = getServiceKey(dockerService);
+        Prefix prefix = getPrefix(serviceKey, applicationName);
+        // remote listing is slow, so it is done out of lock
+        int remote = getRemoteMaxNumber(prefix, applicationName, dockerService);
+        int last;
+        // lock guarantee that concurrent allocations never give same number
+        synchronized (prefix) {
+            last = Math.max(remote, getLocalMaxNumber(prefix, applicationName, dockerService));
+            if(calcNameArg.isAllocate()) {
+                reserve(prefix, last + 1);
+            }
+        }
+        String name = last == -1 ? applicationName : applicationName + "-" + (last + 1);
+        if(calcNameArg.isAllocate() && last != -1) {
+            // name also may be used as prefix, for example for image 'app-2'
+            reserve(serviceKey, name, 0);
         }
-        return applicationName + "-" + (last + 1);
+        return name;
     }
 
-    private int getMaxNumber(String applicationName, DockerService dockerService) {
-        int last = -1;
-        Set<String> names = new HashSet<>();
-        names.addAll(containerNames.apply(dockerService));
-        names.addAll(getRecentNames());
-        for (String name: names) {
-            if (!(name.startsWith(applicationName))) {
-                continue;
-            }
-            try {
-                String s = StringUtils.afterLast(name, '-');
-                int i = Integer.parseInt(s);
-                if(i > last) {
-                    last = i;
-                }
-            } catch(Exception e) {
-                //it usual if last is word or string does not contains '-'
-                if(last < 0) {
-                    last = 0;
-                }
+    private Prefix getPrefix(String serviceKey, String name) {
+        return prefixes.computeIfAbsent(serviceKey + "/" + name, n -> new Prefix());
+    }
+
+    /**
+     * Reserve name for each prefix which it can match: name itself and name without numeric suffix.
+     */
+    private void reserveName(String serviceKey, String name) {
+        if(name == null) {
+            return;
+        }
+        reserve(serviceKey, name, 0);
+        int pos = name.lastIndexOf('-');
+        if(pos > 0) {
+            String prefix = name.substring(0, pos);
+            int number = ContainerNamesIndex.getNumber(name, prefix);
+            if(number >= 0) {
+                reserve(serviceKey, prefix, number);
             }
         }
+    }
+
+    private void reserve(String serviceKey, String prefixName, int number) {
+        Prefix prefix = getPrefix(serviceKey, prefixName);
+        synchronized (prefix) {
+            reserve(prefix, number);
+        }
+    }
+
+    private void reserve(Prefix prefix, int number) {
+        prefix.reserved.merge(number, System.currentTimeMillis() + TIMEOUT_NAMES, Math::max);
+    }
+
+    private int getLocalMaxNumber(Prefix prefix, String applicationName, DockerService dockerService) {
+        int last = prefix.getMaxReserved(System.currentTimeMillis());
+        if(containerStorage != null) {
+            last = Math.max(last, containerStorage.getMaxNameNumber(applicationName, getNodeFilter(dockerService)));
+        }
         return last;
     }
 
+    private Predicate<String> getNodeFilter(DockerService dockerService) {
+        String node = dockerService.getNode();
+        if(node != null) {
+            return node::equals;
+        }
+        String cluster = dockerService.getCluster();
+        if(cluster == null || nodeInfoProvider == null) {
+            return n -> true;
+        }
+        return n -> cluster.equals(nodeInfoProvider.getNodeCluster(n));
+    }
 
-    private void storeRecentName(String name) {
-        this.recentNames.put(name, System.currentTimeMillis());
+    private static String getServiceKey(DockerService dockerService) {
+        String cluster = dockerService.getCluster();
+        if(cluster != null) {
+            return "cluster:" + cluster;
+        }
+        return "node:" + dockerService.getNode();
     }
 
-    private Collection<String> getRecentNames() {
-        List<String> names = new ArrayList<>();
-        final long endTime = System.currentTimeMillis() - TIMEOUT_NAMES;
-        for(Map.Entry<String, Long> e: recentNames.entrySet()) {
-            if(e.getValue() < endTime) {
-                recentNames.remove(e.getKey());
-            } else {
-                names.add(e.getKey());
+    /**
+     * Max number of names on docker service, listing is cached for {@link #TIMEOUT_VERIFY} and concurrent callers
+     * wait for single listing.
+     */
+    private int getRemoteMaxNumber(Prefix prefix, String applicationName, DockerService dockerService) {
+        final long now = System.currentTimeMillis();
+        CompletableFuture<Integer> future;
+        boolean owner = false;
+        synchronized (prefix) {
+            Verified verified = prefix.verified;
+            // index may be outdated, or do not contains containers which is created out of our system
+            if(verified != null && verified.time >= now - TIMEOUT_VERIFY) {
+                return verified.max;
+            }
+            future = prefix.verifying;
+            if(future == null) {
+                future = prefix.verifying = new CompletableFuture<>();
+                owner = true;
             }
         }
-        return names;
+        if(!owner) {
+            return join(future);
+        }
+        try {
+            int max = listMaxNumber(applicationName, dockerService);
+            synchronized (prefix) {
+                prefix.verified = new Verified(max, now);
+                prefix.verifying = null;
+            }
+            future.complete(max);
+            return max;
+        } catch (RuntimeException e) {
+            synchronized (prefix) {
+                prefix.verifying = null;
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static int join(CompletableFuture<Integer> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private int listMaxNumber(String applicationName, DockerService dockerService) {
+        int last = -1;
+        for (String name: containerNames.apply(dockerService)) {
+            name = ContainerNamesIndex.stripNode(name);
+            if(name != null) {
+                last = Math.max(last, ContainerNamesIndex.getNumber(name, applicationName));
+            }
+        }
+        return last;
     }
 }
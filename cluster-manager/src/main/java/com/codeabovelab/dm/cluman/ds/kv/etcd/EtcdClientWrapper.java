@@ -27,32 +27,61 @@ import lombok.extern.slf4j.Slf4j;
 import mousio.etcd4j.EtcdClient;
 import mousio.etcd4j.promises.EtcdResponsePromise;
 import mousio.etcd4j.requests.EtcdKeyDeleteRequest;
-import mousio.etcd4j.requests.EtcdKeyGetRequest;
 import mousio.etcd4j.requests.EtcdKeyPutRequest;
 import mousio.etcd4j.requests.EtcdKeyRequest;
 import mousio.etcd4j.responses.EtcdException;
 import mousio.etcd4j.responses.EtcdKeysResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
-public class EtcdClientWrapper implements KeyValueStorage {
+public class EtcdClientWrapper implements KeyValueStorage, PublicMetrics {
+    private static final String METRICS_PREFIX = "kv.etcd.watch.";
     private static final int KEY_NOT_FOUND = 100;
     private static final int NOT_A_FILE = 102;
     private static final int KEY_ALREADY_EXISTS = 105;
-    private final Logger logger = LoggerFactory.getLogger(getClass());
+    /**
+     * Default limit of asynchronous requests which are sent but not completed.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
     private final EtcdClient etcd;
     private final String prefix;
     private final MessageBus<KvStorageEvent> bus;
     private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final EtcdWatcher watcher;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
 
     public EtcdClientWrapper(EtcdClient etcd, String prefix) {
+        this(etcd, prefix, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param etcd client
+     * @param prefix prefix of keys
+     * @param maxInFlight limit of asynchronous requests which are sent but not completed
+     */
+    public EtcdClientWrapper(EtcdClient etcd, String prefix, int maxInFlight) {
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be greater than zero");
+        this.inFlight = new Semaphore(maxInFlight);
         this.etcd = etcd;
         this.prefix = prefix;
         //possibly we need to create better id ob bus
@@ -63,59 +92,8 @@ public class EtcdClientWrapper implements KeyValueStorage {
           .setNameFormat(getClass().getName() + "-bus-%d")
           .setDaemon(true)
           .build());
-        eventWhirligig(-1);
-    }
-
-
-
-    private void eventWhirligig(final long index) {
-        try {
-            // getAll() - not working
-            EtcdKeyGetRequest req = this.etcd.get("").recursive();
-            if(index > 0) {
-                req.waitForChange(index);
-            } else {
-                req.waitForChange();
-            }
-            EtcdResponsePromise<EtcdKeysResponse> promise = req.send();
-            final boolean debug = log.isDebugEnabled();
-            promise.addListener(rp -> {
-                try {
-                    EtcdKeysResponse r = rp.get();
-                    //immediate subscribe for next events
-                    eventWhirligig(r.node.modifiedIndex + 1);
-                    //in future we must to remove this logging, but not now
-                    if(debug) {
-                        log.debug("{} {}={} (ttl:{}) {}", r.etcdIndex, r.node.key, r.node.value, r.node.ttl, r.action);
-                    }
-
-                    KvStorageEvent.Crud action = null;
-                    switch (r.action) {
-                        case compareAndDelete:
-                        case delete:
-                        case expire:
-                            action = KvStorageEvent.Crud.DELETE;
-                            break;
-                        case create:
-                            action = KvStorageEvent.Crud.CREATE;
-                            break;
-                        case compareAndSwap:
-                        case set:
-                        case update:
-                            action = KvStorageEvent.Crud.UPDATE;
-                            break;
-                    }
-                    if(action != null) {
-                        KvStorageEvent e = new KvStorageEvent(r.node.modifiedIndex, r.node.key, r.node.value, r.node.ttl, action);
-                        this.executor.submit(() -> bus.accept(e));
-                    }
-                } catch (Exception e) {
-                    logger.error("Error when process event response", e);
-                }
-            });
-        } catch (Exception e) {
-            logger.error("Error when process events", e);
-        }
+        this.watcher = new EtcdWatcher(etcd, prefix, EtcdWatcher.DEFAULT_WINDOW, executor, bus::accept);
+        this.watcher.start();
     }
 
     private KvNode toNode(EtcdKeysResponse resp) {
@@ -174,6 +152,129 @@ public class EtcdClientWrapper implements KeyValueStorage {
 
     }
 
+    @Override
+    public CompletableFuture<KvNode> getAsync(String key) {
+        return executeAsync(() -> etcd.get(key), resp -> {
+            log.debug("get value {} for key {}", resp.node.value, resp.node.key);
+            return toNode(resp);
+        }, e -> {
+            if (e.errorCode != KEY_NOT_FOUND) {
+                log.error("Error during fetching key", e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<KvNode> setAsync(String key, String value, WriteOptions ops) {
+        return executeAsync(() -> {
+            EtcdKeyPutRequest req = etcd.put(key, value);
+            fillPutReq(ops, req);
+            return req;
+        }, resp -> {
+            log.debug("set value {} for key {}, ops {}", resp.node.value, resp.node.key, ops);
+            return toNode(resp);
+        }, EtcdClientWrapper::rethrow);
+    }
+
+    @Override
+    public CompletableFuture<KvNode> deleteAsync(String key, WriteOptions ops) {
+        return executeAsync(() -> {
+            EtcdKeyDeleteRequest req = etcd.delete(key);
+            fillDeleteReq(ops, req);
+            return req;
+        }, resp -> {
+            log.debug("deleted key {}", resp.node.key);
+            return toNode(resp);
+        }, EtcdClientWrapper::rethrow);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> listAsync(String key) {
+        return executeAsync(() -> etcd.getDir(key), this::toKeys, e -> {
+            if(e.getErrorCode() == KEY_NOT_FOUND) {
+                return null;
+            }
+            throw Throwables.asRuntime(e);
+        });
+    }
+
+    private static <T> T rethrow(EtcdException e) {
+        throw Throwables.asRuntime(e);
+    }
+
+    /**
+     * Send request when count of requests in flight is less than limit, otherwise defer it until one of
+     * in flight requests is completed. Note that handlers are invoked in IO thread of etcd client.
+     * @param factory factory of request, it invoked when request is ready to send
+     * @param onResponse handler of response
+     * @param onError handler of etcd errors, it can return value or throw exception
+     * @param <T> type of result
+     * @return future
+     */
+    <T> CompletableFuture<T> executeAsync(Supplier<EtcdKeyRequest> factory,
+                                          Function<EtcdKeysResponse, T> onResponse,
+                                          Function<EtcdException, T> onError) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending.add(() -> {
+            try {
+                EtcdResponsePromise<EtcdKeysResponse> promise = factory.get().send();
+                promise.addListener(rp -> {
+                    try {
+                        T res;
+                        try {
+                            res = onResponse.apply(rp.get());
+                        } catch (EtcdException e) {
+                            res = onError.apply(e);
+                        }
+                        future.complete(res);
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        releaseInFlight();
+                    }
+                });
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                releaseInFlight();
+            }
+        });
+        runPending();
+        return future;
+    }
+
+    /**
+     * Run pending tasks while there are free permits. Only one thread drains queue at once, so task which is
+     * completed synchronously (due to error or already completed promise) does not run next task recursively,
+     * it is run by loop of draining thread.
+     */
+    private void runPending() {
+        while(draining.compareAndSet(false, true)) {
+            try {
+                while(!pending.isEmpty() && inFlight.tryAcquire()) {
+                    Runnable task = pending.poll();
+                    if(task == null) {
+                        // other thread take task before us
+                        inFlight.release();
+                        continue;
+                    }
+                    task.run();
+                }
+            } finally {
+                draining.set(false);
+            }
+            // task or permit may be added by other thread after our check, but before reset of flag
+            if(pending.isEmpty() || inFlight.availablePermits() == 0) {
+                return;
+            }
+        }
+    }
+
+    private void releaseInFlight() {
+        inFlight.release();
+        // it does nothing when queue is drained by current or other thread
+        runPending();
+    }
 
     @Override
     public KvNode delete(String key, WriteOptions ops) {
@@ -274,8 +375,7 @@ public class EtcdClientWrapper implements KeyValueStorage {
     public List<String> list(String key) {
         try {
             EtcdResponsePromise<EtcdKeysResponse> send = etcd.getDir(key).send();
-            EtcdKeysResponse r = send.get();
-            return r.node.nodes.stream().map(n -> n.key).collect(Collectors.toList());
+            return toKeys(send.get());
         } catch (EtcdException e) {
             if(e.getErrorCode() == KEY_NOT_FOUND) {
                 return null;
@@ -303,6 +403,36 @@ public class EtcdClientWrapper implements KeyValueStorage {
         }
     }
 
+    private List<String> toKeys(EtcdKeysResponse r) {
+        return r.node.nodes.stream().map(n -> n.key).collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, KvNode> getAll(String key) {
+        try {
+            EtcdResponsePromise<EtcdKeysResponse> send = etcd.getDir(key).send();
+            EtcdKeysResponse r = send.get();
+            Map<String, KvNode> res = new LinkedHashMap<>();
+            if(r.node.nodes == null) {
+                return res;
+            }
+            for(EtcdKeysResponse.EtcdNode n: r.node.nodes) {
+                if(n.dir) {
+                    continue;
+                }
+                res.put(KvUtils.name(r.node.key, n.key), KvNode.leaf(n.modifiedIndex, n.value));
+            }
+            return res;
+        } catch (EtcdException e) {
+            if(e.getErrorCode() == KEY_NOT_FOUND) {
+                return null;
+            }
+            throw Throwables.asRuntime(e);
+        } catch (Exception e) {
+            throw Throwables.asRuntime(e);
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public ConditionalSubscriptions<KvStorageEvent, String> subscriptions() {
@@ -313,4 +443,15 @@ public class EtcdClientWrapper implements KeyValueStorage {
     public String getPrefix() {
         return prefix;
     }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> list = new ArrayList<>();
+        list.add(new Metric<>(METRICS_PREFIX + "lag", watcher.getLag()));
+        list.add(new Metric<>(METRICS_PREFIX + "etcdIndex", watcher.getEtcdIndex()));
+        list.add(new Metric<>(METRICS_PREFIX + "processedIndex", watcher.getProcessedIndex()));
+        list.add(new Metric<>(METRICS_PREFIX + "coalesced", watcher.getCoalesced()));
+        list.add(new Metric<>(METRICS_PREFIX + "recoveries", watcher.getRecoveries()));
+        return list;
+    }
 }
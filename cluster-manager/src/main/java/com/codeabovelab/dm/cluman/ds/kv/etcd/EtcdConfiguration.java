@@ -41,6 +41,9 @@ public class EtcdConfiguration {
     @Value("${dm.kv.prefix:/cluman}")
     private String prefix;
 
+    @Value("${dm.kv.etcd.maxInFlight:" + EtcdClientWrapper.DEFAULT_MAX_IN_FLIGHT + "}")
+    private int maxInFlight;
+
     @Bean
     public EtcdClientWrapper client() {
         List<URI> uris = new ArrayList<>();
@@ -49,7 +52,7 @@ public class EtcdConfiguration {
         }
         log.info("About to connect to etcd: {}", (Object)etcdUrls);
         EtcdClient etcd = new EtcdClient(uris.toArray(new URI[uris.size()]));
-        return new EtcdClientWrapper(etcd, prefix.trim());
+        return new EtcdClientWrapper(etcd, prefix.trim(), maxInFlight);
     }
 
     @Bean
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.kv.etcd;
+
+import com.codeabovelab.dm.common.kv.KvStorageEvent;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
+import lombok.extern.slf4j.Slf4j;
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.promises.EtcdResponsePromise;
+import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeysResponse;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Watch pipeline of etcd. <p/>
+ * Etcd v2 return single event for each watch request, so we keep a window of watch requests on consecutive
+ * 'waitIndex' values, and many events are drained per round trip. Responses are reordered by 'waitIndex', and
+ * duplicates (when index is not visible to us, watch on it return next event) are dropped. <p/>
+ * When etcd report that index is cleared, we re-read only storage prefix and emit events for nodes which
+ * were changed after last delivered index, then continue watching from current index. Note that deletions
+ * within the cleared window can not be detected by re-read. <p/>
+ * Events are coalesced per key while dispatcher is busy, so consumer receive only last state of key.
+ */
+@Slf4j
+class EtcdWatcher {
+
+    private static final int KEY_NOT_FOUND = 100;
+    private static final int EVENT_INDEX_CLEARED = 401;
+    private static final long RETRY_DELAY_MS = 1000;
+    static final int DEFAULT_WINDOW = 8;
+
+    private final EtcdClient etcd;
+    private final String prefix;
+    private final int window;
+    private final Executor dispatchExecutor;
+    private final Consumer<KvStorageEvent> consumer;
+    private final ScheduledExecutorService scheduler = ExecutorUtils.singleThreadScheduledExecutor(EtcdWatcher.class);
+    private final AtomicLong etcdIndex = new AtomicLong();
+    private final AtomicLong processedIndex = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong recoveries = new AtomicLong();
+
+    // below fields are guarded by 'this'
+    private final TreeMap<Long, EtcdKeysResponse> received = new TreeMap<>();
+    private long next;
+    private long armed;
+    private long delivered;
+    private int generation;
+
+    // below fields are guarded by 'pending'
+    private final Map<String, KvStorageEvent> pending = new LinkedHashMap<>();
+    private boolean dispatchScheduled;
+
+    /**
+     * @param etcd client
+     * @param prefix prefix which will be re-read when watch index is cleared
+     * @param window count of watch requests in flight
+     * @param dispatchExecutor single thread executor for dispatching events
+     * @param consumer consumer of events
+     */
+    EtcdWatcher(EtcdClient etcd, String prefix, int window, Executor dispatchExecutor, Consumer<KvStorageEvent> consumer) {
+        this.etcd = etcd;
+        this.prefix = prefix;
+        this.window = window;
+        this.dispatchExecutor = dispatchExecutor;
+        this.consumer = consumer;
+    }
+
+    void start() {
+        scheduler.execute(this::init);
+    }
+
+    long getEtcdIndex() {
+        return etcdIndex.get();
+    }
+
+    long getProcessedIndex() {
+        return processedIndex.get();
+    }
+
+    /**
+     * Difference between last known index of etcd and index of last dispatched event.
+     * @return lag or zero
+     */
+    long getLag() {
+        return Math.max(0, etcdIndex.get() - processedIndex.get());
+    }
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    long getRecoveries() {
+        return recoveries.get();
+    }
+
+    private void init() {
+        try {
+            long index;
+            try {
+                index = etcd.get("").send().get().etcdIndex;
+            } catch (EtcdException e) {
+                index = e.index;
+            }
+            List<Long> toArm;
+            int gen;
+            synchronized (this) {
+                gen = resetTo(index);
+                toArm = collectArm();
+            }
+            updateEtcdIndex(index);
+            processedIndex.accumulateAndGet(index, Math::max);
+            watch(toArm, gen);
+        } catch (Exception e) {
+            log.error("Can not obtain index of etcd, retry after {}ms", RETRY_DELAY_MS, e);
+            scheduler.schedule(this::init, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private int resetTo(long index) {
+        generation++;
+        received.clear();
+        next = index + 1;
+        armed = index;
+        delivered = index;
+        return generation;
+    }
+
+    private List<Long> collectArm() {
+        List<Long> list = new ArrayList<>();
+        long to = next + window;
+        for(long w = Math.max(armed + 1, next); w < to; ++w) {
+            list.add(w);
+            armed = w;
+        }
+        return list;
+    }
+
+    private void watch(List<Long> indexes, int gen) {
+        for(Long index: indexes) {
+            watch(index, gen);
+        }
+    }
+
+    private void watch(long index, int gen) {
+        try {
+            EtcdResponsePromise<EtcdKeysResponse> promise = etcd.get("").recursive().waitForChange(index).send();
+            promise.addListener(rp -> onResponse(index, gen, rp::get));
+        } catch (Exception e) {
+            retry(index, gen, e);
+        }
+    }
+
+    private void onResponse(long index, int gen, Callable<EtcdKeysResponse> result) {
+        EtcdKeysResponse r;
+        try {
+            r = result.call();
+        } catch (EtcdException e) {
+            if(e.errorCode == EVENT_INDEX_CLEARED) {
+                recover(gen);
+            } else {
+                retry(index, gen, e);
+            }
+            return;
+        } catch (Exception e) {
+            retry(index, gen, e);
+            return;
+        }
+        updateEtcdIndex(r.etcdIndex);
+        List<Long> toArm;
+        synchronized (this) {
+            if(gen != generation || index < next) {
+                // outdated response
+                return;
+            }
+            received.put(index, r);
+            Map.Entry<Long, EtcdKeysResponse> first;
+            while((first = received.firstEntry()) != null && first.getKey() == next) {
+                received.pollFirstEntry();
+                EtcdKeysResponse resp = first.getValue();
+                long modified = resp.node.modifiedIndex;
+                if(modified > delivered) {
+                    delivered = modified;
+                    // enqueue under lock, it keep order of events
+                    enqueue(toEvent(resp));
+                }
+                // watches on indexes up to delivered return already delivered event
+                next = Math.max(next + 1, delivered + 1);
+                received.headMap(next).clear();
+            }
+            toArm = collectArm();
+        }
+        watch(toArm, gen);
+    }
+
+    private KvStorageEvent toEvent(EtcdKeysResponse r) {
+        if(log.isDebugEnabled()) {
+            log.debug("{} {}={} (ttl:{}) {}", r.etcdIndex, r.node.key, r.node.value, r.node.ttl, r.action);
+        }
+        KvStorageEvent.Crud action = null;
+        switch (r.action) {
+            case compareAndDelete:
+            case delete:
+            case expire:
+                action = KvStorageEvent.Crud.DELETE;
+                break;
+            case create:
+                action = KvStorageEvent.Crud.CREATE;
+                break;
+            case compareAndSwap:
+            case set:
+            case update:
+                action = KvStorageEvent.Crud.UPDATE;
+                break;
+        }
+        if(action == null) {
+            return null;
+        }
+        return new KvStorageEvent(r.node.modifiedIndex, r.node.key, r.node.value, r.node.ttl, action);
+    }
+
+    private void retry(long index, int gen, Exception e) {
+        log.warn("Error on watch of {} index, retry after {}ms", index, RETRY_DELAY_MS, e);
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                if(gen != generation || index < next) {
+                    return;
+                }
+            }
+            watch(index, gen);
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void recover(int gen) {
+        synchronized (this) {
+            if(gen != generation) {
+                // recovery is already started
+                return;
+            }
+            // all responses of current generation will be ignored
+            generation++;
+            received.clear();
+        }
+        scheduler.execute(this::reread);
+    }
+
+    /**
+     * Re-read prefix and emit events for nodes which was modified after last delivered event.
+     */
+    private void reread() {
+        try {
+            long since;
+            synchronized (this) {
+                since = delivered;
+            }
+            List<KvStorageEvent> events = new ArrayList<>();
+            long index;
+            try {
+                EtcdKeysResponse r = etcd.get(prefix).recursive().send().get();
+                collectChanged(r.node, since, events);
+                index = r.etcdIndex;
+            } catch (EtcdException e) {
+                if(e.errorCode != KEY_NOT_FOUND) {
+                    throw e;
+                }
+                index = e.index;
+            }
+            events.sort(Comparator.comparingLong(KvStorageEvent::getIndex));
+            log.warn("Watch index {} was cleared, re-read of '{}' gives {} changed nodes, continue from {}.",
+              since, prefix, events.size(), index);
+            recoveries.incrementAndGet();
+            List<Long> toArm;
+            int gen;
+            synchronized (this) {
+                events.forEach(this::enqueue);
+                gen = resetTo(index);
+                toArm = collectArm();
+            }
+            updateEtcdIndex(index);
+            final long processed = index;
+            // it will be executed after dispatching of enqueued events
+            dispatchExecutor.execute(() -> processedIndex.accumulateAndGet(processed, Math::max));
+            watch(toArm, gen);
+        } catch (Exception e) {
+            log.error("Can not re-read '{}', retry after {}ms", prefix, RETRY_DELAY_MS, e);
+            scheduler.schedule(this::reread, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void collectChanged(EtcdKeysResponse.EtcdNode node, long since, List<KvStorageEvent> events) {
+        if(node.dir) {
+            if(node.nodes != null) {
+                node.nodes.forEach(child -> collectChanged(child, since, events));
+            }
+            return;
+        }
+        if(node.modifiedIndex <= since) {
+            return;
+        }
+        KvStorageEvent.Crud action = node.createdIndex > since ? KvStorageEvent.Crud.CREATE : KvStorageEvent.Crud.UPDATE;
+        events.add(new KvStorageEvent(node.modifiedIndex, node.key, node.value, node.ttl, action));
+    }
+
+    private void updateEtcdIndex(Long index) {
+        if(index != null) {
+            etcdIndex.accumulateAndGet(index, Math::max);
+        }
+    }
+
+    /**
+     * Add event to pending map, it replace previous event on same key.
+     * @param event event or null
+     */
+    private void enqueue(KvStorageEvent event) {
+        if(event == null) {
+            return;
+        }
+        synchronized (pending) {
+            KvStorageEvent old = pending.remove(event.getKey());
+            if(old != null) {
+                coalesced.incrementAndGet();
+                event = merge(old, event);
+            }
+            pending.put(event.getKey(), event);
+            if(!dispatchScheduled) {
+                dispatchScheduled = true;
+                dispatchExecutor.execute(this::dispatch);
+            }
+        }
+    }
+
+    private static KvStorageEvent merge(KvStorageEvent old, KvStorageEvent event) {
+        if(old.getAction() == KvStorageEvent.Crud.CREATE && event.getAction() == KvStorageEvent.Crud.UPDATE) {
+            // key is still new for consumer
+            return new KvStorageEvent(event.getIndex(), event.getKey(), event.getValue(), event.getTtl(), KvStorageEvent.Crud.CREATE);
+        }
+        return event;
+    }
+
+    private void dispatch() {
+        List<KvStorageEvent> events;
+        synchronized (pending) {
+            events = new ArrayList<>(pending.values());
+            pending.clear();
+            dispatchScheduled = false;
+        }
+        for(KvStorageEvent event: events) {
+            try {
+                consumer.accept(event);
+            } catch (Exception e) {
+                log.error("Error when dispatch {}", event, e);
+            }
+            processedIndex.accumulateAndGet(event.getIndex(), Math::max);
+        }
+    }
+}
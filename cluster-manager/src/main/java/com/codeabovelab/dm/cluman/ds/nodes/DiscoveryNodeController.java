@@ -17,11 +17,6 @@
 package com.codeabovelab.dm.cluman.ds.nodes;
 
 import com.codeabovelab.dm.agent.notifier.NotifierData;
-import com.codeabovelab.dm.agent.notifier.SysInfo;
-import com.codeabovelab.dm.cluman.model.DiskInfo;
-import com.codeabovelab.dm.cluman.model.NetIfaceCounter;
-import com.codeabovelab.dm.cluman.model.NodeMetrics;
-import com.codeabovelab.dm.cluman.security.TempAuth;
 import com.codeabovelab.dm.common.utils.AddressUtils;
 import com.google.common.base.Strings;
 import lombok.extern.slf4j.Slf4j;
@@ -35,9 +30,9 @@ import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.Map;
 
 import static com.google.common.collect.ImmutableMap.of;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
 import static org.springframework.util.MimeTypeUtils.TEXT_PLAIN_VALUE;
@@ -54,15 +49,15 @@ import static org.springframework.web.bind.annotation.RequestMethod.POST;
 @Slf4j
 public class DiscoveryNodeController {
 
-    private final NodeStorage storage;
+    private final NodeHeartbeatIngest ingest;
     private final String nodeSecret;
     private final String startString;
 
     @Autowired
-    public DiscoveryNodeController(NodeStorage storage,
+    public DiscoveryNodeController(NodeHeartbeatIngest ingest,
                                    @Value("${dm.agent.notifier.secret:}") String nodeSecret,
                                    @Value("${dm.agent.start}") String startString) {
-        this.storage = storage;
+        this.ingest = ingest;
         this.startString = startString;
         this.nodeSecret = Strings.emptyToNull(nodeSecret);
     }
@@ -77,71 +72,31 @@ public class DiscoveryNodeController {
             return new ResponseEntity<>("Server required node auth, need correct value of '" + NotifierData.HEADER + "' header.", UNAUTHORIZED);
         }
         fixAddress(data, request);
-        NodeMetrics health = createNodeHealth(data);
         if (ttl == null) {
             // it workaround, we must rewrite ttl system (it not used)
             ttl = Integer.MAX_VALUE;
         }
-        try (TempAuth ta = TempAuth.asSystem()) {
-            storage.updateNode(name, ttl, b -> {
-                b.addressIfNeed(data.getAddress());
-                b.mergeHealth(health);
-            });
+        if(!ingest.accept(name, ttl, data)) {
+            log.info("Node {} send delta based on unknown heartbeat {}, require full snapshot.", name, data.getBaseSeq());
+            return new ResponseEntity<>("Full snapshot is required.", CONFLICT);
         }
-        log.info("Update node {}", name);
+        log.debug("Update node {}", name);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     private void fixAddress(NotifierData data, HttpServletRequest request) {
         String host = request.getRemoteHost();
         String addrs = data.getAddress();
+        if(addrs == null) {
+            // delta does not contain unchanged address
+            return;
+        }
         String declaredHost  = AddressUtils.getHost(addrs);
         if(AddressUtils.isLocal(declaredHost)) {
             data.setAddress(AddressUtils.setHost(addrs, host));
         }
     }
 
-    private NodeMetrics createNodeHealth(NotifierData nad) {
-        SysInfo system = nad.getSystem();
-        NodeMetrics.Builder nhb = NodeMetrics.builder();
-        nhb.setTime(nad.getTime());
-        if (system != null) {
-            SysInfo.Memory mem = system.getMemory();
-            if (mem != null) {
-                nhb.setSysMemAvail(mem.getAvailable());
-                nhb.setSysMemTotal(mem.getTotal());
-                nhb.setSysMemUsed(mem.getUsed());
-            }
-            Map<String, SysInfo.Disk> disks = system.getDisks();
-            if (disks != null) {
-                for (Map.Entry<String, SysInfo.Disk> disk : disks.entrySet()) {
-                    SysInfo.Disk value = disk.getValue();
-                    if (value == null) {
-                        continue;
-                    }
-                    long used = value.getUsed();
-                    nhb.addDisk(new DiskInfo(disk.getKey(), used, value.getTotal()));
-                }
-            }
-            Map<String, SysInfo.Net> net = system.getNet();
-            if (net != null) {
-                for (Map.Entry<String, SysInfo.Net> nic : net.entrySet()) {
-                    if (nic == null) {
-                        continue;
-                    }
-                    SysInfo.Net nicValue = nic.getValue();
-                    NetIfaceCounter counter = new NetIfaceCounter(nic.getKey(), nicValue.getBytesIn(), nicValue.getBytesOut());
-                    nhb.addNet(counter);
-                }
-            }
-            nhb.setSysCpuLoad(system.getCpuLoad());
-        }
-
-        //we can resolve healthy through analysis of disk and mem availability
-        nhb.setHealthy(true);
-        return nhb.build();
-    }
-
     @RequestMapping(value = "/agent/", method = GET)
     public String agent(HttpServletRequest request) {
         return StrSubstitutor.replace(startString,
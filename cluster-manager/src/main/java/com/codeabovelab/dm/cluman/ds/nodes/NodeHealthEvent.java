@@ -48,6 +48,6 @@ public class NodeHealthEvent implements EventWithTime, WithCluster {
         if(time == null) {
             return Long.MIN_VALUE;
         }
-        return time.toEpochSecond();
+        return time.toInstant().toEpochMilli();
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.nodes;
+
+import com.codeabovelab.dm.agent.notifier.NotifierData;
+import com.codeabovelab.dm.agent.notifier.NotifierDataUtils;
+import com.codeabovelab.dm.agent.notifier.SysInfo;
+import com.codeabovelab.dm.cluman.model.DiskInfo;
+import com.codeabovelab.dm.cluman.model.NetIfaceCounter;
+import com.codeabovelab.dm.cluman.model.NodeMetrics;
+import com.codeabovelab.dm.cluman.security.TempAuth;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest of node agent heartbeats. It restores full data from deltas (see {@link NotifierDataUtils}),
+ * coalesces heartbeats of each node in queue and apply them to {@link NodeStorage} in batches. Node is saved into
+ * KV only when its persisted fields are changed.
+ */
+@Slf4j
+@Component
+public class NodeHeartbeatIngest implements DisposableBean {
+
+    private static final class AgentState {
+        private final long seq;
+        private final NotifierData data;
+
+        AgentState(long seq, NotifierData data) {
+            this.seq = seq;
+            this.data = data;
+        }
+    }
+
+    private static final class Heartbeat {
+        private final String name;
+        private final int ttl;
+        private final NotifierData data;
+
+        Heartbeat(String name, int ttl, NotifierData data) {
+            this.name = name;
+            this.ttl = ttl;
+            this.data = data;
+        }
+    }
+
+    private final NodeStorage storage;
+    private final ConcurrentMap<String, AgentState> states = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Heartbeat> queue = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public NodeHeartbeatIngest(NodeStorage storage, NodeStorageConfig config) {
+        this.storage = storage;
+        this.executor = ExecutorUtils.singleThreadScheduledExecutor(getClass());
+        long period = config.getHeartbeatFlushMillis();
+        this.executor.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Accept heartbeat and place it into queue.
+     * @param name name of node
+     * @param ttl ttl of node
+     * @param data full snapshot or delta
+     * @return false when data is delta which does not match our state of agent, so agent must send full snapshot
+     */
+    public boolean accept(String name, int ttl, NotifierData data) {
+        Long baseSeq = data.getBaseSeq();
+        NotifierData full;
+        if(baseSeq == null) {
+            full = data;
+            states.put(name, new AgentState(data.getSeq(), data));
+        } else {
+            AgentState state = states.get(name);
+            if(state == null || state.seq != baseSeq || !isKnown(name)) {
+                return false;
+            }
+            full = NotifierDataUtils.apply(state.data, data);
+            // agent send heartbeats sequentially, so we can not have concurrent update here
+            if(!states.replace(name, state, new AgentState(data.getSeq(), full))) {
+                return false;
+            }
+        }
+        // new heartbeat contains full data, so it simply replace older one
+        queue.put(name, new Heartbeat(name, ttl, full));
+        return true;
+    }
+
+    private boolean isKnown(String name) {
+        // node may be removed after last heartbeat, so delta can not be applied
+        return queue.containsKey(name) || storage.getNodeRegistrationInternal(name) != null;
+    }
+
+    /**
+     * Apply all queued heartbeats to storage.
+     */
+    void flush() {
+        List<Heartbeat> batch = new ArrayList<>(queue.size());
+        for(String name : queue.keySet()) {
+            Heartbeat hb = queue.remove(name);
+            if(hb != null) {
+                batch.add(hb);
+            }
+        }
+        if(batch.isEmpty()) {
+            return;
+        }
+        try (TempAuth ta = TempAuth.asSystem()) {
+            for(Heartbeat hb : batch) {
+                try {
+                    NodeMetrics health = createNodeHealth(hb.data);
+                    storage.updateNodeIfChanged(hb.name, hb.ttl, b -> {
+                        b.addressIfNeed(hb.data.getAddress());
+                        b.mergeHealth(health);
+                    });
+                } catch (Exception e) {
+                    log.error("Can not update node {}", hb.name, e);
+                }
+            }
+        }
+        log.debug("Update {} nodes from heartbeats.", batch.size());
+    }
+
+    static NodeMetrics createNodeHealth(NotifierData nad) {
+        SysInfo system = nad.getSystem();
+        NodeMetrics.Builder nhb = NodeMetrics.builder();
+        nhb.setTime(nad.getTime());
+        if (system != null) {
+            SysInfo.Memory mem = system.getMemory();
+            if (mem != null) {
+                nhb.setSysMemAvail(mem.getAvailable());
+                nhb.setSysMemTotal(mem.getTotal());
+                nhb.setSysMemUsed(mem.getUsed());
+            }
+            Map<String, SysInfo.Disk> disks = system.getDisks();
+            if (disks != null) {
+                for (Map.Entry<String, SysInfo.Disk> disk : disks.entrySet()) {
+                    SysInfo.Disk value = disk.getValue();
+                    if (value == null) {
+                        continue;
+                    }
+                    long used = value.getUsed();
+                    nhb.addDisk(new DiskInfo(disk.getKey(), used, value.getTotal()));
+                }
+            }
+            Map<String, SysInfo.Net> net = system.getNet();
+            if (net != null) {
+                for (Map.Entry<String, SysInfo.Net> nic : net.entrySet()) {
+                    if (nic == null) {
+                        continue;
+                    }
+                    SysInfo.Net nicValue = nic.getValue();
+                    NetIfaceCounter counter = new NetIfaceCounter(nic.getKey(), nicValue.getBytesIn(), nicValue.getBytesOut());
+                    nhb.addNet(counter);
+                }
+            }
+            nhb.setSysCpuLoad(system.getCpuLoad());
+        }
+
+        //we can resolve healthy through analysis of disk and mem availability
+        nhb.setHealthy(true);
+        return nhb.build();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.executor.shutdownNow();
+        // save queued heartbeats
+        flush();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.nodes;
+
+import com.codeabovelab.dm.cluman.model.NodeMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.codeabovelab.dm.cluman.ds.nodes.NodeMetricsStore.CAPACITIES;
+import static com.codeabovelab.dm.cluman.ds.nodes.NodeMetricsStore.RESOLUTIONS;
+
+/**
+ * Memory mapped file with history of single node. <p/>
+ * File structure.
+ * <pre>
+ *  [magic int32][version int32][ring of 1st resolution][ring of 2nd resolution]..
+ *
+ *  ring:
+ *   [slot] * capacity of resolution, slot index is (time / resolution) % capacity
+ *
+ *  slot:
+ *   [start time of slot int64][column] * count of columns
+ *
+ *  column:
+ *   [count int32][min float64][max float64][sum float64]
+ * </pre>
+ * Slot is actual only when its start time is match with queried time, so old data is overwritten lazily.
+ * New file is not filled, its zero slots are never match any time, so file stays sparse until slots are written.
+ */
+@Slf4j
+final class NodeMetricsFile implements AutoCloseable {
+    private static final int MAGIC = 0x4E4D4554;
+    private static final int VERSION = 2;
+    private static final int HEADER_LEN = 8;
+    private static final NodeMetricsStore.Column[] COLUMNS = NodeMetricsStore.Column.values();
+    private static final int COLUMN_LEN = 4 + 8 * 3;
+    private static final int SLOT_LEN = 8 + COLUMN_LEN * COLUMNS.length;
+    private static final int[] RING_OFFS = new int[RESOLUTIONS.length];
+    private static final int FILE_LEN;
+
+    static {
+        int off = HEADER_LEN;
+        for(int i = 0; i < RESOLUTIONS.length; ++i) {
+            RING_OFFS[i] = off;
+            off += CAPACITIES[i] * SLOT_LEN;
+        }
+        FILE_LEN = off;
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final double[] values = new double[COLUMNS.length];
+    private final double[] lastCounters = new double[COLUMNS.length];
+    private final long[] lastCounterTimes = new long[COLUMNS.length];
+
+    NodeMetricsFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean valid = this.channel.size() == FILE_LEN && isValidHeader(this.channel);
+            if(!valid) {
+                log.info("Init metrics history in \"{}\"", file);
+                // mapping extends empty file with zeros, and zero time is never match with actual slot
+                this.channel.truncate(0);
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_LEN);
+            if(!valid) {
+                this.buffer.putInt(0, MAGIC);
+                this.buffer.putInt(4, VERSION);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean isValidHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LEN);
+        while(header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read whole header
+        }
+        return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+
+    /**
+     * Add sample. Absent metrics of sample are not stored.
+     * @param time time of sample
+     * @param metrics metrics of sample
+     */
+    synchronized void add(long time, NodeMetrics metrics) {
+        for(int i = 0; i < COLUMNS.length; ++i) {
+            NodeMetricsStore.Column column = COLUMNS[i];
+            double value = column.extract(metrics);
+            if(column.isCounter() && !Double.isNaN(value)) {
+                double last = lastCounters[i];
+                long lastTime = lastCounterTimes[i];
+                lastCounters[i] = value;
+                lastCounterTimes[i] = time;
+                // counter may be reset at node restart
+                if(lastTime != 0 && time > lastTime && value >= last) {
+                    value = (value - last) * 1000d / (time - lastTime);
+                } else {
+                    value = Double.NaN;
+                }
+            }
+            values[i] = value;
+        }
+        for(int r = 0; r < RESOLUTIONS.length; ++r) {
+            long resolution = RESOLUTIONS[r];
+            long slotTime = time - Math.floorMod(time, resolution);
+            int off = slotOffset(r, slotTime);
+            if(buffer.getLong(off) != slotTime) {
+                buffer.putLong(off, slotTime);
+                for(int i = 0; i < COLUMNS.length; ++i) {
+                    buffer.putInt(off + 8 + i * COLUMN_LEN, 0);
+                }
+            }
+            for(int i = 0; i < COLUMNS.length; ++i) {
+                double value = values[i];
+                if(Double.isNaN(value)) {
+                    continue;
+                }
+                int coff = off + 8 + i * COLUMN_LEN;
+                int count = buffer.getInt(coff);
+                double min = value;
+                double max = value;
+                double sum = value;
+                if(count > 0) {
+                    min = Math.min(min, buffer.getDouble(coff + 4));
+                    max = Math.max(max, buffer.getDouble(coff + 12));
+                    sum += buffer.getDouble(coff + 20);
+                }
+                buffer.putInt(coff, count + 1);
+                buffer.putDouble(coff + 4, min);
+                buffer.putDouble(coff + 12, max);
+                buffer.putDouble(coff + 20, sum);
+            }
+        }
+    }
+
+    synchronized NodeMetricsHistory query(int r, long from, long to) {
+        long resolution = RESOLUTIONS[r];
+        long first = from - Math.floorMod(from, resolution);
+        // we can not return more points than ring contains
+        first = Math.max(first, to - Math.floorMod(to, resolution) - (CAPACITIES[r] - 1) * resolution);
+        List<NodeMetricsHistory.Point> points = new ArrayList<>();
+        for(long slotTime = first; slotTime <= to; slotTime += resolution) {
+            int off = slotOffset(r, slotTime);
+            if(buffer.getLong(off) != slotTime) {
+                continue;
+            }
+            Map<String, NodeMetricsHistory.Stat> stats = new LinkedHashMap<>();
+            for(int i = 0; i < COLUMNS.length; ++i) {
+                int coff = off + 8 + i * COLUMN_LEN;
+                int count = buffer.getInt(coff);
+                if(count == 0) {
+                    continue;
+                }
+                double min = buffer.getDouble(coff + 4);
+                double max = buffer.getDouble(coff + 12);
+                double sum = buffer.getDouble(coff + 20);
+                stats.put(COLUMNS[i].getName(), new NodeMetricsHistory.Stat(min, sum / count, max));
+            }
+            if(!stats.isEmpty()) {
+                points.add(new NodeMetricsHistory.Point(slotTime, stats));
+            }
+        }
+        return new NodeMetricsHistory(resolution, points);
+    }
+
+    private static int slotOffset(int r, long slotTime) {
+        int slot = (int) Math.floorMod(slotTime / RESOLUTIONS[r], (long) CAPACITIES[r]);
+        return RING_OFFS[r] + slot * SLOT_LEN;
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        buffer.force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "NodeMetricsFile{" + file + "}";
+    }
+}
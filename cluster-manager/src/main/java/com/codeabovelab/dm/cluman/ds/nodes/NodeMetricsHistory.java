@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.nodes;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Range of node metrics history with specified resolution.
+ */
+@Data
+public class NodeMetricsHistory {
+
+    /**
+     * Aggregated values of metric in point.
+     */
+    @Data
+    public static class Stat {
+        private final double min;
+        private final double avg;
+        private final double max;
+    }
+
+    @Data
+    public static class Point {
+        /**
+         * Start time of point interval in milliseconds.
+         */
+        private final long time;
+        /**
+         * Map of {@link NodeMetricsStore.Column#getName() column name} to its value. Absent metrics are omitted.
+         */
+        private final Map<String, Stat> values;
+    }
+
+    /**
+     * Length of point interval in milliseconds.
+     */
+    private final long resolution;
+    private final List<Point> points;
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.nodes;
+
+import com.codeabovelab.dm.cluman.model.DiskInfo;
+import com.codeabovelab.dm.cluman.model.NetIfaceCounter;
+import com.codeabovelab.dm.cluman.model.NodeMetrics;
+import com.codeabovelab.dm.common.fc.FbStorage;
+import com.codeabovelab.dm.common.utils.Closeables;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Local store of node metrics history. Each node has own file with fixed width numeric columns, metrics are
+ * aggregated into min/avg/max at each of {@link #RESOLUTIONS resolutions} at time of adding, so range queries
+ * never read raw samples.
+ */
+@Slf4j
+@Component
+public class NodeMetricsStore implements DisposableBean {
+
+    /**
+     * Stored metrics.
+     */
+    public enum Column {
+        SYS_CPU_LOAD("sysCpuLoad", m -> toDouble(m.getSysCpuLoad())),
+        SYS_MEM_USED("sysMemUsed", m -> toDouble(m.getSysMemUsed())),
+        SYS_MEM_AVAIL("sysMemAvail", m -> toDouble(m.getSysMemAvail())),
+        SYS_MEM_TOTAL("sysMemTotal", m -> toDouble(m.getSysMemTotal())),
+        SWARM_MEM_RESERVED("swarmMemReserved", m -> toDouble(m.getSwarmMemReserved())),
+        SWARM_MEM_TOTAL("swarmMemTotal", m -> toDouble(m.getSwarmMemTotal())),
+        SWARM_CPUS_RESERVED("swarmCpusReserved", m -> toDouble(m.getSwarmCpusReserved())),
+        SWARM_CPUS_TOTAL("swarmCpusTotal", m -> toDouble(m.getSwarmCpusTotal())),
+        DISK_USED("diskUsed", m -> sumDisks(m.getDisks().values(), DiskInfo::getUsed)),
+        DISK_TOTAL("diskTotal", m -> sumDisks(m.getDisks().values(), DiskInfo::getTotal)),
+        /**
+         * Incoming traffic of all interfaces, in bytes per second.
+         */
+        NET_IN("netIn", true, m -> sumNet(m.getNet().values(), NetIfaceCounter::getBytesIn)),
+        /**
+         * Outgoing traffic of all interfaces, in bytes per second.
+         */
+        NET_OUT("netOut", true, m -> sumNet(m.getNet().values(), NetIfaceCounter::getBytesOut));
+
+        private final String name;
+        private final boolean counter;
+        private final ToDoubleFunction<NodeMetrics> extractor;
+
+        Column(String name, ToDoubleFunction<NodeMetrics> extractor) {
+            this(name, false, extractor);
+        }
+
+        Column(String name, boolean counter, ToDoubleFunction<NodeMetrics> extractor) {
+            this.name = name;
+            this.counter = counter;
+            this.extractor = extractor;
+        }
+
+        /**
+         * Name of column in {@link NodeMetricsHistory.Point#getValues()}.
+         * @return name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Counter columns are extracted as cumulative value, but stored as rate per second.
+         * @return true for counter
+         */
+        boolean isCounter() {
+            return counter;
+        }
+
+        /**
+         * Extract value from metrics.
+         * @param metrics metrics
+         * @return value or {@link Double#NaN} when it absent
+         */
+        double extract(NodeMetrics metrics) {
+            return extractor.applyAsDouble(metrics);
+        }
+
+        private static double toDouble(Number number) {
+            return number == null ? Double.NaN : number.doubleValue();
+        }
+
+        private static double sumDisks(Collection<DiskInfo> disks, ToDoubleFunction<DiskInfo> func) {
+            return disks.isEmpty() ? Double.NaN : disks.stream().mapToDouble(func).sum();
+        }
+
+        private static double sumNet(Collection<NetIfaceCounter> net, ToDoubleFunction<NetIfaceCounter> func) {
+            return net.isEmpty() ? Double.NaN : net.stream().mapToDouble(func).sum();
+        }
+    }
+
+    /**
+     * Resolutions of stored history in milliseconds, from finest to coarsest.
+     */
+    static final long[] RESOLUTIONS = {
+      TimeUnit.MINUTES.toMillis(1),
+      TimeUnit.MINUTES.toMillis(10),
+      TimeUnit.HOURS.toMillis(1)
+    };
+    /**
+     * Count of stored points for each resolution: 1 day, 7 days and 90 days. Longer ranges are rarely viewed
+     * per node, and each slot is kept on disk for every node.
+     */
+    static final int[] CAPACITIES = {
+      24 * 60,
+      7 * 24 * 6,
+      90 * 24
+    };
+    private static final String EXT = ".metrics";
+    private final File dir;
+    private final ConcurrentMap<String, NodeMetricsFile> files = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NodeMetricsStore(FbStorage fbStorage) {
+        this(new File(fbStorage.getStorageDir(), "node-metrics"));
+    }
+
+    /**
+     * Create store.
+     * @param dir directory for files of store
+     */
+    public NodeMetricsStore(File dir) {
+        this.dir = dir;
+        this.dir.mkdirs();
+        Assert.isTrue(this.dir.isDirectory(), this.dir.getAbsolutePath() + " is not a directory.");
+    }
+
+    /**
+     * Add metrics of node into history.
+     * @param node name of node
+     * @param metrics metrics, its time is used as time of sample, when it absent - current time is used
+     */
+    public void add(String node, NodeMetrics metrics) {
+        if(metrics == null) {
+            return;
+        }
+        ZonedDateTime zdt = metrics.getTime();
+        long time = zdt == null ? System.currentTimeMillis() : zdt.toInstant().toEpochMilli();
+        NodeMetricsFile file = getFile(node);
+        if(file != null) {
+            file.add(time, metrics);
+        }
+    }
+
+    /**
+     * Query history of node metrics. It choose finest resolution which give not more than specified count of
+     * points for range, when no one resolution fit then coarsest is used.
+     * @param node name of node
+     * @param from start of range in milliseconds
+     * @param to end of range in milliseconds
+     * @param points maximal count of points
+     * @return history, never null
+     */
+    public NodeMetricsHistory query(String node, long from, long to, int points) {
+        Assert.isTrue(from <= to, "'from' is greater than 'to'");
+        Assert.isTrue(points > 0, "'points' must be positive");
+        int res = chooseResolution(to - from, points);
+        NodeMetricsFile file = getFile(node);
+        if(file == null) {
+            return new NodeMetricsHistory(RESOLUTIONS[res], Collections.emptyList());
+        }
+        return file.query(res, from, to);
+    }
+
+    static int chooseResolution(long range, int points) {
+        for(int i = 0; i < RESOLUTIONS.length; ++i) {
+            long resolution = RESOLUTIONS[i];
+            long count = range / resolution + 1;
+            if(count <= points && range <= resolution * CAPACITIES[i]) {
+                return i;
+            }
+        }
+        return RESOLUTIONS.length - 1;
+    }
+
+    /**
+     * Remove history of node.
+     * @param node name of node
+     */
+    public void remove(String node) {
+        NodeMetricsFile file = files.remove(node);
+        if(file != null) {
+            Closeables.close(file);
+        }
+        getPath(node).delete();
+    }
+
+    private NodeMetricsFile getFile(String node) {
+        NodeUtils.checkName(node);
+        return files.computeIfAbsent(node, n -> {
+            try {
+                return new NodeMetricsFile(getPath(n));
+            } catch (IOException e) {
+                log.error("Can not open metrics history of '{}' node.", n, e);
+                return null;
+            }
+        });
+    }
+
+    private File getPath(String node) {
+        return new File(dir, node + EXT);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        files.values().forEach(Closeables::close);
+        files.clear();
+    }
+}
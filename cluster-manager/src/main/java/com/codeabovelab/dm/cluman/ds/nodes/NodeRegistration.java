@@ -45,4 +45,12 @@ public interface NodeRegistration {
     ObjectIdentity getOid();
 
     DockerService getDocker();
+
+    /**
+     * Count of gaps in docker events stream of node. Gap mean that some events may be lost, therefore
+     * any state which is maintained by events must be reloaded. When value does not changed between two calls, then
+     * all events of this time are delivered.
+     * @return count of gaps since node registration
+     */
+    long getEventsGaps();
 }
@@ -18,6 +18,8 @@ package com.codeabovelab.dm.cluman.ds.nodes;
 
 import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
 import com.codeabovelab.dm.cluman.cluster.docker.management.argument.GetEventsArg;
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ResultCode;
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ServiceCallResult;
 import com.codeabovelab.dm.cluman.cluster.docker.model.Actor;
 import com.codeabovelab.dm.cluman.cluster.docker.model.DockerEvent;
 import com.codeabovelab.dm.cluman.cluster.docker.model.EventType;
@@ -41,6 +43,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -61,6 +64,15 @@ class NodeRegistrationImpl implements NodeRegistration, AutoCloseable {
     private final NodeStorage nodeStorage;
     private final ScheduledExecutorService logFetcher;
     private volatile ScheduledFuture<?> logFuture;
+    private final AtomicLong eventsGaps = new AtomicLong();
+    /**
+     * Time (in seconds) since which next events request must be made, zero when unknown.
+     */
+    private volatile long eventsSince;
+    /**
+     * Time (in seconds) of last received event.
+     */
+    private volatile long lastEventTime;
 
     NodeRegistrationImpl(NodeStorage nodeStorage, PersistentBusFactory pbf, NodeInfo nodeInfo) {
         String name = nodeInfo.getName();
@@ -148,6 +160,8 @@ class NodeRegistrationImpl implements NodeRegistration, AutoCloseable {
             cluster = this.builder.getCluster();
             cache = null;
         }
+        // history receives only fields of this heartbeat, merged fields may be stale
+        this.nodeStorage.addMetrics(this.name, metrics);
         this.healthBus.accept(new NodeHealthEvent(this.name, cluster, nmnew));
         return nmnew;
     }
@@ -192,6 +206,7 @@ class NodeRegistrationImpl implements NodeRegistration, AutoCloseable {
             fireNodeChanged(NodeEvent.Action.UPDATE, oldni, ni);
         }
         if(nmnew != null) {
+            this.nodeStorage.addMetrics(this.name, nmnew);
             this.healthBus.accept(new NodeHealthEvent(this.name, cluster, nmnew));
         }
     }
@@ -255,6 +270,11 @@ class NodeRegistrationImpl implements NodeRegistration, AutoCloseable {
         }
     }
 
+    @Override
+    public long getEventsGaps() {
+        return eventsGaps.get();
+    }
+
     /**
      * It change address of node, that cause some side effects: recreation of DockerService for example.
      * @param address new address of node or null
@@ -285,30 +305,54 @@ class NodeRegistrationImpl implements NodeRegistration, AutoCloseable {
         final int periodInSeconds = cfg.getPeriodInSeconds();
         log.info("Register log fetcher from {} node, repeat every {} seconds", name, periodInSeconds);
         Assert.isNull(this.logFuture, "Future of docker logging is not null");
+        // events which is happened before subscription are unknown
+        eventsGaps.incrementAndGet();
+        this.eventsSince = 0;
         this.logFuture = logFetcher.scheduleAtFixedRate(() -> {
             // we must handle errors here, because its may stop of task scheduling
             // for example - temporary disconnect of node will breaks logs fetching due to system restart
+              // docker accept time in seconds
+              final long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+              // next window begins where previous is ended, so events between windows are not lost
+              final long since = this.eventsSince > 0 ? this.eventsSince : now;
+              final long until = now + periodInSeconds;
+              boolean complete = false;
               try {
-                  Long time = System.currentTimeMillis();
-                  Long afterTime = time + periodInSeconds * 1000L;
                   GetEventsArg getEventsArg = GetEventsArg.builder()
-                    .since(time)
-                    .until(afterTime)
+                    .since(since)
+                    .until(until)
                     .watcher(this::proxyDockerEvent)
                     .build();
                   log.debug("getting events args {}", getEventsArg);
                   try (TempAuth ta = TempAuth.asSystem()) {
-                      docker.subscribeToEvents(getEventsArg);
+                      ServiceCallResult res = docker.subscribeToEvents(getEventsArg);
+                      if(res != null && res.getCode() != ResultCode.OK) {
+                          log.warn("Events stream of {} node is broken: {} {}", name, res.getCode(), res.getMessage());
+                      } else if(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) < until) {
+                          log.warn("Events stream of {} node is ended before {}", name, until);
+                      } else {
+                          complete = true;
+                      }
                   }
               } catch (Exception e) {
                   log.error("Can not fetch logs from {}, try again after {} seconds, error: {}", name, periodInSeconds, e.toString());
               }
+              if(complete) {
+                  this.eventsSince = until;
+              } else {
+                  // some events may be lost, we continue from last received event, but still count it as gap
+                  eventsGaps.incrementAndGet();
+                  this.eventsSince = Math.max(since, this.lastEventTime);
+              }
           },
           cfg.getInitialDelayInSeconds(),
           periodInSeconds, TimeUnit.SECONDS);
     }
 
     private void proxyDockerEvent(DockerEvent e) {
+        if(e.getTime() > this.lastEventTime) {
+            this.lastEventTime = e.getTime();
+        }
         try {
             log.debug("Node '{}' send log event: {}", name, e);
             DockerLogEvent logEvent = convertToLogEvent(e);
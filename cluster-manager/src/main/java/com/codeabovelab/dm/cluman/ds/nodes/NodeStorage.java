@@ -75,6 +75,7 @@ public class NodeStorage implements NodeInfoProvider, NodeRegistry {
     private final DockerEventsConfig dockerEventConfig;
     private final NodeStorageConfig config;
     private DockerServiceFactory dockerFactory;
+    private NodeMetricsStore metricsStore;
 
     @Autowired
     public NodeStorage(NodeStorageConfig config,
@@ -127,6 +128,11 @@ public class NodeStorage implements NodeInfoProvider, NodeRegistry {
         this.dockerFactory = dockerFactory;
     }
 
+    @Autowired
+    void setMetricsStore(NodeMetricsStore metricsStore) {
+        this.metricsStore = metricsStore;
+    }
+
     public Subscriptions<NodeEvent> getNodeEventSubscriptions() {
         return nodeEventBus.asSubscriptions();
     }
@@ -145,6 +151,9 @@ public class NodeStorage implements NodeInfoProvider, NodeRegistry {
                     NodeRegistrationImpl nr = e.getValue();
                     NodeInfoImpl ni = nr == null? NodeInfoImpl.builder().name(key).build() : nr.getNodeInfo();
                     fireNodeModification(nr, NodeEvent.Action.DELETE, ni, null);
+                    if(metricsStore != null) {
+                        metricsStore.remove(key);
+                    }
                     break;
                 }
                 default: {
@@ -247,6 +256,30 @@ public class NodeStorage implements NodeInfoProvider, NodeRegistry {
         return null;
     }
 
+    /**
+     * History of node metrics.
+     * @param nodeName name of node
+     * @param from start of range in milliseconds
+     * @param to end of range in milliseconds
+     * @param points maximal count of points, it used for choose resolution of history
+     * @return history or null when node is not found
+     * @see NodeMetricsStore#query(String, long, long, int)
+     */
+    public NodeMetricsHistory getMetricsHistory(String nodeName, long from, long to, int points) {
+        NodeRegistrationImpl nr = getNodeRegistrationInternal(nodeName);
+        if(nr == null) {
+            return null;
+        }
+        checkAccess(nr, Action.READ);
+        return metricsStore.query(nodeName, from, to, points);
+    }
+
+    void addMetrics(String nodeName, NodeMetrics metrics) {
+        if(metricsStore != null) {
+            metricsStore.add(nodeName, metrics);
+        }
+    }
+
     public void removeNode(String name) {
         //we check name for prevent names like '../'
         NodeUtils.checkName(name);
@@ -286,6 +319,32 @@ public class NodeStorage implements NodeInfoProvider, NodeRegistry {
         return nr;
     }
 
+    /**
+     * Register or update node, like {@link #updateNode(String, int, Consumer)}, but save node only when its
+     * persisted fields are changed. It is used for frequent updates, which usually change only node health.
+     * @param name name of node
+     * @param ttl time while for node info is actual
+     * @param updater handler which do node update
+     */
+    NodeRegistration updateNodeIfChanged(String name, int ttl, Consumer<NodeInfoImpl.Builder> updater) {
+        NodeRegistrationImpl existed = getNodeRegistrationInternal(name);
+        List<Object> before = existed == null ? null : persistedFields(existed.getNodeInfo());
+        NodeRegistrationImpl nr = existed == null ? getOrCreateNodeRegistration(name) : existed;
+        nr.setTtl(ttl);// important that it must be before other update methods
+        nr.updateNodeInfo(updater);
+        if(!persistedFields(nr.getNodeInfo()).equals(before)) {
+            save(nr);
+        }
+        return nr;
+    }
+
+    /**
+     * Values of node fields which is mapped to KV, see {@link NodesKvMapAdapterImpl}.
+     */
+    private static List<Object> persistedFields(NodeInfo ni) {
+        return Arrays.asList(ni.getAddress(), ni.getCluster(), ni.getIdInCluster(), ni.getLabels());
+    }
+
     private void save(NodeRegistrationImpl nr) {
         Assert.notNull(nr, "NodeRegistrationImpl is null");
         // we use copy of node info, for data consistency
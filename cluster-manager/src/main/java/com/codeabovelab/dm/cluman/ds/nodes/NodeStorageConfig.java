@@ -41,4 +41,8 @@ public class NodeStorageConfig {
      * Time between nodes update
      */
     private int updateSeconds = 60;
+    /**
+     * Period of saving queued heartbeats of node agents, in milliseconds.
+     */
+    private long heartbeatFlushMillis = 1000L;
 }
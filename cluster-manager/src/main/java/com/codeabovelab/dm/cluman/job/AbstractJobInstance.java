@@ -34,7 +34,6 @@ import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -92,7 +91,8 @@ public abstract class AbstractJobInstance implements JobInstance {
     }
 
     /**
-     * We cannot save all events because it cause memory leak for scheduled jobs.
+     * We cannot keep all events in heap because it cause memory leak for scheduled jobs, so older events
+     * are spilled to disk.
      */
     private static final int MAX_EVENTS = 1024;
     private static final Logger LOG = LoggerFactory.getLogger(JobInstanceImpl.class);
@@ -107,7 +107,7 @@ public abstract class AbstractJobInstance implements JobInstance {
     protected volatile Future<?> executeHandle;
     private final Authentication authentication;
     private final JobWatcher watcher;
-    private final List<JobEvent> events = new CopyOnWriteArrayList<>();
+    private final JobEventLog events;
 
     public AbstractJobInstance(Config config) {
         Assert.notNull(config.parameters, "parameters is null");
@@ -124,6 +124,7 @@ public abstract class AbstractJobInstance implements JobInstance {
         this.watcher = config.watcher;
         this.cancelFuture = ListenableFutureTask.create(this::innerCancel);
         this.startFuture = ListenableFutureTask.create(this::innerStart);
+        this.events = this.manager.createEventLog(MAX_EVENTS, config.info.getId(), this::getInfo);
     }
 
     /**
@@ -162,15 +163,12 @@ public abstract class AbstractJobInstance implements JobInstance {
                 }
             }
         }
-        sendEvent(new JobEvent(getInfo(), message, throwable));
+        sendEvent(getInfo(), message, throwable);
     }
 
-    private void sendEvent(JobEvent event) {
-        this.events.add(event);
+    private void sendEvent(JobInfo info, String message, Throwable throwable) {
+        JobEvent event = this.events.add(info, message, throwable);
         this.manager.getBus().accept(event);
-        while(this.events.size() > MAX_EVENTS) {
-            this.events.remove(0);
-        }
         // we use watcher instead of subscription on bus, because it binds with concrete instance
         //  and also receive instance reference (event does not have reference to instance)
         if(watcher != null) {
@@ -232,7 +230,13 @@ public abstract class AbstractJobInstance implements JobInstance {
             JobInfo newInfo = jib.build();
             boolean change = setInfo(old, newInfo);
             if(change) {
-                return () -> sendEvent(new JobEvent(newInfo, null, e));
+                return () -> {
+                    sendEvent(newInfo, null, e);
+                    if(status.isEnd()) {
+                        // ended job does not need log in heap
+                        this.events.flush();
+                    }
+                };
             }
             old = this.infoRef.get();
         }
@@ -249,7 +253,19 @@ public abstract class AbstractJobInstance implements JobInstance {
 
     @Override
     public List<JobEvent> getLog() {
-        return Collections.unmodifiableList(this.events);
+        return getLog(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JobEvent> getLog(long fromSeq, int limit) {
+        return Collections.unmodifiableList(this.events.read(fromSeq, limit));
+    }
+
+    /**
+     * Release log resources, invoked when job is removed from manager.
+     */
+    void closeLog() {
+        this.events.close();
     }
 
     @Override
@@ -29,15 +29,32 @@ import java.time.ZoneOffset;
 @Data
 public class JobEvent implements JobEventCriteria, EventWithTime {
     public static final String BUS = "bus.cluman.job";
-    private final LocalDateTime time = LocalDateTime.now();
+    /**
+     * Sequence number of event in job log, it used as cursor for reading of log. For events which is
+     * not added into log it is negative.
+     */
+    private final long seq;
+    private final LocalDateTime time;
     private final JobInfo info;
     private final String message;
     @JsonSerialize(converter = StringConverter.class)
     private final Throwable exception;
 
+    public JobEvent(JobInfo info, String message, Throwable exception) {
+        this(-1, LocalDateTime.now(), info, message, exception);
+    }
+
+    public JobEvent(long seq, LocalDateTime time, JobInfo info, String message, Throwable exception) {
+        this.seq = seq;
+        this.time = time;
+        this.info = info;
+        this.message = message;
+        this.exception = exception;
+    }
+
     @Override
     public long getTimeInMilliseconds() {
-        return time.toEpochSecond(ZoneOffset.UTC);
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
     @Override
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.job;
+
+import com.codeabovelab.dm.common.fc.FbAdapter;
+import com.codeabovelab.dm.common.fc.FbQueue;
+import com.codeabovelab.dm.common.fc.FbStorage;
+import com.codeabovelab.dm.common.utils.Closeables;
+import com.codeabovelab.dm.common.utils.Throwables;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Log of job events. Last events are kept in fixed size ring buffer, older events are spilled into
+ * per job {@link FbQueue} (when storage is available), otherwise they are dropped. <p/>
+ * Spill is created at first overflow of ring, and its files are closed after {@link #flush()}, later reads
+ * open it in read only mode. <p/>
+ * Each event has monotonic sequence number ({@link JobEvent#getSeq()}), which can be used as cursor for reading.
+ */
+@Slf4j
+final class JobEventLog implements AutoCloseable {
+
+    /**
+     * Dir (in fb storage) which contains logs of all jobs.
+     */
+    static final String DIR = "job-log";
+    /**
+     * Limit of spilled events, it prevents disk overflow by infinite scheduled jobs.
+     */
+    private static final int MAX_SPILLED = 1024 * 1024;
+
+    private final Object lock = new Object();
+    private final JobEvent[] ring;
+    private final FbStorage storage;
+    private final String id;
+    private final Adapter adapter;
+    private final File spillDir;
+    /**
+     * Opened spill, it is null until first overflow and after flush.
+     */
+    private FbQueue<JobEvent> spill;
+    /**
+     * True when spill contains any events on disk.
+     */
+    private boolean spilled;
+    /**
+     * True when spill can not be created, we do not try it again.
+     */
+    private boolean spillBroken;
+    /**
+     * Seq of first event in ring.
+     */
+    private long ringStart;
+    /**
+     * Seq of next event.
+     */
+    private long nextSeq;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity size of ring buffer
+     * @param storage storage for spilled events, can be null
+     * @param id id of job
+     * @param infoSupplier supplier of actual job info, used for restore events from spill
+     */
+    JobEventLog(int capacity, FbStorage storage, String id, Supplier<JobInfo> infoSupplier) {
+        Assert.isTrue(capacity > 0, "capacity is less than one");
+        this.ring = new JobEvent[capacity];
+        this.storage = storage;
+        this.id = id;
+        this.adapter = new Adapter(infoSupplier);
+        this.spillDir = storage == null ? null : new File(getDir(storage), id);
+    }
+
+    static File getDir(FbStorage storage) {
+        return new File(storage.getStorageDir(), DIR);
+    }
+
+    private FbQueue<JobEvent> openSpill(boolean readOnly) {
+        return FbQueue.builder(adapter)
+          .storage(storage)
+          .id(DIR + "/" + id)
+          .maxSize(MAX_SPILLED)
+          .readOnly(readOnly)
+          .build();
+    }
+
+    /**
+     * Return opened spill, it is created at first call.
+     * @return spill or null when it is not available
+     */
+    private FbQueue<JobEvent> getSpill() {
+        if(spill != null || storage == null || spillBroken || closed) {
+            return spill;
+        }
+        try {
+            if(!spilled) {
+                // job ids are not unique between app runs, so dir may contain events of another job
+                FileSystemUtils.deleteRecursively(spillDir);
+            }
+            spill = openSpill(false);
+        } catch (Exception e) {
+            spillBroken = true;
+            log.error("Can not create spill queue for \"{}\" job, old events will be dropped.", id, e);
+        }
+        return spill;
+    }
+
+    private void closeSpill() {
+        if(spill != null) {
+            Closeables.close(spill);
+            spill = null;
+        }
+    }
+
+    /**
+     * Create event with next seq and add it to log.
+     * @return added event
+     */
+    JobEvent add(JobInfo info, String message, Throwable exception) {
+        synchronized (lock) {
+            JobEvent event = new JobEvent(nextSeq, LocalDateTime.now(), info, message, exception);
+            if(nextSeq - ringStart == ring.length) {
+                spillOldest();
+            }
+            ring[index(nextSeq)] = event;
+            nextSeq++;
+            return event;
+        }
+    }
+
+    /**
+     * Move all events from ring into spill and close its files, it release heap and file handles
+     * for ended jobs. Does nothing when nothing was spilled yet, because small log is cheaper in heap than on disk.
+     */
+    void flush() {
+        synchronized (lock) {
+            if(!spilled || closed) {
+                return;
+            }
+            while(ringStart < nextSeq) {
+                spillOldest();
+            }
+            closeSpill();
+        }
+    }
+
+    private void spillOldest() {
+        int i = index(ringStart);
+        JobEvent event = ring[i];
+        ring[i] = null;
+        ringStart++;
+        FbQueue<JobEvent> spill = getSpill();
+        if(spill == null) {
+            return;
+        }
+        try {
+            spill.push(event);
+            spilled = true;
+        } catch (Exception e) {
+            log.error("Can not spill event {} of \"{}\" job.", event.getSeq(), event.getId(), e);
+        }
+    }
+
+    private int index(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    /**
+     * Seq which will be assigned to next event.
+     * @return seq
+     */
+    long getNextSeq() {
+        synchronized (lock) {
+            return nextSeq;
+        }
+    }
+
+    /**
+     * Read events from specified seq, events which is already dropped are skipped.
+     * @param fromSeq seq of first event, or zero for read from beginning
+     * @param limit max count of events
+     * @return list of events ordered by seq
+     */
+    List<JobEvent> read(long fromSeq, int limit) {
+        Assert.isTrue(limit >= 0, "limit is negative");
+        if(fromSeq < 0) {
+            fromSeq = 0;
+        }
+        Iterator<JobEvent> spilledIter = Collections.emptyIterator();
+        List<JobEvent> res = new ArrayList<>();
+        List<JobEvent> tail = new ArrayList<>();
+        synchronized (lock) {
+            if(fromSeq < ringStart && spilled && !closed) {
+                int last = (int) Math.min(ringStart - fromSeq, Integer.MAX_VALUE);
+                if(spill != null) {
+                    spilledIter = spill.iterator(last);
+                } else {
+                    // spill of ended job is closed, so we open it only for this reading
+                    try(FbQueue<JobEvent> queue = openSpill(true)) {
+                        readSpill(queue.iterator(last), fromSeq, limit, res);
+                    } catch (Exception e) {
+                        log.error("Can not read spilled events of \"{}\" job.", id, e);
+                    }
+                }
+            }
+            long end = Math.min(nextSeq, Math.max(fromSeq, ringStart) + limit);
+            for(long seq = Math.max(fromSeq, ringStart); seq < end; ++seq) {
+                tail.add(ring[index(seq)]);
+            }
+        }
+        // spill iterator works on snapshot, so we can read it without lock
+        readSpill(spilledIter, fromSeq, limit, res);
+        for(JobEvent event: tail) {
+            if(res.size() >= limit) {
+                break;
+            }
+            res.add(event);
+        }
+        return res;
+    }
+
+    private static void readSpill(Iterator<JobEvent> iter, long fromSeq, int limit, List<JobEvent> res) {
+        while(res.size() < limit && iter.hasNext()) {
+            JobEvent event = iter.next();
+            if(event.getSeq() >= fromSeq) {
+                res.add(event);
+            }
+        }
+    }
+
+    /**
+     * Close log and remove its spilled events.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            closeSpill();
+            if(spillDir != null) {
+                FileSystemUtils.deleteRecursively(spillDir);
+            }
+        }
+    }
+
+    /**
+     * Exception restored from spill. We can not restore original exception, therefore only save its printed form.
+     */
+    static final class SpilledException extends Exception {
+        private final String text;
+
+        SpilledException(String text) {
+            super(firstLine(text), null, false, false);
+            this.text = text;
+        }
+
+        private static String firstLine(String text) {
+            int end = text.indexOf('\n');
+            return (end < 0 ? text : text.substring(0, end)).trim();
+        }
+
+        @Override
+        public void printStackTrace(PrintWriter s) {
+            s.print(text);
+        }
+
+        @Override
+        public void printStackTrace(PrintStream s) {
+            s.print(text);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+
+    /**
+     * Compact binary form of event. Constant part of job info (id, title, type, create time) is not saved
+     * and restored from actual job info.
+     */
+    private static final class Adapter implements FbAdapter<JobEvent> {
+        private static final int VERSION = 1;
+        private final Supplier<JobInfo> infoSupplier;
+
+        Adapter(Supplier<JobInfo> infoSupplier) {
+            this.infoSupplier = infoSupplier;
+        }
+
+        @Override
+        public byte[] serialize(JobEvent event) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+            try(DataOutputStream out = new DataOutputStream(baos)) {
+                out.writeByte(VERSION);
+                out.writeLong(event.getSeq());
+                writeTime(out, event.getTime());
+                JobInfo info = event.getInfo();
+                out.writeByte(info.getStatus().ordinal());
+                writeTime(out, info.getStartTime());
+                writeTime(out, info.getEndTime());
+                writeString(out, event.getMessage());
+                writeString(out, Throwables.printToString(event.getException()));
+            }
+            return baos.toByteArray();
+        }
+
+        @Override
+        public JobEvent deserialize(byte[] data, int offset, int len) throws IOException {
+            try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, len))) {
+                int version = in.readUnsignedByte();
+                if(version != VERSION) {
+                    throw new IOException("Unsupported version of job event: " + version);
+                }
+                long seq = in.readLong();
+                LocalDateTime time = readTime(in);
+                JobInfo info = JobInfo.builder().from(infoSupplier.get())
+                  .status(JobStatus.values()[in.readUnsignedByte()])
+                  .startTime(readTime(in))
+                  .endTime(readTime(in))
+                  .build();
+                String message = readString(in);
+                String exception = readString(in);
+                return new JobEvent(seq, time, info, message, exception == null? null : new SpilledException(exception));
+            }
+        }
+
+        private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+
+        private static LocalDateTime readTime(DataInputStream in) throws IOException {
+            long sec = in.readLong();
+            int nano = in.readInt();
+            return LocalDateTime.ofEpochSecond(sec, nano, ZoneOffset.UTC);
+        }
+
+        private static void writeString(DataOutputStream out, String str) throws IOException {
+            // 'writeUTF' is limited by 64k, but messages with stack traces may be larger
+            if(str == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int len = in.readInt();
+            if(len < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[len];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
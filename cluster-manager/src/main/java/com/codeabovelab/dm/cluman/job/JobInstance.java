@@ -54,11 +54,19 @@ public interface JobInstance {
     ListenableFuture<JobInstance> atEnd();
 
     /**
-     * immutable list of job events
+     * immutable list of all job events, it may be large, therefore consider use of {@link #getLog(long, int)}
      * @return
      */
     List<JobEvent> getLog();
 
+    /**
+     * Immutable list of job events, beginning from specified sequence number.
+     * @param fromSeq {@link JobEvent#getSeq()} of first event, usually it is 'seq + 1' of last read event
+     * @param limit max count of returned events
+     * @return events ordered by seq
+     */
+    List<JobEvent> getLog(long fromSeq, int limit);
+
     /**
      * Send message into job log. Message support formatting as {@link MessageFormat#format(String, Object...)}. <p/>
      * First throwable object in args will be removed from its and passed to  event as {@link JobEvent#getException()}.
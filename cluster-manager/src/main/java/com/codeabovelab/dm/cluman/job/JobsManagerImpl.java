@@ -16,6 +16,7 @@
 
 package com.codeabovelab.dm.cluman.job;
 
+import com.codeabovelab.dm.common.fc.FbStorage;
 import com.codeabovelab.dm.common.mb.ConditionalMessageBusWrapper;
 import com.codeabovelab.dm.common.mb.ConditionalSubscriptions;
 import com.codeabovelab.dm.common.mb.MessageBus;
@@ -33,12 +34,14 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 /**
  */
@@ -54,6 +57,7 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
     private final TaskScheduler scheduler;
     private boolean running;
     private final long jobLifetime;
+    private FbStorage fbStorage;
 
     @Autowired
     public JobsManagerImpl(JobConfiguration.JobsManagerConfiguration configuration, ListableBeanFactory beanFactory, JobBeanDescriptionFactory descFactory) {
@@ -71,6 +75,15 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
         this.scheduler = makeScheduler(configuration.getSchedulerPoolSize());
     }
 
+    /**
+     * Storage for spilled job logs, when it absent old job events are dropped.
+     * @param fbStorage storage
+     */
+    @Autowired(required = false)
+    void setFbStorage(FbStorage fbStorage) {
+        this.fbStorage = fbStorage;
+    }
+
     private long parseJobLifetime(String expr) {
         if(StringUtils.hasText(expr)) {
             try {
@@ -108,7 +121,7 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
         LocalDateTime last = LocalDateTime.now().minusSeconds(jobLifetime);
         for(JobInstance jobInstance: list) {
             if(last.isAfter(jobInstance.getInfo().getEndTime())) {
-                this.jobs.remove(jobInstance.getJobContext().getParameters());
+                removeJob(jobInstance);
             }
         }
     }
@@ -160,7 +173,15 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
         if(job == null) {
             return null;
         }
-        return jobs.remove(job.getJobContext().getParameters());
+        return removeJob(job) ? job : null;
+    }
+
+    private boolean removeJob(JobInstance job) {
+        boolean removed = jobs.remove(job.getJobContext().getParameters(), job);
+        if(removed && job instanceof AbstractJobInstance) {
+            ((AbstractJobInstance) job).closeLog();
+        }
+        return removed;
     }
 
     @Override
@@ -188,6 +209,10 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
         return factories.keySet();
     }
 
+    JobEventLog createEventLog(int capacity, String jobId, Supplier<JobInfo> infoSupplier) {
+        return new JobEventLog(capacity, this.fbStorage, jobId, infoSupplier);
+    }
+
     Future<?> execute(Runnable run) {
         return this.executor.submit(run);
     }
@@ -213,6 +238,10 @@ public class JobsManagerImpl implements JobsManager, SmartLifecycle {
 
     @Override
     public void start() {
+        if(fbStorage != null) {
+            // jobs are not persisted, therefore their logs from previous run are garbage
+            FileSystemUtils.deleteRecursively(JobEventLog.getDir(fbStorage));
+        }
         // we can load factories only when all other beans is prepared
         try {
             this.factories = loadFactories(beanFactory);
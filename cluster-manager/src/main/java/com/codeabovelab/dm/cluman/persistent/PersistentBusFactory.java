@@ -16,7 +16,8 @@
 
 package com.codeabovelab.dm.cluman.persistent;
 
-import com.codeabovelab.dm.common.fc.FbJacksonAdapter;
+import com.codeabovelab.dm.cluman.model.EventWithTime;
+import com.codeabovelab.dm.common.fc.FbBinaryAdapter;
 import com.codeabovelab.dm.common.fc.FbQueue;
 import com.codeabovelab.dm.common.fc.FbStorage;
 import com.codeabovelab.dm.common.mb.*;
@@ -35,6 +36,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  */
@@ -48,6 +50,10 @@ public class PersistentBusFactory implements InitializingBean, DisposableBean {
      */
     @SuppressWarnings("unchecked")
     public static final Key<PersistentBus<?>> EXT_KEY = new Key<>((Class)PersistentBus.class);
+    /**
+     * Events are small, so compress only large ones, like events with stack traces.
+     */
+    private static final int COMPRESS_THRESHOLD = 1024;
 
     public class PersistentBus<T> implements AutoCloseable {
 
@@ -57,10 +63,15 @@ public class PersistentBusFactory implements InitializingBean, DisposableBean {
         private final MessageBusImpl<T, MessageSubscriptionsWrapper<T>> bus;
 
         public PersistentBus(Class<T> type, String id, int size) {
-            this.queue = FbQueue.builder(new FbJacksonAdapter<>(objectMapper, type))
+            FbBinaryAdapter<T> adapter = FbBinaryAdapter.builder(objectMapper, type)
+              .schema(1, type)
+              .compressThreshold(COMPRESS_THRESHOLD)
+              .build();
+            this.queue = FbQueue.builder(adapter)
               .id(id)
               .storage(fbStorage)
               .maxSize(size)
+              .timeExtractor(timeExtractor(type))
               .build();
             this.queueListener = queue::push;
             this.bus = MessageBusImpl
@@ -72,6 +83,13 @@ public class PersistentBusFactory implements InitializingBean, DisposableBean {
             this.bus.subscribe(queueListener);
         }
 
+        private ToLongFunction<T> timeExtractor(Class<T> type) {
+            if(!EventWithTime.class.isAssignableFrom(type)) {
+                return null;
+            }
+            return e -> ((EventWithTime) e).getTimeInMilliseconds();
+        }
+
         private void flusher(MessageBus<T> mb, Consumer<T> l) {
             if(WrappedConsumer.unwrap(l) == queueListener) {
                 return;
@@ -59,4 +59,14 @@ public abstract class AbstractAclService implements AclService {
      * @return
      */
     public abstract AclSource getAclSource(ObjectIdentity oid);
+
+    /**
+     * Object which acl is used for access decisions about specified object. Objects with same source
+     * have same decisions, therefore it used as key of {@link AclDecisionCache}.
+     * @param oid object
+     * @return source, by default is object itself
+     */
+    public ObjectIdentity getDecisionSource(ObjectIdentity oid) {
+        return oid;
+    }
 }
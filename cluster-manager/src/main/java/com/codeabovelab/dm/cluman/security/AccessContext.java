@@ -28,16 +28,30 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
+ * Context of access checks. Usually it live while request is processed, so it memoize decisions
+ * in addition to shared {@link AclDecisionCache}.
  */
 public class AccessContext {
+    private final AccessContextFactory factory;
     private final AclService aclService;
     private final ExtPermissionGrantingStrategy pgs;
     private final List<Sid> sids;
     private final Authentication authentication;
+    private final AclDecisionCache cache;
+    /**
+     * Local decisions, keyed by object instead of source, sids is same for whole context.
+     */
+    private final Map<AclDecisionCache.Key, Boolean> decisions = new ConcurrentHashMap<>();
+    private volatile long generation;
 
     AccessContext(AccessContextFactory factory) {
         this.authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -47,9 +61,12 @@ public class AccessContext {
         } else {
             sids = factory.sidStrategy.getSids(authentication);
         }
+        this.factory = factory;
         this.aclService = factory.aclService;
         this.pgs = factory.pgs;
         this.sids = sids;
+        this.cache = factory.decisionCache;
+        this.generation = cache.getGeneration();
     }
 
     /**
@@ -63,12 +80,50 @@ public class AccessContext {
         if (isAdminFor(o)) {
             return true;
         }
+        long gen = cache.getGeneration();
+        if(gen != this.generation) {
+            // something is changed after our decisions
+            decisions.clear();
+            this.generation = gen;
+        }
+        List<Permission> permList = Arrays.asList(perms);
+        AclDecisionCache.Key localKey = new AclDecisionCache.Key(null, null, o, permList);
+        Boolean granted = decisions.get(localKey);
+        if(granted != null) {
+            return granted;
+        }
         try {
-            Acl acl = aclService.readAclById(o);
-            return acl.isGranted(Arrays.asList(perms), sids, false);
+            ObjectIdentity source = factory.getDecisionSource(o);
+            AclDecisionCache.Key key = new AclDecisionCache.Key(sids, o.getType(), source, permList);
+            granted = cache.get(key);
+            if(granted == null) {
+                Acl acl = aclService.readAclById(o);
+                granted = acl.isGranted(permList, sids, false);
+                cache.put(key, granted, gen);
+            }
         } catch (NotFoundException e) {
-            return false;
+            granted = false;
+        }
+        decisions.put(localKey, granted);
+        return granted;
+    }
+
+    /**
+     * Filter objects which are granted with specified permissions. Objects which share same acl source
+     * (like containers of one cluster) are evaluated only once.
+     * @param objects objects
+     * @param toOid function which returns identity of object
+     * @param perms permissions
+     * @return list of granted objects
+     */
+    public <T> List<T> filterGranted(Collection<T> objects, Function<T, ObjectIdentity> toOid, Permission ... perms) {
+        List<T> res = new ArrayList<>(objects.size());
+        for(T object: objects) {
+            if(isGranted(toOid.apply(object), perms)) {
+                res.add(object);
+            }
         }
+        return res;
     }
 
     public void assertGranted(ObjectIdentity oid, Permission ... perms) {
@@ -18,6 +18,7 @@ package com.codeabovelab.dm.cluman.security;
 
 import com.codeabovelab.dm.common.security.acl.ExtPermissionGrantingStrategy;
 import org.springframework.security.acls.model.AclService;
+import org.springframework.security.acls.model.ObjectIdentity;
 import org.springframework.security.acls.model.SidRetrievalStrategy;
 import org.springframework.util.Assert;
 
@@ -30,15 +31,34 @@ public class AccessContextFactory {
     private static final ThreadLocal<AccessContext> TL = new ThreadLocal<>();
     private static final Object lock = new Object();
     private static volatile AccessContextFactory instance;
+    private static final long DECISIONS_MAX_SIZE = 100_000;
+    private static final long DECISIONS_EXPIRE_MINUTES = 10;
 
     final AclService aclService;
     final ExtPermissionGrantingStrategy pgs;
     final SidRetrievalStrategy sidStrategy;
+    final AclDecisionCache decisionCache;
 
     public AccessContextFactory(AclService aclService, ExtPermissionGrantingStrategy pgs, SidRetrievalStrategy sidStrategy) {
         this.aclService = aclService;
         this.pgs = pgs;
         this.sidStrategy = sidStrategy;
+        this.decisionCache = new AclDecisionCache(DECISIONS_MAX_SIZE, DECISIONS_EXPIRE_MINUTES);
+    }
+
+    /**
+     * Shared cache of access decisions, it must be invalidated on acl and user changes.
+     * @return cache
+     */
+    public AclDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    ObjectIdentity getDecisionSource(ObjectIdentity oid) {
+        if(aclService instanceof AbstractAclService) {
+            return ((AbstractAclService) aclService).getDecisionSource(oid);
+        }
+        return oid;
     }
 
     /**
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.security.acls.domain.PrincipalSid;
+import org.springframework.security.acls.model.ObjectIdentity;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.Sid;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of access decisions. Decision is keyed by sids, type of object, source of acl and permissions, where
+ * source is object which acl is used for decision (see {@link AbstractAclService#getDecisionSource(ObjectIdentity)}),
+ * therefore all containers of one cluster share one decision. <p/>
+ * Entries are invalidated on changes of acl and users. Each invalidation increments generation, so
+ * {@link AccessContext} can drop its local decisions.
+ */
+public final class AclDecisionCache {
+
+    @EqualsAndHashCode
+    @ToString
+    @AllArgsConstructor
+    static final class Key {
+        private final List<Sid> sids;
+        private final String type;
+        private final ObjectIdentity source;
+        private final List<Permission> perms;
+    }
+
+    private final Cache<Key, Boolean> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    AclDecisionCache(long maxSize, long expireAfterWriteMinutes) {
+        this.cache = CacheBuilder.newBuilder()
+          .maximumSize(maxSize)
+          // acl of virtual objects may be changed without events, for example when node is moved to other cluster
+          .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+          .build();
+    }
+
+    long getGeneration() {
+        return generation.get();
+    }
+
+    Boolean get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Save decision.
+     * @param key key
+     * @param granted decision
+     * @param generation generation which was actual before decision was made
+     */
+    void put(Key key, boolean granted, long generation) {
+        cache.put(key, granted);
+        if(this.generation.get() != generation) {
+            // invalidation was happened while we made decision, so it may be outdated
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidate decisions which are made by acl of specified object.
+     * @param source object which acl is changed
+     */
+    public void invalidate(ObjectIdentity source) {
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(k -> source.equals(k.source));
+    }
+
+    /**
+     * Invalidate decisions for all sid sets which contains specified principal.
+     * @param principal name of user
+     */
+    public void invalidatePrincipal(String principal) {
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(k -> k.sids.stream()
+          .anyMatch(sid -> sid instanceof PrincipalSid && principal.equals(((PrincipalSid) sid).getPrincipal())));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -18,6 +18,8 @@ package com.codeabovelab.dm.cluman.security;
 
 import com.codeabovelab.dm.common.security.acl.AclSource;
 
+import org.springframework.security.acls.model.ObjectIdentity;
+
 import java.io.Serializable;
 import java.util.function.Consumer;
 
@@ -30,4 +32,13 @@ public interface AclProvider {
     void update(Serializable id, AclModifier operator);
 
     void list(Consumer<AclSource> consumer);
+
+    /**
+     * @see AbstractAclService#getDecisionSource(ObjectIdentity)
+     * @param id object id
+     * @return source of acl, or null when object has own acl
+     */
+    default ObjectIdentity getDecisionSource(Serializable id) {
+        return null;
+    }
 }
@@ -31,7 +31,6 @@ import org.springframework.util.Assert;
 
 import java.util.List;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  */
@@ -130,9 +129,7 @@ public class DockerServiceSecurityWrapper implements DockerService {
     public List<DockerContainer> getContainers(GetContainersArg arg) {
         AccessContext context = aclContextFactory.getContext();
         checkServiceAccessInternal(context, Action.READ);
-        return service.getContainers(arg).stream().filter((img) -> {
-            return context.isGranted(SecuredType.CONTAINER.id(img.getId()), Action.READ);
-        }).collect(Collectors.toList());
+        return context.filterGranted(service.getContainers(arg), (c) -> SecuredType.CONTAINER.id(c.getId()), Action.READ);
     }
 
     @Override
@@ -273,17 +270,14 @@ public class DockerServiceSecurityWrapper implements DockerService {
     public List<Network> getNetworks() {
         AccessContext context = aclContextFactory.getContext();
         checkServiceAccessInternal(context, Action.READ);
-        return service.getNetworks().stream().filter((net) -> context.isGranted(SecuredType.NETWORK.id(net.getId()), Action.READ))
-                .collect(Collectors.toList());
+        return context.filterGranted(service.getNetworks(), (net) -> SecuredType.NETWORK.id(net.getId()), Action.READ);
     }
 
     @Override
     public List<ImageItem> getImages(GetImagesArg arg) {
         AccessContext context = aclContextFactory.getContext();
         checkServiceAccessInternal(context, Action.READ);
-        return  service.getImages(arg).stream().filter((img) -> {
-            return context.isGranted(SecuredType.LOCAL_IMAGE.id(img.getId()), Action.READ);
-        }).collect(Collectors.toList());
+        return context.filterGranted(service.getImages(arg), (img) -> SecuredType.LOCAL_IMAGE.id(img.getId()), Action.READ);
     }
 
     @Override
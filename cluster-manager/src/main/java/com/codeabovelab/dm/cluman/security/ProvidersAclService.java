@@ -63,6 +63,13 @@ public class ProvidersAclService extends AbstractAclService {
         return source;
     }
 
+    @Override
+    public ObjectIdentity getDecisionSource(ObjectIdentity oid) {
+        AclProvider provider = getAclProvider(oid);
+        ObjectIdentity source = provider.getDecisionSource(oid.getIdentifier());
+        return source == null ? oid : source;
+    }
+
     private AclProvider getAclProvider(ObjectIdentity oid) {
         AclProvider provider = providers.get(oid.getType());
         if(provider == null) {
@@ -26,6 +26,7 @@ import com.codeabovelab.dm.common.security.dto.ObjectIdentityData;
 import com.codeabovelab.dm.common.security.dto.PermissionData;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.ObjectIdentity;
 
 import java.io.Serializable;
 import java.util.function.Consumer;
@@ -82,6 +83,16 @@ public abstract class VirtualAclProvider implements AclProvider {
         return aclsb.build();
     }
 
+    /**
+     * Acl of virtual object is made from acl of its cluster, so all objects of cluster have same decisions.
+     */
+    @Override
+    public ObjectIdentity getDecisionSource(Serializable id) {
+        String cluster = getCluster(id);
+        // unbound object has own acl
+        return cluster == null ? null : SecuredType.CLUSTER.id(cluster);
+    }
+
     protected abstract String getCluster(Serializable id);
 
     protected abstract ObjectIdentityData toOid(Serializable id);
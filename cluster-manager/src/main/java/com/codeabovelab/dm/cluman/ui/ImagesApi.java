@@ -133,7 +133,7 @@ public class ImagesApi {
 
         SearchResult result;
         if (!CollectionUtils.isEmpty(registries)) {
-            RegistrySearchHelper rsh = new RegistrySearchHelper(query, page, size);
+            List<RegistryService> services = new ArrayList<>();
             RegistryService hub = null;
             for (String registry : registries) {
                 RegistryService service = registryRepository.getByName(registry);
@@ -145,12 +145,12 @@ public class ImagesApi {
                     hub = service;
                     continue;
                 }
-                rsh.search(service);
+                services.add(service);
             }
             if (hub != null) {
-                rsh.search(hub);
+                services.add(hub);
             }
-            result = rsh.collect();
+            result = registryRepository.search(services, query, page, size);
         } else {
             result = registryRepository.search(query, page, size);
         }
@@ -23,6 +23,7 @@ import com.codeabovelab.dm.cluman.validate.ExtendedAssert;
 import com.codeabovelab.dm.common.mb.Subscription;
 import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import com.codeabovelab.dm.common.utils.Throwables;
+import io.swagger.annotations.ApiOperation;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,11 +81,14 @@ public class JobApi {
         return UiJob.toUi(ji);
     }
 
+    @ApiOperation("Job log, 'from' is a seq of first event, use 'seq + 1' of last received event for read next part.")
     @RequestMapping(value = "/{job:.*}/log", method = GET)
-    public List<UiJobEvent> getJobLog(@PathVariable("job") String job) {
+    public List<UiJobEvent> getJobLog(@PathVariable("job") String job,
+                                      @RequestParam(value = "from", defaultValue = "0") long from,
+                                      @RequestParam(value = "limit", defaultValue = "" + Integer.MAX_VALUE) int limit) {
         JobInstance ji = jobsManager.getJob(job);
         ExtendedAssert.notFound(ji, "Job was not found by id: " + job);
-        return ji.getLog().stream().map(JobApi::toUi).collect(Collectors.toList());
+        return ji.getLog(from, limit).stream().map(JobApi::toUi).collect(Collectors.toList());
     }
 
     @RequestMapping(value = "/{job:.*}", method = DELETE)
@@ -96,18 +100,21 @@ public class JobApi {
         return UiJob.toUi(ji);
     }
 
+    @ApiOperation("Stream of job events, when 'from' is specified then stream begins from history events with seq >= 'from'.")
     @RequestMapping(value = "/{job:.*}/logStream", method = GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseBodyEmitter getJobLogStream(@PathVariable("job") String job) {
+    public ResponseBodyEmitter getJobLogStream(@PathVariable("job") String job,
+                                               @RequestParam(value = "from", required = false) Long from) {
         JobInstance ji = jobsManager.getJob(job);
         ExtendedAssert.notFound(ji, "Job was not found by id: " + job);
         ResponseBodyEmitter emitter = new ResponseBodyEmitter(TimeUnit.MINUTES.toMillis(10L));
-        JobEventConsumer consumer = new JobEventConsumer(this.jobsManager, emitter, ji);
+        JobEventConsumer consumer = new JobEventConsumer(this.jobsManager, emitter, ji, from);
+        Subscription subs = jobsManager.getSubscriptions().openSubscriptionOnKey(consumer, ji.getInfo());
+        // history must be sent after subscription, otherwise we can lose events between them
+        consumer.sendHistory();
         ji.atEnd().addListener(() -> {
             // it need for job which finish before request
             emitter.complete();
         }, ExecutorUtils.DIRECT);
-        // TODO  we may want to consume history, also.
-        Subscription subs = jobsManager.getSubscriptions().openSubscriptionOnKey(consumer, ji.getInfo());
         emitter.onCompletion(() -> {
             // Emitter not invoke this at client disconnect,
             //  may be it will be fix in future versions
@@ -136,27 +143,89 @@ public class JobApi {
             }
         }
         return UiJobEvent.builder()
+                .seq(event.getSeq())
                 .info(event.getInfo())
                 .time(event.getTime())
                 .message(message)
                 .build();
     }
 
+    /**
+     * Send events to emitter. It tracks seq of sent events, so it skip duplicates and reads from log events
+     * which is missed by bus.
+     */
     public static class JobEventConsumer implements Consumer<JobEvent> {
 
         private static final Logger LOG = LoggerFactory.getLogger(JobEventConsumer.class);
         private final ResponseBodyEmitter emitter;
         private final JobInstance jobInstance;
         private final JobsManager jobsManager;
+        private final boolean history;
+        /**
+         * Seq of last sent event, negative when no one event is known.
+         */
+        private long lastSeq;
+        private volatile boolean closed;
 
         public JobEventConsumer(JobsManager jobsManager, ResponseBodyEmitter emitter, JobInstance jobInstance) {
+            this(jobsManager, emitter, jobInstance, null);
+        }
+
+        /**
+         * @param from seq of first event in stream, or null when stream must contain only new events
+         */
+        public JobEventConsumer(JobsManager jobsManager, ResponseBodyEmitter emitter, JobInstance jobInstance, Long from) {
             this.jobsManager = jobsManager;
             this.emitter = emitter;
             this.jobInstance = jobInstance;
+            this.history = from != null;
+            this.lastSeq = this.history ? Math.max(from, 0L) - 1 : -1;
+        }
+
+        /**
+         * Send events from log which is not sent yet. Does nothing when consumer is created without 'from'.
+         */
+        public synchronized void sendHistory() {
+            if(!history) {
+                return;
+            }
+            for(JobEvent event: jobInstance.getLog(lastSeq + 1, Integer.MAX_VALUE)) {
+                if(closed) {
+                    return;
+                }
+                sendEvent(event);
+            }
         }
 
         @Override
-        public void accept(JobEvent event) {
+        public synchronized void accept(JobEvent event) {
+            if(closed) {
+                return;
+            }
+            long seq = event.getSeq();
+            // without history we track seq only after first event
+            boolean tracked = history || lastSeq >= 0;
+            if(seq >= 0 && tracked) {
+                if(seq <= lastSeq) {
+                    // it already sent from history
+                    return;
+                }
+                if(seq > lastSeq + 1) {
+                    for(JobEvent missed: jobInstance.getLog(lastSeq + 1, (int) Math.min(seq - lastSeq - 1, Integer.MAX_VALUE))) {
+                        sendEvent(missed);
+                    }
+                }
+            }
+            sendEvent(event);
+        }
+
+        private void sendEvent(JobEvent event) {
+            if(closed) {
+                return;
+            }
+            if(event.getSeq() >= 0) {
+                lastSeq = event.getSeq();
+            }
             try {
                 UiJobEvent uje = toUi(event);
                 emitter.send(uje, MediaType.APPLICATION_JSON_UTF8);
@@ -179,6 +248,7 @@ public class JobApi {
         }
 
         private void close() {
+            closed = true;
             emitter.complete();
             jobsManager.getSubscriptions().unsubscribe(this);
         }
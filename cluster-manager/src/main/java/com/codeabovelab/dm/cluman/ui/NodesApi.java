@@ -20,15 +20,20 @@ package com.codeabovelab.dm.cluman.ui;
 import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
 import com.codeabovelab.dm.cluman.cluster.docker.management.argument.GetContainersArg;
 import com.codeabovelab.dm.cluman.ds.container.ContainerStorage;
+import com.codeabovelab.dm.cluman.ds.nodes.NodeMetricsHistory;
 import com.codeabovelab.dm.cluman.ds.nodes.NodeStorage;
 import com.codeabovelab.dm.cluman.model.*;
 import com.codeabovelab.dm.cluman.ui.model.UISearchQuery;
 import com.codeabovelab.dm.cluman.ui.model.UiContainer;
 import com.codeabovelab.dm.cluman.validate.ExtendedAssert;
+import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -96,6 +101,29 @@ public class NodesApi {
         return uics;
     }
 
+    @ApiOperation("History of node metrics, resolution of history is chosen by count of points. "
+      + "Time range is specified in UTC, by default it is last day.")
+    @RequestMapping(value = "/{name}/metrics", method = RequestMethod.GET)
+    public NodeMetricsHistory getMetrics(@PathVariable("name") String name,
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                         @RequestParam(name = "from", required = false) LocalDateTime from,
+                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                         @RequestParam(name = "to", required = false) LocalDateTime to,
+                                         @RequestParam(name = "points", defaultValue = "300") int points) {
+        if(to == null) {
+            to = LocalDateTime.now(ZoneOffset.UTC);
+        }
+        if(from == null) {
+            from = to.minusDays(1);
+        }
+        NodeMetricsHistory history = nodeStorage.getMetricsHistory(name,
+          from.toInstant(ZoneOffset.UTC).toEpochMilli(),
+          to.toInstant(ZoneOffset.UTC).toEpochMilli(),
+          points);
+        ExtendedAssert.notFound(history, "Can not find node: " + name);
+        return history;
+    }
+
     @RequestMapping(value = "/filtered", method = RequestMethod.PUT)
     public Collection<NodeInfo> listNodes(@RequestBody UISearchQuery searchQuery) {
         Collection<NodeInfo> nodes = listNodes();
@@ -18,6 +18,7 @@ package com.codeabovelab.dm.cluman.ui;
 
 import com.codeabovelab.dm.cluman.model.NotFoundException;
 import com.codeabovelab.dm.cluman.security.AbstractAclService;
+import com.codeabovelab.dm.cluman.security.AccessContextFactory;
 import com.codeabovelab.dm.cluman.security.AuthoritiesService;
 import com.codeabovelab.dm.cluman.security.ProvidersAclService;
 import com.codeabovelab.dm.cluman.security.SecuredType;
@@ -60,6 +61,7 @@ public class SecurityApi {
     private final PasswordEncoder passwordEncoder;
     private final AbstractAclService aclService;
     private final ProvidersAclService providersAclService;
+    private final AccessContextFactory aclContextFactory;
 
 
     @Secured(Authorities.USER_ROLE)
@@ -83,6 +85,7 @@ public class SecurityApi {
         acls.forEach((oid, aclSource) -> {
             try {
                 providersAclService.updateAclSource(oid, as -> updateAcl(aclSource, as));
+                aclContextFactory.getDecisionCache().invalidate(providersAclService.getDecisionSource(oid));
             } catch (org.springframework.security.acls.model.NotFoundException e) {
                 throw new NotFoundException(e);
             }
@@ -107,6 +110,7 @@ public class SecurityApi {
         ObjectIdentity oid = securedType.id(id);
         try {
             providersAclService.updateAclSource(oid, as -> updateAcl(aclSource, as));
+            aclContextFactory.getDecisionCache().invalidate(providersAclService.getDecisionSource(oid));
         } catch (org.springframework.security.acls.model.NotFoundException e) {
             throw new NotFoundException(e);
         }
@@ -31,6 +31,10 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor(onConstructor = @__(@JsonCreator))
 public class UiJobEvent {
+    /**
+     * Sequence number of event in job log, use 'seq + 1' as cursor for reading of next events.
+     */
+    private final long seq;
     private final JobInfo info;
     private final LocalDateTime time;
     private final String message;
@@ -25,13 +25,16 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
+ * Subscriber which open stream through docker method. Method is invoked in executor, but it does not block it until
+ * end of stream, because stream is decoded on IO thread (see {@link WithInterrupter#getOnComplete()}), so
+ * number of threads does not depend on number of streams.
  */
 @Slf4j
 class DockerMethodSubscriber<E, A extends WithInterrupter> implements LazySubscriptions.Subscriber<E> {
@@ -44,10 +47,13 @@ class DockerMethodSubscriber<E, A extends WithInterrupter> implements LazySubscr
         private String id;
         private DockerService docker;
         private ExecutorService executorService;
-        private Function<Consumer<E>, A> argument;
+        /**
+         * Factory of argument, it accept consumer of messages and handler of stream end.
+         */
+        private BiFunction<Consumer<E>, Consumer<ServiceCallResult>, A> argument;
         private Function<A, ServiceCallResult> method;
 
-        public Builder<E, A> argument(Function<Consumer<E>, A> argument) {
+        public Builder<E, A> argument(BiFunction<Consumer<E>, Consumer<ServiceCallResult>, A> argument) {
             setArgument(argument);
             return this;
         }
@@ -79,7 +85,7 @@ class DockerMethodSubscriber<E, A extends WithInterrupter> implements LazySubscr
 
     private final String id;
     private final ExecutorService executorService;
-    private final Function<Consumer<E>, A> argument;
+    private final BiFunction<Consumer<E>, Consumer<ServiceCallResult>, A> argument;
     private final Function<A, ServiceCallResult> method;
 
     private DockerMethodSubscriber(Builder<E, A> b) {
@@ -95,29 +101,37 @@ class DockerMethodSubscriber<E, A extends WithInterrupter> implements LazySubscr
 
     @Override
     public Runnable subscribe(LazySubscriptions<E>.Context context) {
-        A arg = argument.apply(context::accept);
-        Future<ServiceCallResult> future = executorService.submit(() -> {
-            //here we use sys auth because it shared between different users
-            // may be we need to use different subscriptions for each users?
-            try (TempAuth ta = TempAuth.asSystem()) {
-                return method.apply(arg);
-            } finally {
-                context.close();
+        // context is shared between subscriptions, so we must close it only once
+        AtomicBoolean ended = new AtomicBoolean();
+        Consumer<ServiceCallResult> onEnd = (result) -> {
+            if(!ended.compareAndSet(false, true)) {
+                return;
             }
-        });
-        try {
-            ServiceCallResult result = future.get(2, TimeUnit.MILLISECONDS);
-            if(result.getCode() != ResultCode.OK) {
+            if(result != null && result.getCode() != ResultCode.OK) {
                 log.warn("Can not subscribe on id=\"{}\" due error {}: {}", id, result.getCode(), result.getMessage());
             }
-        } catch (TimeoutException e) {
-            //it is ok
-        } catch (Exception e) {
+            context.close();
+        };
+        A arg = argument.apply(context::accept, onEnd);
+        try {
+            executorService.execute(() -> {
+                //here we use sys auth because it shared between different users
+                // may be we need to use different subscriptions for each users?
+                try (TempAuth ta = TempAuth.asSystem()) {
+                    ServiceCallResult result = method.apply(arg);
+                    if(result.getCode() != ResultCode.OK) {
+                        // service may not invoke handler on error
+                        onEnd.accept(result);
+                    }
+                } catch (Exception e) {
+                    log.warn("Can not subscribe on id=\"{}\" due error", id, e);
+                    onEnd.accept(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
             log.warn("Can not subscribe on id=\"{}\" due error", id, e);
+            ended.set(true);
         }
-        return () -> {
-            arg.getInterrupter().set(true);
-            future.cancel(true);
-        };
+        return () -> arg.getInterrupter().set(true);
     }
 }
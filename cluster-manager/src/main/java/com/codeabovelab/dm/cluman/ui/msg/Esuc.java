@@ -20,8 +20,7 @@ import com.codeabovelab.dm.common.mb.Subscriptions;
 import com.codeabovelab.dm.common.utils.Closeables;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 
 /**
@@ -49,6 +48,32 @@ class Esuc {
         newMap.put(key, subs);
     }
 
+    /**
+     * Put single subscriptions under all specified keys, it allow to share one source between aliases.
+     * @param keys keys, first key is passed to factory
+     * @param factory factory of subscriptions
+     */
+    void update(List<String> keys, Function<String, Subscriptions<?>> factory) {
+        Subscriptions<?> subs = null;
+        for(String key: keys) {
+            subs = this.oldMap.get(key);
+            if(subs != null) {
+                break;
+            }
+        }
+        String first = keys.get(0);
+        if(subs == null) {
+            try {
+                subs = factory.apply(first);
+            } catch (Exception e) {
+                log.error("Can not update subscriptions for '{}' key, due to error:", first, e);
+            }
+        }
+        for(String key: keys) {
+            newMap.put(key, subs);
+        }
+    }
+
     void putAll(Map<String, Subscriptions<?>> systemSubs) {
         this.newMap.putAll(systemSubs);
     }
@@ -62,12 +87,15 @@ class Esuc {
     }
 
     void free() {
+        // subscriptions may be shared between keys, so we must not close ones which still in use
+        Set<Subscriptions<?>> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        used.addAll(newMap.values());
         //close outdated subscriptions (do not put it in finally block)
         for(Map.Entry<String, Subscriptions<?>> e: oldMap.entrySet()) {
-            if(newMap.containsKey(e.getKey())) {
+            Subscriptions<?> value = e.getValue();
+            if(newMap.containsKey(e.getKey()) || used.contains(value)) {
                 continue;
             }
-            Subscriptions<?> value = e.getValue();
             Closeables.closeIfCloseable(value);
         }
     }
@@ -34,7 +34,7 @@ import com.codeabovelab.dm.common.mb.Subscriptions;
 import com.codeabovelab.dm.common.security.Action;
 import com.codeabovelab.dm.cluman.security.TempAuth;
 import com.codeabovelab.dm.common.utils.Closeables;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -62,7 +62,14 @@ class EventSources {
     private final AtomicReference<Map<String, Subscriptions<?>>> subs = new AtomicReference<>(Collections.emptyMap());
     private final Map<String, Subscriptions<?>> systemSubs;
     private final Collection<AutoCloseable> close = new ArrayList<>();
+    /**
+     * Executor which open streams, it does not block until end of stream.
+     */
     private ExecutorService executor;
+    /**
+     * Executor which deliver messages of streams to listeners.
+     */
+    private ExecutorService deliveryExecutor;
     private volatile long lastUpdate;
 
     @SuppressWarnings("unchecked")
@@ -105,13 +112,24 @@ class EventSources {
 
     @PostConstruct
     public void init() {
-        ThreadFactory tf = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(getClass().getSimpleName() + "-%d").build();
-        executor = Executors.newCachedThreadPool(tf);
+        executor = ExecutorUtils.executorBuilder()
+          .name(getClass().getSimpleName())
+          .coreSize(2)
+          .maxSize(8)
+          .queueSize(1024)
+          .build();
+        deliveryExecutor = ExecutorUtils.executorBuilder()
+          .name(getClass().getSimpleName() + "-delivery")
+          .coreSize(2)
+          .maxSize(8)
+          .queueSize(4096)
+          .build();
     }
 
     @PreDestroy
     public void destroy() {
         executor.shutdownNow();
+        deliveryExecutor.shutdownNow();
         close.forEach(Closeables::close);
     }
 
@@ -169,37 +187,26 @@ class EventSources {
             for(DockerContainer dc : containers) {
                 String cidPrefix = "container:" + clusterName + ":" + dc.getName();
                 String idPrefix = "container:" + dc.getId();
-                updateContainerStdout(esuc, service, dc, cidPrefix + ":stdout");
-                updateContainerStdout(esuc, service, dc, idPrefix + ":stdout");
-                updateContainerStat(esuc, service, dc, cidPrefix + ":stat");
-                updateContainerStat(esuc, service, dc, idPrefix + ":stat");
+                // both ids point to same container, so they share single stream
+                esuc.update(Arrays.asList(idPrefix + ":stdout", cidPrefix + ":stdout"),
+                  (id) -> makeContainerStdout(service, dc, id));
+                esuc.update(Arrays.asList(idPrefix + ":stat", cidPrefix + ":stat"),
+                  (id) -> makeContainerStat(service, dc, id));
             }
         } catch (Exception e) {
             log.error("Error on node '{}'.", ni.getName(), e);
         }
     }
 
-    private void updateContainerStdout(Esuc esuc,
-                                       DockerService service,
-                                       DockerContainer dc,
-                                       String cid) {
-        esuc.update(cid, (i) -> makeContainerStdout(service, dc, cid));
-    }
-
-    private void updateContainerStat(Esuc esuc,
-                                     DockerService service,
-                                     DockerContainer dc,
-                                     String cid) {
-        esuc.update(cid, (i) -> makeContainerStat(service, dc, cid));
-    }
-
     private Subscriptions<?> makeContainerStat(DockerService service, DockerContainer dc, String cid) {
-        LazySubscriptions.Builder<UIStatistics> builder = LazySubscriptions.builder(UIStatistics.class).id(cid);
+        LazySubscriptions.Builder<UIStatistics> builder = LazySubscriptions.builder(UIStatistics.class)
+          .id(cid)
+          .executor(deliveryExecutor);
         DockerMethodSubscriber.Builder<UIStatistics, GetStatisticsArg> dms = DockerMethodSubscriber.builder();
         dms.id(cid);
         dms.setExecutorService(this.executor);
         dms.setDocker(service);
-        dms.argument((c) -> {
+        dms.argument((c, end) -> {
             //therefore we cannot check user access in docker (at now subscription doing under system rights)
             // we need to do it here
             if (service instanceof DockerServiceSecurityWrapper) {
@@ -208,7 +215,8 @@ class EventSources {
             return GetStatisticsArg.builder()
               .stream(true)
               .id(dc.getId())
-              .watcher((s) -> c.accept(UIStatistics.from(s))).build();
+              .watcher((s) -> c.accept(UIStatistics.from(s)))
+              .onComplete(end).build();
         });
         dms.method(service::getStatistics);
         builder.subscriber(dms.build());
@@ -216,12 +224,14 @@ class EventSources {
     }
 
     private Subscriptions<?> makeContainerStdout(DockerService service, DockerContainer dc, String cid) {
-        LazySubscriptions.Builder<ProcessEvent> builder = LazySubscriptions.builder(ProcessEvent.class).id(cid);
+        LazySubscriptions.Builder<ProcessEvent> builder = LazySubscriptions.builder(ProcessEvent.class)
+          .id(cid)
+          .executor(deliveryExecutor);
         DockerMethodSubscriber.Builder<ProcessEvent, GetLogContainerArg> dms = DockerMethodSubscriber.builder();
         dms.id(cid);
         dms.setExecutorService(this.executor);
         dms.setDocker(service);
-        dms.argument((c) -> {
+        dms.argument((c, end) -> {
             //therefore we cannot check user access in docker (at now subscription doing under system rights)
             // we need to do it here
             if (service instanceof DockerServiceSecurityWrapper) {
@@ -234,7 +244,8 @@ class EventSources {
               .stderr(true)
               .stdout(true)
               .timestamps(true)
-              .watcher(c).build();
+              .watcher(c)
+              .onComplete(end).build();
         });
         dms.method(service::getContainerLog);
         builder.subscriber(dms.build());
@@ -242,16 +253,18 @@ class EventSources {
     }
 
     private Subscriptions<?> makeDocker(DockerService service, String id) {
-        LazySubscriptions.Builder<DockerEvent> builder = LazySubscriptions.builder(DockerEvent.class).id(id);
+        LazySubscriptions.Builder<DockerEvent> builder = LazySubscriptions.builder(DockerEvent.class)
+          .id(id)
+          .executor(deliveryExecutor);
         DockerMethodSubscriber.Builder<DockerEvent, GetEventsArg> dms = DockerMethodSubscriber.builder();
         dms.id(id);
         dms.setExecutorService(this.executor);
         dms.setDocker(service);
-        dms.argument((c) -> {
+        dms.argument((c, end) -> {
             if (service instanceof DockerServiceSecurityWrapper) {
                 ((DockerServiceSecurityWrapper) service).checkServiceAccess(Action.READ);
             }
-            return GetEventsArg.builder().watcher(c).build();
+            return GetEventsArg.builder().watcher(c).onComplete(end).build();
         });
         dms.method(service::subscribeToEvents);
         builder.subscriber(dms.build());
@@ -21,6 +21,7 @@ import com.codeabovelab.dm.common.utils.Closeables;
 import com.codeabovelab.dm.common.utils.Key;
 import lombok.Data;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -28,6 +29,8 @@ import java.util.function.Consumer;
  */
 class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
 
+    private static final int QUEUE_SIZE = 256;
+
     interface Subscriber<M> {
         /**
          *
@@ -57,6 +60,10 @@ class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
         private String id;
         private final Class<M> type;
         private Subscriber<M> subscriber;
+        /**
+         * Executor for async delivery of messages, when it is null messages are delivered in thread of source.
+         */
+        private Executor executor;
 
         public Builder(Class<M> type) {
             this.type = type;
@@ -72,6 +79,11 @@ class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
             return this;
         }
 
+        public Builder<M> executor(Executor executor) {
+            setExecutor(executor);
+            return this;
+        }
+
         public LazySubscriptions<M> build() {
             return new LazySubscriptions<>(this);
         }
@@ -80,6 +92,7 @@ class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
     private final String id;
     private final Class<M> type;
     private final Subscriber<M> subscriber;
+    private final Executor executor;
     private final Object busLock = new Object();
     private volatile MessageBus<M> bus;
     private volatile Runnable closer;
@@ -89,6 +102,7 @@ class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
         this.id = builder.id;
         this.type = builder.type;
         this.subscriber = builder.subscriber;
+        this.executor = builder.executor;
     }
 
     public static <M> Builder<M> builder(Class<M> type) {
@@ -134,10 +148,15 @@ class LazySubscriptions<M> implements Subscriptions<M>, AutoCloseable {
         if(this.bus == null) {
             synchronized (busLock) {
                 if(this.bus == null) {
-                    MessageBus<M> bus = MessageBusImpl.builder(type, MessageSubscriptionsWrapper::new)
+                    MessageBusImpl.Builder<M, MessageSubscriptionsWrapper<M>> bb;
+                    bb = MessageBusImpl.builder(type, MessageSubscriptionsWrapper::new)
                       .id(id)
-                      .onUnsubscribe(this::onUnsubscribe)
-                      .build();
+                      .onUnsubscribe(this::onUnsubscribe);
+                    if(executor != null) {
+                        // source may push messages from IO thread, so we must not block it by slow listeners
+                        bb.async(executor, QUEUE_SIZE, OverflowPolicy.DROP_OLDEST);
+                    }
+                    MessageBus<M> bus = bb.build();
                     this.closer = subscriber.subscribe(new Context());
                     this.bus = bus;
                 }
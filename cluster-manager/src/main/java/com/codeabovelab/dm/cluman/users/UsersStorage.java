@@ -16,6 +16,7 @@
 
 package com.codeabovelab.dm.cluman.users;
 
+import com.codeabovelab.dm.cluman.security.AccessContextFactory;
 import com.codeabovelab.dm.cluman.validate.ExtendedAssert;
 import com.codeabovelab.dm.common.kv.KvUtils;
 import com.codeabovelab.dm.common.kv.mapping.KvMap;
@@ -47,6 +48,7 @@ public class UsersStorage implements UserIdentifiersDetailsService {
 
     private final KvMap<UserRegistration> map;
     private final AccessDecisionManager adm;
+    private volatile AccessContextFactory aclContextFactory;
 
     @Autowired
     public UsersStorage(KvMapperFactory mapperFactory, AccessDecisionManager accessDecisionManager) {
@@ -57,9 +59,24 @@ public class UsersStorage implements UserIdentifiersDetailsService {
           .path(prefix)
           .passDirty(true)
           .adapter(new KvMapAdapterImpl())
+          // user may be changed on other node, so we must drop its cached decisions
+          .listener(e -> invalidateDecisions(e.getKey()))
           .build();
     }
 
+    @Autowired(required = false)
+    public void setAclContextFactory(AccessContextFactory aclContextFactory) {
+        this.aclContextFactory = aclContextFactory;
+    }
+
+    private void invalidateDecisions(String name) {
+        AccessContextFactory acf = this.aclContextFactory;
+        if(acf == null || name == null) {
+            return;
+        }
+        acf.getDecisionCache().invalidatePrincipal(name);
+    }
+
     @PostConstruct
     public void init() {
         load();
@@ -70,7 +87,9 @@ public class UsersStorage implements UserIdentifiersDetailsService {
     }
 
     public UserRegistration remove(String name) {
-        return map.remove(name);
+        UserRegistration old = map.remove(name);
+        invalidateDecisions(name);
+        return old;
     }
 
     /**
@@ -80,7 +99,7 @@ public class UsersStorage implements UserIdentifiersDetailsService {
      * @return updated registration
      */
     public UserRegistration update(String name, Consumer<UserRegistration> consumer) {
-        return map.compute(name, (k, ur) -> {
+        UserRegistration res = map.compute(name, (k, ur) -> {
             if(ur == null) {
                 ur = new UserRegistration(this, k);
             }
@@ -92,6 +111,9 @@ public class UsersStorage implements UserIdentifiersDetailsService {
             }
             return ur;
         });
+        // roles of user may be changed
+        invalidateDecisions(name);
+        return res;
     }
 
     public UserRegistration get(String name) {
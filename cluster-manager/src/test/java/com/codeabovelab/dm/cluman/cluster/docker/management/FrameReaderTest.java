@@ -0,0 +1,120 @@
+package com.codeabovelab.dm.cluman.cluster.docker.management;
+
+import com.codeabovelab.dm.cluman.cluster.docker.model.Frame;
+import com.codeabovelab.dm.cluman.cluster.docker.model.StreamType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class FrameReaderTest {
+
+    @Test
+    public void testMultiplexed() throws Exception {
+        byte[] src = concat(frame(1, "first line\n"), frame(2, ""), frame(2, " second line \n"));
+        try (FrameReader reader = new FrameReader(slow(src))) {
+            assertTrue(reader.next());
+            assertEquals(StreamType.STDOUT, reader.getStreamType());
+            assertEquals("first line", reader.getMessage());
+            byte[] buffer = reader.getBuffer();
+            assertTrue(reader.next());
+            assertEquals(StreamType.STDERR, reader.getStreamType());
+            assertEquals(0, reader.getLength());
+            assertTrue(reader.next());
+            // buffer is reused between frames
+            assertSame(buffer, reader.getBuffer());
+            assertEquals("second line", reader.getMessage());
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void testReadFrame() throws Exception {
+        byte[] src = concat(frame(1, "first"), frame(2, "second"));
+        try (FrameReader reader = new FrameReader(new ByteArrayInputStream(src))) {
+            Frame first = reader.readFrame();
+            Frame second = reader.readFrame();
+            assertEquals(new Frame(StreamType.STDOUT, bytes("first")), first);
+            assertEquals(new Frame(StreamType.STDERR, bytes("second")), second);
+            assertNull(reader.readFrame());
+        }
+    }
+
+    @Test
+    public void testRaw() throws Exception {
+        String text = "raw tty output\nwhich is not multiplexed\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FrameReader reader = new FrameReader(new ByteArrayInputStream(bytes(text)))) {
+            while (reader.next()) {
+                assertEquals(StreamType.RAW, reader.getStreamType());
+                out.write(reader.getBuffer(), 0, reader.getLength());
+            }
+        }
+        assertEquals(text, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteLine() throws Exception {
+        byte[] src = concat(frame(1, "first\r\n"), frame(1, "second"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FrameReader reader = new FrameReader(new ByteArrayInputStream(src))) {
+            while (reader.next()) {
+                reader.writeLine(out);
+            }
+        }
+        assertEquals("first\nsecond\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        byte[] frame = frame(1, "truncated");
+        byte[] src = new byte[frame.length - 2];
+        System.arraycopy(frame, 0, src, 0, src.length);
+        try (FrameReader reader = new FrameReader(new ByteArrayInputStream(src))) {
+            reader.next();
+        }
+    }
+
+    /**
+     * Stream which return data by small portions, like network stream.
+     */
+    private static InputStream slow(byte[] src) {
+        return new FilterInputStream(new ByteArrayInputStream(src)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] frame(int type, String msg) {
+        byte[] payload = bytes(msg);
+        byte[] frame = new byte[8 + payload.length];
+        frame[0] = (byte) type;
+        int size = payload.length;
+        frame[4] = (byte) (size >>> 24);
+        frame[5] = (byte) (size >>> 16);
+        frame[6] = (byte) (size >>> 8);
+        frame[7] = (byte) size;
+        System.arraycopy(payload, 0, frame, 8, size);
+        return frame;
+    }
+
+    private static byte[] concat(byte[]... arrs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] arr : arrs) {
+            out.write(arr, 0, arr.length);
+        }
+        return out.toByteArray();
+    }
+}
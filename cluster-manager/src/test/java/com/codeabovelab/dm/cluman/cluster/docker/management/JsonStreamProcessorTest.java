@@ -0,0 +1,54 @@
+package com.codeabovelab.dm.cluman.cluster.docker.management;
+
+import com.codeabovelab.dm.cluman.cluster.docker.model.DockerEvent;
+import com.codeabovelab.dm.cluman.cluster.docker.model.Statistics;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamProcessorTest {
+
+    @Test
+    public void testEvents() {
+        String src = "{\"status\":\"start\",\"id\":\"abc\",\"from\":\"nginx\",\"Type\":\"container\",\"Action\":\"start\"," +
+          "\"Actor\":{\"ID\":\"abc\",\"Attributes\":{\"name\":\"web\"}},\"time\":1500000000,\"timeNano\":1500000000000000000," +
+          "\"unknown\":{\"nested\":[1,2,{\"deep\":true}]}}\n" +
+          "{}\n" +
+          // broken item must be skipped without breaking of stream
+          "{\"status\":\"die\",\"time\":\"not a number\",\"extra\":{\"a\":[1]}}\n" +
+          "{\"status\":\"stop\",\"id\":\"abc\",\"time\":1500000001}\n";
+        List<DockerEvent> res = process(DockerEvent.class, src);
+        assertEquals(2, res.size());
+        DockerEvent first = res.get(0);
+        assertEquals("start", first.getStatus());
+        assertEquals("abc", first.getId());
+        assertEquals("start", first.getAction());
+        assertEquals(1500000000L, first.getTime());
+        assertEquals("stop", res.get(1).getStatus());
+    }
+
+    @Test
+    public void testStatistics() {
+        String src = "{\"read\":\"2017-01-01T00:00:00Z\",\"pids_stats\":{\"current\":3}," +
+          "\"memory_stats\":{\"usage\":1024,\"limit\":4096},\"cpu_stats\":{\"cpu_usage\":{\"total_usage\":10}}}\r\n" +
+          "{\"read\":\"2017-01-01T00:00:01Z\",\"memory_stats\":{\"usage\":2048}}\r\n";
+        List<Statistics> res = process(Statistics.class, src);
+        assertEquals(2, res.size());
+        assertEquals("2017-01-01T00:00:00Z", res.get(0).getRead());
+        assertEquals(1024, ((Number) res.get(0).getMemoryStats().get("usage")).intValue());
+        assertEquals(2048, ((Number) res.get(1).getMemoryStats().get("usage")).intValue());
+    }
+
+    private static <T> List<T> process(Class<T> type, String src) {
+        List<T> res = new ArrayList<>();
+        JsonStreamProcessor<T> processor = new JsonStreamProcessor<>(type);
+        StreamContext<T> context = new StreamContext<>(new ByteArrayInputStream(src.getBytes(StandardCharsets.UTF_8)), res::add);
+        processor.processResponseStream(context);
+        return res;
+    }
+}
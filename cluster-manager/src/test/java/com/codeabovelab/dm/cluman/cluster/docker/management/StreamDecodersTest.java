@@ -0,0 +1,81 @@
+package com.codeabovelab.dm.cluman.cluster.docker.management;
+
+import com.codeabovelab.dm.cluman.cluster.docker.management.result.ProcessEvent;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class StreamDecodersTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testJson() {
+        List<Map> res = new ArrayList<>();
+        JsonStreamDecoder<Map> decoder = new JsonStreamDecoder<>(Map.class, res::add);
+        String src = "{\"a\":\"}{\\\"\",\"b\":[1,{\"c\":2}]}\n{}\n{\"a\":\"second\"}\r\n";
+        feedBySize(decoder, src.getBytes(StandardCharsets.UTF_8), 3);
+        assertEquals(2, res.size());
+        assertEquals("}{\"", res.get(0).get("a"));
+        assertEquals(2, ((List) res.get(0).get("b")).size());
+        assertEquals("second", res.get(1).get("a"));
+    }
+
+    @Test
+    public void testFrames() {
+        List<String> res = new ArrayList<>();
+        FrameStreamDecoder decoder = new FrameStreamDecoder(e -> res.add(e.getMessage()));
+        byte[] first = frame(1, "first line\n");
+        byte[] second = frame(2, "second line\n");
+        byte[] src = new byte[first.length + second.length];
+        System.arraycopy(first, 0, src, 0, first.length);
+        System.arraycopy(second, 0, src, first.length, second.length);
+        for(int size: new int[]{1, 5, 8, src.length}) {
+            res.clear();
+            feedBySize(new FrameStreamDecoder(e -> res.add(e.getMessage())), src, size);
+            assertEquals(Arrays.asList("first line", "second line"), res);
+        }
+        // empty frame
+        res.clear();
+        feedBySize(decoder, frame(1, ""), 3);
+        assertEquals(Arrays.asList(""), res);
+    }
+
+    @Test
+    public void testRaw() {
+        List<ProcessEvent> res = new ArrayList<>();
+        FrameStreamDecoder decoder = new FrameStreamDecoder(res::add);
+        feedBySize(decoder, "tty output\n".getBytes(StandardCharsets.UTF_8), 100);
+        assertEquals(1, res.size());
+        assertEquals("tty output", res.get(0).getMessage());
+    }
+
+    private static byte[] frame(int type, String msg) {
+        byte[] payload = msg.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[8 + payload.length];
+        frame[0] = (byte) type;
+        int size = payload.length;
+        frame[4] = (byte) (size >>> 24);
+        frame[5] = (byte) (size >>> 16);
+        frame[6] = (byte) (size >>> 8);
+        frame[7] = (byte) size;
+        System.arraycopy(payload, 0, frame, 8, size);
+        return frame;
+    }
+
+    private static void feedBySize(Consumer<ByteBuf> decoder, byte[] src, int size) {
+        for(int i = 0; i < src.length; i += size) {
+            ByteBuf buf = Unpooled.wrappedBuffer(src, i, Math.min(size, src.length - i));
+            decoder.accept(buf);
+            assertFalse(buf.isReadable());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.codeabovelab.dm.cluman.cluster.registry;
+
+import com.codeabovelab.dm.cluman.cluster.docker.model.ContainerConfig;
+import com.codeabovelab.dm.cluman.cluster.registry.data.ImageData;
+import com.codeabovelab.dm.cluman.model.ImageDescriptor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImageDescriptorCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test() throws Exception {
+        File dir = folder.newFolder();
+        ObjectMapper objectMapper = new ObjectMapper();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<ImageData> loader = makeLoader(loads);
+        ImageDescriptorCache cache = new ImageDescriptorCache(objectMapper, dir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT);
+        ImageDescriptor first = cache.get(new ImageDescriptorCache.Key("reg", "image", "sha256:1"), loader);
+        // equal key must hit cache
+        ImageDescriptor second = cache.get(new ImageDescriptorCache.Key("reg", "image", "sha256:1"), loader);
+        assertEquals(1, loads.get());
+        assertEquals(first, second);
+        assertEquals("sha256:1", first.getId());
+        assertEquals("test", first.getLabels().get("description"));
+        assertEquals(1, cache.getStats().hitCount());
+
+        // new cache must read descriptor from disk
+        ImageDescriptorCache restarted = new ImageDescriptorCache(objectMapper, dir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT);
+        ImageDescriptor fromDisk = restarted.get(new ImageDescriptorCache.Key("reg", "image", "sha256:1"), loader);
+        assertEquals(1, loads.get());
+        assertEquals(1, restarted.getDiskHits());
+        assertEquals("test", fromDisk.getLabels().get("description"));
+    }
+
+    @Test
+    public void testDiskLimit() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<ImageData> loader = makeLoader(loads);
+        File sizeDir = folder.newFolder();
+        new ImageDescriptorCache(objectMapper, sizeDir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT)
+          .get(new ImageDescriptorCache.Key("reg", "image", "sha256:0"), loader);
+        long fileSize = sizeOf(sizeDir);
+
+        File dir = folder.newFolder();
+        final int count = 10;
+        final long maxDiskSize = fileSize * 4;
+        ImageDescriptorCache cache = new ImageDescriptorCache(objectMapper, dir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT, maxDiskSize);
+        for(int i = 1; i <= count; ++i) {
+            cache.get(new ImageDescriptorCache.Key("reg", "image", "sha256:" + i), loader);
+        }
+        assertTrue(cache.getDiskEvictions() > 0);
+        assertTrue(sizeOf(dir) <= maxDiskSize);
+        assertEquals(sizeOf(dir), cache.getDiskSize());
+
+        // last written descriptor is never evicted
+        ImageDescriptorCache restarted = new ImageDescriptorCache(objectMapper, dir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT, maxDiskSize);
+        assertEquals(sizeOf(dir), restarted.getDiskSize());
+        int loaded = loads.get();
+        restarted.get(new ImageDescriptorCache.Key("reg", "image", "sha256:" + count), loader);
+        assertEquals(loaded, loads.get());
+        assertEquals(1, restarted.getDiskHits());
+
+        // lower limit is applied at start
+        ImageDescriptorCache lowered = new ImageDescriptorCache(objectMapper, dir, ImageDescriptorCache.DEFAULT_MAX_WEIGHT, fileSize);
+        assertTrue(sizeOf(dir) <= fileSize);
+        assertEquals(sizeOf(dir), lowered.getDiskSize());
+    }
+
+    private static Supplier<ImageData> makeLoader(AtomicInteger loads) {
+        return () -> {
+            loads.incrementAndGet();
+            ImageData data = new ImageData();
+            data.setContainerConfig(ContainerConfig.builder().labels(ImmutableMap.of("description", "test")).build());
+            return data;
+        };
+    }
+
+    private static long sizeOf(File dir) {
+        long size = 0;
+        for(File file: dir.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+}
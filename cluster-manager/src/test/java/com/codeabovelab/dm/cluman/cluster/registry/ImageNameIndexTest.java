@@ -0,0 +1,59 @@
+package com.codeabovelab.dm.cluman.cluster.registry;
+
+import com.codeabovelab.dm.cluman.cluster.registry.data.SearchResult;
+import com.codeabovelab.dm.cluman.model.ImageDescriptorImpl;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class ImageNameIndexTest {
+
+    @Test
+    public void test() {
+        Map<String, SearchIndex.ImageInfo> images = new HashMap<>();
+        add(images, "reg/ubuntu", "Ubuntu base image");
+        add(images, "reg/ubuntu-dev", null);
+        add(images, "reg/my-ubuntu", null);
+        add(images, "reg/nginx", "web server based on ubuntu");
+        add(images, "reg/redis", null);
+        ImageNameIndex index = new ImageNameIndex(images);
+
+        SearchResult res = index.search("ubuntu", 0, 10, "reg");
+        assertEquals(4, res.getNumResults());
+        assertEquals(1, res.getNumPages());
+        assertEquals(asList("reg/ubuntu", "reg/my-ubuntu", "reg/ubuntu-dev", "reg/nginx"), names(res));
+        assertEquals("Ubuntu base image", res.getResults().get(0).getDescription());
+
+        // pagination
+        res = index.search("ubuntu", 1, 3, "reg");
+        assertEquals(2, res.getNumPages());
+        assertEquals(asList("reg/nginx"), names(res));
+
+        // short query
+        res = index.search("re", 0, 10, "reg");
+        assertEquals(5, res.getNumResults());
+
+        res = index.search("absent", 0, 10, "reg");
+        assertEquals(0, res.getNumResults());
+        assertEquals(1, res.getNumPages());
+    }
+
+    private static List<String> names(SearchResult res) {
+        return res.getResults().stream().map(SearchResult.Result::getName).collect(Collectors.toList());
+    }
+
+    private static void add(Map<String, SearchIndex.ImageInfo> images, String name, String description) {
+        ImageDescriptorImpl descriptor = ImageDescriptorImpl.builder()
+          .id(name)
+          .labels(description == null ? null : ImmutableMap.of(SearchIndex.LABEL_DESCRIPTION, description))
+          .build();
+        images.put(name, new SearchIndex.ImageInfo(name, descriptor, "latest", null));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeabovelab.dm.cluman.ds.clusters;
+
+import com.codeabovelab.dm.cluman.DockerServiceMock;
+import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
+import com.codeabovelab.dm.cluman.cluster.docker.management.argument.GetContainersArg;
+import com.codeabovelab.dm.cluman.cluster.docker.model.CreateContainerCmd;
+import com.codeabovelab.dm.cluman.model.DockerContainer;
+import com.codeabovelab.dm.cluman.model.DockerServiceInfo;
+import com.codeabovelab.dm.cluman.model.NodesGroup;
+import com.codeabovelab.dm.cluman.security.*;
+import com.codeabovelab.dm.cluman.ui.SecurityApi;
+import com.codeabovelab.dm.cluman.ui.model.UiAclUpdate;
+import com.codeabovelab.dm.cluman.users.UsersStorage;
+import com.codeabovelab.dm.common.kv.InMemoryKeyValueStorage;
+import com.codeabovelab.dm.common.kv.mapping.KvMapperFactory;
+import com.codeabovelab.dm.common.security.*;
+import com.codeabovelab.dm.common.security.acl.AceSource;
+import com.codeabovelab.dm.common.security.acl.AclSource;
+import com.codeabovelab.dm.common.security.acl.PermissionGrantingJudgeDefaultBehavior;
+import com.codeabovelab.dm.common.security.acl.TenantBasedPermissionGrantedStrategy;
+import com.codeabovelab.dm.common.security.acl.TenantSidRetrievalStrategy;
+import com.codeabovelab.dm.common.security.dto.AuthenticationData;
+import com.codeabovelab.dm.common.security.dto.ObjectIdentityData;
+import com.codeabovelab.dm.common.security.dto.PermissionData;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validator;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cached acl decisions must be dropped when cluster acl or user is changed.
+ */
+public class ClusterAclDecisionsTest {
+
+    private static final String ROOT = MultiTenancySupport.ROOT_TENANT;
+    private static final String SHARED = "shared";
+    private static final String TEAM = "team";
+    private static final String USER = "user";
+    private static final String TEAM_ROLE = "ROLE_TEAM";
+    private static final TenantPrincipalSid SYSTEM = TenantPrincipalSid.from(SecurityUtils.USER_SYSTEM);
+
+    private final Map<String, AclSource> acls = new ConcurrentHashMap<>();
+    private AccessContextFactory acf;
+    private SecurityApi securityApi;
+    private UsersStorage usersStorage;
+    private DockerService service;
+
+    @Before
+    public void before() {
+        ExtPermissionGrantingStrategy pgs = new TenantBasedPermissionGrantedStrategy(
+          new PermissionGrantingJudgeDefaultBehavior(new StubTenantsService()));
+        ProvidersAclService aclService = new ProvidersAclService(pgs);
+        ClusterAclProvider clusterAclProvider = new ClusterAclProvider(this::makeDiscoveryStorage);
+        // all containers are placed on nodes of 'team' cluster, but listed through docker service of 'shared' cluster
+        VirtualAclProvider containersAclProvider = new VirtualAclProvider() {
+            @Override
+            protected String getCluster(Serializable id) {
+                return TEAM;
+            }
+
+            @Override
+            protected ObjectIdentityData toOid(Serializable id) {
+                return SecuredType.CONTAINER.id((String) id);
+            }
+        };
+        ReflectionTestUtils.setField(containersAclProvider, "clusterAclProvider", clusterAclProvider);
+        aclService.getProviders().put(SecuredType.CLUSTER.name(), clusterAclProvider);
+        aclService.getProviders().put(SecuredType.CONTAINER.name(), containersAclProvider);
+        acf = new AccessContextFactory(aclService, pgs, new TenantSidRetrievalStrategy());
+        securityApi = new SecurityApi(null, null, null, null, aclService, aclService, acf);
+
+        acls.put(SHARED, AclSource.builder()
+          .objectIdentity(SecuredType.CLUSTER.id(SHARED))
+          .owner(SYSTEM)
+          .addEntry(AceSource.builder()
+            .id("users")
+            .sid(TenantGrantedAuthoritySid.from(Authorities.USER))
+            .granting(true)
+            .permission(PermissionData.from(Action.READ))
+            .build())
+          .build());
+        acls.put(TEAM, AclSource.builder()
+          .objectIdentity(SecuredType.CLUSTER.id(TEAM))
+          .owner(SYSTEM)
+          .addEntry(AceSource.builder()
+            .id("team")
+            .sid(new TenantGrantedAuthoritySid(TEAM_ROLE, ROOT))
+            .granting(true)
+            .permission(PermissionData.from(Action.READ))
+            .build())
+          .build());
+
+        KvMapperFactory mapperFactory = new KvMapperFactory(new ObjectMapper(),
+          // events are never delivered, so values are not reloaded
+          InMemoryKeyValueStorage.builder().eventsExecutor(ExecutorUtils.deferred()).build(),
+          mock(TextEncryptor.class),
+          mock(Validator.class));
+        usersStorage = new UsersStorage(mapperFactory, mock(AccessDecisionManager.class));
+        usersStorage.setAclContextFactory(acf);
+        usersStorage.init();
+        setUserRoles(Authorities.USER_ROLE);
+
+        service = new DockerServiceSecurityWrapper(acf, new DockerServiceMock(DockerServiceInfo.builder()
+          .name(SHARED).build()));
+        try(TempAuth ta = TempAuth.asSystem()) {
+            CreateContainerCmd ccc = new CreateContainerCmd();
+            ccc.setImage("testimage");
+            ccc.setName("teamcont");
+            service.createContainer(ccc);
+        }
+    }
+
+    private DiscoveryStorageImpl makeDiscoveryStorage() {
+        DiscoveryStorageImpl ds = mock(DiscoveryStorageImpl.class);
+        when(ds.getClusterBypass(anyString())).thenAnswer(invocation -> {
+            String name = (String) invocation.getArguments()[0];
+            NodesGroup ng = mock(NodesGroup.class);
+            when(ng.getAcl()).thenAnswer(i -> acls.get(name));
+            doAnswer(i -> {
+                AclModifier modifier = (AclModifier) i.getArguments()[0];
+                AclSource.Builder b = AclSource.builder().from(acls.get(name));
+                if(modifier.modify(b)) {
+                    acls.put(name, b.build());
+                }
+                return null;
+            }).when(ng).updateAcl(any());
+            return ng;
+        });
+        return ds;
+    }
+
+    @Test
+    public void testClusterAclChange() {
+        assertEquals(0, listContainers().size());
+
+        UiAclUpdate grant = new UiAclUpdate();
+        UiAclUpdate.UiAceUpdate ace = new UiAclUpdate.UiAceUpdate();
+        ace.setId("grant-user");
+        ace.setSid(new TenantPrincipalSid(USER, ROOT));
+        ace.setGranting(true);
+        ace.setPermission(PermissionData.from(Action.READ));
+        grant.getEntries().add(ace);
+        securityApi.setAcl(SecuredType.CLUSTER.name(), TEAM, grant);
+        assertEquals(1, listContainers().size());
+
+        UiAclUpdate revoke = new UiAclUpdate();
+        UiAclUpdate.UiAceUpdate delete = new UiAclUpdate.UiAceUpdate();
+        delete.setId("grant-user");
+        delete.setDelete(true);
+        revoke.getEntries().add(delete);
+        securityApi.setAcl(SecuredType.CLUSTER.name(), TEAM, revoke);
+        assertEquals(0, listContainers().size());
+    }
+
+    @Test
+    public void testUserChange() {
+        assertEquals(0, listContainers().size());
+
+        setUserRoles(Authorities.USER_ROLE, TEAM_ROLE);
+        assertEquals(1, listContainers().size());
+
+        setUserRoles(Authorities.USER_ROLE);
+        assertEquals(0, listContainers().size());
+    }
+
+    private void setUserRoles(String ... roles) {
+        ExtendedUserDetailsImpl.Builder b = ExtendedUserDetailsImpl.builder()
+          .username(USER)
+          .password("")
+          .tenant(ROOT);
+        for(String role: roles) {
+            b.addAuthority(new GrantedAuthorityImpl(role, ROOT));
+        }
+        ExtendedUserDetails details = b.build();
+        try(TempAuth ta = TempAuth.asSystem()) {
+            usersStorage.update(USER, ur -> ur.setDetails(details));
+        }
+    }
+
+    private List<DockerContainer> listContainers() {
+        // like at login, authentication is made from actual user details
+        UserDetails details = usersStorage.loadUserByUsername(USER);
+        Authentication auth = AuthenticationData.build()
+          .authorities(details.getAuthorities())
+          .authenticated(true)
+          .principal(details)
+          .name(details.getUsername())
+          .build();
+        try(TempAuth ta = TempAuth.open(auth)) {
+            return service.getContainers(new GetContainersArg(true));
+        }
+    }
+}
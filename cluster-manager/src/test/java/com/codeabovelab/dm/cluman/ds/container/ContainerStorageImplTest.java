@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.container;
+
+import com.codeabovelab.dm.cluman.model.DockerContainer;
+import com.codeabovelab.dm.common.kv.InMemoryKeyValueStorage;
+import com.codeabovelab.dm.common.kv.mapping.KvMapperFactory;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+
+import javax.validation.Validator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ */
+public class ContainerStorageImplTest {
+
+    private ExecutorUtils.DeferredExecutor executor = ExecutorUtils.deferred();
+
+    @Test
+    public void testIndexes() {
+        ContainerStorageImpl cs = new ContainerStorageImpl(factory());
+        cs.updateAndGetContainer(container("aaa111", "one", "img1"), "node1");
+        cs.updateAndGetContainer(container("aab222", "two", "img1"), "node2");
+        cs.updateAndGetContainer(container("bbb333", "three", "img2"), "node1");
+        executor.flush();
+
+        assertThat(cs.getContainersIdsByNode("node1"), containsInAnyOrder("aaa111", "bbb333"));
+        assertThat(ids(cs.getContainersByNode("node2")), contains("aab222"));
+        assertThat(ids(cs.getContainersByImage("img1")), containsInAnyOrder("aaa111", "aab222"));
+        assertEquals("aab222", cs.findContainer("two").getId());
+        assertEquals("bbb333", cs.findContainer("bbb").getId());
+        assertNull(cs.findContainer("ccc"));
+        assertEquals(-1, cs.getMaxNameNumber("app"));
+
+        cs.updateAndGetContainer(container("ccc444", "app", "img3"), "node1");
+        assertEquals(0, cs.getMaxNameNumber("app"));
+        cs.updateAndGetContainer(container("ccc555", "app-12", "img3"), "node2");
+        cs.updateAndGetContainer(container("ccc666", "app-extra-20", "img3"), "node2");
+        assertEquals(12, cs.getMaxNameNumber("app"));
+        assertEquals(20, cs.getMaxNameNumber("app-extra"));
+        assertEquals(0, cs.getMaxNameNumber("app", "node1"::equals));
+        assertEquals(0, cs.getMaxNameNumber("app-12"));
+        cs.deleteContainer("ccc555");
+        executor.flush();
+        assertEquals(0, cs.getMaxNameNumber("app"));
+
+        // container moved to another node
+        cs.updateAndGetContainer(container("bbb333", "three", "img2"), "node2");
+        assertThat(cs.getContainersIdsByNode("node1"), contains("aaa111"));
+        assertThat(cs.getContainersIdsByNode("node2"), containsInAnyOrder("aab222", "bbb333"));
+
+        cs.deleteContainer("aaa111");
+        executor.flush();
+        assertThat(cs.getContainersIdsByNode("node1"), empty());
+        assertThat(ids(cs.getContainersByImage("img1")), contains("aab222"));
+        assertNull(cs.findContainer("one"));
+    }
+
+    private static List<String> ids(List<ContainerRegistration> list) {
+        return list.stream().map(ContainerRegistration::getId).collect(Collectors.toList());
+    }
+
+    private static DockerContainer container(String id, String name, String imageId) {
+        return DockerContainer.builder()
+          .id(id)
+          .name(name)
+          .image("image-of-" + imageId)
+          .imageId(imageId)
+          .build();
+    }
+
+    private KvMapperFactory factory() {
+        return new KvMapperFactory(new ObjectMapper(),
+          InMemoryKeyValueStorage.builder().eventsExecutor(executor).build(),
+          mock(TextEncryptor.class),
+          mock(Validator.class));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.container;
+
+import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
+import com.codeabovelab.dm.cluman.cluster.docker.management.argument.CalcNameArg;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ */
+public class ContainersNameServiceTest {
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        Function<DockerService, Collection<String>> names = ds -> {
+            listings.incrementAndGet();
+            return Arrays.asList("/node1/app-3", "app-extra-9", "app-x", "other-20");
+        };
+        ContainersNameService service = new ContainersNameService(names);
+        DockerService docker = mock(DockerService.class);
+        when(docker.getCluster()).thenReturn("cluster");
+
+        final int count = 50;
+        Set<String> allocated = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for(int i = 0; i < count; ++i) {
+            executor.execute(() -> allocated.add(service.calculateName(CalcNameArg.builder()
+              .allocate(true)
+              .imageName("example.com/app")
+              .dockerService(docker)
+              .build())));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(count, allocated.size());
+        for(int i = 4; i < 4 + count; ++i) {
+            assertTrue(allocated.contains("app-" + i));
+        }
+        assertEquals(1, listings.get());
+
+        // name which is not allocated must not be reserved
+        CalcNameArg notAllocate = CalcNameArg.builder()
+          .imageName("example.com/app")
+          .dockerService(docker)
+          .build();
+        assertEquals("app-" + (4 + count), service.calculateName(notAllocate));
+        assertEquals("app-" + (4 + count), service.calculateName(notAllocate));
+    }
+
+    @Test
+    public void testPrefixWithNumber() {
+        Function<DockerService, Collection<String>> names = ds -> "cluster".equals(ds.getCluster()) ?
+          Arrays.asList("/node1/kafka-2", "kafka-2-1", "kafka-7") : Collections.emptyList();
+        ContainersNameService service = new ContainersNameService(names);
+        DockerService docker = mock(DockerService.class);
+        when(docker.getCluster()).thenReturn("cluster");
+        DockerService other = mock(DockerService.class);
+        when(other.getCluster()).thenReturn("other");
+
+        CalcNameArg.CalcNameArgBuilder arg = CalcNameArg.builder()
+          .allocate(true)
+          .imageName("example.com/kafka-2");
+        assertEquals("kafka-2-2", service.calculateName(arg.dockerService(docker).build()));
+        assertEquals("kafka-2-3", service.calculateName(arg.dockerService(docker).build()));
+        // names are unique only in scope of cluster
+        assertEquals("kafka-2", service.calculateName(arg.dockerService(other).build()));
+        assertEquals("kafka-2-1", service.calculateName(arg.dockerService(other).build()));
+    }
+}
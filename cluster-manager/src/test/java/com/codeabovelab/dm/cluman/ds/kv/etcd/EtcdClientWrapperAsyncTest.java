@@ -0,0 +1,363 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.ds.kv.etcd;
+
+import com.codeabovelab.dm.common.kv.KvNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mousio.etcd4j.EtcdClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test of asynchronous operations and watching against fake etcd endpoint which adds latency to each request.
+ */
+public class EtcdClientWrapperAsyncTest {
+
+    private static final long LATENCY = 100;
+    private static final int MAX_IN_FLIGHT = 4;
+    private FakeEtcd fakeEtcd;
+    private EtcdClient etcd;
+    private EtcdClientWrapper wrapper;
+
+    @Before
+    public void before() throws Exception {
+        fakeEtcd = new FakeEtcd(LATENCY);
+        etcd = new EtcdClient(URI.create("http://localhost:" + fakeEtcd.getPort()));
+        wrapper = new EtcdClientWrapper(etcd, "/test", MAX_IN_FLIGHT);
+    }
+
+    @After
+    public void after() throws Exception {
+        etcd.close();
+        fakeEtcd.close();
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        KvNode set = wrapper.setAsync("/test/one", "1", null).get(10, TimeUnit.SECONDS);
+        assertEquals("1", set.getValue());
+        KvNode get = wrapper.getAsync("/test/one").get(10, TimeUnit.SECONDS);
+        assertEquals("1", get.getValue());
+        assertEquals(set.getIndex(), get.getIndex());
+        assertNull(wrapper.getAsync("/test/absent").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPipelining() throws Exception {
+        final int count = 16;
+        Map<String, String> values = new LinkedHashMap<>();
+        for(int i = 0; i < count; ++i) {
+            values.put("/test/key" + i, "val" + i);
+        }
+        long begin = System.currentTimeMillis();
+        Map<String, KvNode> saved = wrapper.setAll(values, null);
+        List<String> keys = new ArrayList<>(values.keySet());
+        keys.add("/test/absent");
+        Map<String, KvNode> loaded = wrapper.getMany(keys);
+        long time = System.currentTimeMillis() - begin;
+
+        assertEquals(values.keySet(), saved.keySet());
+        assertEquals(values.keySet(), loaded.keySet());
+        values.forEach((k, v) -> assertEquals(v, loaded.get(k).getValue()));
+        // serial execution take (2 * count + 1) * LATENCY
+        assertTrue("Requests are not pipelined, time: " + time, time < (2 * count + 1) * LATENCY / 2);
+        int max = fakeEtcd.maxConcurrent.get();
+        assertTrue("Concurrent requests: " + max, max > 1 && max <= MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void testSynchronousFailures() throws Exception {
+        // occupy all permits by slow requests, so following tasks are queued
+        List<CompletableFuture<KvNode>> slow = new ArrayList<>();
+        for(int i = 0; i < MAX_IN_FLIGHT; ++i) {
+            slow.add(wrapper.getAsync("/test/slow" + i));
+        }
+        // large backlog of requests which fail at send, like during etcd outage
+        final int count = 100_000;
+        List<CompletableFuture<KvNode>> failed = new ArrayList<>();
+        for(int i = 0; i < count; ++i) {
+            failed.add(wrapper.executeAsync(() -> {
+                throw new IllegalStateException("fail");
+            }, r -> null, e -> null));
+        }
+        for(CompletableFuture<KvNode> future: slow) {
+            assertNull(future.get(10, TimeUnit.SECONDS));
+        }
+        for(CompletableFuture<KvNode> future: failed) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Request must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        // permits are returned
+        assertEquals("1", wrapper.setAsync("/test/after", "1", null).get(10, TimeUnit.SECONDS).getValue());
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        Map<String, String> received = new ConcurrentHashMap<>();
+        wrapper.subscriptions().subscribeOnKey(e -> received.put(e.getKey(), e.getValue()), "/test/*");
+        final int count = 16;
+        Map<String, String> values = new LinkedHashMap<>();
+        for(int i = 0; i < count; ++i) {
+            values.put("/test/watch" + i, "val" + i);
+        }
+        // wait until watch is started
+        Thread.sleep(LATENCY * 5);
+        wrapper.setAll(values, null);
+        waitFor(() -> received.equals(values));
+
+        // event is lost and watch receive 'index cleared', so only re-read can find new value
+        fakeEtcd.putAndClear("/test/lost", "lost");
+        waitFor(() -> "lost".equals(received.get("/test/lost")));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while(!condition.getAsBoolean()) {
+            assertTrue("Timeout", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Fake etcd v2 keys endpoint, it support only plain values and simple watching.
+     */
+    private static class FakeEtcd implements AutoCloseable {
+        private static final String PREFIX = "/v2/keys";
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final Map<String, Map<String, Object>> nodes = new TreeMap<>();
+        private final List<Map<String, Object>> history = new ArrayList<>();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final long latency;
+        private final HttpServer server;
+        private final ExecutorService executor;
+        // below fields are guarded by 'this'
+        private long index;
+        private boolean clearNext;
+        private boolean closed;
+
+        FakeEtcd(long latency) throws IOException {
+            this.latency = latency;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            this.executor = Executors.newCachedThreadPool();
+            this.server.setExecutor(executor);
+            this.server.createContext(PREFIX, this::handle);
+            this.server.start();
+        }
+
+        int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        /**
+         * Set value without event, and make next watch fail with 'index cleared' error.
+         */
+        synchronized void putAndClear(String key, String value) {
+            put(key, value, false);
+            clearNext = true;
+            notifyAll();
+        }
+
+        private synchronized Map<String, Object> put(String key, String value, boolean event) {
+            long modified = ++index;
+            Map<String, Object> node = ImmutableMap.of("key", key, "value", value,
+              "modifiedIndex", modified, "createdIndex", modified);
+            nodes.put(key, node);
+            Map<String, Object> resp = ImmutableMap.of("action", "set", "node", node);
+            if(event) {
+                history.add(resp);
+                notifyAll();
+            }
+            return resp;
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try {
+                Map<String, String> params = new HashMap<>();
+                parseParams(exchange.getRequestURI().getRawQuery(), params);
+                String key = exchange.getRequestURI().getPath().substring(PREFIX.length());
+                if(key.isEmpty()) {
+                    key = "/";
+                }
+                if(params.containsKey("wait")) {
+                    handleWait(exchange, Long.parseLong(params.get("waitIndex")));
+                    return;
+                }
+                // we count only requests of test, watcher read root at start
+                boolean count = !"/".equals(key);
+                if(count) {
+                    int curr = concurrent.incrementAndGet();
+                    maxConcurrent.accumulateAndGet(curr, Math::max);
+                }
+                try {
+                    Thread.sleep(latency);
+                    handleKey(exchange, key, params);
+                } finally {
+                    if(count) {
+                        concurrent.decrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void handleWait(HttpExchange exchange, long waitIndex) throws IOException, InterruptedException {
+            Map<String, Object> resp = null;
+            int status = 200;
+            synchronized (this) {
+                while(resp == null && !closed) {
+                    if(clearNext) {
+                        clearNext = false;
+                        status = 400;
+                        resp = error(401, "The event in requested index is outdated and cleared");
+                        break;
+                    }
+                    for(Map<String, Object> event: history) {
+                        Map<?, ?> node = (Map<?, ?>) event.get("node");
+                        if((Long) node.get("modifiedIndex") >= waitIndex) {
+                            resp = event;
+                            break;
+                        }
+                    }
+                    if(resp == null) {
+                        wait();
+                    }
+                }
+            }
+            if(resp != null) {
+                send(exchange, status, resp);
+            }
+        }
+
+        private void handleKey(HttpExchange exchange, String key, Map<String, String> params) throws IOException {
+            switch (exchange.getRequestMethod()) {
+                case "PUT": {
+                    parseParams(readBody(exchange.getRequestBody()), params);
+                    send(exchange, 200, put(key, params.get("value"), true));
+                    break;
+                }
+                case "GET": {
+                    Map<String, Object> node;
+                    synchronized (this) {
+                        node = nodes.get(key);
+                        if(node == null) {
+                            String dir = key.endsWith("/") ? key : key + "/";
+                            List<Map<String, Object>> children = new ArrayList<>();
+                            nodes.forEach((k, v) -> {
+                                if(k.startsWith(dir)) {
+                                    children.add(v);
+                                }
+                            });
+                            if(!children.isEmpty() || "/".equals(key)) {
+                                node = ImmutableMap.of("key", key, "dir", true, "nodes", children);
+                            }
+                        }
+                    }
+                    if(node == null) {
+                        send(exchange, 404, error(100, "Key not found"));
+                    } else {
+                        send(exchange, 200, ImmutableMap.of("action", "get", "node", node));
+                    }
+                    break;
+                }
+                default:
+                    send(exchange, 405, error(0, "Unsupported method"));
+            }
+        }
+
+        private synchronized Map<String, Object> error(int code, String message) {
+            return ImmutableMap.of("errorCode", code, "message", message, "cause", "", "index", index);
+        }
+
+        private void send(HttpExchange exchange, int status, Object body) throws IOException {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            long currIndex;
+            synchronized (this) {
+                currIndex = index;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("X-Etcd-Index", Long.toString(currIndex));
+            exchange.sendResponseHeaders(status, bytes.length);
+            try(OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+
+        private static String readBody(InputStream is) throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while((read = is.read(buf)) != -1) {
+                baos.write(buf, 0, read);
+            }
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private static void parseParams(String str, Map<String, String> params) throws IOException {
+            if(str == null || str.isEmpty()) {
+                return;
+            }
+            for(String pair: str.split("&")) {
+                int i = pair.indexOf('=');
+                String name = i < 0 ? pair : pair.substring(0, i);
+                String value = i < 0 ? "" : pair.substring(i + 1);
+                params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
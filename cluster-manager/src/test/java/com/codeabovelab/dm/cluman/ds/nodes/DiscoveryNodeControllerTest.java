@@ -1,6 +1,8 @@
 package com.codeabovelab.dm.cluman.ds.nodes;
 
 import com.codeabovelab.dm.agent.notifier.NotifierData;
+import com.codeabovelab.dm.agent.notifier.NotifierDataUtils;
+import com.codeabovelab.dm.agent.notifier.SysInfo;
 import com.codeabovelab.dm.cluman.model.DiscoveryStorage;
 import com.codeabovelab.dm.cluman.model.NodeInfo;
 import com.codeabovelab.dm.cluman.model.NodeInfoImpl;
@@ -17,6 +19,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.util.MimeTypeUtils;
@@ -29,7 +32,7 @@ import java.util.function.Consumer;
 
 import static com.google.common.collect.ImmutableMap.of;
 import static org.hamcrest.Matchers.*;
-import static org.junit.Assert.assertThat;
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -47,13 +50,15 @@ public class DiscoveryNodeControllerTest {
     @Autowired
     private DiscoveryStorage discoveryStorage;
     @Autowired
-    private NodeStorage nodeStorage;
+    private NodeHeartbeatIngest ingest;
+    @Autowired
+    private TestConfiguration configuration;
     private MockMvc mvc;
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @Before
     public void before() {
-        mvc = standaloneSetup(new DiscoveryNodeController(nodeStorage, SECRET,
+        mvc = standaloneSetup(new DiscoveryNodeController(ingest, SECRET,
                 "docker run --name havenAgent -d -e \"dm_agent_notifier_server={server}\" {secret} " +
                 "--restart=unless-stopped -p 8771:8771 -v /run/docker.sock:/run/docker.sock codeabovelab/agent:latest"))
                 .build();
@@ -86,6 +91,7 @@ public class DiscoveryNodeControllerTest {
         addNode(hostPort, true);
         addNode(secondHostPort, true);
         addNode("unauthorized:876", false);
+        ingest.flush();
 
         {
             Collection<NodeInfo> nodes = cluster.getNodes();
@@ -95,6 +101,45 @@ public class DiscoveryNodeControllerTest {
         }
     }
 
+    @Test
+    public void testDelta() throws Exception {
+        final String name = "node-delta";
+        NotifierData full = new NotifierData();
+        full.setSeq(1);
+        full.setName(name);
+        full.setAddress(name + ":1234");
+        SysInfo sys = new SysInfo();
+        sys.setCpuLoad(0.5f);
+        SysInfo.Disk disk = new SysInfo.Disk();
+        disk.setTotal(1000);
+        disk.setUsed(10);
+        sys.getDisks().put("/", disk);
+        full.setSystem(sys);
+        post(name, full, status().isOk());
+        ingest.flush();
+
+        NotifierData next = new NotifierData();
+        next.setSeq(2);
+        next.setName(name);
+        next.setAddress(full.getAddress());
+        SysInfo nextSys = new SysInfo();
+        nextSys.setCpuLoad(0.7f);
+        nextSys.getDisks().put("/", disk);
+        next.setSystem(nextSys);
+        NotifierData delta = NotifierDataUtils.diff(full, next);
+        assertNull(delta.getAddress());
+        assertThat(delta.getSystem().getDisks().entrySet(), empty());
+        post(name, delta, status().isOk());
+        ingest.flush();
+        NodeInfo ni = configuration.nodes.get(name);
+        assertEquals(full.getAddress(), ni.getAddress());
+        assertEquals(0.7f, ni.getHealth().getSysCpuLoad(), 0.001f);
+        assertEquals(10L, ni.getHealth().getDisks().get("/").getUsed());
+
+        // server has seq=2, so delta based on first heartbeat is rejected
+        post(name, delta, status().isConflict());
+    }
+
     @SuppressWarnings("deprecation")
     private void addNode(String hostPort, boolean auth) throws Exception {
         NotifierData data = new NotifierData();
@@ -110,6 +155,14 @@ public class DiscoveryNodeControllerTest {
         mvc.perform(b).andExpect(auth ? status().isOk() : status().isUnauthorized());
     }
 
+    private void post(String name, NotifierData data, ResultMatcher matcher) throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post(getClusterUrl(name))
+          .header("X-Auth-Node", SECRET)
+          .contentType(MimeTypeUtils.APPLICATION_JSON_VALUE)
+          .content(objectMapper.writeValueAsString(data)))
+          .andExpect(matcher);
+    }
+
     private String getClusterUrl(String clusterId) {
         return URL + "/" + clusterId;
     }
@@ -130,10 +183,19 @@ public class DiscoveryNodeControllerTest {
                 updater.accept(b);
                 nodes.put(name, b.build());
                 return null;
-            }).when(ns).updateNode(anyString(), anyInt(), anyObject());
+            }).when(ns).updateNodeIfChanged(anyString(), anyInt(), anyObject());
+            when(ns.getNodeRegistrationInternal(anyString())).thenAnswer(invocation -> {
+                String name = invocation.getArgumentAt(0, String.class);
+                return nodes.containsKey(name) ? mock(NodeRegistrationImpl.class) : null;
+            });
             return ns;
         }
 
+        @Bean
+        NodeHeartbeatIngest nodeHeartbeatIngest(NodeStorage nodeStorage) {
+            return new NodeHeartbeatIngest(nodeStorage, new NodeStorageConfig());
+        }
+
         @Bean
         DiscoveryStorage discoveryStorage() {
             NodesGroup cluster = mock(NodesGroup.class);
@@ -0,0 +1,113 @@
+package com.codeabovelab.dm.cluman.ds.nodes;
+
+import com.codeabovelab.dm.cluman.model.NetIfaceCounter;
+import com.codeabovelab.dm.cluman.model.NodeMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class NodeMetricsStoreTest {
+
+    private static final String NODE = "node-1";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 1500000000000L - 1500000000000L % TimeUnit.HOURS.toMillis(1);
+    private File dir;
+    private NodeMetricsStore store;
+
+    @Before
+    public void before() throws Exception {
+        dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        store = new NodeMetricsStore(dir);
+    }
+
+    @After
+    public void after() throws Exception {
+        store.destroy();
+        store.remove(NODE);
+        dir.delete();
+    }
+
+    private static NodeMetrics metrics(int i) {
+        return NodeMetrics.builder()
+          .time(ZonedDateTime.ofInstant(Instant.ofEpochMilli(START + i * MINUTE), ZoneOffset.UTC))
+          .sysCpuLoad((float) (i % 10))
+          .addNet(new NetIfaceCounter("eth0", i * 6000L, 0))
+          .build();
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        final int samples = 180;
+        for(int i = 0; i < samples; ++i) {
+            store.add(NODE, metrics(i));
+        }
+        long to = START + (samples - 1) * MINUTE;
+
+        NodeMetricsHistory minutes = store.query(NODE, START, to, 1000);
+        assertEquals(MINUTE, minutes.getResolution());
+        assertEquals(samples, minutes.getPoints().size());
+        NodeMetricsHistory.Point point = minutes.getPoints().get(15);
+        assertEquals(START + 15 * MINUTE, point.getTime());
+        assertEquals(5d, point.getValues().get("sysCpuLoad").getAvg(), 0.001);
+        // counter is stored as rate: 6000 bytes per minute
+        assertEquals(100d, point.getValues().get("netIn").getAvg(), 0.001);
+        assertNull(minutes.getPoints().get(0).getValues().get("netIn"));
+
+        NodeMetricsHistory tens = store.query(NODE, START, to, 20);
+        assertEquals(10 * MINUTE, tens.getResolution());
+        assertEquals(18, tens.getPoints().size());
+        NodeMetricsHistory.Stat stat = tens.getPoints().get(3).getValues().get("sysCpuLoad");
+        assertEquals(0d, stat.getMin(), 0.001);
+        assertEquals(4.5d, stat.getAvg(), 0.001);
+        assertEquals(9d, stat.getMax(), 0.001);
+
+        NodeMetricsHistory hours = store.query(NODE, START, to, 3);
+        assertEquals(60 * MINUTE, hours.getResolution());
+        assertEquals(3, hours.getPoints().size());
+
+        // history must survive restart
+        store.destroy();
+        store = new NodeMetricsStore(dir);
+        List<NodeMetricsHistory.Point> points = store.query(NODE, START, to, 20).getPoints();
+        assertEquals(tens.getPoints(), points);
+    }
+
+    @Test
+    public void testPartialSamples() throws Exception {
+        store.add(NODE, metrics(0));
+        // heartbeat without net counters
+        store.add(NODE, NodeMetrics.builder()
+          .time(ZonedDateTime.ofInstant(Instant.ofEpochMilli(START + MINUTE), ZoneOffset.UTC))
+          .sysCpuLoad(3f)
+          .build());
+        store.add(NODE, metrics(2));
+        List<NodeMetricsHistory.Point> points = store.query(NODE, START, START + 2 * MINUTE, 1000).getPoints();
+        assertEquals(3, points.size());
+        assertNull(points.get(1).getValues().get("netIn"));
+        assertNull(points.get(1).getValues().get("diskUsed"));
+        // rate is calculated from previous sample which has counter
+        assertEquals(100d, points.get(2).getValues().get("netIn").getAvg(), 0.001);
+    }
+
+    @Test
+    public void testChooseResolution() {
+        assertEquals(0, NodeMetricsStore.chooseResolution(TimeUnit.HOURS.toMillis(1), 100));
+        assertEquals(1, NodeMetricsStore.chooseResolution(TimeUnit.DAYS.toMillis(1), 300));
+        // minutes fit in points, but not in history
+        assertEquals(1, NodeMetricsStore.chooseResolution(TimeUnit.DAYS.toMillis(3), 10000));
+        assertEquals(2, NodeMetricsStore.chooseResolution(TimeUnit.DAYS.toMillis(30), 1000));
+        assertEquals(2, NodeMetricsStore.chooseResolution(TimeUnit.DAYS.toMillis(3000), 10));
+    }
+}
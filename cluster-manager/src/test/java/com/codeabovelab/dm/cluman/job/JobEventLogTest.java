@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.cluman.job;
+
+import com.codeabovelab.dm.common.fc.FbStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+public class JobEventLogTest {
+
+    private static final int CAPACITY = 8;
+    private File dir;
+    private FbStorage storage;
+    private final JobInfo info = JobInfo.builder()
+      .id("test-0")
+      .type("test")
+      .createTime(LocalDateTime.now())
+      .build();
+
+    @Before
+    public void before() throws Exception {
+        dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        storage = FbStorage.builder().path(dir.getAbsolutePath()).build();
+    }
+
+    @After
+    public void after() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        JobEventLog log = new JobEventLog(CAPACITY, storage, info.getId(), () -> info);
+        final int count = CAPACITY * 5;
+        for(int i = 0; i < count; ++i) {
+            JobEvent event = log.add(info, "msg" + i, i == 3 ? new IllegalStateException("fail") : null);
+            assertEquals(i, event.getSeq());
+        }
+        assertSeq(log.read(0, Integer.MAX_VALUE), 0, count);
+        // cursor inside spilled part
+        assertSeq(log.read(5, 10), 5, 10);
+        // cursor crossing spill and ring
+        assertSeq(log.read(count - CAPACITY - 2, 4), count - CAPACITY - 2, 4);
+        assertSeq(log.read(count, 10), count, 0);
+
+        JobEvent restored = log.read(3, 1).get(0);
+        assertEquals("msg3", restored.getMessage());
+        assertEquals(info.getId(), restored.getInfo().getId());
+        assertEquals(IllegalStateException.class.getName() + ": fail", restored.getException().toString());
+
+        log.flush();
+        // spill is closed after flush, and read from disk
+        assertSeq(log.read(0, Integer.MAX_VALUE), 0, count);
+        assertSeq(log.read(5, 10), 5, 10);
+        log.add(info, "after flush", null);
+        assertSeq(log.read(count - 1, 10), count - 1, 2);
+        for(int i = 0; i < CAPACITY; ++i) {
+            log.add(info, "reopen" + i, null);
+        }
+        // spill is reopened for writing
+        assertSeq(log.read(0, Integer.MAX_VALUE), 0, count + 1 + CAPACITY);
+
+        log.close();
+        assertFalse(new File(JobEventLog.getDir(storage), info.getId()).exists());
+    }
+
+    @Test
+    public void testLazySpill() throws Exception {
+        File spillDir = new File(JobEventLog.getDir(storage), info.getId());
+        JobEventLog log = new JobEventLog(CAPACITY, storage, info.getId(), () -> info);
+        for(int i = 0; i < CAPACITY; ++i) {
+            log.add(info, "msg" + i, null);
+        }
+        log.flush();
+        assertFalse(spillDir.exists());
+        assertSeq(log.read(0, Integer.MAX_VALUE), 0, CAPACITY);
+        log.add(info, "overflow", null);
+        assertTrue(spillDir.exists());
+        assertSeq(log.read(0, Integer.MAX_VALUE), 0, CAPACITY + 1);
+        log.close();
+    }
+
+    @Test
+    public void testWithoutStorage() {
+        JobEventLog log = new JobEventLog(CAPACITY, null, info.getId(), () -> info);
+        for(int i = 0; i < CAPACITY * 2; ++i) {
+            log.add(info, "msg" + i, null);
+        }
+        // old events are dropped
+        assertSeq(log.read(0, Integer.MAX_VALUE), CAPACITY, CAPACITY);
+        log.close();
+    }
+
+    private static void assertSeq(List<JobEvent> events, long from, int count) {
+        assertEquals(count, events.size());
+        for(int i = 0; i < count; ++i) {
+            assertEquals(from + i, events.get(i).getSeq());
+        }
+    }
+}
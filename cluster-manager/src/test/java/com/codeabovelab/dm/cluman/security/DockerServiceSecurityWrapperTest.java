@@ -3,9 +3,11 @@ package com.codeabovelab.dm.cluman.security;
 import com.codeabovelab.dm.cluman.DockerServiceMock;
 import com.codeabovelab.dm.cluman.cluster.docker.management.DockerService;
 import com.codeabovelab.dm.cluman.cluster.docker.management.argument.DeleteContainerArg;
+import com.codeabovelab.dm.cluman.cluster.docker.management.argument.GetContainersArg;
 import com.codeabovelab.dm.cluman.cluster.docker.model.ContainerDetails;
 import com.codeabovelab.dm.cluman.cluster.docker.model.CreateContainerCmd;
 import com.codeabovelab.dm.cluman.configuration.SecurityConfiguration;
+import com.codeabovelab.dm.cluman.model.DockerContainer;
 import com.codeabovelab.dm.cluman.model.DockerServiceInfo;
 import com.codeabovelab.dm.common.security.Authorities;
 import com.codeabovelab.dm.common.security.GrantedAuthorityImpl;
@@ -25,6 +27,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.acls.model.Acl;
+import org.springframework.security.acls.model.NotFoundException;
+import org.springframework.security.acls.model.Permission;
+import org.springframework.security.acls.model.Sid;
 import org.springframework.security.acls.model.SidRetrievalStrategy;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -33,6 +39,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -189,6 +196,59 @@ public class DockerServiceSecurityWrapperTest {
 
     }
 
+    /**
+     * Measure listing of many containers with per container acl reading (as it was before decision cache),
+     * and with cold and warm decision cache. Size is configured by 'acl.bench.containers' system property.
+     */
+    @Test
+    public void testContainersListing() {
+        final int count = Integer.getInteger("acl.bench.containers", 2000);
+        DockerService benchMock = new DockerServiceMock(DockerServiceInfo.builder().name("ownedCluster").build());
+        DockerService benchService = new DockerServiceSecurityWrapper(acf, benchMock);
+        final Authentication auth = createAuthFromDetails(otherUser);
+        try(TempAuth ta = TempAuth.open(auth)) {
+            for(int i = 0; i < count; ++i) {
+                CreateContainerCmd ccc = new CreateContainerCmd();
+                ccc.setImage("testimage");
+                ccc.setName("benchcont" + i);
+                benchService.createContainer(ccc);
+            }
+        }
+        GetContainersArg arg = new GetContainersArg(true);
+        List<Permission> perms = Collections.singletonList(Action.READ);
+        List<Sid> sids = acf.sidStrategy.getSids(auth);
+        long begin = System.nanoTime();
+        List<DockerContainer> perContainer = benchMock.getContainers(arg).stream().filter(c -> {
+            try {
+                Acl acl = acf.aclService.readAclById(SecuredType.CONTAINER.id(c.getId()));
+                return acl.isGranted(perms, sids, false);
+            } catch (NotFoundException e) {
+                return false;
+            }
+        }).collect(Collectors.toList());
+        long perContainerTime = System.nanoTime() - begin;
+        List<DockerContainer> uncached;
+        long uncachedTime;
+        try(TempAuth ta = TempAuth.open(auth)) {
+            acf.getDecisionCache().invalidateAll();
+            begin = System.nanoTime();
+            uncached = benchService.getContainers(arg);
+            uncachedTime = System.nanoTime() - begin;
+        }
+        List<DockerContainer> cached;
+        long cachedTime;
+        try(TempAuth ta = TempAuth.open(auth)) {
+            begin = System.nanoTime();
+            cached = benchService.getContainers(arg);
+            cachedTime = System.nanoTime() - begin;
+        }
+        log.info("List of {} containers, per container acl: {}ms, uncached: {}ms, cached: {}ms", count,
+          perContainerTime / 1000_000D, uncachedTime / 1000_000D, cachedTime / 1000_000D);
+        assertEquals(count, perContainer.size());
+        assertEquals(count, uncached.size());
+        assertEquals(count, cached.size());
+    }
+
     private Authentication createAuthFromDetails(UserDetails user) {
         return AuthenticationData.build()
           .authorities(user.getAuthorities())
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeabovelab.dm.cluman.ui.msg;
+
+import com.codeabovelab.dm.cluman.cluster.docker.management.DockerServiceEvent;
+import com.codeabovelab.dm.cluman.model.StandardActions;
+import com.codeabovelab.dm.cluman.persistent.PersistentBusFactory;
+import com.codeabovelab.dm.common.fc.FbStorage;
+import com.codeabovelab.dm.common.json.JacksonUtils;
+import com.codeabovelab.dm.common.mb.MessageBus;
+import com.codeabovelab.dm.common.utils.OSUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ */
+public class EventControllerTest {
+
+    private static final String BUS = "test.errors";
+    private final String rootDir = OSUtils.getTempDir() + "/" + getClass().getName();
+    private PersistentBusFactory busFactory;
+
+    @Before
+    public void before() {
+        FbStorage storage = FbStorage.builder()
+          .maxFiles(3)
+          .maxFileSize(1024 * 1024)
+          .path(rootDir)
+          .build();
+        busFactory = new PersistentBusFactory(JacksonUtils.objectMapperBuilder(), storage);
+    }
+
+    @After
+    public void after() throws Exception {
+        busFactory.destroy();
+        FileSystemUtils.deleteRecursively(new File(rootDir));
+    }
+
+    @Test
+    public void testCountOfLastEvents() {
+        final int count = 10;
+        MessageBus<DockerServiceEvent> bus = busFactory.create(DockerServiceEvent.class, BUS, 100);
+        for(int i = 0; i < count; ++i) {
+            bus.accept(new DockerServiceEvent("service" + i, "node", "cluster", StandardActions.DELETE));
+        }
+        EventSources sources = mock(EventSources.class);
+        doReturn(bus).when(sources).get(BUS);
+        EventController controller = new EventController(null, sources, null);
+
+        UiCountResult res = controller.countOfLastEvents(BUS, null, null);
+        assertEquals(count, res.getCount());
+
+        res = controller.countOfLastEvents(BUS, null, LocalDateTime.now().plusHours(1));
+        assertEquals(0, res.getCount());
+    }
+}
@@ -98,6 +98,10 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
     private final MessageBus<KvStorageEvent> bus;
     private final AtomicInteger counter = new AtomicInteger();
     private final Executor executor;
+    /**
+     * All modifications are made under this lock, it give atomicity of {@link #setAll(Map, WriteOptions)}.
+     */
+    private final Object writeLock = new Object();
 
     public InMemoryKeyValueStorage() {
         this(builder());
@@ -128,22 +132,52 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
 
     @Override
     public KvNode set(String key, String value, WriteOptions ops) {
-        return root.set(new Context(key), value);
+        synchronized (writeLock) {
+            return root.set(new Context(key), value, ops);
+        }
+    }
+
+    /**
+     * Write all values atomically: no other modification can be made between writes of batch. Note that
+     * we have index only on directories, therefore {@link WriteOptions#getPrevIndex()} is compared with
+     * index of directory which contains guard key.
+     * @param values ordered map of keys and values, usually {@link LinkedHashMap}
+     * @param ops ops for first key or null
+     * @return map of keys and its nodes
+     */
+    @Override
+    public Map<String, KvNode> setAll(Map<String, String> values, WriteOptions ops) {
+        Map<String, KvNode> res = new LinkedHashMap<>();
+        synchronized (writeLock) {
+            WriteOptions curr = ops;
+            for(Map.Entry<String, String> e: values.entrySet()) {
+                String key = e.getKey();
+                res.put(key, root.set(new Context(key), e.getValue(), curr));
+                curr = null;
+            }
+        }
+        return res;
     }
 
     @Override
     public KvNode setdir(String key, WriteOptions ops) {
-        return root.setdir(new Context(key), ops);
+        synchronized (writeLock) {
+            return root.setdir(new Context(key), ops);
+        }
     }
 
     @Override
     public KvNode deletedir(String key, DeleteDirOptions ops) {
-        return root.deletedir(new Context(key), ops);
+        synchronized (writeLock) {
+            return root.deletedir(new Context(key), ops);
+        }
     }
 
     @Override
     public KvNode delete(String key, WriteOptions ops) {
-        return root.delete(new Context(key), ops);
+        synchronized (writeLock) {
+            return root.delete(new Context(key), ops);
+        }
     }
 
     @Override
@@ -156,6 +190,11 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
         return root.map(new Context(key));
     }
 
+    @Override
+    public Map<String, KvNode> getAll(String key) {
+        return root.getAll(new Context(key));
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public ConditionalSubscriptions<KvStorageEvent, String> subscriptions() {
@@ -237,17 +276,36 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
               (k, dir) -> dir.get(k));
         }
 
-        KvNode set(Context ctx, String value) {
+        KvNode set(Context ctx, String value, WriteOptions ops) {
             return doing(ctx, true,
               (k) -> {
                   assertNullOrNotNode(k);
+                  checkOptions(k, ops);
                   Object old = nodes.put(k.current, value == null? NULL : value);
                   String strVal = toStrVal(value);
                   index++;
                   ctx.fire(index, old == null? KvStorageEvent.Crud.CREATE : KvStorageEvent.Crud.UPDATE, strVal);
                   return toNode(strVal);
               },
-              (k, dir) -> dir.set(k, value));
+              (k, dir) -> dir.set(k, value, ops));
+        }
+
+        private void checkOptions(Context ctx, WriteOptions ops) {
+            if(ops == null) {
+                return;
+            }
+            boolean exists = nodes.containsKey(ctx.current);
+            if(ops.isFailIfExists() && exists) {
+                throw new IllegalStateException("The " + ctx.key + " is already exists.");
+            }
+            if(ops.isFailIfAbsent() && !exists) {
+                throw new IllegalStateException("The " + ctx.key + " is absent.");
+            }
+            int prevIndex = ops.getPrevIndex();
+            if(prevIndex > 0 && prevIndex != index) {
+                throw new IllegalStateException("The " + ctx.key + " compare failed: expected index " + prevIndex +
+                  " but actual " + index);
+            }
         }
 
         KvNode setdir(Context ctx, WriteOptions ops) {
@@ -326,6 +384,27 @@ public class InMemoryKeyValueStorage implements KeyValueStorage {
               },
               (k, dir) -> dir.map(k));
         }
+
+        Map<String, KvNode> getAll(Context ctx) {
+            return doing(ctx, false,
+              (k) -> {
+                  Object o = nodes.get(k.current);
+                  if(o == null) {
+                      return null;
+                  }
+                  assertNode(k, o);
+                  Node node = (Node) o;
+                  ctx.fire(node.index, KvStorageEvent.Crud.READ, null);
+                  Map<String, KvNode> map = new LinkedHashMap<>();
+                  node.nodes.forEach((lk, lv) -> {
+                      if(!(lv instanceof Node)) {
+                          map.put(lk, node.toNode(toStrVal(lv)));
+                      }
+                  });
+                  return map;
+              },
+              (k, dir) -> dir.getAll(k));
+        }
     }
 
     private String toStrVal(Object val) {
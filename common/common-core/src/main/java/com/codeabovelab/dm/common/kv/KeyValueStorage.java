@@ -18,11 +18,17 @@ package com.codeabovelab.dm.common.kv;
 
 import com.codeabovelab.dm.common.mb.ConditionalSubscriptions;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * key-value store for shared configuration and service discovery
+ * key-value store for shared configuration and service discovery. <p/>
+ * Synchronous methods wait for response of storage, asynchronous ('*Async') methods return future which
+ * completed at response, so many requests can be sent without waiting. Default implementations of asynchronous
+ * methods invoke synchronous methods in current thread.
  */
 public interface KeyValueStorage {
 
@@ -52,6 +58,128 @@ public interface KeyValueStorage {
      */
     KvNode set(String key, String value, WriteOptions ops);
 
+    /**
+     * Set values of many keys in one batch. Options are applied only to first key of batch (the 'guard' key),
+     * it written before others, and when its write is failed no other keys are written. So passing
+     * {@link WriteOptions#getPrevIndex()} give compare-and-swap for whole batch. <p/>
+     * Default implementation send other keys through {@link #setAsync(String, String, WriteOptions)} without waiting
+     * of each response, and then wait all of them.
+     * @param values ordered map of keys and values, usually {@link LinkedHashMap}
+     * @param ops ops for first key or null
+     * @return map of keys and its nodes, in order of values
+     */
+    default Map<String, KvNode> setAll(Map<String, String> values, WriteOptions ops) {
+        Map<String, KvNode> res = new LinkedHashMap<>();
+        Map<String, CompletableFuture<KvNode>> futures = new LinkedHashMap<>();
+        WriteOptions curr = ops;
+        for(Map.Entry<String, String> e: values.entrySet()) {
+            String key = e.getKey();
+            if(curr != null) {
+                res.put(key, set(key, e.getValue(), curr));
+                curr = null;
+            } else {
+                futures.put(key, setAsync(key, e.getValue(), null));
+            }
+        }
+        RuntimeException error = null;
+        for(Map.Entry<String, CompletableFuture<KvNode>> e: futures.entrySet()) {
+            try {
+                res.put(e.getKey(), KvUtils.await(e.getValue()));
+            } catch (RuntimeException ex) {
+                // we must wait all responses before throw error
+                if(error == null) {
+                    error = new RuntimeException("Can not set value of " + e.getKey(), ex);
+                } else {
+                    error.addSuppressed(ex);
+                }
+            }
+        }
+        if(error != null) {
+            throw error;
+        }
+        return res;
+    }
+
+    /**
+     * Retrieve direct value childs of specified key. Unlike {@link #map(String)} result also contains
+     * indexes of nodes.
+     * @param key
+     * @return map of child names (relative to key) and its nodes, or null if key is absent
+     */
+    default Map<String, KvNode> getAll(String key) {
+        List<String> list = list(key);
+        if(list == null) {
+            return null;
+        }
+        Map<String, KvNode> res = new LinkedHashMap<>();
+        for(String child: list) {
+            KvNode node = get(child);
+            if(node != null) {
+                res.put(KvUtils.name(key, child), node);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(String)}.
+     * @param key the key
+     * @return future of node, node is null when value is not found
+     */
+    default CompletableFuture<KvNode> getAsync(String key) {
+        return KvUtils.completed(() -> get(key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #set(String, String, WriteOptions)}.
+     * @param key the key
+     * @param value the value
+     * @param ops ops or null
+     * @return future of node
+     */
+    default CompletableFuture<KvNode> setAsync(String key, String value, WriteOptions ops) {
+        return KvUtils.completed(() -> set(key, value, ops));
+    }
+
+    /**
+     * Asynchronous variant of {@link #delete(String, WriteOptions)}.
+     * @param key the key
+     * @param ops ops or null
+     * @return future of node
+     */
+    default CompletableFuture<KvNode> deleteAsync(String key, WriteOptions ops) {
+        return KvUtils.completed(() -> delete(key, ops));
+    }
+
+    /**
+     * Asynchronous variant of {@link #list(String)}.
+     * @param key
+     * @return future of list, list is null if key is absent
+     */
+    default CompletableFuture<List<String>> listAsync(String key) {
+        return KvUtils.completed(() -> list(key));
+    }
+
+    /**
+     * Get values of many keys, requests are sent without waiting of each response.
+     * @param keys keys
+     * @return map of keys and its nodes, absent keys are not included
+     */
+    default Map<String, KvNode> getMany(Collection<String> keys) {
+        Map<String, CompletableFuture<KvNode>> futures = new LinkedHashMap<>();
+        for(String key: keys) {
+            futures.put(key, getAsync(key));
+        }
+        Map<String, KvNode> res = new LinkedHashMap<>();
+        futures.forEach((key, future) -> {
+            KvNode node = KvUtils.await(future);
+            if(node != null) {
+                res.put(key, node);
+            }
+        });
+        return res;
+    }
+
     /**
      * Make or update directory at specified key.
      * @param key
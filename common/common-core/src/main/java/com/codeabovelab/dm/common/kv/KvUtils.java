@@ -16,9 +16,13 @@
 
 package com.codeabovelab.dm.common.kv;
 
+import com.codeabovelab.dm.common.utils.Throwables;
 import com.google.common.base.Strings;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  */
@@ -138,4 +142,38 @@ public class KvUtils {
         }
         return path.substring(start, end);
     }
+
+    /**
+     * Invoke supplier in current thread and wrap its result or error into completed future. It used by
+     * storages which does not support asynchronous operations.
+     * @param supplier supplier
+     * @param <T> type of result
+     * @return completed future
+     */
+    public static <T> CompletableFuture<T> completed(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Wait result of future and unwrap its errors.
+     * @param future future
+     * @param <T> type of result
+     * @return result of future
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw Throwables.asRuntime(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.asRuntime(e);
+        }
+    }
 }
@@ -156,12 +156,8 @@ public class KvClassMapper<T> {
      */
     public <S extends T> S load(String name, Class<S> type) {
         String path = path(name);
-        //check that mapped dir is exists
-        KvNode node = this.storage.get(path);
-        if(node == null) {
-            return null;
-        }
         Class<S> actualType = resolveType(type);
+        // mapping return null when mapped node is absent
         return this.mapping.load(path, name, actualType);
     }
 
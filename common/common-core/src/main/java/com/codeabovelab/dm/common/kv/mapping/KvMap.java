@@ -18,24 +18,36 @@ package com.codeabovelab.dm.common.kv.mapping;
 
 import com.codeabovelab.dm.common.kv.KvStorageEvent;
 import com.codeabovelab.dm.common.kv.KvUtils;
+import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 import org.springframework.util.Assert;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * KeyValue storage map of directory. <p/>
- * It has internal cache on plain map, without timeouts, and also update it on KV events. We do not using
- * guava cache because want to add keys into map without loading values.
+ * It has internal cache on concurrent map, without timeouts, and also update it on KV events. We do not using
+ * guava cache because want to add keys into map without loading values. <p/>
+ * Each value has own state (clean, dirty or loading) and lock, so readers of clean values are never blocked, and
+ * loading of one value does not block access to others. Keys are iterated in order of insertion, like it was
+ * with linked map.
  */
 @Slf4j
 public class KvMap<T> {
@@ -126,12 +138,34 @@ public class KvMap<T> {
             return new KvMap<>(this);
         }
     }
+    /**
+     * State of value holder. Only clean value can be returned without lock.
+     */
+    private enum State {
+        /**
+         * Value is absent or outdated and must be loaded at next access.
+         */
+        DIRTY,
+        /**
+         * Value is loading now, an event which come at this time return holder to {@link #DIRTY}.
+         */
+        LOADING,
+        CLEAN
+    }
+
     private final class ValueHolder {
         private final String key;
+        /**
+         * Order of insertion, it used for iteration.
+         */
+        private final long order = holderCounter.incrementAndGet();
         private volatile T value;
         private final Map<String, Long> index = new ConcurrentHashMap<>();
-        private volatile boolean dirty = true;
-        private volatile boolean barrier = false;
+        private final AtomicReference<State> state = new AtomicReference<>(State.DIRTY);
+        /**
+         * Guarded by holder lock.
+         */
+        private boolean barrier = false;
 
         ValueHolder(String key) {
             Assert.notNull(key, "key is null");
@@ -145,12 +179,13 @@ public class KvMap<T> {
                 checkValue(val);
                 // we must not publish dirty value
                 old = getIfPresent();
-                this.dirty = false;
                 if(val == value) {
+                    this.state.set(State.CLEAN);
                     return value;
                 }
                 action = this.value == null ? KvMapLocalEvent.Action.CREATE : KvMapLocalEvent.Action.UPDATE;
                 this.value = val;
+                this.state.set(State.CLEAN);
             }
             onLocal(action, this, old, val);
             flush();
@@ -164,39 +199,48 @@ public class KvMap<T> {
                     // no value set, nothing to flush
                     return;
                 }
-                this.dirty = false;
+                this.state.set(State.CLEAN);
                 obj = adapter.get(this.key, this.value);
             }
             // Note that message will be concatenated with type of object by `Assert.isInstanceOf`
             Assert.isInstanceOf(mapper.getType(), obj, "Adapter " + adapter + " return object of inappropriate");
             Assert.notNull(obj, "Adapter " + adapter + " return null from " + this.value + " that is not allowed");
-            mapper.save(key, obj, (name, res) -> {
-                synchronized (this) {
-                    index.put(toIndexKey(name), res.getIndex());
-                }
-            });
+            mapper.save(key, obj, (name, res) -> index.put(toIndexKey(name), res.getIndex()));
         }
 
         private String toIndexKey(String name) {
             return name == null? THIS : name;
         }
 
-        synchronized void dirty(String prop, long newIndex) {
+        /**
+         * It invoked from KV events and never wait for loading of value.
+         */
+        void dirty(String prop, long newIndex) {
             Long old = this.index.get(toIndexKey(prop));
             if(old != null && old != newIndex) {
                 dirty();
             }
         }
 
-        synchronized void dirty() {
-            this.dirty = true;
+        void dirty() {
+            this.state.set(State.DIRTY);
+        }
+
+        boolean isClean() {
+            return this.state.get() == State.CLEAN;
         }
 
-        synchronized T get() {
-            if(dirty) {
-                load();
+        T get() {
+            if(isClean()) {
+                return value;
+            }
+            synchronized (this) {
+                // value may be loaded while we wait lock
+                if(!isClean()) {
+                    load();
+                }
+                return value;
             }
-            return value;
         }
 
         private void checkValue(T value) {
@@ -209,7 +253,8 @@ public class KvMap<T> {
             }
             barrier = true;
             try {
-                T old = (dirty && !passDirty)? null : value;
+                T old = (!isClean() && !passDirty)? null : value;
+                this.state.set(State.LOADING);
                 Object obj = mapper.load(key, adapter.getType(old));
                 T newVal = null;
                 if(obj != null || old != null) {
@@ -218,18 +263,20 @@ public class KvMap<T> {
                         throw new IllegalStateException("Adapter " + adapter + " broke contract: it return null value for non null object.");
                     }
                 }
-                this.dirty = false;
                 //here we must raise local event, but need to use another action like LOAD or SET,
                 // UPDATE and CREATE - is not acceptable here
                 this.value = newVal;
+                // when holder was marked as dirty while loading, we leave it dirty for reload at next access
+                this.state.compareAndSet(State.LOADING, State.CLEAN);
                 onLocal(KvMapLocalEvent.Action.LOAD, this, old, newVal);
             } finally {
+                this.state.compareAndSet(State.LOADING, State.DIRTY);
                 barrier = false;
             }
         }
 
-        synchronized T getIfPresent() {
-            if(dirty) {
+        T getIfPresent() {
+            if(!isClean()) {
                 // returning dirty value may cause unexpected effects
                 return null;
             }
@@ -262,11 +309,27 @@ public class KvMap<T> {
      * Used for replace this property in index map
      */
     static final String THIS = " this";
+    private static final int LOADER_THREADS = 4;
+    /**
+     * Shared between all maps executor for parallel loading of dirty values. Tasks are run with security context
+     * of caller, because mapper may check access.
+     */
+    private static final Executor LOADER = new DelegatingSecurityContextExecutor(ExecutorUtils.executorBuilder()
+      .name(KvMap.class.getSimpleName() + "-loader")
+      .coreSize(LOADER_THREADS)
+      .maxSize(LOADER_THREADS)
+      .queueSize(1024)
+      .build());
+    /**
+     * Mark threads which load values, loader must not start parallel loading itself.
+     */
+    private static final ThreadLocal<Boolean> IN_LOADER = new ThreadLocal<>();
     private final KvClassMapper<Object> mapper;
     private final KvMapAdapter<T> adapter;
     private final Consumer<KvMapLocalEvent<T>> localListener;
     private final Consumer<KvMapEvent<T>> listener;
-    private final Map<String, ValueHolder> map = new LinkedHashMap<>();
+    private final ConcurrentMap<String, ValueHolder> map = new ConcurrentHashMap<>();
+    private final AtomicLong holderCounter = new AtomicLong();
     private final boolean passDirty;
 
     @SuppressWarnings("unchecked")
@@ -310,14 +373,11 @@ public class KvMap<T> {
             if(action == KvStorageEvent.Crud.DELETE) {
                 // it meat that someone remove mapped node with all entries, we must clear map
                 // note that current implementation does not support consistency
-                List<ValueHolder> set;
-                synchronized (map) {
-                    set = new ArrayList<>(map.values());
-                    map.clear();
-                }
-                set.forEach((holder) -> {
-                    onLocal(KvMapLocalEvent.Action.DELETE, holder, holder.getIfPresent(), null);
-                    invokeListener(KvStorageEvent.Crud.DELETE, holder.key, holder);
+                map.forEach((holderKey, holder) -> {
+                    if(map.remove(holderKey, holder)) {
+                        onLocal(KvMapLocalEvent.Action.DELETE, holder, holder.getIfPresent(), null);
+                        invokeListener(KvStorageEvent.Crud.DELETE, holder.key, holder);
+                    }
                 });
             }
             return;
@@ -341,11 +401,9 @@ public class KvMap<T> {
                     holder.dirty(null, index);
                     break;
                 case DELETE:
-                    synchronized (map) {
-                        holder = map.remove(key);
-                        if(holder != null) {
-                            onLocal(KvMapLocalEvent.Action.DELETE, holder, holder.getIfPresent(), null);
-                        }
+                    holder = map.remove(key);
+                    if(holder != null) {
+                        onLocal(KvMapLocalEvent.Action.DELETE, holder, holder.getIfPresent(), null);
                     }
             }
         }
@@ -380,9 +438,7 @@ public class KvMap<T> {
         ValueHolder holder = getOrCreateHolder(key);
         T val = holder.get();
         if(val == null) {
-            synchronized (map) {
-                map.remove(key, holder);
-            }
+            map.remove(key, holder);
             return null;
         }
         return val;
@@ -394,10 +450,7 @@ public class KvMap<T> {
      * @return value or null if not exists or dirty.
      */
     public T getIfPresent(String key) {
-        ValueHolder holder;
-        synchronized (map) {
-            holder = map.get(key);
-        }
+        ValueHolder holder = map.get(key);
         if(holder == null) {
             return null;
         }
@@ -422,11 +475,8 @@ public class KvMap<T> {
      * @return gives value only if present, not load it, this mean that you may obtain null, event storage has value
      */
     public T remove(String key) {
-        ValueHolder valueHolder;
-        synchronized (map) {
-            valueHolder = map.get(key);
-            // we not delete holder here, it mus tbe deleter from kv-event listener
-        }
+        // we not delete holder here, it must be deleted from kv-event listener
+        ValueHolder valueHolder = map.get(key);
         mapper.delete(key);
         if (valueHolder != null) {
             // we must not load value
@@ -450,9 +500,7 @@ public class KvMap<T> {
         ValueHolder holder = getOrCreateHolder(key);
         T newVal = holder.compute(func);
         if(newVal == null) {
-            synchronized (map) {
-                map.remove(key, holder);
-            }
+            map.remove(key, holder);
         }
         return newVal;
     }
@@ -462,10 +510,7 @@ public class KvMap<T> {
      * @param key key of value.
      */
     public void flush(String key) {
-        ValueHolder holder;
-        synchronized (map) {
-            holder = map.get(key);
-        }
+        ValueHolder holder = map.get(key);
         if(holder != null) {
             holder.flush();
         }
@@ -473,9 +518,11 @@ public class KvMap<T> {
 
     private ValueHolder getOrCreateHolder(String key) {
         Assert.hasText(key, "key is null or empty");
-        synchronized (map) {
-            return map.computeIfAbsent(key, ValueHolder::new);
+        ValueHolder holder = map.get(key);
+        if(holder == null) {
+            holder = map.computeIfAbsent(key, ValueHolder::new);
         }
+        return holder;
     }
 
     /**
@@ -484,44 +531,91 @@ public class KvMap<T> {
      * @return set of keys, never null.
      */
     public Set<String> list() {
-        synchronized (map) {
-            return ImmutableSet.copyOf(this.map.keySet());
-        }
+        ImmutableSet.Builder<String> b = ImmutableSet.builder();
+        orderedHolders().forEach(holder -> b.add(holder.key));
+        return b.build();
     }
 
     /**
-     * Load all values of map. Note that it may cause time consumption.
+     * Holders in order of insertion.
+     * @return new list of holders
+     */
+    private List<ValueHolder> orderedHolders() {
+        List<ValueHolder> holders = new ArrayList<>(this.map.values());
+        holders.sort(Comparator.comparingLong(holder -> holder.order));
+        return holders;
+    }
+
+    /**
+     * Load all values of map. Note that it may cause time consumption, but dirty values are loaded in parallel.
      * @return immutable collection of values
      */
     public Collection<T> values() {
+        List<ValueHolder> holders = orderedHolders();
+        loadDirty(holders);
         ImmutableList.Builder<T> b = ImmutableList.builder();
-        synchronized (map) {
-            this.map.values().forEach(valueHolder -> {
-                T element = safeGet(valueHolder);
-                // map does not contain holders with null elements, but sometime it happen
-                // due to multithread access , for example in `put()` method
-                if(element != null) {
-                    b.add(element);
-                }
-            });
-        }
+        holders.forEach(valueHolder -> {
+            T element = safeGet(valueHolder);
+            // map does not contain holders with null elements, but sometime it happen
+            // due to multithread access , for example in `put()` method
+            if(element != null) {
+                b.add(element);
+            }
+        });
         return b.build();
     }
 
     public void forEach(BiConsumer<String, ? super T> action) {
-        // we use copy for prevent call external code in lock
-        Map<String, ValueHolder> copy;
-        synchronized (map) {
-            copy = new LinkedHashMap<>(this.map);
-        }
-        copy.forEach((key, holder) -> {
+        // we use copy for consistent view of map while values are loading
+        List<ValueHolder> copy = orderedHolders();
+        loadDirty(copy);
+        copy.forEach(holder -> {
             T value = safeGet(holder);
             if(value != null) {
-                action.accept(key, value);
+                action.accept(holder.key, value);
             }
         });
     }
 
+    /**
+     * Load dirty values in parallel. Caller takes part in loading and never waits for tasks of shared loader:
+     * after this method, each value is either loaded or is loading under lock of its holder, so following
+     * {@link ValueHolder#get()} waits only for value which is loading now.
+     * @param holders holders
+     */
+    private void loadDirty(Collection<ValueHolder> holders) {
+        List<ValueHolder> dirty = holders.stream().filter(h -> !h.isClean()).collect(Collectors.toList());
+        // holder lock is reentrant only for its owner, so locked holders can not be passed to loader
+        if(dirty.size() < 2 || IN_LOADER.get() != null || dirty.stream().anyMatch(Thread::holdsLock)) {
+            // it will be loaded at get
+            return;
+        }
+        Queue<ValueHolder> queue = new ConcurrentLinkedQueue<>(dirty);
+        Runnable task = () -> {
+            ValueHolder holder;
+            while((holder = queue.poll()) != null) {
+                safeGet(holder);
+            }
+        };
+        int workers = Math.min(dirty.size() - 1, LOADER_THREADS);
+        for(int i = 0; i < workers; ++i) {
+            try {
+                LOADER.execute(() -> {
+                    IN_LOADER.set(Boolean.TRUE);
+                    try {
+                        task.run();
+                    } finally {
+                        IN_LOADER.remove();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // loader is overloaded, remaining values are loaded in current thread
+                break;
+            }
+        }
+        task.run();
+    }
+
     private T safeGet(ValueHolder valueHolder) {
         T element = null;
         try {
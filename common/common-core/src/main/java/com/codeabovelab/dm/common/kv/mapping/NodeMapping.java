@@ -16,7 +16,6 @@
 
 package com.codeabovelab.dm.common.kv.mapping;
 
-import com.codeabovelab.dm.common.kv.KeyValueStorage;
 import com.codeabovelab.dm.common.kv.KvNode;
 import com.codeabovelab.dm.common.kv.KvUtils;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
@@ -28,6 +27,7 @@ import org.springframework.core.annotation.AnnotationUtils;
 import java.lang.annotation.Annotation;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -72,61 +72,77 @@ class NodeMapping<T> extends AbstractMapping<T> {
             throw new IllegalArgumentException("The path '" + path +
               "' is mapped to object of type " + object.getClass() + " which has no properties.");
         }
-        //store type of object
-        KeyValueStorage storage = getStorage();
-        saveType(path, object, storage);
-        //store properties
+        // type of object goes first, and all properties are written in single batch
+        Map<String, String> values = new LinkedHashMap<>();
+        saveType(path, object, values);
         for(KvProperty property: props) {
-            String strval = property.get(object);
-            String key = property.getKey();
-            String proppath = KvUtils.join(path, key);
-            try {
-                KvNode res = storage.set(proppath, strval);
-                if(callback != null) {
-                    callback.call(key, res);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error at path: " + proppath, e);
+            values.put(KvUtils.join(path, property.getKey()), property.get(object));
+        }
+        Map<String, KvNode> nodes;
+        try {
+            nodes = getStorage().setAll(values, null);
+        } catch (Exception e) {
+            throw new RuntimeException("Error at path: " + path, e);
+        }
+        if(callback != null) {
+            for(KvProperty property: props) {
+                String key = property.getKey();
+                callback.call(key, nodes.get(KvUtils.join(path, key)));
             }
         }
     }
 
     @Override
     void load(String path, T object) {
-        KeyValueStorage storage = getStorage();
+        Map<String, KvNode> nodes = loadNodes(path);
+        if(nodes != null) {
+            load(nodes, object);
+        }
+    }
+
+    private void load(Map<String, KvNode> nodes, T object) {
         for(KvProperty property: getProps(object)) {
-            String proppath = KvUtils.join(path, property.getKey());
-            KvNode node;
-            try {
-                node = storage.get(proppath);
-                if(node == null) {
-                    // when node is absent we must not invoke setter
-                    continue;
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Error at path: " + proppath, e);
+            KvNode node = nodes.get(property.getKey());
+            if(node == null) {
+                // when node is absent we must not invoke setter
+                continue;
             }
-            String str = node.getValue();
-            property.set(object, str);
+            property.set(object, node.getValue());
         }
     }
 
     @Override
     <S extends T> S load(String path, String name, Class<S> type) {
-        Class<S> actualType = resolveType(path, type);
+        Map<String, KvNode> nodes = loadNodes(path);
+        if(nodes == null) {
+            return null;
+        }
+        Class<S> actualType = resolveType(nodes, type);
         S object = actualType.cast(factory.create(name, actualType));
-        load(path, object);
+        load(nodes, object);
         return actualType.cast(object);
     }
 
+    /**
+     * Load all values of object in single request.
+     * @param path path of object
+     * @return map of property keys and its nodes, or null when object is absent
+     */
+    private Map<String, KvNode> loadNodes(String path) {
+        try {
+            return getStorage().getAll(path);
+        } catch (Exception e) {
+            throw new RuntimeException("Error at path: " + path, e);
+        }
+    }
 
-    private <S extends T> Class<S> resolveType(String path, Class<S> actualType) {
+    private <S extends T> Class<S> resolveType(Map<String, KvNode> nodes, Class<S> actualType) {
         // we prefer json type mapping, and try load custom type only when no json mapping
-        Class<S> jsonType = resolveJsonType(path, actualType);
+        Class<S> jsonType = resolveJsonType(nodes, actualType);
         if(jsonType != null) {
             actualType = jsonType;
         } else {
-            Class<S> savedType = loadType(path);
+            Class<S> savedType = loadType(nodes);
             if(savedType != null) {
                 actualType = savedType;
             }
@@ -135,8 +151,8 @@ class NodeMapping<T> extends AbstractMapping<T> {
     }
 
     @SuppressWarnings("unchecked")
-    private <S extends T> Class<S> loadType(String path) {
-        KvNode node = getStorage().get(KvUtils.join(path, PROP_TYPE));
+    private <S extends T> Class<S> loadType(Map<String, KvNode> nodes) {
+        KvNode node = nodes.get(PROP_TYPE);
         if(node == null) {
             return null;
         }
@@ -155,15 +171,14 @@ class NodeMapping<T> extends AbstractMapping<T> {
     }
 
     @SuppressWarnings("unchecked")
-    private <S> Class<S> resolveJsonType(String path, Class<S> type) {
+    private <S> Class<S> resolveJsonType(Map<String, KvNode> nodes, Class<S> type) {
         JsonTypeInfo typeInfo = AnnotationUtils.findAnnotation(type, JsonTypeInfo.class);
         if (typeInfo == null) {
             return null;
         }
         String property = getPropertyName(typeInfo);
-        String proppath = KvUtils.join(path, property);
         try {
-            KvNode node = getStorage().get(proppath);
+            KvNode node = nodes.get(property);
             if(node == null) {
                 return null;
             }
@@ -180,7 +195,7 @@ class NodeMapping<T> extends AbstractMapping<T> {
         return null;
     }
 
-    private void saveType(String path, T object, KeyValueStorage storage) {
+    private void saveType(String path, T object, Map<String, String> values) {
         Class<?> clazz = object.getClass();
         String name = PROP_TYPE;
         String value = clazz.getName();
@@ -194,7 +209,7 @@ class NodeMapping<T> extends AbstractMapping<T> {
             name = getPropertyName(typeInfo);
             value = getJsonType(clazz, typeInfo);
         }
-        storage.set(KvUtils.join(path, name), value);
+        values.put(KvUtils.join(path, name), value);
     }
 
     private String getJsonType(Class<?> clazz, JsonTypeInfo typeInfo) {
@@ -20,6 +20,10 @@ import com.codeabovelab.dm.common.utils.ExecutorUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 /**
@@ -53,6 +57,45 @@ public class InMemoryKeyValueStorageTest {
         assertNull(kvs.get("/root/one"));
     }
 
+    @Test
+    public void testBatch() {
+        InMemoryKeyValueStorage kvs = InMemoryKeyValueStorage.builder()
+          .eventsExecutor(ExecutorUtils.DIRECT)
+          .build();
+        assertNull(kvs.getAll("/root/obj"));
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("/root/obj/guard", "1");
+        values.put("/root/obj/one", "one");
+        values.put("/root/obj/two", "two");
+        Map<String, KvNode> res = kvs.setAll(values, null);
+        assertEquals(values.keySet(), res.keySet());
+        long index = res.get("/root/obj/two").getIndex();
+
+        Map<String, KvNode> all = kvs.getAll("/root/obj");
+        assertEquals(3, all.size());
+        assertEquals("one", all.get("one").getValue());
+        assertEquals("two", all.get("two").getValue());
+
+        values.put("/root/obj/one", "one1");
+        kvs.setAll(values, WriteOptions.builder().prevIndex((int) index).build());
+        assertEquals("one1", kvs.get("/root/obj/one").getValue());
+
+        // index is changed by previous batch, so nothing must be written
+        values.put("/root/obj/two", "two2");
+        try {
+            kvs.setAll(values, WriteOptions.builder().prevIndex((int) index).build());
+            fail("Compare must fail.");
+        } catch (IllegalStateException e) {
+            // it is expected
+        }
+        assertEquals("two", kvs.get("/root/obj/two").getValue());
+
+        Map<String, KvNode> many = kvs.getMany(Arrays.asList("/root/obj/one", "/root/obj/absent"));
+        assertEquals(1, many.size());
+        assertEquals("one1", many.get("/root/obj/one").getValue());
+        assertNull(kvs.getAsync("/root/obj/absent").join());
+    }
+
     private void assertEvent(KvStorageEvent[] holder, KvStorageEvent.Crud create, String key, String val) {
         KvStorageEvent e = holder[0];
         Assert.assertEquals(create, e.getAction());
@@ -24,12 +24,23 @@ import com.codeabovelab.dm.common.utils.Uuids;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.MoreObjects;
 import lombok.*;
+import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.security.crypto.encrypt.TextEncryptor;
 
 import javax.validation.Validator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.*;
@@ -37,6 +48,7 @@ import static org.mockito.Mockito.mock;
 
 /**
  */
+@Slf4j
 public class KvMapTest {
 
     private ExecutorUtils.DeferredExecutor executor = ExecutorUtils.deferred();
@@ -104,9 +116,125 @@ public class KvMapTest {
         Assert.assertThat(map.list(), contains(twoKey));
     }
 
+    @Test
+    public void testConcurrent() throws Exception {
+        // events are delivered in writer threads, so reads, writes and events are mixed
+        InMemoryKeyValueStorage storage = InMemoryKeyValueStorage.builder().eventsExecutor(ExecutorUtils.DIRECT).build();
+        final String path = "/test/concurrent";
+        KvMap<Bean> map = KvMap.builder(Bean.class)
+          .mapper(factory(storage))
+          .path(path)
+          .build();
+        final int keys = 16;
+        final int threads = 4;
+        final int iterations = 2000;
+        for(int i = 0; i < keys; ++i) {
+            // note that only saved values track index of its properties
+            map.put("key" + i, new Bean());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long begin = System.nanoTime();
+            for(int i = 0; i < threads; ++i) {
+                futures.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for(int j = 0; j < iterations; ++j) {
+                        String key = "key" + random.nextInt(keys);
+                        int op = random.nextInt(10);
+                        if(op == 0) {
+                            map.put(key, new Bean());
+                        } else if(op == 1) {
+                            // external modification, it make value dirty
+                            storage.set(KvUtils.join(path, key, "text"), "external" + j);
+                        } else if(op == 2) {
+                            map.values();
+                        } else {
+                            map.computeIfAbsent(key, k -> new Bean());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> future: futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            log.info("Mixed workload: {} ops in {}ms", threads * iterations,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertThat(map.list(), hasSize(keys));
+        map.forEach((key, bean) -> {
+            KvNode node = storage.get(KvUtils.join(path, key, "text"));
+            Assert.assertEquals(node.getValue(), bean.getText());
+        });
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        KvMap<Bean> map = KvMap.builder(Bean.class)
+          .mapper(factory())
+          .path("/test/order")
+          .build();
+        List<Bean> beans = new ArrayList<>();
+        for(String key: Arrays.asList("b", "c", "a")) {
+            Bean bean = new Bean();
+            beans.add(bean);
+            map.put(key, bean);
+        }
+        executor.flush();
+        // keys are iterated in order of insertion
+        Assert.assertThat(map.list(), contains("b", "c", "a"));
+        Assert.assertThat(map.values(), contains(beans.toArray()));
+        List<String> keys = new ArrayList<>();
+        map.forEach((k, v) -> keys.add(k));
+        Assert.assertEquals(Arrays.asList("b", "c", "a"), keys);
+
+        map.put("b", new Bean());
+        map.remove("c");
+        executor.flush();
+        map.put("c", new Bean());
+        executor.flush();
+        Assert.assertThat(map.list(), contains("b", "a", "c"));
+    }
+
+    @Test
+    public void testLoadInsideCompute() throws Exception {
+        InMemoryKeyValueStorage storage = InMemoryKeyValueStorage.builder().eventsExecutor(ExecutorUtils.DIRECT).build();
+        final String path = "/test/compute";
+        KvMap<Bean> map = KvMap.builder(Bean.class)
+          .mapper(factory(storage))
+          .path(path)
+          .build();
+        final int keys = 8;
+        for(int i = 0; i < keys; ++i) {
+            map.put("key" + i, new Bean());
+        }
+        for(int i = 0; i < keys; ++i) {
+            storage.set(KvUtils.join(path, "key" + i, "text"), "external" + i);
+        }
+        // holder of computed value is locked by caller, so it must not be loaded by other thread
+        Collection<Bean> values = CompletableFuture.supplyAsync(() -> {
+            List<Bean> res = new ArrayList<>();
+            map.compute("key0", (k, v) -> {
+                storage.set(KvUtils.join(path, k, "text"), "computed");
+                res.addAll(map.values());
+                return v;
+            });
+            return res;
+        }).get(1, TimeUnit.MINUTES);
+        Assert.assertThat(values, hasSize(keys));
+        Assert.assertEquals("external1", map.get("key1").getText());
+    }
+
     private KvMapperFactory factory() {
+        return factory(InMemoryKeyValueStorage.builder().eventsExecutor(executor).build());
+    }
+
+    private KvMapperFactory factory(KeyValueStorage storage) {
         return new KvMapperFactory(new ObjectMapper(),
-          InMemoryKeyValueStorage.builder().eventsExecutor(executor).build(),
+          storage,
           mock(TextEncryptor.class),
           mock(Validator.class));
     }
@@ -27,6 +27,16 @@ import java.time.ZonedDateTime;
 public class NotifierData {
     public static final String HEADER = "X-Auth-Node";
 
+    /**
+     * Sequence number of heartbeat, agent increment it for each heartbeat. Zero when agent does not support deltas.
+     */
+    private long seq;
+    /**
+     * Seq of acknowledged heartbeat on which this one is based. When it is not null, then data contains only
+     * changed fields, otherwise it is a full snapshot.
+     * @see NotifierDataUtils
+     */
+    private Long baseSeq;
     private ZonedDateTime time;
     private String name;
     private String address;
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.agent.notifier;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Tools for delta encoding of {@link NotifierData}. Delta contains only fields which differ from base data,
+ * unchanged fields are null, and maps contain only changed entries.
+ */
+public final class NotifierDataUtils {
+
+    private NotifierDataUtils() {
+    }
+
+    /**
+     * Make delta between base and current data.
+     * @param base last acknowledged data, must be full snapshot
+     * @param curr current full snapshot
+     * @return delta or null when it can not be expressed as delta (for example when disk is unmounted),
+     * so full snapshot must be sent
+     */
+    public static NotifierData diff(NotifierData base, NotifierData curr) {
+        SysInfo baseSys = base.getSystem();
+        SysInfo currSys = curr.getSystem();
+        if(baseSys == null || currSys == null) {
+            return null;
+        }
+        // delta can not remove entries
+        if(!currSys.getDisks().keySet().containsAll(baseSys.getDisks().keySet()) ||
+          !currSys.getNet().keySet().containsAll(baseSys.getNet().keySet())) {
+            return null;
+        }
+        NotifierData delta = new NotifierData();
+        delta.setSeq(curr.getSeq());
+        delta.setBaseSeq(base.getSeq());
+        delta.setTime(curr.getTime());
+        delta.setName(changed(base.getName(), curr.getName()));
+        delta.setAddress(changed(base.getAddress(), curr.getAddress()));
+        SysInfo sys = new SysInfo();
+        sys.setCpuLoad(changed(baseSys.getCpuLoad(), currSys.getCpuLoad()));
+        sys.setMemory(changed(baseSys.getMemory(), currSys.getMemory()));
+        sys.setCpuLoadStats(changed(baseSys.getCpuLoadStats(), currSys.getCpuLoadStats()));
+        sys.setMemoryUsedStats(changed(baseSys.getMemoryUsedStats(), currSys.getMemoryUsedStats()));
+        diff(baseSys.getDisks(), currSys.getDisks(), sys.getDisks());
+        diff(baseSys.getNet(), currSys.getNet(), sys.getNet());
+        delta.setSystem(sys);
+        return delta;
+    }
+
+    private static <T> T changed(T base, T curr) {
+        return Objects.equals(base, curr) ? null : curr;
+    }
+
+    private static <T> void diff(Map<String, T> base, Map<String, T> curr, Map<String, T> dest) {
+        for(Map.Entry<String, T> e : curr.entrySet()) {
+            if(!Objects.equals(base.get(e.getKey()), e.getValue())) {
+                dest.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Apply delta to base data.
+     * @param base full snapshot
+     * @param delta delta which is made by {@link #diff(NotifierData, NotifierData)}
+     * @return new full snapshot, arguments are not modified
+     */
+    public static NotifierData apply(NotifierData base, NotifierData delta) {
+        NotifierData res = new NotifierData();
+        res.setSeq(delta.getSeq());
+        res.setTime(delta.getTime());
+        res.setName(nonNull(delta.getName(), base.getName()));
+        res.setAddress(nonNull(delta.getAddress(), base.getAddress()));
+        SysInfo baseSys = base.getSystem();
+        SysInfo deltaSys = delta.getSystem();
+        if(baseSys == null) {
+            res.setSystem(deltaSys);
+            return res;
+        }
+        SysInfo sys = new SysInfo();
+        sys.getDisks().putAll(baseSys.getDisks());
+        sys.getNet().putAll(baseSys.getNet());
+        sys.setCpuLoad(baseSys.getCpuLoad());
+        sys.setMemory(baseSys.getMemory());
+        sys.setCpuLoadStats(baseSys.getCpuLoadStats());
+        sys.setMemoryUsedStats(baseSys.getMemoryUsedStats());
+        if(deltaSys != null) {
+            sys.setCpuLoad(nonNull(deltaSys.getCpuLoad(), sys.getCpuLoad()));
+            sys.setMemory(nonNull(deltaSys.getMemory(), sys.getMemory()));
+            sys.setCpuLoadStats(nonNull(deltaSys.getCpuLoadStats(), sys.getCpuLoadStats()));
+            sys.setMemoryUsedStats(nonNull(deltaSys.getMemoryUsedStats(), sys.getMemoryUsedStats()));
+            sys.getDisks().putAll(deltaSys.getDisks());
+            sys.getNet().putAll(deltaSys.getNet());
+        }
+        res.setSystem(sys);
+        return res;
+    }
+
+    private static <T> T nonNull(T value, T def) {
+        return value == null ? def : value;
+    }
+}
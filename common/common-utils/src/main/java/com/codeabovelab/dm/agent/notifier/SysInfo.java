@@ -25,6 +25,9 @@ import java.util.Map;
 {
         # cpu load 1.0 - 100%, .5 - 50% and etc (float)
         'cpuLoad': 0.0,
+        # aggregates of samples gathered between heartbeats, may be absent
+        'cpuLoadStats': {'count': 0, 'min': 0.0, 'avg': 0.0, 'max': 0.0, 'p95': 0.0},
+        'memoryUsedStats': {'count': 0, 'min': 0.0, 'avg': 0.0, 'max': 0.0, 'p95': 0.0},
         # memory in bytes (float)
         'memory': {
             'total': 0.0,
@@ -63,7 +66,21 @@ public class SysInfo {
         private long bytesOut;
     }
 
-    private float cpuLoad;
+    /**
+     * Aggregate of samples which are gathered by agent between two heartbeats.
+     */
+    @Data
+    public static class Stats {
+        private int count;
+        private double min;
+        private double avg;
+        private double max;
+        private double p95;
+    }
+
+    private Float cpuLoad;
+    private Stats cpuLoadStats;
+    private Stats memoryUsedStats;
     private Memory memory;
     private final Map<String, Disk> disks = new HashMap<>();
     private final Map<String, Net> net = new HashMap<>();
@@ -0,0 +1,546 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.common.fc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.Data;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary adapter. It serialize objects through jackson into compact token stream. <p/>
+ * Record structure.
+ * <pre>
+ *  magic (1b)
+ *    | flags (1b)
+ *    | |  schema tag (varint, only when 'tagged' flag)
+ *    | |  |  length of uncompressed tokens (varint, only when 'compressed' flag)
+ *    | |  |  |
+ *   [B1][F][T][L][tokens, may be compressed by deflate]
+ * </pre>
+ * Each token is a type byte followed by value. Field names and short strings are dictionary encoded:
+ * first occurrence is written as string, each following - as index of first occurrence. Dictionary
+ * is scoped by record, because items of queue can be read in any order. <p/>
+ * Records of registered {@link Builder#schema(int, Class) schemas} are written without type info, other records
+ * are written in same form as {@link FbJacksonAdapter}. Records which does not start with magic byte are
+ * read by {@link FbJacksonAdapter}, so this adapter can read queues which was written in json.
+ */
+public class FbBinaryAdapter<T> implements FbAdapter<T> {
+
+    @Data
+    public static final class Builder<T> {
+        private final ObjectMapper objectMapper;
+        private final Class<T> type;
+        /**
+         * Tagged types. Tag is persisted with record, so it must not be changed.
+         */
+        private final Map<Integer, Class<? extends T>> schemas = new HashMap<>();
+        /**
+         * Records with size greater than threshold will be compressed. Default is -1 - compression is disabled.
+         */
+        private int compressThreshold = -1;
+
+        public Builder<T> schema(int tag, Class<? extends T> schema) {
+            Assert.isTrue(tag > 0, "tag must be positive");
+            Assert.notNull(schema, "schema is null");
+            Class<? extends T> old = schemas.putIfAbsent(tag, schema);
+            Assert.isTrue(old == null, "tag " + tag + " already used by " + old);
+            return this;
+        }
+
+        public Builder<T> compressThreshold(int compressThreshold) {
+            setCompressThreshold(compressThreshold);
+            return this;
+        }
+
+        public FbBinaryAdapter<T> build() {
+            return new FbBinaryAdapter<>(this);
+        }
+    }
+
+    static final byte MAGIC = (byte) 0xB1;
+    private static final int F_TAGGED = 0x01;
+    private static final int F_COMPRESSED = 0x02;
+    /**
+     * Strings which is longer will not be added to dictionary, usually it is a unique text.
+     */
+    private static final int MAX_DICT_STRING = 128;
+
+    private static final byte T_START_OBJECT = 1;
+    private static final byte T_END_OBJECT = 2;
+    private static final byte T_START_ARRAY = 3;
+    private static final byte T_END_ARRAY = 4;
+    private static final byte T_FIELD = 5;
+    private static final byte T_FIELD_REF = 6;
+    private static final byte T_STRING = 7;
+    private static final byte T_STRING_REF = 8;
+    private static final byte T_INT = 9;
+    private static final byte T_LONG = 10;
+    private static final byte T_BIG_INTEGER = 11;
+    private static final byte T_DOUBLE = 12;
+    private static final byte T_BIG_DECIMAL = 13;
+    private static final byte T_TRUE = 14;
+    private static final byte T_FALSE = 15;
+    private static final byte T_NULL = 16;
+    private static final byte T_BINARY = 17;
+
+    private final ObjectMapper objectMapper;
+    private final Class<T> type;
+    private final FbJacksonAdapter<T> jsonAdapter;
+    private final Map<Integer, Class<? extends T>> tagToSchema;
+    private final Map<Class<?>, Integer> schemaToTag;
+    private final int compressThreshold;
+
+    private FbBinaryAdapter(Builder<T> b) {
+        this.objectMapper = b.objectMapper;
+        this.type = b.type;
+        Assert.notNull(this.objectMapper, "objectMapper is null");
+        Assert.notNull(this.type, "type is null");
+        this.jsonAdapter = new FbJacksonAdapter<>(this.objectMapper, this.type);
+        this.tagToSchema = new HashMap<>(b.schemas);
+        this.schemaToTag = new HashMap<>();
+        this.tagToSchema.forEach((tag, schema) -> this.schemaToTag.put(schema, tag));
+        this.compressThreshold = b.compressThreshold;
+    }
+
+    public static <T> Builder<T> builder(ObjectMapper objectMapper, Class<T> type) {
+        return new Builder<>(objectMapper, type);
+    }
+
+    @Override
+    public byte[] serialize(T obj) throws IOException {
+        type.cast(obj);
+        Integer tag = schemaToTag.get(obj.getClass());
+        TokenBuffer tb = new TokenBuffer(objectMapper, false);
+        if(tag != null) {
+            objectMapper.writeValue(tb, obj);
+        } else {
+            FbJacksonAdapter.Wrapper wrapper = new FbJacksonAdapter.Wrapper();
+            wrapper.setObject(obj);
+            objectMapper.writeValue(tb, wrapper);
+        }
+        Output tokens = new Output();
+        try (JsonParser parser = tb.asParser()) {
+            writeTokens(parser, tokens, new HashMap<>());
+        }
+        Output out = new Output();
+        out.write(MAGIC);
+        int flags = tag != null ? F_TAGGED : 0;
+        byte[] compressed = null;
+        if(compressThreshold >= 0 && tokens.size() > compressThreshold) {
+            compressed = compress(tokens);
+        }
+        if(compressed != null) {
+            flags |= F_COMPRESSED;
+        }
+        out.write(flags);
+        if(tag != null) {
+            out.writeVarint(tag);
+        }
+        if(compressed != null) {
+            out.writeVarint(tokens.size());
+            out.write(compressed);
+        } else {
+            tokens.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public T deserialize(byte[] data, int offset, int len) throws IOException {
+        if(len == 0 || data[offset] != MAGIC) {
+            return jsonAdapter.deserialize(data, offset, len);
+        }
+        Input in = new Input(data, offset + 1, offset + len);
+        int flags = in.read();
+        Class<? extends T> schema = null;
+        if((flags & F_TAGGED) != 0) {
+            int tag = in.readVarint();
+            schema = tagToSchema.get(tag);
+            if(schema == null) {
+                throw new FbException("Unknown schema tag: " + tag);
+            }
+        }
+        if((flags & F_COMPRESSED) != 0) {
+            int size = in.readVarint();
+            in = new Input(decompress(data, in.pos, in.end - in.pos, size), 0, size);
+        }
+        TokenBuffer tb = new TokenBuffer(objectMapper, false);
+        readTokens(in, tb);
+        try (JsonParser parser = tb.asParser()) {
+            if(schema != null) {
+                return objectMapper.readValue(parser, schema);
+            }
+            FbJacksonAdapter.Wrapper wrapper = objectMapper.readValue(parser, FbJacksonAdapter.Wrapper.class);
+            return type.cast(wrapper.getObject());
+        }
+    }
+
+    private void writeTokens(JsonParser parser, Output out, Map<String, Integer> dict) throws IOException {
+        JsonToken token;
+        while((token = parser.nextToken()) != null) {
+            switch (token) {
+                case START_OBJECT:
+                    out.write(T_START_OBJECT);
+                    break;
+                case END_OBJECT:
+                    out.write(T_END_OBJECT);
+                    break;
+                case START_ARRAY:
+                    out.write(T_START_ARRAY);
+                    break;
+                case END_ARRAY:
+                    out.write(T_END_ARRAY);
+                    break;
+                case FIELD_NAME:
+                    writeString(out, dict, parser.getCurrentName(), T_FIELD, T_FIELD_REF);
+                    break;
+                case VALUE_STRING:
+                    writeString(out, dict, parser.getText(), T_STRING, T_STRING_REF);
+                    break;
+                case VALUE_NUMBER_INT:
+                    switch (parser.getNumberType()) {
+                        case INT:
+                            out.write(T_INT);
+                            out.writeVarlong(zigzag(parser.getIntValue()));
+                            break;
+                        case LONG:
+                            out.write(T_LONG);
+                            out.writeVarlong(zigzag(parser.getLongValue()));
+                            break;
+                        default:
+                            out.write(T_BIG_INTEGER);
+                            out.writeString(parser.getBigIntegerValue().toString());
+                    }
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    if(parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                        out.write(T_BIG_DECIMAL);
+                        out.writeString(parser.getDecimalValue().toString());
+                    } else {
+                        out.write(T_DOUBLE);
+                        out.writeLong(Double.doubleToRawLongBits(parser.getDoubleValue()));
+                    }
+                    break;
+                case VALUE_TRUE:
+                    out.write(T_TRUE);
+                    break;
+                case VALUE_FALSE:
+                    out.write(T_FALSE);
+                    break;
+                case VALUE_NULL:
+                    out.write(T_NULL);
+                    break;
+                case VALUE_EMBEDDED_OBJECT:
+                    writeEmbedded(parser.getEmbeddedObject(), out, dict);
+                    break;
+                default:
+                    throw new FbException("Unsupported token: " + token);
+            }
+        }
+    }
+
+    /**
+     * Write embedded value, binary is written as is, other values (like POJONode or JsonRawValue) are
+     * written as tokens of its json form.
+     */
+    private void writeEmbedded(Object embedded, Output out, Map<String, Integer> dict) throws IOException {
+        if(embedded == null) {
+            out.write(T_NULL);
+            return;
+        }
+        if(embedded instanceof byte[]) {
+            byte[] bytes = (byte[]) embedded;
+            out.write(T_BINARY);
+            out.writeVarint(bytes.length);
+            out.write(bytes);
+            return;
+        }
+        if(embedded instanceof RawValue) {
+            // raw value is a json text, its serialization produce embedded value again, so we parse it
+            Object raw = ((RawValue) embedded).rawValue();
+            String text = raw instanceof SerializableString ? ((SerializableString) raw).getValue() : String.valueOf(raw);
+            try (JsonParser parser = objectMapper.getFactory().createParser(text)) {
+                writeTokens(parser, out, dict);
+            }
+            return;
+        }
+        TokenBuffer tb = new TokenBuffer(objectMapper, false);
+        objectMapper.writeValue(tb, embedded);
+        try (JsonParser parser = tb.asParser()) {
+            writeTokens(parser, out, dict);
+        }
+    }
+
+    private static void writeString(Output out, Map<String, Integer> dict, String str, byte tStr, byte tRef) {
+        Integer ref = dict.get(str);
+        if(ref != null) {
+            out.write(tRef);
+            out.writeVarint(ref);
+            return;
+        }
+        out.write(tStr);
+        out.writeString(str);
+        if(str.length() <= MAX_DICT_STRING) {
+            dict.put(str, dict.size());
+        }
+    }
+
+    private static void readTokens(Input in, TokenBuffer tb) throws IOException {
+        List<String> dict = new ArrayList<>();
+        while(in.pos < in.end) {
+            byte token = (byte) in.read();
+            switch (token) {
+                case T_START_OBJECT:
+                    tb.writeStartObject();
+                    break;
+                case T_END_OBJECT:
+                    tb.writeEndObject();
+                    break;
+                case T_START_ARRAY:
+                    tb.writeStartArray();
+                    break;
+                case T_END_ARRAY:
+                    tb.writeEndArray();
+                    break;
+                case T_FIELD:
+                    tb.writeFieldName(readString(in, dict));
+                    break;
+                case T_FIELD_REF:
+                    tb.writeFieldName(dict.get(in.readVarint()));
+                    break;
+                case T_STRING:
+                    tb.writeString(readString(in, dict));
+                    break;
+                case T_STRING_REF:
+                    tb.writeString(dict.get(in.readVarint()));
+                    break;
+                case T_INT:
+                    tb.writeNumber((int) unzigzag(in.readVarlong()));
+                    break;
+                case T_LONG:
+                    tb.writeNumber(unzigzag(in.readVarlong()));
+                    break;
+                case T_BIG_INTEGER:
+                    tb.writeNumber(new BigInteger(in.readString()));
+                    break;
+                case T_DOUBLE:
+                    tb.writeNumber(Double.longBitsToDouble(in.readLong()));
+                    break;
+                case T_BIG_DECIMAL:
+                    tb.writeNumber(new BigDecimal(in.readString()));
+                    break;
+                case T_TRUE:
+                    tb.writeBoolean(true);
+                    break;
+                case T_FALSE:
+                    tb.writeBoolean(false);
+                    break;
+                case T_NULL:
+                    tb.writeNull();
+                    break;
+                case T_BINARY:
+                    tb.writeBinary(in.readBytes(in.readVarint()));
+                    break;
+                default:
+                    throw new FbException("Unknown token: " + token + " at " + (in.pos - 1));
+            }
+        }
+    }
+
+    private static String readString(Input in, List<String> dict) {
+        String str = in.readString();
+        if(str.length() <= MAX_DICT_STRING) {
+            dict.add(str);
+        }
+        return str;
+    }
+
+    private static byte[] compress(Output tokens) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(tokens.buffer(), 0, tokens.size());
+            deflater.finish();
+            byte[] buff = new byte[tokens.size()];
+            int len = 0;
+            while(!deflater.finished() && len < buff.length) {
+                len += deflater.deflate(buff, len, buff.length - len);
+            }
+            if(!deflater.finished()) {
+                // compressed data is not smaller than source
+                return null;
+            }
+            byte[] res = new byte[len];
+            System.arraycopy(buff, 0, res, 0, len);
+            return res;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data, int offset, int len, int size) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, len);
+            byte[] res = new byte[size];
+            int read = 0;
+            while(read < size && !inflater.finished()) {
+                int n = inflater.inflate(res, read, size - read);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if(read != size) {
+                throw new FbException("Corrupted record: expected " + size + " bytes, but inflated " + read);
+            }
+            return res;
+        } catch (DataFormatException e) {
+            throw new FbException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long zigzag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static long unzigzag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(256);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void writeVarint(int i) {
+            writeVarlong(i & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long l) {
+            while((l & ~0x7FL) != 0) {
+                write((int) ((l & 0x7F) | 0x80));
+                l >>>= 7;
+            }
+            write((int) l);
+        }
+
+        void writeLong(long l) {
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (l >>> shift));
+            }
+        }
+
+        void writeString(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private final int end;
+        private int pos;
+
+        Input(byte[] data, int pos, int end) {
+            this.data = data;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int read() {
+            if(pos >= end) {
+                throw new FbException("Unexpected end of record.");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        int readVarint() {
+            return (int) readVarlong();
+        }
+
+        long readVarlong() {
+            long res = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                res |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0) {
+                    return res;
+                }
+            }
+            throw new FbException("Malformed varint at " + pos);
+        }
+
+        long readLong() {
+            long res = 0;
+            for(int i = 0; i < 8; ++i) {
+                res = (res << 8) | read();
+            }
+            return res;
+        }
+
+        byte[] readBytes(int len) {
+            if(len < 0 || pos + len > end) {
+                throw new FbException("Unexpected end of record.");
+            }
+            byte[] res = new byte[len];
+            System.arraycopy(data, pos, res, 0, len);
+            pos += len;
+            return res;
+        }
+
+        String readString() {
+            int len = readVarint();
+            if(len < 0 || pos + len > end) {
+                throw new FbException("Unexpected end of record.");
+            }
+            String str = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return str;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class FbJacksonAdapter<T> implements FbAdapter<T> {
     private final Class<T> type;
 
     @Data
-    private static class Wrapper {
+    static class Wrapper {
         @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS)
         private Object object;
     }
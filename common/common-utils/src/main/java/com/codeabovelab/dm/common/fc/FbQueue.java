@@ -27,7 +27,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -52,6 +54,16 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
          */
         private int maxSize;
         private final FbAdapter<E> adapter;
+        /**
+         * Function which return time of item. When it specified queue keep time index in each file,
+         * that allow to skip files in {@link FbQueue#iteratorSince(long)}. Can be null.
+         */
+        private ToLongFunction<E> timeExtractor;
+        /**
+         * Open existed queue for reading only. Read only queue maps its files in read only mode, never
+         * modifies its files and index, and does not support any modification operations.
+         */
+        private boolean readOnly;
 
         public Builder<E> storage(FbStorage storage) {
             setStorage(storage);
@@ -68,6 +80,16 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
             return this;
         }
 
+        public Builder<E> timeExtractor(ToLongFunction<E> timeExtractor) {
+            setTimeExtractor(timeExtractor);
+            return this;
+        }
+
+        public Builder<E> readOnly(boolean readOnly) {
+            setReadOnly(readOnly);
+            return this;
+        }
+
         public FbQueue<E> build() {
             return new FbQueue<E>(this);
         }
@@ -79,6 +101,8 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
     private final int digitsInFileName;
     private final int maxSize;
     private final FbAdapter<E> adapter;
+    private final ToLongFunction<E> timeExtractor;
+    private final boolean readOnly;
     private final AtomicInteger filesCounter = new AtomicInteger(-1);
     private final Object lock = new Object();
     private final QIndexFile indexFile;
@@ -95,8 +119,12 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
         Assert.isTrue(this.maxSize > 0, "Queue size is less than one.");
         this.adapter = b.adapter;
         Assert.notNull(this.adapter, "Adapter is null");
+        this.timeExtractor = b.timeExtractor;
+        this.readOnly = b.readOnly;
         this.queueDir = new File(this.storage.getStorageDir(), this.id);
-        FbStorage.makeAndCheckDir(this.queueDir);
+        if(!this.readOnly) {
+            FbStorage.makeAndCheckDir(this.queueDir);
+        }
         this.indexFile = new QIndexFile(this.queueDir);
         this.indexFile.init(id, storage);
         this.indexFile.setMaxSize(maxSize);
@@ -117,6 +145,12 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
                 }
             } catch (FbException|IOException e) {
                 Path dir = this.queueDir.toPath();
+                if(readOnly) {
+                    log.warn("Corrupted data in \"{}\" with error: \"{}\", skip it.", dir, e.toString());
+                    this.files.forEach(Closeables::close);
+                    this.files.clear();
+                    return;
+                }
                 log.warn("Corrupted data in \"{}\" with error: \"{}\", clear it.", dir, e.toString());
                 //corrupted data
                 this.indexFile.delete();
@@ -155,6 +189,20 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
         return QFileHandle.ITEMS_IN_FILE;
     }
 
+    /**
+     * Is queue opened for reading only.
+     * @see Builder#setReadOnly(boolean)
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    private void checkWritable() {
+        if(readOnly) {
+            throw new UnsupportedOperationException("Queue \"" + id + "\" is read only.");
+        }
+    }
+
     public static <E> Builder<E> builder(FbAdapter<E> adapter) {
         return new Builder<>(adapter);
     }
@@ -182,7 +230,7 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
         }
         // prevent impact of modifications to iterator we use snapshots
         int qOffset;
-        List<FbSnapshot<E>> snapshots = new ArrayList<>();
+        List<QFileHandle<E>.QFileHandleSnapshot> snapshots = new ArrayList<>();
         synchronized (lock) {
             final int size = size();
             if(last > size) {
@@ -200,38 +248,94 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
             }
         }
         final int fisrtOffset = qOffset;
-        return new Iterator<E>() {
-            final Iterator<FbSnapshot<E>> snapshotsIter = snapshots.iterator();
-            final List<E> itemsBuff = new ArrayList<>(QFileHandle.ITEMS_IN_FILE);
-            Iterator<E> iterator = Collections.emptyIterator();
+        return new SnapshotIterator<>(snapshots, new SnapshotReader<E>() {
             private boolean fisrt = true;
 
             @Override
-            public boolean hasNext() {
-                boolean hasNext = iterator.hasNext();
-                if(hasNext) {
-                    return true;
-                }
-                if(!snapshotsIter.hasNext()) {
-                    return false;
-                }
-                FbSnapshot<E> snapshot = snapshotsIter.next();
+            public void read(QFileHandle<E>.QFileHandleSnapshot snapshot, Consumer<E> consumer) {
                 int offset = 0;
                 if(fisrt) {
                     fisrt = false;
                     offset = fisrtOffset;
                 }
+                snapshot.visit(offset, consumer);
+            }
+        });
+    }
+
+    /**
+     * Iterate from head to tail over elements which time is greater or equal than specified. Files which
+     * contains only older elements are skipped without reading. When {@link Builder#getTimeExtractor()} is not
+     * specified, iterate over all elements. <p/>
+     * Note that when elements was added not in order of its time, the iterator return them in order of addition.
+     * @param time time in units of {@link Builder#getTimeExtractor()}
+     * @return iterator which traverse over queue snapshot.
+     */
+    public Iterator<E> iteratorSince(long time) {
+        if(timeExtractor == null) {
+            return iterator();
+        }
+        List<QFileHandle<E>.QFileHandleSnapshot> snapshots = new ArrayList<>();
+        synchronized (lock) {
+            for(QFileHandle<E> fh: files) {
+                QFileHandle<E>.QFileHandleSnapshot snapshot = fh.snapshot();
+                if(snapshot.getMaxTime() < time) {
+                    continue;
+                }
+                snapshots.add(snapshot);
+            }
+        }
+        return new SnapshotIterator<>(snapshots, (snapshot, consumer) -> {
+            if(snapshot.getMinTime() >= time) {
+                snapshot.visit(0, consumer);
+                return;
+            }
+            snapshot.visitFrom(snapshot.seek(time), e -> {
+                if(timeExtractor.applyAsLong(e) >= time) {
+                    consumer.accept(e);
+                }
+            });
+        });
+    }
+
+    private interface SnapshotReader<E> {
+        void read(QFileHandle<E>.QFileHandleSnapshot snapshot, Consumer<E> consumer);
+    }
+
+    /**
+     * Iterator which read snapshots lazily, one by one.
+     */
+    private static final class SnapshotIterator<E> implements Iterator<E> {
+        private final Iterator<QFileHandle<E>.QFileHandleSnapshot> snapshotsIter;
+        private final SnapshotReader<E> reader;
+        private final List<E> itemsBuff = new ArrayList<>(QFileHandle.ITEMS_IN_FILE);
+        private Iterator<E> iterator = Collections.emptyIterator();
+
+        SnapshotIterator(List<QFileHandle<E>.QFileHandleSnapshot> snapshots, SnapshotReader<E> reader) {
+            this.snapshotsIter = snapshots.iterator();
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(!iterator.hasNext()) {
+                if(!snapshotsIter.hasNext()) {
+                    return false;
+                }
                 itemsBuff.clear();
-                snapshot.visit(offset, itemsBuff::add);
+                reader.read(snapshotsIter.next(), itemsBuff::add);
                 iterator = itemsBuff.iterator();
-                return iterator.hasNext();
             }
+            return true;
+        }
 
-            @Override
-            public E next() {
-                return iterator.next();
+        @Override
+        public E next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
             }
-        };
+            return iterator.next();
+        }
     }
 
     @Override
@@ -248,6 +352,7 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
     @Override
     public boolean offer(E e) {
         Assert.notNull(e, "element is null");
+        checkWritable();
         synchronized (lock) {
             int size = 0;
             QFileHandle<E> last = null;
@@ -274,6 +379,7 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
      */
     public void push(E e) {
         Assert.notNull(e, "element is null");
+        checkWritable();
         synchronized (lock) {
             int size = 0;
             QFileHandle<E> last = null;
@@ -296,6 +402,7 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
 
     @Override
     public E poll() {
+        checkWritable();
         return onHead((fh) -> {
             E val = fh.poll();
             deallocate(fh);
@@ -346,7 +453,7 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
 
     private QFileHandle<E> addFileHandle(File file) throws IOException {
         QFileHandle<E> currHead;
-        currHead = new QFileHandle<>(this.storage, this.adapter, file);
+        currHead = new QFileHandle<>(this.storage, this.adapter, this.timeExtractor, file, this.readOnly);
         files.addLast(currHead);
         return currHead;
     }
@@ -386,8 +493,10 @@ public final class FbQueue<E> extends AbstractQueue<E> implements FileBased {
     @Override
     public void close() throws Exception {
         synchronized (lock) {
-            indexFile.setList(this.files.stream().map(QFileHandle::getFileName).collect(Collectors.toList()));
-            indexFile.close();
+            if(!readOnly) {
+                indexFile.setList(this.files.stream().map(QFileHandle::getFileName).collect(Collectors.toList()));
+                indexFile.close();
+            }
             QFileHandle<E> fh;
             while((fh = files.pollFirst()) != null) {
                 Closeables.close(fh);
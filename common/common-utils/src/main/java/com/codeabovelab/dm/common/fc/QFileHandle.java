@@ -21,20 +21,22 @@ import org.springframework.util.Assert;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 /**
- * File handle. <p/>
+ * File handle. File is memory mapped, mapping grows when data is appended. <p/>
  * File structure.
  * <pre>
  *  entry:
  *          collection type (1b)
  *      sign |  version (1b)
- *     / 3b \|\/| /index of queue\
- *     F11EBA0001[  int32[1024]  ][all other space - data]
+ *     / 3b \|\/| /index of queue\/    time block   \
+ *     F11EBA0002[  int32[1024]  ][min][max][sorted][int64[32]][all other space - data]
  *
  *  index of queue:
  *   most significant byte
@@ -42,7 +44,13 @@ import java.util.function.Consumer;
  *     \  all other 31 bits - the size of each item in Big-endian
  *      \/
  *     [00 00 00 00] * N
+ *
+ *  time block:
+ *   min and max time of items in file, 'sorted' is non zero when items was added in order of its time,
+ *   and sparse index which contains time of each {@link #TIME_STEP}-th item.
  * </pre>
+ * Files of first version (0x01) does not have time block, they can be read and appended, but never skipped
+ * by time.
  */
 final class QFileHandle<E> implements AutoCloseable {
     /**
@@ -54,68 +62,182 @@ final class QFileHandle<E> implements AutoCloseable {
 
     private static final int DEL_MASK = 0x80000000;
     static final int ITEMS_IN_FILE = 1024;
+    /**
+     * Step of sparse time index.
+     */
+    static final int TIME_STEP = 32;
     private static final int DIRTY_COUNT = -1;
     private static final byte QUEUE_TYPE = 0x00;
-    private static final byte SCHEMA_VERSION = 0x01;
+    private static final byte SCHEMA_VERSION_1 = 0x01;
+    private static final byte SCHEMA_VERSION = 0x02;
     private static final int INDEX_OFF = 2 + FbUtils.SIGN_LEN;
-    private static final int HEADER_OFF = ITEMS_IN_FILE * 4 + INDEX_OFF;
+    private static final int TIME_OFF = ITEMS_IN_FILE * 4 + INDEX_OFF;
+    private static final int TIME_MIN_OFF = TIME_OFF;
+    private static final int TIME_MAX_OFF = TIME_MIN_OFF + 8;
+    private static final int TIME_SORTED_OFF = TIME_MAX_OFF + 8;
+    private static final int TIME_INDEX_OFF = TIME_SORTED_OFF + 8;
+    private static final int HEADER_OFF_V1 = TIME_OFF;
+    private static final int HEADER_OFF = TIME_INDEX_OFF + (ITEMS_IN_FILE / TIME_STEP) * 8;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
     private final FbStorage storage;
     private final File file;
-    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final boolean readOnly;
     private final int[] index = new int[ITEMS_IN_FILE];
-    private final ByteBuffer indexBuff = ByteBuffer.allocate(ITEMS_IN_FILE * 4).order(ByteOrder.BIG_ENDIAN);
+    private final long[] timeIndex = new long[ITEMS_IN_FILE / TIME_STEP];
     private final FbAdapter<E> adapter;
+    private final ToLongFunction<E> timeExtractor;
+    private MappedByteBuffer buffer;
+    private int headerOff = HEADER_OFF;
+    private boolean timed = true;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean sorted = true;
     private int maxItemSize = 64 /* initial number number mean nothing*/;
     private int count = DIRTY_COUNT;
     private int tail;
     private long tailOff;
 
-    QFileHandle(FbStorage storage, FbAdapter<E> adapter, File file) throws IOException {
+    /**
+     * @param storage storage
+     * @param adapter adapter
+     * @param timeExtractor function which return time of item or null
+     * @param file file
+     * @param readOnly open existed file for reading only, its mapping never grows
+     * @throws IOException
+     */
+    QFileHandle(FbStorage storage, FbAdapter<E> adapter, ToLongFunction<E> timeExtractor, File file, boolean readOnly) throws IOException {
         this.storage = storage;
         this.file = file;
         this.adapter = adapter;
-        this.raf = new RandomAccessFile(this.file, "rw");
-        if(this.raf.length() == 0) {
-            save();
+        this.timeExtractor = timeExtractor;
+        this.readOnly = readOnly;
+        if(readOnly) {
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
         } else {
-            load();
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        try {
+            long size = this.channel.size();
+            if(readOnly) {
+                if(size < HEADER_OFF_V1) {
+                    throw new FbException("File " + file + " is too small: " + size);
+                }
+                // read only mapping can not be larger than file
+                map(size);
+            } else {
+                map(Math.max(INITIAL_CAPACITY, size));
+            }
+            if(size == 0) {
+                save();
+            } else {
+                load();
+            }
+        } catch (IOException | RuntimeException e) {
+            Closeables.close(this.channel);
+            throw e;
+        }
+    }
+
+    private void map(long capacity) throws IOException {
+        if(capacity > Integer.MAX_VALUE) {
+            throw new FbException("File " + file + " is too large: " + capacity);
+        }
+        this.buffer = this.channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        long capacity = this.buffer.capacity();
+        if(required > capacity) {
+            map(Math.max(required, capacity * 2));
         }
     }
 
-    private synchronized void load() throws IOException {
-        this.raf.seek(0);
-        FbUtils.readSign(this.raf);
-        FbUtils.readAndValidate(this.raf, QUEUE_TYPE);
-        FbUtils.readAndValidate(this.raf, SCHEMA_VERSION);
+    private synchronized void load() {
+        ByteBuffer bb = this.buffer.duplicate();
+        bb.position(0);
+        FbUtils.readSign(bb);
+        FbUtils.readAndValidate(bb, QUEUE_TYPE);
+        byte version = bb.get();
+        if(version == SCHEMA_VERSION_1) {
+            this.timed = false;
+            this.headerOff = HEADER_OFF_V1;
+            this.minTime = Long.MIN_VALUE;
+            this.maxTime = Long.MAX_VALUE;
+            this.sorted = false;
+        } else if(version != SCHEMA_VERSION) {
+            throw new FbException(String.format("Expected %X or %X version, but give: %X", SCHEMA_VERSION_1, SCHEMA_VERSION, version));
+        }
         for(int i = 0; i < index.length; ++i) {
-            index[i] = this.raf.readInt();
+            index[i] = bb.getInt();
+        }
+        if(this.timed) {
+            this.minTime = bb.getLong(TIME_MIN_OFF);
+            this.maxTime = bb.getLong(TIME_MAX_OFF);
+            this.sorted = bb.getLong(TIME_SORTED_OFF) != 0;
+            for(int i = 0; i < timeIndex.length; ++i) {
+                timeIndex[i] = bb.getLong(TIME_INDEX_OFF + i * 8);
+            }
+        }
+    }
+
+    private synchronized void save() {
+        ByteBuffer bb = this.buffer.duplicate();
+        bb.position(0);
+        FbUtils.writeSign(bb);
+        bb.put(QUEUE_TYPE);
+        bb.put(SCHEMA_VERSION);
+        for(int item : index) {
+            bb.putInt(item);
         }
+        saveTime();
+        for(int i = 0; i < timeIndex.length; ++i) {
+            this.buffer.putLong(TIME_INDEX_OFF + i * 8, timeIndex[i]);
+        }
+    }
+
+    private void saveTime() {
+        this.buffer.putLong(TIME_MIN_OFF, this.minTime);
+        this.buffer.putLong(TIME_MAX_OFF, this.maxTime);
+        this.buffer.putLong(TIME_SORTED_OFF, this.sorted ? 1 : 0);
     }
 
-    private synchronized void save() throws IOException {
-        this.raf.seek(0);
-        FbUtils.writeSign(this.raf);
-        this.raf.writeByte(QUEUE_TYPE);
-        this.raf.writeByte(SCHEMA_VERSION);
-        saveIndex();
+    private void updateTime(int i, E e) {
+        if(!this.timed) {
+            return;
+        }
+        if(this.timeExtractor == null) {
+            // we do not know time of item, so file can not be skipped
+            this.minTime = Long.MIN_VALUE;
+            this.maxTime = Long.MAX_VALUE;
+            this.sorted = false;
+        } else {
+            long time = this.timeExtractor.applyAsLong(e);
+            if(time < this.maxTime) {
+                this.sorted = false;
+            }
+            this.minTime = Math.min(this.minTime, time);
+            this.maxTime = Math.max(this.maxTime, time);
+            if(i % TIME_STEP == 0) {
+                int ti = i / TIME_STEP;
+                timeIndex[ti] = time;
+                this.buffer.putLong(TIME_INDEX_OFF + ti * 8, time);
+            }
+        }
+        saveTime();
     }
 
-    private synchronized void saveIndex() throws IOException {
-        this.raf.seek(INDEX_OFF);
-        indexBuff.clear();
-        indexBuff.asIntBuffer().put(index);
-        indexBuff.flip();
-        this.raf.write(indexBuff.array());
+    private void saveIndex(int i) {
+        this.buffer.putInt(INDEX_OFF + i * 4, index[i]);
     }
 
     private synchronized void iterate(Visitor v) {
-        //TODO we may iterate over internal snapshot, it allow us to skip lock in iteration process
-        iterate(this.index, v);
+        iterate(this.index, this.headerOff, v);
     }
 
-    private static void iterate(int[] index, Visitor v) {
+    private static void iterate(int[] index, int headerOff, Visitor v) {
         try {
-            int off = HEADER_OFF;
+            int off = headerOff;
             for(int i = 0; i < index.length; i++) {
                 int item = index[i];
                 int size = getSize(item);
@@ -140,7 +262,7 @@ final class QFileHandle<E> implements AutoCloseable {
         //we do not use iterator for avoid object allocation
         if(this.count == DIRTY_COUNT) {
             int c = 0;
-            int off = HEADER_OFF;
+            int off = this.headerOff;
             this.tail = index.length;
             for(int i = 0; i < index.length; i++) {
                 int item = index[i];
@@ -176,12 +298,14 @@ final class QFileHandle<E> implements AutoCloseable {
             if(bytes == null || bytes.length == 0) {
                 throw new FbException("Adapter return null or empty buffer for: " + e);
             }
-            this.raf.seek(this.tailOff);
-            this.raf.write(bytes);
+            ensureCapacity(this.tailOff + bytes.length);
+            ByteBuffer bb = this.buffer.duplicate();
+            bb.position((int) this.tailOff);
+            bb.put(bytes);
+            // index is updated after data, so it never points to unwritten data
             index[tail] = bytes.length;
-            //TODO we need update runtime index only after success save
-            // for prevent index corrupt
-            saveIndex();
+            saveIndex(tail);
+            updateTime(tail, e);
         } catch (IOException ex) {
             throw new FbException(ex);
         } finally {
@@ -209,7 +333,10 @@ final class QFileHandle<E> implements AutoCloseable {
 
     @Override
     public synchronized void close() throws Exception {
-        raf.close();
+        if(!readOnly) {
+            this.buffer.force();
+        }
+        this.channel.close();
     }
 
     /**
@@ -217,7 +344,7 @@ final class QFileHandle<E> implements AutoCloseable {
      * @param consumer
      */
     synchronized void readAllTo(Consumer<E> consumer) {
-        iterate(new ReadVisitor(consumer));
+        iterate(new ReadVisitor(this.buffer.duplicate(), consumer));
     }
 
     private static int getSize(int item) {
@@ -229,7 +356,7 @@ final class QFileHandle<E> implements AutoCloseable {
     }
 
     public void remove() {
-        Closeables.close(raf);
+        Closeables.close(channel);
         file.delete();
     }
 
@@ -242,8 +369,9 @@ final class QFileHandle<E> implements AutoCloseable {
         public boolean visit(int i, int size, int offset) throws IOException {
             this.i = i;
             byte[]  buff = new byte[size];
-            raf.seek(offset);
-            raf.readFully(buff);
+            ByteBuffer bb = buffer.duplicate();
+            bb.position(offset);
+            bb.get(buff);
             this.value = adapter.deserialize(buff, 0, size);
             return false;
         }
@@ -256,11 +384,7 @@ final class QFileHandle<E> implements AutoCloseable {
             Assert.isTrue(!isDeleted(index[i]), "value already deleted");
             index[i] |= DEL_MASK;
             dirty();
-            try {
-                saveIndex();
-            } catch (IOException e) {
-                throw new FbException(e);
-            }
+            saveIndex(i);
         }
     }
 
@@ -268,72 +392,151 @@ final class QFileHandle<E> implements AutoCloseable {
         return this.file.getName();
     }
 
-    public FbSnapshot<E> snapshot() {
+    public QFileHandleSnapshot snapshot() {
         return new QFileHandleSnapshot();
     }
 
+    /**
+     * Snapshot of file. Items are never changed after write, so snapshot read them from own view of mapped buffer
+     * without lock of file handle.
+     */
     class QFileHandleSnapshot implements FbSnapshot<E> {
         private final int[] index = new int[ITEMS_IN_FILE];
+        private final long[] timeIndex = new long[ITEMS_IN_FILE / TIME_STEP];
+        private final ByteBuffer buffer;
+        private final int headerOff;
         private final int count;
         private final int tail;
-        private final long tailOff;
-        private final int maxItemSize;
+        private final long minTime;
+        private final long maxTime;
+        private final boolean sorted;
 
         QFileHandleSnapshot() {
             synchronized (QFileHandle.this) {
                 System.arraycopy(QFileHandle.this.index, 0, this.index, 0, QFileHandle.this.index.length);
-                this.maxItemSize = QFileHandle.this.maxItemSize;
+                System.arraycopy(QFileHandle.this.timeIndex, 0, this.timeIndex, 0, QFileHandle.this.timeIndex.length);
+                this.buffer = QFileHandle.this.buffer.duplicate();
+                this.headerOff = QFileHandle.this.headerOff;
                 this.count = QFileHandle.this.count();
                 this.tail = QFileHandle.this.tail;
-                this.tailOff = QFileHandle.this.tailOff;
+                this.minTime = QFileHandle.this.minTime;
+                this.maxTime = QFileHandle.this.maxTime;
+                this.sorted = QFileHandle.this.sorted;
             }
         }
 
+        /**
+         * Visit items of snapshot.
+         * @param offset count of not deleted items which will be skipped
+         * @param consumer consumer
+         */
         @Override
         public void visit(int offset, Consumer<E> consumer) {
-            ReadVisitor rv = new ReadVisitor(consumer);
-            rv.setStart(offset);
-            QFileHandle.iterate(index, rv);
+            ReadVisitor rv = new ReadVisitor(buffer, consumer);
+            rv.setSkip(offset);
+            QFileHandle.iterate(index, headerOff, rv);
+        }
+
+        /**
+         * Visit items which position in file is not less than specified.
+         * @param start position of item in file, usually obtained from {@link #seek(long)}
+         * @param consumer consumer
+         */
+        void visitFrom(int start, Consumer<E> consumer) {
+            ReadVisitor rv = new ReadVisitor(buffer, consumer);
+            rv.setStart(start);
+            QFileHandle.iterate(index, headerOff, rv);
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * @return minimal time of items, or {@link Long#MIN_VALUE} when it unknown
+         */
+        long getMinTime() {
+            return minTime;
+        }
+
+        /**
+         * @return maximal time of items, or {@link Long#MAX_VALUE} when it unknown
+         */
+        long getMaxTime() {
+            return maxTime;
+        }
+
+        /**
+         * Find position of item from which items may have time greater or equal than specified. Note that
+         * items after position may have lesser time, so they must be filtered.
+         * @param time time
+         * @return position of item in file
+         */
+        int seek(long time) {
+            if(!sorted) {
+                return 0;
+            }
+            int pos = 0;
+            for(int i = 0; i < timeIndex.length; ++i) {
+                int item = i * TIME_STEP;
+                if(item >= tail || timeIndex[i] >= time) {
+                    break;
+                }
+                pos = item;
+            }
+            return pos;
         }
 
         @Override
         public void close() throws Exception {
-            /*
-            TODO we must record snapshots in file handle, and raise warning at closing handle with unclosed
-               snapshots, because snapshot does not work correct after closing handle.
-             */
+            // nothing, buffer will be released by GC
         }
     }
 
     private class ReadVisitor implements Visitor {
 
+        private final ByteBuffer buffer;
         private final Consumer<E> consumer;
         byte[]  buff;
         int start;
+        int skip;
 
-        public ReadVisitor(Consumer<E> consumer) {
+        ReadVisitor(ByteBuffer buffer, Consumer<E> consumer) {
+            this.buffer = buffer;
             this.consumer = consumer;
             buff = new byte[maxItemSize];
         }
 
         /**
-         * index which reading will start
+         * position of item from which reading will start
          * @param start
          */
-        public void setStart(int start) {
+        void setStart(int start) {
             this.start = start;
         }
 
+        /**
+         * count of not deleted items which will be skipped
+         * @param skip
+         */
+        void setSkip(int skip) {
+            this.skip = skip;
+        }
+
         @Override
         public boolean visit(int i, int size, int offset) throws IOException {
             if(i < this.start) {
                 return true;
             }
+            if(this.skip > 0) {
+                this.skip--;
+                return true;
+            }
             if(size > buff.length) {
                 buff = new byte[maxItemSize = size];
             }
-            raf.seek(offset);
-            raf.readFully(buff, 0, size);
+            buffer.position(offset);
+            buffer.get(buff, 0, size);
             E e = adapter.deserialize(buff, 0, size);
             consumer.accept(e);
             return true;
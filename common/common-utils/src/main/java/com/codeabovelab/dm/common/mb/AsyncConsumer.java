@@ -0,0 +1,262 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.common.mb;
+
+import com.codeabovelab.dm.common.utils.Closeables;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Wrapper which deliver messages to consumer through bounded queue, queue is drained by shared executor. <p/>
+ * Messages of one consumer are delivered sequentially in order of queue.
+ */
+final class AsyncConsumer<M> implements WrappedConsumer<M> {
+
+    /**
+     * Max count of messages delivered in one task, after it task is rescheduled for give chance to other consumers.
+     */
+    private static final int BATCH = 64;
+    /**
+     * Queue does not allow nulls, but bus allow null messages.
+     */
+    private static final Object NULL = new Object();
+
+    private final Consumer<M> consumer;
+    private final BiConsumer<Consumer<M>, M> invoker;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Function<M, ?> keyExtractor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // used only for COALESCE policy
+    private final LinkedHashMap<Object, Object> keyed;
+    private final ArrayDeque<Object> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private boolean scheduled;
+    private volatile boolean stopped;
+
+    AsyncConsumer(Consumer<M> consumer,
+                  BiConsumer<Consumer<M>, M> invoker,
+                  Executor executor,
+                  int capacity,
+                  OverflowPolicy policy,
+                  Function<M, ?> keyExtractor) {
+        this.consumer = consumer;
+        this.invoker = invoker;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.keyExtractor = keyExtractor;
+        if(policy == OverflowPolicy.COALESCE) {
+            this.keyed = new LinkedHashMap<>();
+            this.queue = null;
+        } else {
+            this.keyed = null;
+            this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+        }
+    }
+
+    @Override
+    public void accept(M m) {
+        if(stopped) {
+            return;
+        }
+        Object elem = m == null ? NULL : m;
+        boolean schedule;
+        lock.lock();
+        try {
+            if(!offer(m, elem)) {
+                return;
+            }
+            schedule = !scheduled;
+            scheduled = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return;
+        } finally {
+            lock.unlock();
+        }
+        if(schedule) {
+            schedule();
+        }
+    }
+
+    /**
+     * Add element into queue, must be called under lock.
+     * @return false when element is dropped
+     */
+    private boolean offer(M m, Object elem) throws InterruptedException {
+        if(keyed != null) {
+            Object key = keyExtractor.apply(m);
+            if(keyed.containsKey(key)) {
+                // LinkedHashMap keep position of replaced entry
+                keyed.put(key, elem);
+                dropped.incrementAndGet();
+                return true;
+            }
+            if(keyed.size() >= capacity) {
+                Iterator<Object> it = keyed.keySet().iterator();
+                it.next();
+                it.remove();
+                dropped.incrementAndGet();
+            }
+            keyed.put(key, elem);
+            return true;
+        }
+        if(queue.size() >= capacity) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return false;
+                case BLOCK:
+                    while(queue.size() >= capacity && !stopped) {
+                        notFull.await();
+                    }
+                    if(stopped) {
+                        return false;
+                    }
+                    break;
+                default:
+                    queue.poll();
+                    dropped.incrementAndGet();
+            }
+        }
+        queue.add(elem);
+        return true;
+    }
+
+    private Object poll() {
+        if(keyed != null) {
+            Iterator<Map.Entry<Object, Object>> it = keyed.entrySet().iterator();
+            if(!it.hasNext()) {
+                return null;
+            }
+            Object val = it.next().getValue();
+            it.remove();
+            return val;
+        }
+        Object val = queue.poll();
+        if(val != null) {
+            notFull.signal();
+        }
+        return val;
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // executor is shutdown, so we can not deliver messages
+            lock.lock();
+            try {
+                scheduled = false;
+                dropped.addAndGet(size());
+                clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        for(int i = 0; i < BATCH; i++) {
+            Object elem;
+            lock.lock();
+            try {
+                elem = stopped ? null : poll();
+                if(elem == null) {
+                    scheduled = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            invoker.accept(consumer, elem == NULL ? null : (M) elem);
+            delivered.incrementAndGet();
+        }
+        // queue still may contain messages, we continue in new task
+        schedule();
+    }
+
+    private int size() {
+        return keyed != null ? keyed.size() : queue.size();
+    }
+
+    private void clear() {
+        if(keyed != null) {
+            keyed.clear();
+        } else {
+            queue.clear();
+            notFull.signalAll();
+        }
+    }
+
+    SubscriberInfo getInfo() {
+        int queued;
+        lock.lock();
+        try {
+            queued = size();
+        } finally {
+            lock.unlock();
+        }
+        return new SubscriberInfo(consumer.toString(), queued, dropped.get(), delivered.get());
+    }
+
+    /**
+     * Stop delivering of messages and clear queue. It does not close wrapped consumer.
+     */
+    void stop() {
+        stopped = true;
+        lock.lock();
+        try {
+            clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Consumer<M> unwrap() {
+        return consumer;
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        Closeables.closeIfCloseable(consumer);
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncConsumer{" + consumer + '}';
+    }
+}
@@ -19,6 +19,7 @@ package com.codeabovelab.dm.common.mb;
 import com.codeabovelab.dm.common.utils.Closeables;
 import com.codeabovelab.dm.common.utils.Key;
 
+import java.util.List;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -98,6 +99,11 @@ public final class ConditionalMessageBusWrapper<M, K> implements ConditionalSubs
         return subscriptions.getType();
     }
 
+    @Override
+    public List<SubscriberInfo> getSubscribersInfo() {
+        return subscriptions.getSubscribersInfo();
+    }
+
     @Override
     public <T> T getOrCreateExtension(Key<T> key, ExtensionFactory<T, M> factory) {
         return subscriptions.getOrCreateExtension(key, factory);
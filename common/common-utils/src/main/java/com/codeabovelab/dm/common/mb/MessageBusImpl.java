@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -42,6 +43,19 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
         protected final Function<Subscriptions<M>, S> subscriptionsFactory;
         protected SubscribeListener<M> onUnsubscribe;
         protected SubscribeListener<M> onSubscribe;
+        /**
+         * Executor which deliver messages to subscribers. When it null, then messages is delivered in publisher thread.
+         */
+        protected Executor executor;
+        /**
+         * Max size of queue for each subscriber in async mode.
+         */
+        protected int queueSize = 1000;
+        protected OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        /**
+         * Function which give key from message for {@link OverflowPolicy#COALESCE} policy.
+         */
+        protected Function<M, ?> coalesceKey;
 
         Builder(Class<M> type, Function<Subscriptions<M>, S> subscriptionsFactory) {
             this.type = type;
@@ -68,6 +82,25 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
             return this;
         }
 
+        /**
+         * Enable async mode, when each subscriber has own bounded queue which is drained by specified executor.
+         * @param executor executor, usual it shared between many buses
+         * @param queueSize max size of queue of each subscriber
+         * @param overflowPolicy policy which is applied when queue is full
+         * @return this
+         */
+        public Builder<M, S> async(Executor executor, int queueSize, OverflowPolicy overflowPolicy) {
+            setExecutor(executor);
+            setQueueSize(queueSize);
+            setOverflowPolicy(overflowPolicy);
+            return this;
+        }
+
+        public Builder<M, S> coalesceKey(Function<M, ?> coalesceKey) {
+            setCoalesceKey(coalesceKey);
+            return this;
+        }
+
         public MessageBusImpl<M, S> build() {
             return new MessageBusImpl<>(this);
         }
@@ -81,6 +114,10 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
     private final SubscribeListener<M> onUnsubscribe;
     private final SubscribeListener<M> onSubscribe;
     private final ConcurrentMap<Key<?>, Object> extensions = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Function<M, ?> coalesceKey;
 
     private MessageBusImpl(Builder<M, S> b) {
         Assert.hasText(b.id, "id is null or empty");
@@ -93,6 +130,16 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
         this.subscriptions = b.subscriptionsFactory.apply(this);
         this.onUnsubscribe = b.onUnsubscribe;
         this.onSubscribe = b.onSubscribe;
+        this.executor = b.executor;
+        if(this.executor != null) {
+            Assert.isTrue(b.queueSize > 0, "queueSize must be positive");
+            Assert.notNull(b.overflowPolicy, "overflowPolicy is null");
+            Assert.isTrue(b.overflowPolicy != OverflowPolicy.COALESCE || b.coalesceKey != null,
+              "coalesceKey is null, but it required by " + OverflowPolicy.COALESCE);
+        }
+        this.queueSize = b.queueSize;
+        this.overflowPolicy = b.overflowPolicy;
+        this.coalesceKey = b.coalesceKey;
     }
 
     @SuppressWarnings("unchecked")
@@ -111,6 +158,21 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
         return type;
     }
 
+    @Override
+    public List<SubscriberInfo> getSubscribersInfo() {
+        if(executor == null) {
+            return Collections.emptyList();
+        }
+        List<Consumer<M>> list = listenersRef.get();
+        List<SubscriberInfo> infos = new ArrayList<>(list.size());
+        for(Consumer<M> consumer: list) {
+            if(consumer instanceof AsyncConsumer) {
+                infos.add(((AsyncConsumer<M>) consumer).getInfo());
+            }
+        }
+        return infos;
+    }
+
     @Override
     public void accept(M message) {
         //first we must check message for correct type
@@ -143,7 +205,7 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
             }
             List<Consumer<M>> tmp = new ArrayList<>(srcList.size() + 1);
             tmp.addAll(srcList);
-            tmp.add(listener);
+            tmp.add(wrap(listener));
             List<Consumer<M>> dstList = Collections.unmodifiableList(tmp);
             if(listenersRef.compareAndSet(srcList, dstList)) {
                 if(onSubscribe != null) {
@@ -154,6 +216,13 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
         }
     }
 
+    private Consumer<M> wrap(Consumer<M> listener) {
+        if(executor == null) {
+            return listener;
+        }
+        return new AsyncConsumer<>(listener, this::invoke, executor, queueSize, overflowPolicy, coalesceKey);
+    }
+
     private boolean contains(List<Consumer<M>> list, Consumer<M> key) {
         return indexOf(list, key) >= 0;
     }
@@ -189,9 +258,12 @@ public final class MessageBusImpl<M, S extends Subscriptions<M>> implements Mess
                 return;
             }
             List<Consumer<M>> tmp = new ArrayList<>(srcList);
-            tmp.remove(i);
+            Consumer<M> removed = tmp.remove(i);
             List<Consumer<M>> dstList = Collections.unmodifiableList(tmp);
             if(listenersRef.compareAndSet(srcList, dstList)) {
+                if(removed instanceof AsyncConsumer) {
+                    ((AsyncConsumer<M>) removed).stop();
+                }
                 if(onUnsubscribe != null) {
                     onUnsubscribe.event(this, listener);
                 }
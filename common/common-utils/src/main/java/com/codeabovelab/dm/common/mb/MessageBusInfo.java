@@ -16,6 +16,9 @@
 
 package com.codeabovelab.dm.common.mb;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Info part of message bus inface.
  */
@@ -32,4 +35,12 @@ public interface MessageBusInfo<M> {
      * @return
      */
     Class<M> getType();
+
+    /**
+     * State of subscribers queues. Only asynchronous bus has queues, other return empty list.
+     * @return list of subscribers state, never null
+     */
+    default List<SubscriberInfo> getSubscribersInfo() {
+        return Collections.emptyList();
+    }
 }
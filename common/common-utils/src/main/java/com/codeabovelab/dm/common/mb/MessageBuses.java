@@ -16,6 +16,7 @@
 
 package com.codeabovelab.dm.common.mb;
 
+import java.util.concurrent.Executor;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -55,6 +56,47 @@ public final class MessageBuses {
           .build();
     }
 
+    /**
+     * Create bus which deliver messages asynchronously, each subscriber has own bounded queue which is drained by
+     * specified executor. Therefore slow subscriber does not block publisher and other subscribers.
+     * @param id
+     * @param type
+     * @param executor executor which deliver messages, usual it shared between many buses
+     * @param queueSize max size of queue of each subscriber
+     * @param policy policy which is applied when queue is full, {@link OverflowPolicy#COALESCE} is not allowed here
+     * @param <M>
+     * @return
+     * @see MessageBusInfo#getSubscribersInfo()
+     */
+    @SuppressWarnings("unchecked")
+    public static <M> MessageBus<M> createAsync(String id, Class<M> type, Executor executor, int queueSize, OverflowPolicy policy) {
+        return MessageBusImpl.<M, Subscriptions<M>>builder(type, MessageSubscriptionsWrapper::new)
+          .id(id)
+          .async(executor, queueSize, policy)
+          .build();
+    }
+
+    /**
+     * Create bus which deliver messages asynchronously, when queue of subscriber is full, then queued message with
+     * same key is replaced by new message.
+     * @param id
+     * @param type
+     * @param executor executor which deliver messages, usual it shared between many buses
+     * @param queueSize max size of queue of each subscriber
+     * @param keyExtractor function which produce key from message, key can be null
+     * @param <M>
+     * @return
+     * @see OverflowPolicy#COALESCE
+     */
+    @SuppressWarnings("unchecked")
+    public static <M> MessageBus<M> createCoalescing(String id, Class<M> type, Executor executor, int queueSize, Function<M, ?> keyExtractor) {
+        return MessageBusImpl.<M, Subscriptions<M>>builder(type, MessageSubscriptionsWrapper::new)
+          .id(id)
+          .async(executor, queueSize, OverflowPolicy.COALESCE)
+          .coalesceKey(keyExtractor)
+          .build();
+    }
+
     /**
      * Create bust which can return {@link ConditionalSubscriptions} from {@link MessageBus#asSubscriptions()}
      * @param id name of bus
@@ -18,6 +18,7 @@ package com.codeabovelab.dm.common.mb;
 
 import com.codeabovelab.dm.common.utils.Key;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -55,6 +56,11 @@ public class MessageSubscriptionsWrapper<M> implements Subscriptions<M> {
         return orig.getType();
     }
 
+    @Override
+    public List<SubscriberInfo> getSubscribersInfo() {
+        return orig.getSubscribersInfo();
+    }
+
     @Override
     public <T> T getExtension(Key<T> key) {
         return orig.getExtension(key);
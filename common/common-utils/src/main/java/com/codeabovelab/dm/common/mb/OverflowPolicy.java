@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.common.mb;
+
+/**
+ * Behavior of asynchronous bus when queue of subscriber is full.
+ * @see MessageBusImpl.Builder#async(java.util.concurrent.Executor, int, OverflowPolicy)
+ */
+public enum OverflowPolicy {
+    /**
+     * Remove oldest message from queue and add new.
+     */
+    DROP_OLDEST,
+    /**
+     * Drop new message.
+     */
+    DROP_NEWEST,
+    /**
+     * Block publisher until queue has free space. Note that it can cause deadlock when subscriber publish
+     * into same bus.
+     */
+    BLOCK,
+    /**
+     * Replace queued message which has same key, key is obtained from message by
+     * {@link MessageBusImpl.Builder#setCoalesceKey(java.util.function.Function)}. When queue is full and does not
+     * contain message with same key, then oldest message is dropped.
+     */
+    COALESCE
+}
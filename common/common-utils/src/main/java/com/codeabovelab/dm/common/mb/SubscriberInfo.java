@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.common.mb;
+
+import lombok.Data;
+
+/**
+ * Snapshot of subscriber state in asynchronous bus.
+ * @see MessageBusInfo#getSubscribersInfo()
+ */
+@Data
+public final class SubscriberInfo {
+    /**
+     * String representation of subscriber.
+     */
+    private final String subscriber;
+    /**
+     * Count of messages which is waiting in queue, in other words - lag of subscriber.
+     */
+    private final int queued;
+    /**
+     * Count of messages which is dropped or replaced due to queue overflow.
+     */
+    private final long dropped;
+    /**
+     * Count of messages which is delivered to subscriber.
+     */
+    private final long delivered;
+}
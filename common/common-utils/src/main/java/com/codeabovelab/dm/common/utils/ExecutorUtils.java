@@ -160,6 +160,11 @@ public final class ExecutorUtils {
             return this;
         }
 
+        /**
+         * Size of queue. Note that executor starts threads over core size only when queue is full.
+         * @param queueSize size of queue, zero mean direct hand-off to threads through {@link SynchronousQueue}
+         * @return this
+         */
         public ExecutorBuilder queueSize(int queueSize) {
             setQueueSize(queueSize);
             return this;
@@ -167,7 +172,8 @@ public final class ExecutorUtils {
 
         public ExecutorService build() {
             ThreadFactory tf = new ThreadFactoryImpl(name, daemon, exceptionHandler);
-            return new ThreadPoolExecutor(coreSize, maxSize, keepAlive, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), tf, rejectedHandler);
+            BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+            return new ThreadPoolExecutor(coreSize, maxSize, keepAlive, TimeUnit.SECONDS, queue, tf, rejectedHandler);
         }
     }
 
@@ -17,16 +17,23 @@
 package com.codeabovelab.dm.common.utils;
 
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /**
- * Provide cache of single value.
- *
+ * Provide cache of single value. <p/>
+ * Reading of actual value does not require lock. When {@link Builder#refreshExecutor(Executor)} is specified, then
+ * expired value is returned immediately and new value is loaded in background (stale-while-revalidate).
  */
+@Slf4j
 public class SingleValueCache<T> implements Supplier<T> {
 
     public enum NullStrategy {
@@ -49,7 +56,16 @@ public class SingleValueCache<T> implements Supplier<T> {
     public static class Builder<T> {
         private final Supplier<T> supplier;
         private long timeAfterWrite;
-        private NullStrategy nullStrategy;
+        private NullStrategy nullStrategy = NullStrategy.DENY;
+        /**
+         * Executor for background reload of expired value. When null, then value is loaded in caller thread.
+         */
+        private Executor refreshExecutor;
+        /**
+         * Max time in ms after expiration when stale value can be returned, after it caller will wait for load
+         * of new value. Non positive value mean that stale value can be returned always.
+         */
+        private long maxStaleness;
 
         Builder(Supplier<T> supplier) {
             this.supplier = supplier;
@@ -70,23 +86,84 @@ public class SingleValueCache<T> implements Supplier<T> {
             return this;
         }
 
+        public Builder<T> refreshExecutor(Executor refreshExecutor) {
+            setRefreshExecutor(refreshExecutor);
+            return this;
+        }
+
+        public Builder<T> maxStaleness(TimeUnit unit, long maxStaleness) {
+            setMaxStaleness(unit.toMillis(maxStaleness));
+            return this;
+        }
+
         public SingleValueCache<T> build() {
             return new SingleValueCache<>(this);
         }
     }
+
+    /**
+     * Counters of cache usage.
+     */
+    @Data
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        /**
+         * Count of expired values which is returned while new value is loaded in background.
+         */
+        private final long staleServed;
+        private final long reloads;
+        private final long reloadFailures;
+        /**
+         * Average time of load in ms.
+         */
+        private final long reloadAvgTime;
+        /**
+         * Max time of load in ms.
+         */
+        private final long reloadMaxTime;
+    }
+
+    /**
+     * Immutable state of cache, it allow to read value without lock.
+     */
+    private static final class Snapshot {
+        private final Object value;
+        private final long writeTime;
+        private final boolean valid;
+
+        Snapshot(Object value, long writeTime, boolean valid) {
+            this.value = value;
+            this.writeTime = writeTime;
+            this.valid = valid;
+        }
+    }
+
     private static final Object NULL = new Object();
+    private static final Snapshot EMPTY = new Snapshot(null, 0L, false);
     private final Supplier<T> supplier;
-    private volatile Object value;
+    private volatile Snapshot snapshot = EMPTY;
     private volatile Object oldValue;
-    private volatile long writeTime;
     private final Lock lock = new ReentrantLock();
+    private final AtomicBoolean reloading = new AtomicBoolean();
     private final long taw;
     private final NullStrategy nullStrategy;
+    private final Executor refreshExecutor;
+    private final long maxStaleness;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadFailures = new AtomicLong();
+    private final AtomicLong reloadTime = new AtomicLong();
+    private final AtomicLong reloadMaxTime = new AtomicLong();
 
     private SingleValueCache(Builder<T> builder) {
         this.supplier = builder.supplier;
         this.taw = builder.timeAfterWrite;
-        this.nullStrategy = builder.nullStrategy;
+        this.nullStrategy = builder.nullStrategy == null ? NullStrategy.DENY : builder.nullStrategy;
+        this.refreshExecutor = builder.refreshExecutor;
+        this.maxStaleness = builder.maxStaleness;
     }
 
     public static <T> Builder<T> builder(Supplier<T> supplier) {
@@ -95,6 +172,18 @@ public class SingleValueCache<T> implements Supplier<T> {
 
     @Override
     public T get() {
+        long time = System.currentTimeMillis();
+        Snapshot s = this.snapshot;
+        if(isActual(s, time)) {
+            hits.incrementAndGet();
+            return convert(s.value);
+        }
+        if(canServeStale(s, time)) {
+            staleServed.incrementAndGet();
+            reloadAsync();
+            return convert(s.value);
+        }
+        misses.incrementAndGet();
         lock.lock();
         try {
             return loadIfNeed();
@@ -108,15 +197,11 @@ public class SingleValueCache<T> implements Supplier<T> {
      * @return actual value or null
      */
     public T getOrNull() {
-        lock.lock();
-        try {
-            if(hasActualValue(System.currentTimeMillis())) {
-                return convert(value);
-            }
-            return null;
-        } finally {
-            lock.unlock();
+        Snapshot s = this.snapshot;
+        if(isActual(s, System.currentTimeMillis())) {
+            return convert(s.value);
         }
+        return null;
     }
 
     /**
@@ -124,12 +209,14 @@ public class SingleValueCache<T> implements Supplier<T> {
      * @return previous value or null
      */
     public T getOldValue() {
-        lock.lock();
-        try {
-            return convert(oldValue);
-        } finally {
-            lock.unlock();
-        }
+        return convert(oldValue);
+    }
+
+    public Stats getStats() {
+        long count = reloads.get();
+        return new Stats(hits.get(), misses.get(), staleServed.get(), count, reloadFailures.get(),
+          count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(reloadTime.get() / count),
+          TimeUnit.NANOSECONDS.toMillis(reloadMaxTime.get()));
     }
 
     @SuppressWarnings("unchecked")
@@ -140,14 +227,54 @@ public class SingleValueCache<T> implements Supplier<T> {
         return (T)value;
     }
 
+    private boolean canServeStale(Snapshot s, long time) {
+        return refreshExecutor != null && s.valid && s.value != null &&
+          (maxStaleness <= 0 || time - s.writeTime - taw <= maxStaleness);
+    }
+
+    private void reloadAsync() {
+        if(!reloading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                lock.lock();
+                try {
+                    loadIfNeed();
+                } catch (Exception e) {
+                    log.error("Can not reload value from '{}'", supplier, e);
+                } finally {
+                    lock.unlock();
+                    reloading.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reloading.set(false);
+            log.warn("Can not schedule reload of value from '{}': {}", supplier, e.toString());
+        }
+    }
+
+    /**
+     * Load value, must be called under lock.
+     * @return actual value
+     */
     private T loadIfNeed() {
         long time = System.currentTimeMillis();
-        if(hasActualValue(time)) {
-            return convert(value);
+        Snapshot s = this.snapshot;
+        if(isActual(s, time)) {
+            return convert(s.value);
+        }
+        oldValue = s.value;
+        long begin = System.nanoTime();
+        Object value;
+        try {
+            value = supplier.get();
+        } catch (RuntimeException e) {
+            reloadFailures.incrementAndGet();
+            throw e;
+        } finally {
+            onReload(System.nanoTime() - begin);
         }
-        writeTime = time;
-        oldValue = value;
-        value = supplier.get();
         if(value == null) {
             switch (nullStrategy) {
                 case ALLOW:
@@ -159,20 +286,29 @@ public class SingleValueCache<T> implements Supplier<T> {
                     throw new IllegalArgumentException("Supplier '" + supplier + "' return null value");
             }
         }
+        this.snapshot = new Snapshot(value, time, true);
         return convert(value);
     }
 
-    private boolean hasActualValue(long time) {
-        return value != null && writeTime + taw >= time;
+    private void onReload(long nanos) {
+        reloads.incrementAndGet();
+        reloadTime.addAndGet(nanos);
+        reloadMaxTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    private boolean isActual(Snapshot s, long time) {
+        // we use subtraction for avoid overflow when ttl is Long.MAX_VALUE
+        return s.valid && s.value != null && time - s.writeTime <= taw;
     }
 
     /**
-     * Mark cache as invalid. Next call of {@link #get()} will load new value.
+     * Mark cache as invalid. Next call of {@link #get()} will load new value, even if stale values is allowed.
      */
     public void invalidate() {
         lock.lock();
         try {
-            writeTime = 0L;
+            Snapshot s = this.snapshot;
+            this.snapshot = new Snapshot(s.value, s.writeTime, false);
         } finally {
             lock.unlock();
         }
@@ -0,0 +1,165 @@
+package com.codeabovelab.dm.common.fc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ */
+@Slf4j
+public class FbBinaryAdapterTest {
+
+    @Data
+    public static class Event {
+        private String node;
+        private String container;
+        private String action;
+        private long time;
+        private int code;
+        private double load;
+        private boolean up;
+        private Map<String, String> labels = new LinkedHashMap<>();
+        private List<String> tags = new ArrayList<>();
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class ExtEvent extends Event {
+        private String message;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class PayloadEvent extends Event {
+        private JsonNode payload;
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Event makeEvent(int i) {
+        Event e = new Event();
+        fill(e, i);
+        return e;
+    }
+
+    private static void fill(Event e, int i) {
+        e.setNode("node-" + (i % 5));
+        e.setContainer("4f66ad9a0b2e" + (i % 20));
+        e.setAction(i % 2 == 0 ? "start" : "stop");
+        e.setTime(1500000000000L + i * 1000L);
+        e.setCode(i - 10);
+        e.setLoad(i / 3.0);
+        e.setUp(i % 3 == 0);
+        e.getLabels().put("com.docker.compose.project", "project");
+        e.getLabels().put("node", e.getNode());
+        e.getTags().addAll(Arrays.asList(e.getContainer(), e.getNode(), "tag"));
+    }
+
+    private FbBinaryAdapter<Event> makeAdapter(int compressThreshold) {
+        return FbBinaryAdapter.builder(objectMapper, Event.class)
+          .schema(1, Event.class)
+          .compressThreshold(compressThreshold)
+          .build();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ExtEvent ext = new ExtEvent();
+        fill(ext, 7);
+        ext.setMessage("untagged type is written with type info");
+        for(int threshold: new int[]{-1, 0}) {
+            FbBinaryAdapter<Event> adapter = makeAdapter(threshold);
+            for(Event e: Arrays.asList(makeEvent(0), makeEvent(-100), ext)) {
+                byte[] bytes = adapter.serialize(e);
+                assertEquals(FbBinaryAdapter.MAGIC, bytes[0]);
+                Event res = adapter.deserialize(bytes, 0, bytes.length);
+                assertEquals(e, res);
+            }
+        }
+    }
+
+    @Test
+    public void testEmbedded() throws Exception {
+        FbBinaryAdapter<Event> adapter = FbBinaryAdapter.builder(objectMapper, Event.class)
+          .schema(1, PayloadEvent.class)
+          .build();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("node", "node-1");
+        map.put("count", 3);
+        String raw = "{\"raw\":[1,\"two\",null]}";
+        for(Object value: Arrays.asList(map, new RawValue(raw), null)) {
+            PayloadEvent e = new PayloadEvent();
+            fill(e, 1);
+            e.setPayload(new POJONode(value));
+            byte[] bytes = adapter.serialize(e);
+            PayloadEvent res = (PayloadEvent) adapter.deserialize(bytes, 0, bytes.length);
+            // payload is read as usual tree, like it does json adapter
+            String json = new String(new FbJacksonAdapter<>(objectMapper, Event.class).serialize(e), StandardCharsets.UTF_8);
+            JsonNode expected = objectMapper.readTree(json).get("object").get("payload");
+            assertEquals(expected, res.getPayload() == null ? NullNode.getInstance() : res.getPayload());
+            res.setPayload(e.getPayload());
+            assertEquals(e, res);
+        }
+    }
+
+    @Test
+    public void testJsonCompatibility() throws Exception {
+        FbJacksonAdapter<Event> json = new FbJacksonAdapter<>(objectMapper, Event.class);
+        FbBinaryAdapter<Event> adapter = makeAdapter(-1);
+        Event e = makeEvent(3);
+        byte[] bytes = json.serialize(e);
+        byte[] data = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        assertEquals(e, adapter.deserialize(data, 1, bytes.length));
+    }
+
+    @Test
+    public void testFootprint() throws Exception {
+        final int count = 10000;
+        List<Event> events = new ArrayList<>(count);
+        for(int i = 0; i < count; ++i) {
+            events.add(makeEvent(i));
+        }
+        long json = measure("json", new FbJacksonAdapter<>(objectMapper, Event.class), events);
+        long binary = measure("binary", makeAdapter(-1), events);
+        long compressed = measure("compressed", makeAdapter(0), events);
+        assertTrue("binary: " + binary + " json: " + json, binary < json);
+        assertTrue("compressed: " + compressed + " json: " + json, compressed < json);
+    }
+
+    private long measure(String name, FbAdapter<Event> adapter, List<Event> events) throws Exception {
+        List<byte[]> records = new ArrayList<>(events.size());
+        long size = 0;
+        long begin = System.nanoTime();
+        for(Event e: events) {
+            byte[] bytes = adapter.serialize(e);
+            size += bytes.length;
+            records.add(bytes);
+        }
+        long write = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for(int i = 0; i < records.size(); ++i) {
+            byte[] bytes = records.get(i);
+            assertEquals(events.get(i), adapter.deserialize(bytes, 0, bytes.length));
+        }
+        long read = System.nanoTime() - begin;
+        log.info("{}: {} records, {} bytes, write {} ms, read {} ms", name, records.size(), size,
+          write / 1000_000, read / 1000_000);
+        return size;
+    }
+}
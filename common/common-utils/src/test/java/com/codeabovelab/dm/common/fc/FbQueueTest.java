@@ -102,6 +102,41 @@ public class FbQueueTest {
               .build();
     }
 
+    @Test
+    public void testReadOnly() throws Exception {
+        final int queueSize = 1500;
+        String id = "testReadOnly";
+        FbQueue<String> queue = makeQueue(id, queueSize);
+        for(int i = 0; i < queueSize; ++i) {
+            queue.add("<" + i + ">");
+        }
+        queue.close();
+        try(FbQueue<String> ro = FbQueue.builder(stringAdapter)
+              .maxSize(queueSize)
+              .id(id)
+              .storage(storage)
+              .readOnly(true)
+              .build()) {
+            assertTrue(ro.isReadOnly());
+            assertEquals(queueSize, ro.size());
+            Iterator<String> iter = ro.iterator(2);
+            assertEquals("<" + (queueSize - 2) + ">", iter.next());
+            assertEquals("<" + (queueSize - 1) + ">", iter.next());
+            assertFalse(iter.hasNext());
+            try {
+                ro.add("fail");
+                fail("read only queue is modified");
+            } catch (UnsupportedOperationException e) {
+                // as expected
+            }
+        }
+        // read only queue does not change files
+        FbQueue<String> reopened = makeQueue(id, queueSize);
+        assertEquals(queueSize, reopened.size());
+        assertEquals("<0>", reopened.peek());
+        reopened.close();
+    }
+
     @Test
     public void testReadWrite() throws Exception {
         final int queueSize = 3000;
@@ -294,6 +329,47 @@ public class FbQueueTest {
         assertEquals(queueSize, queue.size());
     }
 
+    @Test
+    public void testIteratorSince() throws Exception {
+        final int queueSize = 3000;
+        final int polled = 100;
+        String id = "testIteratorSince";
+        FbQueue<String> queue = makeTimedQueue(id, queueSize);
+        for(int i = 0; i < queueSize; ++i) {
+            queue.add("<" + i + ">");
+        }
+        for(int i = 0; i < polled; ++i) {
+            queue.poll();
+        }
+        assertIteratorSince(queue, 2500, 2500);
+        assertIteratorSince(queue, 0, polled);
+        queue.close();
+        // time index must be read from files
+        queue = makeTimedQueue(id, queueSize);
+        assertIteratorSince(queue, 1030, 1030);
+        assertIteratorSince(queue, queueSize, queueSize);
+        queue.close();
+    }
+
+    private FbQueue<String> makeTimedQueue(String id, int queueSize) {
+        return FbQueue.builder(stringAdapter)
+              .maxSize(queueSize)
+              .id(id)
+              .storage(storage)
+              .timeExtractor(s -> Long.parseLong(s.substring(1, s.length() - 1)))
+              .build();
+    }
+
+    private void assertIteratorSince(FbQueue<String> queue, long time, int first) {
+        Iterator<String> iter = queue.iteratorSince(time);
+        int i = first;
+        while(iter.hasNext()) {
+            assertEquals("<" + i + ">", iter.next());
+            i++;
+        }
+        assertEquals(queue.getMaxSize(), i);
+    }
+
     private void assertIterator(FbQueue<String> queue, int last, int first) {
         final int expected = last == Integer.MAX_VALUE? queue.size() : last;
         Iterator<String> iter = queue.iterator(last);
@@ -5,7 +5,9 @@ import org.junit.Test;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import static org.junit.Assert.fail;
@@ -55,6 +57,51 @@ public class MessageBusesTest {
         }
     }
 
+    @Test
+    public void testAsync() {
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        MessageBus<String> bus = MessageBuses.createAsync("async", String.class, executor, 2, OverflowPolicy.DROP_OLDEST);
+        List<String> received = new ArrayList<>();
+        bus.subscribe(received::add);
+        bus.accept("one");
+        bus.accept("two");
+        bus.accept("three");
+        // publisher must not invoke subscriber
+        Assert.assertTrue(received.isEmpty());
+        Assert.assertEquals(1, tasks.size());
+        SubscriberInfo info = bus.getSubscribersInfo().get(0);
+        Assert.assertEquals(2, info.getQueued());
+        Assert.assertEquals(1, info.getDropped());
+        runAll(tasks);
+        Assert.assertEquals(Arrays.asList("two", "three"), received);
+        info = bus.getSubscribersInfo().get(0);
+        Assert.assertEquals(0, info.getQueued());
+        Assert.assertEquals(2, info.getDelivered());
+    }
+
+    @Test
+    public void testCoalescing() {
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        MessageBus<String> bus = MessageBuses.createCoalescing("coalescing", String.class, executor, 10,
+          (s) -> s.substring(0, 1));
+        List<String> received = new ArrayList<>();
+        bus.subscribe(received::add);
+        bus.accept("a1");
+        bus.accept("b1");
+        bus.accept("a2");
+        runAll(tasks);
+        Assert.assertEquals(Arrays.asList("a2", "b1"), received);
+        Assert.assertEquals(1, bus.getSubscribersInfo().get(0).getDropped());
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while(!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
     private static class ValueHolder<T> implements Consumer<T> {
         private int invocations = 0;
         private T value;
@@ -0,0 +1,51 @@
+package com.codeabovelab.dm.common.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleValueCacheTest {
+
+    @Test
+    public void testSync() {
+        AtomicInteger counter = new AtomicInteger();
+        SingleValueCache<Integer> cache = SingleValueCache.builder(counter::incrementAndGet)
+          .timeAfterWrite(Long.MAX_VALUE)
+          .build();
+        Assert.assertNull(cache.getOrNull());
+        Assert.assertEquals((Integer) 1, cache.get());
+        Assert.assertEquals((Integer) 1, cache.get());
+        cache.invalidate();
+        Assert.assertEquals((Integer) 2, cache.get());
+        Assert.assertEquals((Integer) 1, cache.getOldValue());
+        SingleValueCache.Stats stats = cache.getStats();
+        Assert.assertEquals(2, stats.getMisses());
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(2, stats.getReloads());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorUtils.DeferredExecutor executor = ExecutorUtils.deferred();
+        // negative ttl mean that value is expired immediately
+        SingleValueCache<Integer> cache = SingleValueCache.builder(counter::incrementAndGet)
+          .timeAfterWrite(-1)
+          .refreshExecutor(executor)
+          .build();
+        // first value is always loaded in caller thread
+        Assert.assertEquals((Integer) 1, cache.get());
+        // expired value is returned, but only one reload is scheduled
+        Assert.assertEquals((Integer) 1, cache.get());
+        Assert.assertEquals((Integer) 1, cache.get());
+        Assert.assertEquals(1, counter.get());
+        executor.flush();
+        Assert.assertEquals(2, counter.get());
+        Assert.assertEquals((Integer) 2, cache.get());
+        Assert.assertEquals(3, cache.getStats().getStaleServed());
+        // invalidated value is never returned
+        cache.invalidate();
+        Assert.assertEquals((Integer) 3, cache.get());
+    }
+}
@@ -19,9 +19,13 @@ package com.codeabovelab.dm.gateway.proxy.common;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 public class AsyncProxyClient implements ProxyClient {
 
@@ -36,6 +40,14 @@ public class AsyncProxyClient implements ProxyClient {
         return proxyClient.execute(target, request, null).get();
     }
 
+    /**
+     * Execute request without blocking, request and response bodies are streamed by producer and consumer.
+     */
+    public <T> Future<T> execute(HttpAsyncRequestProducer producer, HttpAsyncResponseConsumer<T> consumer,
+                                 FutureCallback<T> callback) {
+        return proxyClient.execute(producer, consumer, callback);
+    }
+
     @Override
     public void start() {
         proxyClient.start();
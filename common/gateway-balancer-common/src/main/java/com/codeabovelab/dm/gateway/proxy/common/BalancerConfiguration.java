@@ -30,6 +30,7 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -76,6 +77,20 @@ public class BalancerConfiguration {
     @Value("${balancer.max.connections:10000}")
     private Integer maxConnections;
 
+    /**
+     * Max count of connections to each upstream server, connections are pooled per server.
+     * By default it is equal to max count of connections.
+     */
+    @Value("${balancer.max.connections.per.server:${balancer.max.connections:10000}}")
+    private Integer maxConnectionsPerServer;
+
+    /**
+     * Count of IO threads of async client, all proxied requests are served by these threads.
+     * Zero or negative value mean count of available processors.
+     */
+    @Value("${balancer.client.io.threads:0}")
+    private Integer ioThreads;
+
     /**
      * Determines the timeout in milliseconds until a connection is established.
      * A timeout value of zero is interpreted as an infinite timeout.
@@ -151,10 +166,14 @@ public class BalancerConfiguration {
     }
 
     protected CloseableHttpAsyncClient configuredHttpAsyncClient(HttpAsyncClientBuilder httpAsyncClientBuilder) {
-        LOG.info("HttpAsyncClient settings: maxConnections: {}, socketTimeout: {}, connectTimeout: {}",
-                maxConnections, socketTimeout, connectTimeout);
-        return httpAsyncClientBuilder.setMaxConnPerRoute(maxConnections)
+        int threads = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+        LOG.info("HttpAsyncClient settings: maxConnections: {}, maxConnectionsPerServer: {}, ioThreads: {}, socketTimeout: {}, connectTimeout: {}",
+                maxConnections, maxConnectionsPerServer, threads, socketTimeout, connectTimeout);
+        return httpAsyncClientBuilder.setMaxConnPerRoute(maxConnectionsPerServer)
                 .setMaxConnTotal(maxConnections)
+                .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(threads)
+                        .build())
                 .setDefaultRequestConfig(RequestConfig.custom()
                         .setSocketTimeout(socketTimeout)
                         .setConnectTimeout(connectTimeout)
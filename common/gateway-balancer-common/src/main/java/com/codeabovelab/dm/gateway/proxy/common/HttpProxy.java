@@ -19,9 +19,12 @@ package com.codeabovelab.dm.gateway.proxy.common;
 import com.codeabovelab.dm.common.utils.Closeables;
 import org.apache.http.*;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.message.*;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +40,8 @@ import java.net.HttpCookie;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Java HTTP proxy which is based on
@@ -51,6 +56,10 @@ public class HttpProxy implements AutoCloseable {
      * User agents shouldn't send the url fragment but what if it does?
      */
     private final static boolean DO_SEND_URL_FRAGMENT = true;
+    /**
+     * Size of buffer which is used for streaming of request and response bodies in async mode.
+     */
+    private final static int BUFFER_SIZE = 32 * 1024;
 
     private final ProxyClient proxyClient;
 
@@ -82,9 +91,7 @@ public class HttpProxy implements AutoCloseable {
         String method = servletRequest.getMethod();
         String proxyRequestUri = rewriteUrlFromRequest(proxyContext);
         HttpRequest proxyRequest;
-        //spec: RFC 2616, sec 4.3: either of these two headers signal that there is a message body.
-        if (servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) != null ||
-                servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+        if (hasBody(servletRequest)) {
             HttpEntityEnclosingRequest requestWithBody = new BasicHttpEntityEnclosingRequest(method, proxyRequestUri);
             requestWithBody.setEntity(createEntity(servletRequest));
             proxyRequest = requestWithBody;
@@ -92,61 +99,140 @@ public class HttpProxy implements AutoCloseable {
             proxyRequest = new BasicHttpRequest(method, proxyRequestUri);
         }
 
-        copyRequestHeaders(proxyContext, proxyRequest);
+        prepareRequest(proxyContext, proxyRequest);
 
-        setXForwardedForHeader(servletRequest, proxyRequest);
-        setXUUIDHeader(proxyRequest, proxyContext);
+        // Execute the request
+        HttpResponse proxyResponse = proxyClient.execute(proxyContext.getTargetHost(), proxyRequest);
+        try {
+            if (handleResponse(proxyContext, proxyResponse)) {
+                // Send the content to the client
+                copyResponseEntity(proxyResponse, servletResponse);
+            }
+        } catch (Exception e) {
+            // servlet response is already modified
+            throw new ResponseCommittedException(e);
+        } finally {
+            // make sure the entire entity was consumed, so the connection is released
+            consumeQuietly(proxyResponse.getEntity());
+            //Note: Don't need to close servlet outputStream:
+            // http://stackoverflow.com/questions/1159168/should-one-call-close-on-httpservletresponse-getoutputstream-getwriter
+        }
+    }
 
-        HttpResponse proxyResponse = null;
+    /**
+     * Proxy request without blocking of caller thread. Request and response bodies are streamed through servlet
+     * non-blocking IO, therefore caller must start async processing (see {@link HttpServletRequest#startAsync()})
+     * before invocation and complete it when returned future is done. <p/>
+     * When proxy does not use async client, then request is executed in caller thread.
+     * @param proxyContext context
+     * @return future which is completed when whole response is written to servlet
+     */
+    public CompletableFuture<Void> serviceAsync(HttpProxyContext proxyContext) {
+        if (!(proxyClient instanceof AsyncProxyClient)) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                service(proxyContext);
+                future.complete(null);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        final HttpServletRequest servletRequest = proxyContext.getRequest();
+        final HttpHost target = proxyContext.getTargetHost();
+        final ServletResponseConsumer consumer = new ServletResponseConsumer(this, proxyContext, BUFFER_SIZE);
         try {
-            // Execute the request
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("proxy " + method + " uri: " + servletRequest.getRequestURI() + " -- " + proxyRequest.getRequestLine().getUri());
+            String method = servletRequest.getMethod();
+            String proxyRequestUri = rewriteUrlFromRequest(proxyContext);
+            HttpAsyncRequestProducer producer;
+            if (hasBody(servletRequest)) {
+                HttpEntityEnclosingRequest requestWithBody = new BasicHttpEntityEnclosingRequest(method, proxyRequestUri);
+                prepareRequest(proxyContext, requestWithBody);
+                if (isForm(servletRequest)) {
+                    requestWithBody.setEntity(createFormEntity(servletRequest));
+                    producer = new BasicAsyncRequestProducer(target, requestWithBody);
+                } else {
+                    RequestBodyPipe pipe = RequestBodyPipe.get(servletRequest, BUFFER_SIZE);
+                    requestWithBody.setEntity(pipe.createEntity(servletRequest));
+                    producer = new ServletRequestProducer(target, requestWithBody, pipe);
+                }
+            } else {
+                HttpRequest proxyRequest = new BasicHttpRequest(method, proxyRequestUri);
+                prepareRequest(proxyContext, proxyRequest);
+                producer = new BasicAsyncRequestProducer(target, proxyRequest);
             }
-            proxyResponse = proxyClient.execute(proxyContext.getTargetHost(), proxyRequest);
+            ((AsyncProxyClient) proxyClient).execute(producer, consumer, new FutureCallback<Void>() {
+                @Override
+                public void completed(Void result) {
+                    // consumer complete future itself, when all data is written to servlet
+                }
 
-            // Process the response
-            int statusCode = proxyResponse.getStatusLine().getStatusCode();
+                @Override
+                public void failed(Exception ex) {
+                    consumer.fail(ex);
+                }
 
-            if (doResponseRedirectOrNotModifiedLogic(proxyContext, proxyResponse, statusCode)) {
-                //the response is already "committed" now without any body to send
-                //TODO copy response headers?
-                return;
-            }
+                @Override
+                public void cancelled() {
+                    consumer.fail(new CancellationException());
+                }
+            });
+        } catch (Exception e) {
+            consumer.fail(e);
+        }
+        return consumer.getFuture();
+    }
 
-            // Pass the response code. This method with the "reason phrase" is deprecated but it's the only way to pass the
-            //  reason along too.
-            //noinspection deprecation
-            servletResponse.setStatus(statusCode, proxyResponse.getStatusLine().getReasonPhrase());
+    private void prepareRequest(HttpProxyContext proxyContext, HttpRequest proxyRequest) {
+        final HttpServletRequest servletRequest = proxyContext.getRequest();
+        copyRequestHeaders(proxyContext, proxyRequest);
 
-            copyResponseHeaders(proxyResponse, servletRequest, servletResponse);
+        setXForwardedForHeader(servletRequest, proxyRequest);
+        setXUUIDHeader(proxyRequest, proxyContext);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("proxy " + servletRequest.getMethod() + " uri: " + servletRequest.getRequestURI() + " -- " + proxyRequest.getRequestLine().getUri());
+        }
+    }
+
+    private static boolean hasBody(HttpServletRequest servletRequest) {
+        //spec: RFC 2616, sec 4.3: either of these two headers signal that there is a message body.
+        return servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) != null ||
+                servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) != null;
+    }
 
-            // Send the content to the client
-            copyResponseEntity(proxyResponse, servletResponse);
+    private static boolean isForm(HttpServletRequest servletRequest) {
+        return ContentType.APPLICATION_FORM_URLENCODED.getMimeType().equals(servletRequest.getContentType());
+    }
 
-        } finally {
-            // make sure the entire entity was consumed, so the connection is released
-            if (proxyResponse != null) {
-                consumeQuietly(proxyResponse.getEntity());
-            }
-            //Note: Don't need to close servlet outputStream:
-            // http://stackoverflow.com/questions/1159168/should-one-call-close-on-httpservletresponse-getoutputstream-getwriter
+    /**
+     * Pass status and headers of proxied response to the servlet client.
+     * @return false when response is already committed without body
+     */
+    @SuppressWarnings("deprecation")
+    boolean handleResponse(HttpProxyContext proxyContext, HttpResponse proxyResponse) throws ServletException, IOException {
+        final HttpServletResponse servletResponse = proxyContext.getResponse();
+        // Process the response
+        int statusCode = proxyResponse.getStatusLine().getStatusCode();
+
+        if (doResponseRedirectOrNotModifiedLogic(proxyContext, proxyResponse, statusCode)) {
+            //the response is already "committed" now without any body to send
+            //TODO copy response headers?
+            return false;
         }
+
+        // Pass the response code. This method with the "reason phrase" is deprecated but it's the only way to pass the
+        //  reason along too.
+        //noinspection deprecation
+        servletResponse.setStatus(statusCode, proxyResponse.getStatusLine().getReasonPhrase());
+
+        copyResponseHeaders(proxyResponse, proxyContext.getRequest(), servletResponse);
+        return true;
     }
 
     private HttpEntity createEntity(HttpServletRequest servletRequest) throws IOException {
         final String contentType = servletRequest.getContentType();
-        // body with 'application/x-www-form-urlencoded' is handled by tomcat therefore we cannot
-        // obtain it through input stream and need some workaround
-        if (ContentType.APPLICATION_FORM_URLENCODED.getMimeType().equals(contentType)) {
-            List<NameValuePair> entries = new ArrayList<>();
-            // obviously that we also copy params from url, but we cannot differentiate its
-            Enumeration<String> names = servletRequest.getParameterNames();
-            while (names.hasMoreElements()) {
-                String name = names.nextElement();
-                entries.add(new BasicNameValuePair(name, servletRequest.getParameter(name)));
-            }
-            return new UrlEncodedFormEntity(entries, servletRequest.getCharacterEncoding());
+        if (isForm(servletRequest)) {
+            return createFormEntity(servletRequest);
         }
 
         // Add the input entity (streamed)
@@ -156,6 +242,21 @@ public class HttpProxy implements AutoCloseable {
                 ContentType.create(contentType));
     }
 
+    /**
+     * Body with 'application/x-www-form-urlencoded' is handled by tomcat therefore we cannot
+     * obtain it through input stream and need some workaround
+     */
+    private HttpEntity createFormEntity(HttpServletRequest servletRequest) throws IOException {
+        List<NameValuePair> entries = new ArrayList<>();
+        // obviously that we also copy params from url, but we cannot differentiate its
+        Enumeration<String> names = servletRequest.getParameterNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            entries.add(new BasicNameValuePair(name, servletRequest.getParameter(name)));
+        }
+        return new UrlEncodedFormEntity(entries, servletRequest.getCharacterEncoding());
+    }
+
     private boolean doResponseRedirectOrNotModifiedLogic(HttpProxyContext proxyContext,
                                                          HttpResponse proxyResponse,
                                                          int statusCode) throws ServletException, IOException {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.gateway.proxy.common;
+
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking pipe from servlet input stream to encoder of proxied request. <p/>
+ * Listener can be set to servlet input stream only once, therefore pipe is saved in request attribute and
+ * reused by retries of load balancer. Retry is impossible after first byte of body is sent.
+ */
+final class RequestBodyPipe implements ReadListener {
+
+    private static final String ATTR = RequestBodyPipe.class.getName();
+    private final ServletInputStream in;
+    /**
+     * Buffer in 'write' mode: data is between zero and position.
+     */
+    private final ByteBuffer buffer;
+    private IOControl ioctrl;
+    private boolean eof;
+    private boolean sent;
+    private Throwable error;
+
+    private RequestBodyPipe(ServletInputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    static RequestBodyPipe get(HttpServletRequest request, int bufferSize) throws IOException {
+        RequestBodyPipe pipe = (RequestBodyPipe) request.getAttribute(ATTR);
+        if (pipe == null) {
+            pipe = new RequestBodyPipe(request.getInputStream(), bufferSize);
+            request.setAttribute(ATTR, pipe);
+            pipe.in.setReadListener(pipe);
+        }
+        return pipe;
+    }
+
+    /**
+     * Entity which is used only for passing of content headers, its content is produced by pipe.
+     */
+    BasicHttpEntity createEntity(HttpServletRequest request) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        long length = request.getContentLengthLong();
+        entity.setContentLength(length);
+        entity.setChunked(length < 0);
+        entity.setContentType(request.getContentType());
+        return entity;
+    }
+
+    /**
+     * Bind pipe to new request.
+     * @throws IOException when part of body is already sent by previous request
+     */
+    synchronized void attach() throws IOException {
+        if (sent) {
+            throw new IOException("Request body is already sent, can not repeat request.");
+        }
+        this.ioctrl = null;
+    }
+
+    synchronized void produce(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+        this.ioctrl = ioctrl;
+        if (error != null) {
+            throw new IOException("Can not read request body.", error);
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            sent = true;
+            encoder.write(buffer);
+        }
+        buffer.compact();
+        if (eof && buffer.position() == 0) {
+            encoder.complete();
+            return;
+        }
+        // servlet does not notify us when we stop reading due to full buffer, so we resume it here
+        readAvailable();
+        if (!eof && buffer.position() == 0) {
+            ioctrl.suspendOutput();
+        }
+    }
+
+    @Override
+    public synchronized void onDataAvailable() throws IOException {
+        readAvailable();
+    }
+
+    private void readAvailable() throws IOException {
+        boolean read = false;
+        while (!eof && buffer.hasRemaining()) {
+            if (in.isFinished()) {
+                eof = true;
+                break;
+            }
+            if (!in.isReady()) {
+                // servlet will invoke onDataAvailable()
+                break;
+            }
+            int len = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (len < 0) {
+                eof = true;
+                break;
+            }
+            buffer.position(buffer.position() + len);
+            read = true;
+        }
+        if (ioctrl != null && (read || eof)) {
+            ioctrl.requestOutput();
+        }
+    }
+
+    @Override
+    public synchronized void onAllDataRead() throws IOException {
+        eof = true;
+        if (ioctrl != null) {
+            ioctrl.requestOutput();
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        error = t;
+        if (ioctrl != null) {
+            // error will be thrown from produce
+            ioctrl.requestOutput();
+        }
+    }
+}
@@ -14,24 +14,14 @@
  * limitations under the License.
  */
 
-package com.codeabovelab.dm.agent.infocol;
-
-import com.google.common.base.Splitter;
-
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+package com.codeabovelab.dm.gateway.proxy.common;
 
 /**
+ * Proxying is failed after response of upstream was received and passing of it to client is begun,
+ * therefore request can not be retried.
  */
-final class InfoUtils {
-    static final Splitter SPLITTER_ON_SPACE = Splitter.on(' ').omitEmptyStrings().trimResults();
-
-    static BufferedReader readFile(File file) throws IOException {
-        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII));
-    }
-
-    static long nextLong(Iterator<String> iter) {
-        return Long.parseLong(iter.next());
+public class ResponseCommittedException extends RuntimeException {
+    public ResponseCommittedException(Throwable cause) {
+        super(cause);
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.gateway.proxy.common;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumer of proxied response which streams body into servlet output without blocking. When servlet output
+ * is not ready, it suspends input of upstream connection and resumes it from {@link #onWritePossible()}. <p/>
+ * Note that methods of {@link AbstractAsyncResponseConsumer} are synchronized on this, so we use same monitor.
+ */
+final class ServletResponseConsumer extends AbstractAsyncResponseConsumer<Void> implements WriteListener {
+
+    private final HttpProxy proxy;
+    private final HttpProxyContext context;
+    private final ByteBuffer buffer;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private ServletOutputStream out;
+    private IOControl ioctrl;
+    private boolean skipBody;
+    /**
+     * Response of upstream is received, from this point servlet response is modified and request can not be retried.
+     */
+    private volatile boolean received;
+    /**
+     * Buffer contains data which is not written to servlet yet.
+     */
+    private boolean pending;
+    private boolean completed;
+
+    ServletResponseConsumer(HttpProxy proxy, HttpProxyContext context, int bufferSize) {
+        this.proxy = proxy;
+        this.context = context;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @return future which is completed when whole response is written to servlet
+     */
+    CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    @Override
+    protected synchronized void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+        // headers may be partially copied even when below code fails
+        received = true;
+        try {
+            skipBody = !proxy.handleResponse(context, response);
+        } catch (ServletException e) {
+            throw new HttpException(e.getMessage(), e);
+        }
+        if (!skipBody) {
+            out = context.getResponse().getOutputStream();
+            out.setWriteListener(this);
+        }
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+    }
+
+    @Override
+    protected synchronized void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+        this.ioctrl = ioctrl;
+        while (!pending) {
+            buffer.clear();
+            int read = decoder.read(buffer);
+            if (read <= 0) {
+                return;
+            }
+            buffer.flip();
+            if (!skipBody) {
+                write();
+            }
+        }
+        ioctrl.suspendInput();
+    }
+
+    private void write() throws IOException {
+        if (!out.isReady()) {
+            // servlet will invoke onWritePossible()
+            pending = true;
+            return;
+        }
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+        pending = false;
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        if (pending) {
+            write();
+            if (pending) {
+                return;
+            }
+        }
+        if (completed) {
+            future.complete(null);
+        } else if (ioctrl != null) {
+            ioctrl.requestInput();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        fail(t);
+        // abort upstream exchange
+        cancel();
+    }
+
+    @Override
+    protected synchronized Void buildResult(HttpContext context) throws Exception {
+        completed = true;
+        // when output is not ready, future will be completed from onWritePossible()
+        if (!pending && (out == null || out.isReady())) {
+            future.complete(null);
+        }
+        return null;
+    }
+
+    void fail(Throwable t) {
+        if (received && !(t instanceof ResponseCommittedException)) {
+            t = new ResponseCommittedException(t);
+        }
+        future.completeExceptionally(t);
+    }
+
+    @Override
+    protected void releaseResources() {
+    }
+}
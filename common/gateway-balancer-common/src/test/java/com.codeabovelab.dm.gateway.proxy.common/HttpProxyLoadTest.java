@@ -0,0 +1,304 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.gateway.proxy.common;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.bootstrap.HttpServer;
+import org.apache.http.impl.nio.bootstrap.ServerBootstrap;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Load test of async proxy path: many concurrent requests to slow upstream must be served by fixed count of threads.
+ * Count of requests may be changed by 'proxy.load.concurrency' system property, note that each request
+ * use two sockets, so for 10000 requests you need appropriate limit of open files.
+ */
+public class HttpProxyLoadTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpProxyLoadTest.class);
+    private static final int CONCURRENCY = Integer.getInteger("proxy.load.concurrency", 500);
+    private static final long DELAY = 500;
+    private static final byte[] BODY = "slow upstream response".getBytes(StandardCharsets.UTF_8);
+
+    private ScheduledExecutorService scheduler;
+    private HttpServer server;
+    private HttpProxy proxy;
+    private URI target;
+
+    @Before
+    public void before() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(2).setSoReuseAddress(true).build())
+                .registerHandler("*", new SlowHandler())
+                .create();
+        server.start();
+        server.getEndpoint().waitFor();
+        int port = ((InetSocketAddress) server.getEndpoint().getAddress()).getPort();
+        target = URI.create("http://localhost:" + port + "/");
+        proxy = new HttpProxy(new AsyncProxyClient(HttpAsyncClients.custom()
+                .setMaxConnPerRoute(CONCURRENCY)
+                .setMaxConnTotal(CONCURRENCY)
+                .setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(2).build())
+                .build()));
+        proxy.start();
+    }
+
+    @After
+    public void after() throws Exception {
+        proxy.close();
+        server.shutdown(1, TimeUnit.SECONDS);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentSlowRequests() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<BufferOutputStream> outs = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; ++i) {
+            BufferOutputStream out = new BufferOutputStream();
+            outs.add(out);
+            futures.add(proxy.serviceAsync(new HttpProxyContext(request("GET", null), response(out), target, null)));
+        }
+        // all requests are in flight now
+        int threadsInFlight = Thread.activeCount();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get(2, TimeUnit.MINUTES);
+        long time = System.currentTimeMillis() - start;
+        LOG.info("{} requests with {} ms upstream delay are proxied in {} ms, threads: {} -> {}",
+                CONCURRENCY, DELAY, time, threadsBefore, threadsInFlight);
+        for (BufferOutputStream out : outs) {
+            assertArrayEquals(BODY, out.toByteArray());
+        }
+        // client start its threads lazily, but count of them does not depend on count of requests
+        assertTrue("Too many threads: " + threadsInFlight, threadsInFlight - threadsBefore < 10);
+    }
+
+    @Test
+    public void testRequestBody() throws Exception {
+        // body must be bigger than proxy buffer for checking of resume
+        byte[] body = new byte[100 * 1024];
+        for (int i = 0; i < body.length; ++i) {
+            body[i] = (byte) i;
+        }
+        BufferOutputStream out = new BufferOutputStream();
+        HttpServletRequest request = request("POST", body);
+        proxy.serviceAsync(new HttpProxyContext(request, response(out), target, null)).get(1, TimeUnit.MINUTES);
+        assertArrayEquals(body, out.toByteArray());
+    }
+
+    @Test
+    public void testFailAfterResponseReceived() throws Exception {
+        // servlet response is not committed yet, but headers are already copied
+        BufferOutputStream out = new BufferOutputStream() {
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                throw new IllegalStateException("Write listener is already set");
+            }
+        };
+        HttpServletResponse response = response(out);
+        try {
+            proxy.serviceAsync(new HttpProxyContext(request("GET", null), response, target, null)).get(1, TimeUnit.MINUTES);
+            fail("Proxying must fail");
+        } catch (ExecutionException e) {
+            assertFalse(response.isCommitted());
+            assertTrue("Unexpected: " + e.getCause(), e.getCause() instanceof ResponseCommittedException);
+        }
+    }
+
+    @Test
+    public void testFailBeforeResponseReceived() throws Exception {
+        int port = ((InetSocketAddress) server.getEndpoint().getAddress()).getPort();
+        server.shutdown(1, TimeUnit.SECONDS);
+        URI closed = URI.create("http://localhost:" + port + "/");
+        try {
+            proxy.serviceAsync(new HttpProxyContext(request("GET", null), response(new BufferOutputStream()), closed, null))
+                    .get(1, TimeUnit.MINUTES);
+            fail("Proxying must fail");
+        } catch (ExecutionException e) {
+            // nothing is passed to client, so request can be retried
+            assertFalse("Unexpected: " + e.getCause(), e.getCause() instanceof ResponseCommittedException);
+        }
+    }
+
+    private static HttpServletRequest request(String method, byte[] body) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getRequestURI()).thenReturn("/");
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        when(request.getHeaderNames()).thenAnswer(i -> Collections.emptyEnumeration());
+        if (body != null) {
+            when(request.getHeader("Content-Length")).thenReturn(Integer.toString(body.length));
+            when(request.getContentLengthLong()).thenReturn((long) body.length);
+            when(request.getContentType()).thenReturn(ContentType.APPLICATION_OCTET_STREAM.getMimeType());
+            when(request.getInputStream()).thenReturn(new BufferInputStream(body));
+        }
+        return request;
+    }
+
+    private static HttpServletResponse response(ServletOutputStream out) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(out);
+        return response;
+    }
+
+    private class SlowHandler implements HttpAsyncRequestHandler<HttpRequest> {
+        @Override
+        public HttpAsyncRequestConsumer<HttpRequest> processRequest(HttpRequest request, HttpContext context) {
+            return new BasicAsyncRequestConsumer();
+        }
+
+        @Override
+        public void handle(HttpRequest request, HttpAsyncExchange exchange, HttpContext context) throws IOException {
+            byte[] data = BODY;
+            if (request instanceof HttpEntityEnclosingRequest) {
+                // echo
+                data = EntityUtils.toByteArray(((HttpEntityEnclosingRequest) request).getEntity());
+            }
+            byte[] respData = data;
+            // respond later without holding of server thread
+            scheduler.schedule(() -> {
+                HttpResponse response = exchange.getResponse();
+                response.setStatusCode(200);
+                response.setEntity(new NByteArrayEntity(respData));
+                exchange.submitResponse();
+            }, DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Servlet input which always has data.
+     */
+    private static class BufferInputStream extends ServletInputStream {
+        private final byte[] data;
+        private int pos;
+
+        BufferInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public synchronized boolean isFinished() {
+            return pos == data.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            try {
+                listener.onDataAvailable();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            return isFinished() ? -1 : data[pos++] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (isFinished()) {
+                return -1;
+            }
+            int read = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, read);
+            pos += read;
+            return read;
+        }
+    }
+
+    /**
+     * Servlet output which is always ready.
+     */
+    private static class BufferOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            try {
+                listener.onWritePossible();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            data.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            data.write(b, off, len);
+        }
+
+        synchronized byte[] toByteArray() {
+            return data.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.platform.http.async;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Channel which is acquired from {@link ChannelSource} for single request. It guarantee that channel
+ * will be returned to source only once, even when response is closed after it fully read.
+ */
+final class ChannelLease {
+
+    /**
+     * Name of read timeout handler, which is added to pipeline for time of request.
+     */
+    static final String HANDLER_TIMEOUT = "dm-read-timeout";
+    /**
+     * Name of response handler, which is added to pipeline for time of request.
+     */
+    static final String HANDLER_RESPONSE = "dm-response";
+
+    private final Channel channel;
+    private final ChannelSource source;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ChannelLease(Channel channel, ChannelSource source) {
+        this.channel = channel;
+        this.source = source;
+    }
+
+    Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Return channel to its source, subsequent invocations do nothing.
+     * @param reusable false when channel can not be used for next requests
+     */
+    void release(boolean reusable) {
+        if(!released.compareAndSet(false, true)) {
+            return;
+        }
+        source.release(channel, reusable);
+    }
+
+    /**
+     * Remove request specific handlers from pipeline.
+     * @param pipeline pipeline of leased channel
+     */
+    static void cleanup(ChannelPipeline pipeline) {
+        if(pipeline.get(HANDLER_TIMEOUT) != null) {
+            pipeline.remove(HANDLER_TIMEOUT);
+        }
+        if(pipeline.get(HANDLER_RESPONSE) != null) {
+            pipeline.remove(HANDLER_RESPONSE);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.platform.http.async;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Source of connected channels for {@link NettyRequest}. It may open new connection for each request or
+ * keep pool of alive connections.
+ */
+interface ChannelSource {
+
+    /**
+     * Acquire channel which connected to specified address.
+     * @param address remote address
+     * @return future of connected channel
+     */
+    Future<Channel> acquire(InetSocketAddress address);
+
+    /**
+     * Return channel to source.
+     * @param channel channel which is obtained from {@link #acquire(InetSocketAddress)}
+     * @param reusable false when channel must not be used anymore, for example when response is not fully read
+     */
+    void release(Channel channel, boolean reusable);
+
+    /**
+     * Whether source can reuse connections. When true we ask server to keep connection alive.
+     * @return true when connection can be reused
+     */
+    boolean isKeepAlive();
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Input stream which wrap queue of chunks. You can add chunks in any time through {@link #add(Object)},
@@ -160,6 +161,46 @@ public class ChunkedInputStream<T> extends InputStream {
         }
     }
 
+    /**
+     * Pass all available chunks to consumer without waiting for new chunks. Each chunk is released after consumer.
+     * It must not be used concurrently with 'read' methods.
+     * @param consumer consumer of chunks
+     * @return true when end of stream is reached
+     */
+    @SuppressWarnings("unchecked")
+    public boolean drain(Consumer<T> consumer) {
+        lock.lock();
+        try {
+            if(end) {
+                return true;
+            }
+            T curr = this.currentRef.get();
+            if(curr != null) {
+                try {
+                    consumer.accept(curr);
+                } finally {
+                    releaseCurrent();
+                }
+            }
+            Object obj;
+            while((obj = queue.poll()) != null) {
+                if(obj == END) {
+                    this.end = true;
+                    return true;
+                }
+                T chunk = (T) obj;
+                try {
+                    consumer.accept(chunk);
+                } finally {
+                    adapter.onRemove(chunk);
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private T takeCurrent() throws InterruptedException {
         if(end) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.platform.http.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of pooled connections. One instance can be shared between many factories, then it show
+ * summary values.
+ */
+public final class NettyPoolMetrics {
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong handshakeTime = new AtomicLong();
+    private final AtomicLong handshakeMaxTime = new AtomicLong();
+
+    void onOpen() {
+        open.incrementAndGet();
+    }
+
+    void onClose() {
+        open.decrementAndGet();
+    }
+
+    void onLease() {
+        leased.incrementAndGet();
+    }
+
+    void onRelease() {
+        leased.decrementAndGet();
+    }
+
+    void onHandshake(long nanos) {
+        handshakes.incrementAndGet();
+        handshakeTime.addAndGet(nanos);
+        while(true) {
+            long max = handshakeMaxTime.get();
+            if(max >= nanos || handshakeMaxTime.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return count of currently opened connections
+     */
+    public int getOpen() {
+        return open.get();
+    }
+
+    /**
+     * @return count of connections which is used by requests now
+     */
+    public int getLeased() {
+        return leased.get();
+    }
+
+    /**
+     * @return count of connections which is not used by requests now
+     */
+    public int getIdle() {
+        return Math.max(0, getOpen() - getLeased());
+    }
+
+    /**
+     * @return count of established connections (includes TLS handshake when it used) from start
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * @return average time of connection establishment (includes TLS handshake) in milliseconds
+     */
+    public long getHandshakeAvgTime() {
+        long count = handshakes.get();
+        if(count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(handshakeTime.get() / count);
+    }
+
+    /**
+     * @return maximal time of connection establishment (includes TLS handshake) in milliseconds
+     */
+    public long getHandshakeMaxTime() {
+        return TimeUnit.NANOSECONDS.toMillis(handshakeMaxTime.get());
+    }
+
+    @Override
+    public String toString() {
+        return "NettyPoolMetrics{" +
+          "open=" + getOpen() +
+          ", leased=" + getLeased() +
+          ", handshakes=" + getHandshakes() +
+          ", handshakeAvgTime=" + getHandshakeAvgTime() +
+          ", handshakeMaxTime=" + getHandshakeMaxTime() +
+          '}';
+    }
+}
@@ -16,11 +16,12 @@
 
 package com.codeabovelab.dm.platform.http.async;
 
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.FutureListener;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.AsyncClientHttpRequest;
@@ -32,10 +33,12 @@ import org.springframework.util.concurrent.SettableListenableFuture;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * We create our implementation based on {@link org.springframework.http.client.Netty4ClientHttpRequest }
@@ -44,7 +47,9 @@ import java.util.concurrent.ExecutionException;
 class NettyRequest implements ClientHttpRequest, AsyncClientHttpRequest {
     private final HttpHeaders headers = new HttpHeaders();
 
-    private final Bootstrap bootstrap;
+    private final ChannelSource channelSource;
+
+    private final int readTimeout;
 
     private final URI uri;
 
@@ -54,8 +59,9 @@ class NettyRequest implements ClientHttpRequest, AsyncClientHttpRequest {
 
     private boolean executed = false;
 
-    NettyRequest(Bootstrap bootstrap, URI uri, HttpMethod method) {
-        this.bootstrap = bootstrap;
+    NettyRequest(ChannelSource channelSource, int readTimeout, URI uri, HttpMethod method) {
+        this.channelSource = channelSource;
+        this.readTimeout = readTimeout;
         this.uri = uri;
         this.method = method;
         this.body = new ByteBufOutputStream(Unpooled.buffer(1024));
@@ -106,19 +112,30 @@ class NettyRequest implements ClientHttpRequest, AsyncClientHttpRequest {
     protected ListenableFuture<ClientHttpResponse> executeInternal(final HttpHeaders headers) {
         final SettableListenableFuture<ClientHttpResponse> responseFuture = new SettableListenableFuture<>();
 
-        ChannelFutureListener connectionListener = future -> {
+        FutureListener<Channel> connectionListener = future -> {
             if (future.isSuccess()) {
-                Channel channel = future.channel();
-                channel.pipeline().addLast(new NettyResponseHandler(responseFuture));
+                ChannelLease lease = new ChannelLease(future.getNow(), this.channelSource);
+                Channel channel = lease.getChannel();
+                ChannelPipeline pipeline = channel.pipeline();
+                if (this.readTimeout > 0) {
+                    pipeline.addLast(ChannelLease.HANDLER_TIMEOUT, new ReadTimeoutHandler(this.readTimeout, TimeUnit.MILLISECONDS));
+                }
+                pipeline.addLast(ChannelLease.HANDLER_RESPONSE, new NettyResponseHandler(responseFuture, lease));
                 FullHttpRequest nettyRequest = createFullHttpRequest(headers);
-                channel.writeAndFlush(nettyRequest);
+                channel.writeAndFlush(nettyRequest).addListener((ChannelFutureListener) writeFuture -> {
+                    if (!writeFuture.isSuccess()) {
+                        responseFuture.setException(writeFuture.cause());
+                        lease.release(false);
+                    }
+                });
             }
             else {
                 responseFuture.setException(future.cause());
             }
         };
 
-        this.bootstrap.connect(this.uri.getHost(), getPort(this.uri)).addListener(connectionListener);
+        InetSocketAddress address = InetSocketAddress.createUnresolved(this.uri.getHost(), getPort(this.uri));
+        this.channelSource.acquire(address).addListener(connectionListener);
 
         return responseFuture;
     }
@@ -161,7 +178,7 @@ class NettyRequest implements ClientHttpRequest, AsyncClientHttpRequest {
 
         io.netty.handler.codec.http.HttpHeaders nettyHeaders = nettyRequest.headers();
         nettyHeaders.set(HttpHeaders.HOST, this.uri.getHost());
-        nettyHeaders.set(HttpHeaders.CONNECTION, "close");
+        nettyHeaders.set(HttpHeaders.CONNECTION, this.channelSource.isKeepAlive() ? "keep-alive" : "close");
 
         for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
             nettyHeaders.add(entry.getKey(), entry.getValue());
@@ -17,16 +17,21 @@
 package com.codeabovelab.dm.platform.http.async;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.SocketChannelConfig;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.http.HttpMethod;
@@ -34,16 +39,25 @@ import org.springframework.http.client.*;
 import org.springframework.util.Assert;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * We create our factory implementation based on {@link org.springframework.http.client.Netty4ClientHttpRequestFactory }
  * due to need consume of endless stream with "TransferEncoding: chunked", which default implementation does not allow.
+ * <p/>
+ * By default each request opens new connection. When {@link #setMaxConnections(int)} is positive, factory keeps
+ * pool of keep-alive connections for each remote address.
  */
 public class NettyRequestFactory implements ClientHttpRequestFactory,
   AsyncClientHttpRequestFactory, InitializingBean, DisposableBean {
 
+    private static final AttributeKey<ChannelPool> ATTR_POOL = AttributeKey.valueOf("dm-pool");
+    private static final AttributeKey<Boolean> ATTR_LEASED = AttributeKey.valueOf("dm-leased");
+
     private final EventLoopGroup eventLoopGroup;
 
     private final boolean defaultEventLoopGroup;
@@ -55,8 +69,18 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
 
     private int readTimeout = -1;
 
+    private int maxConnections = 0;
+
+    private int maxIdleTime = 60_000;
+
+    private int acquireTimeout = -1;
+
+    private NettyPoolMetrics metrics = new NettyPoolMetrics();
+
     private volatile Bootstrap bootstrap;
 
+    private volatile ChannelSource channelSource;
+
 
     /**
      * Create a new {@code Netty4ClientHttpRequestFactory} with a default
@@ -107,6 +131,56 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
         this.readTimeout = readTimeout;
     }
 
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Set max count of keep-alive connections to each remote address. Note that endless streams (events, logs and etc.)
+     * hold connection while they is opened, so use separate factory without pooling for them.
+     * Zero or negative value disable pooling, then each request open new connection.
+     * <p>By default pooling is disabled.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Set time (in milliseconds) after which unused pooled connection will be closed.
+     * Zero or negative value disable idle eviction.
+     */
+    public void setMaxIdleTime(int maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public int getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * Set time (in milliseconds) of waiting for free pooled connection, when pool is exhausted. After
+     * it request will fail. Negative value mean infinite waiting.
+     */
+    public void setAcquireTimeout(int acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public NettyPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set metrics holder, it allow to share one instance between many factories.
+     */
+    public void setMetrics(NettyPoolMetrics metrics) {
+        Assert.notNull(metrics, "metrics is null");
+        this.metrics = metrics;
+    }
+
     private Bootstrap getBootstrap() {
         if (this.bootstrap == null) {
             Bootstrap bootstrap = new Bootstrap();
@@ -114,17 +188,7 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
               .handler(new ChannelInitializer<SocketChannel>() {
                   @Override
                   protected void initChannel(SocketChannel channel) throws Exception {
-                      configureChannel(channel.config());
-                      ChannelPipeline pipeline = channel.pipeline();
-                      if (sslContext != null) {
-                          pipeline.addLast(sslContext.newHandler(channel.alloc()));
-                      }
-                      pipeline.addLast(new HttpClientCodec());
-                      //pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
-                      if (readTimeout > 0) {
-                          pipeline.addLast(new ReadTimeoutHandler(readTimeout,
-                            TimeUnit.MILLISECONDS));
-                      }
+                      NettyRequestFactory.this.initChannel(channel);
                   }
               });
             this.bootstrap = bootstrap;
@@ -132,6 +196,43 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
         return this.bootstrap;
     }
 
+    private ChannelSource getChannelSource() {
+        if (this.channelSource == null) {
+            Bootstrap bootstrap = getBootstrap();
+            this.channelSource = maxConnections > 0 ? new PooledChannelSource(bootstrap) : new DirectChannelSource(bootstrap);
+        }
+        return this.channelSource;
+    }
+
+    private void initChannel(Channel channel) {
+        configureChannel((SocketChannelConfig) channel.config());
+        final NettyPoolMetrics metrics = this.metrics;
+        metrics.onOpen();
+        channel.closeFuture().addListener(f -> metrics.onClose());
+        final long start = System.nanoTime();
+        ChannelPipeline pipeline = channel.pipeline();
+        if (sslContext != null) {
+            SslHandler sslHandler = sslContext.newHandler(channel.alloc());
+            sslHandler.handshakeFuture().addListener(f -> {
+                if (f.isSuccess()) {
+                    metrics.onHandshake(System.nanoTime() - start);
+                }
+            });
+            pipeline.addLast(sslHandler);
+        } else {
+            pipeline.addLast(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                    metrics.onHandshake(System.nanoTime() - start);
+                    ctx.pipeline().remove(this);
+                    super.channelActive(ctx);
+                }
+            });
+        }
+        pipeline.addLast(new HttpClientCodec());
+        //pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
+    }
+
     /**
      * Template method for changing properties on the given {@link SocketChannelConfig}.
      * <p>The default implementation sets the connect timeout based on the set property.
@@ -145,7 +246,7 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
 
     @Override
     public void afterPropertiesSet() {
-        getBootstrap();
+        getChannelSource();
     }
 
 
@@ -160,17 +261,144 @@ public class NettyRequestFactory implements ClientHttpRequestFactory,
     }
 
     private NettyRequest createRequestInternal(URI uri, HttpMethod httpMethod) {
-        return new NettyRequest(getBootstrap(), uri, httpMethod);
+        return new NettyRequest(getChannelSource(), readTimeout, uri, httpMethod);
     }
 
 
     @Override
     public void destroy() throws InterruptedException {
+        ChannelSource source = this.channelSource;
+        if (source instanceof PooledChannelSource) {
+            ((PooledChannelSource) source).close();
+        }
         if (this.defaultEventLoopGroup) {
             // Clean up the EventLoopGroup if we created it in the constructor
             this.eventLoopGroup.shutdownGracefully().sync();
         }
     }
 
-}
+    /**
+     * Open new connection for each request and close it after.
+     */
+    private final class DirectChannelSource implements ChannelSource {
+        private final Bootstrap bootstrap;
+
+        DirectChannelSource(Bootstrap bootstrap) {
+            this.bootstrap = bootstrap;
+        }
+
+        @Override
+        public Future<Channel> acquire(InetSocketAddress address) {
+            Promise<Channel> promise = eventLoopGroup.next().newPromise();
+            bootstrap.connect(address).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    metrics.onLease();
+                    promise.setSuccess(future.channel());
+                } else {
+                    promise.setFailure(future.cause());
+                }
+            });
+            return promise;
+        }
+
+        @Override
+        public void release(Channel channel, boolean reusable) {
+            metrics.onRelease();
+            channel.close();
+        }
 
+        @Override
+        public boolean isKeepAlive() {
+            return false;
+        }
+    }
+
+    /**
+     * Keep pool of connections for each remote address.
+     */
+    private final class PooledChannelSource extends AbstractChannelPoolHandler implements ChannelSource {
+        private final AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> pools;
+
+        PooledChannelSource(Bootstrap bootstrap) {
+            // pool replace handler of bootstrap, therefore we init channel in channelCreated()
+            this.pools = new AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool>() {
+                @Override
+                protected FixedChannelPool newPool(InetSocketAddress key) {
+                    Bootstrap poolBootstrap = bootstrap.clone().remoteAddress(key);
+                    if (acquireTimeout < 0) {
+                        return new FixedChannelPool(poolBootstrap, PooledChannelSource.this, maxConnections);
+                    }
+                    return new FixedChannelPool(poolBootstrap, PooledChannelSource.this, ChannelHealthChecker.ACTIVE,
+                      FixedChannelPool.AcquireTimeoutAction.FAIL, acquireTimeout, maxConnections, Integer.MAX_VALUE);
+                }
+            };
+        }
+
+        @Override
+        public void channelCreated(Channel channel) throws Exception {
+            initChannel(channel);
+            if (maxIdleTime > 0) {
+                channel.pipeline().addFirst(new IdleStateHandler(0, 0, maxIdleTime, TimeUnit.MILLISECONDS),
+                  new ChannelInboundHandlerAdapter() {
+                      @Override
+                      public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                          // leased channel may be idle while it wait long response, so we close only unused channels
+                          if (evt instanceof IdleStateEvent && !Boolean.TRUE.equals(ctx.channel().attr(ATTR_LEASED).get())) {
+                              ctx.close();
+                              return;
+                          }
+                          super.userEventTriggered(ctx, evt);
+                      }
+                  });
+            }
+        }
+
+        @Override
+        public Future<Channel> acquire(InetSocketAddress address) {
+            FixedChannelPool pool = pools.get(address);
+            Future<Channel> future = pool.acquire();
+            // this listener must be first, because other listeners expect prepared channel
+            future.addListener(f -> {
+                if (f.isSuccess()) {
+                    Channel channel = future.getNow();
+                    channel.attr(ATTR_POOL).set(pool);
+                    channel.attr(ATTR_LEASED).set(Boolean.TRUE);
+                    metrics.onLease();
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void release(Channel channel, boolean reusable) {
+            ChannelPool pool = channel.attr(ATTR_POOL).get();
+            channel.attr(ATTR_LEASED).set(Boolean.FALSE);
+            metrics.onRelease();
+            try {
+                channel.eventLoop().execute(() -> {
+                    ChannelLease.cleanup(channel.pipeline());
+                    if (!reusable) {
+                        channel.close();
+                    }
+                    // pool check health of channel, so closed channel will be discarded
+                    pool.release(channel);
+                });
+            } catch (RejectedExecutionException e) {
+                // event loop is shutdown
+                channel.close();
+            }
+        }
+
+        @Override
+        public boolean isKeepAlive() {
+            return true;
+        }
+
+        void close() {
+            for (Map.Entry<InetSocketAddress, FixedChannelPool> entry : pools) {
+                entry.getValue().close();
+            }
+        }
+    }
+
+}
@@ -16,11 +16,9 @@
 
 package com.codeabovelab.dm.platform.http.async;
 
-import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.util.Assert;
 
 import java.io.IOException;
@@ -31,8 +29,10 @@ import java.util.Map;
  * We create our implementation based on {@link org.springframework.http.client.Netty4ClientHttpResponse }
  * due to need consume of endless stream with "TransferEncoding: chunked", which default implementation does not allow.
  */
-class NettyResponse implements ClientHttpResponse {
-    private final ChannelHandlerContext context;
+class NettyResponse implements StreamingResponse {
+    private final ChannelLease lease;
+
+    private final NettyResponseHandler handler;
 
     private final HttpResponse nettyResponse;
 
@@ -40,11 +40,13 @@ class NettyResponse implements ClientHttpResponse {
 
     private volatile HttpHeaders headers;
 
+    private volatile boolean subscribed;
 
-    NettyResponse(ChannelHandlerContext context, HttpResponse nettyResponse, InputStream body) {
-        Assert.notNull(context, "ChannelHandlerContext must not be null");
+    NettyResponse(ChannelLease lease, HttpResponse nettyResponse, InputStream body, NettyResponseHandler handler) {
+        Assert.notNull(lease, "ChannelLease must not be null");
         Assert.notNull(nettyResponse, "FullHttpResponse must not be null");
-        this.context = context;
+        this.lease = lease;
+        this.handler = handler;
         this.nettyResponse = nettyResponse;
         this.body = body;
     }
@@ -83,9 +85,27 @@ class NettyResponse implements ClientHttpResponse {
         return this.body;
     }
 
+    @Override
+    public void subscribe(BodyConsumer consumer) {
+        Assert.notNull(consumer, "consumer is null");
+        Assert.isTrue(!subscribed, "Response already has consumer");
+        this.subscribed = true;
+        this.handler.subscribe(consumer);
+    }
+
+    @Override
+    public void abort() {
+        this.handler.abort();
+    }
+
     @Override
     public void close() {
-        this.context.close();
+        if(subscribed) {
+            // connection is owned by consumer
+            return;
+        }
+        // when response is not fully read we can not reuse connection, otherwise it is already released
+        this.lease.release(false);
     }
 
 }
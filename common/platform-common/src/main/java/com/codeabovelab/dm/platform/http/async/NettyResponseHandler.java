@@ -20,38 +20,138 @@ import io.netty.buffer.ByteBufHolder;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.util.concurrent.SettableListenableFuture;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  */
+@Slf4j
 class NettyResponseHandler extends SimpleChannelInboundHandler<HttpObject> {
 
     private final SettableListenableFuture<ClientHttpResponse> responseFuture;
+    private final ChannelLease lease;
     private final ChunkedInputStream<ByteBufHolder> in = new ChunkedInputStream<>(ByteBufHolderAdapter.INSTANCE);
+    private boolean keepAlive;
+    // fields below are accessed only from event loop
+    private StreamingResponse.BodyConsumer consumer;
+    private boolean ended;
 
-    NettyResponseHandler(SettableListenableFuture<ClientHttpResponse> responseFuture) {
+    NettyResponseHandler(SettableListenableFuture<ClientHttpResponse> responseFuture, ChannelLease lease) {
         this.responseFuture = responseFuture;
+        this.lease = lease;
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext context, HttpObject response) throws Exception {
         if(response instanceof HttpResponse) {
-            this.responseFuture.set(new NettyResponse(context, (HttpResponse) response, in));
+            HttpResponse httpResponse = (HttpResponse) response;
+            this.keepAlive = HttpUtil.isKeepAlive(httpResponse);
+            this.responseFuture.set(new NettyResponse(lease, httpResponse, in, this));
         } else if(response instanceof HttpContent) {
             HttpContent cont = (HttpContent) response;
-            in.add(cont);
+            if(consumer != null) {
+                if(ended || !push(cont)) {
+                    return;
+                }
+            } else {
+                in.add(cont);
+            }
             if(response instanceof LastHttpContent) {
                 in.end();
+                // whole response is read, so connection can be used by other requests
+                lease.release(keepAlive);
+                finish(null);
             }
         } else {
             throw new RuntimeException("Unknown message: " + response);
         }
     }
 
+    /**
+     * Switch handler into push mode, must be called once.
+     * @param consumer consumer of body
+     */
+    void subscribe(StreamingResponse.BodyConsumer consumer) {
+        executeInLoop(() -> {
+            this.consumer = consumer;
+            // deliver chunks which has been received before subscription
+            boolean end;
+            try {
+                end = in.drain(chunk -> consumer.onContent(chunk.content()));
+            } catch (Exception e) {
+                lease.release(false);
+                finish(e);
+                return;
+            }
+            if(end || !lease.getChannel().isActive()) {
+                finish(null);
+            }
+        }, consumer);
+    }
+
+    /**
+     * Close connection and notify consumer. We can not rely on {@link #channelInactive(ChannelHandlerContext)}
+     * because pooled source remove this handler before closing of channel.
+     */
+    void abort() {
+        executeInLoop(() -> {
+            lease.release(false);
+            finish(null);
+        }, null);
+    }
+
+    private void executeInLoop(Runnable task, StreamingResponse.BodyConsumer consumer) {
+        try {
+            lease.getChannel().eventLoop().execute(task);
+        } catch (RejectedExecutionException e) {
+            // event loop is shutdown
+            lease.release(false);
+            if(consumer != null) {
+                consumer.onEnd(e);
+            }
+        }
+    }
+
+    private boolean push(HttpContent cont) {
+        try {
+            consumer.onContent(cont.content());
+            return true;
+        } catch (Exception e) {
+            // we can not skip part of stream, so close it
+            lease.release(false);
+            finish(e);
+            return false;
+        }
+    }
+
+    private void finish(Throwable cause) {
+        if(consumer == null || ended) {
+            return;
+        }
+        ended = true;
+        try {
+            consumer.onEnd(cause);
+        } catch (Exception e) {
+            log.error("Error in body consumer.", e);
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext context, Throwable cause) throws Exception {
         this.responseFuture.setException(cause);
+        lease.release(false);
+        finish(cause);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext context) throws Exception {
+        in.end();
+        lease.release(false);
+        finish(null);
+        super.channelInactive(context);
     }
 
 }
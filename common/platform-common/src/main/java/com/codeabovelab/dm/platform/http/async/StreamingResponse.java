@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Code Above Lab LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeabovelab.dm.platform.http.async;
+
+import io.netty.buffer.ByteBuf;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Response which allow to consume body in push mode, without blocking any thread while waiting for data.
+ * After {@link #subscribe(BodyConsumer)} the {@link #getBody()} must not be used, and {@link #close()} does not
+ * close connection, because it is owned by consumer until the {@link BodyConsumer#onEnd(Throwable)}. Consumer may
+ * interrupt stream through {@link #abort()}.
+ */
+public interface StreamingResponse extends ClientHttpResponse {
+
+    interface BodyConsumer {
+        /**
+         * Invoked on IO thread for each chunk of body, therefore it must not block. Buffer is valid only
+         * at time of invocation, so consumer must copy data which is need later.
+         * @param content chunk of body
+         */
+        void onContent(ByteBuf content);
+
+        /**
+         * Invoked once when stream is ended.
+         * @param error cause or null when stream is ended normally or aborted
+         */
+        void onEnd(Throwable error);
+    }
+
+    /**
+     * Switch response into push mode. Data which is already received will be passed to consumer first.
+     * @param consumer consumer of body
+     */
+    void subscribe(BodyConsumer consumer);
+
+    /**
+     * Close underlying connection, consumer will receive {@link BodyConsumer#onEnd(Throwable)}.
+     */
+    void abort();
+}